@@ -0,0 +1,239 @@
+package com.safety.womenalert;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Women Safety System - ACK Batcher
+ * Collects downlink ACKs per serial port and writes them as shared AckFrames
+ *
+ * An ACK goes out on the port whose dongle first heard the device, since
+ * that gateway radio is the one in range. The first ACK queued on a port
+ * opens a window of windowMs; everything acknowledged on that port within
+ * it leaves as one frame, or sooner once MAX_ENTRIES are waiting. A burst
+ * of alerts from many wearers therefore costs the channel one downlink.
+ *
+ * Recently acknowledged frames are remembered by device, sequence number
+ * and the timestamp the wearer stamped on them. A retransmission of one of
+ * them means the wearer missed the ACK, and it is acknowledged again;
+ * retransmissions of frames not yet acknowledged are left alone, since
+ * their ACK is still on its way. A rebooted wearer numbers its packets from
+ * the start again, so its entries are forgotten: a new alert that reuses an
+ * old sequence number must never be acknowledged before it is persisted.
+ */
+public class AckBatcher {
+    
+    public static final long DEFAULT_WINDOW_MS = 50;
+    public static final int RECENT_ACKS = 1024;
+    
+    /**
+     * Sends one encoded frame out of a serial port; called on the scheduler
+     */
+    public interface Writer {
+        void write(int port, byte[] frame) throws IOException;
+    }
+    
+    /**
+     * ACKs waiting for one port's window to close
+     */
+    private static final class Batch {
+        final int[] deviceIds = new int[AckFrame.MAX_ENTRIES];
+        final int[] sequenceNumbers = new int[AckFrame.MAX_ENTRIES];
+        int count;
+        ScheduledFuture<?> flush;
+        
+        boolean contains(int deviceId, int sequenceNumber) {
+            for (int i = 0; i < count; i++) {
+                if (deviceIds[i] == deviceId && sequenceNumbers[i] == sequenceNumber) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+    
+    private final Writer writer;
+    private final ScheduledExecutorService scheduler;
+    private final long windowMs;
+    
+    // Guarded by this
+    private final Map<Integer, Integer> portByDevice = new HashMap<>();
+    private final Map<Integer, Batch> batches = new HashMap<>();
+    private final Map<Long, Boolean> recent = new LinkedHashMap<Long, Boolean>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Boolean> eldest) {
+            return size() > RECENT_ACKS;
+        }
+    };
+    private long acksQueued = 0;
+    private long reacks = 0;
+    private long unroutable = 0;
+    private long framesWritten = 0;
+    private long writeFailures = 0;
+    
+    public AckBatcher(Writer writer, ScheduledExecutorService scheduler) {
+        this(writer, scheduler, DEFAULT_WINDOW_MS);
+    }
+    
+    /**
+     * @param scheduler runs the flushes and writes; single-threaded keeps each port's frames in order
+     */
+    public AckBatcher(Writer writer, ScheduledExecutorService scheduler, long windowMs) {
+        this.writer = writer;
+        this.scheduler = scheduler;
+        this.windowMs = windowMs;
+    }
+    
+    /**
+     * A frame that will need an ACK arrived from deviceId on port
+     */
+    public synchronized void heard(int deviceId, int port) {
+        portByDevice.put(deviceId, port);
+    }
+    
+    /**
+     * The frame has been accepted and persisted; the wearer may stop sending it
+     * @param timestamp the frame's own timestamp, which tells it from frames
+     *        numbered the same before the wearer rebooted
+     */
+    public synchronized void acknowledge(int deviceId, int sequenceNumber, int timestamp) {
+        Integer port = portByDevice.get(deviceId);
+        if (port == null) {
+            unroutable++;
+            return;  // Never heard on any port
+        }
+        recent.put(key(deviceId, sequenceNumber, timestamp), Boolean.TRUE);
+        if (queue(port, deviceId, sequenceNumber)) {
+            acksQueued++;
+        }
+    }
+    
+    /**
+     * A copy of a frame already heard arrived on port; acknowledge it again if
+     * the first ACK has gone out, as the wearer evidently missed it
+     */
+    public synchronized void onDuplicate(int deviceId, int sequenceNumber, int timestamp,
+                                         int port) {
+        if (recent.containsKey(key(deviceId, sequenceNumber, timestamp))) {
+            portByDevice.put(deviceId, port);
+            if (queue(port, deviceId, sequenceNumber)) {
+                reacks++;
+            }
+        }
+    }
+    
+    /**
+     * The wearer restarted its sequence numbers; forget what it was acknowledged
+     */
+    public synchronized void rebooted(int deviceId) {
+        recent.keySet().removeIf(key -> (int) (key >>> 48) == (deviceId & 0xFFFF));
+    }
+    
+    public synchronized long getAcksQueued() {
+        return acksQueued;
+    }
+    
+    /**
+     * ACKs repeated because the wearer retransmitted after the first
+     */
+    public synchronized long getReacks() {
+        return reacks;
+    }
+    
+    /**
+     * ACKs dropped because the device was never heard on any port
+     */
+    public synchronized long getUnroutable() {
+        return unroutable;
+    }
+    
+    public synchronized long getFramesWritten() {
+        return framesWritten;
+    }
+    
+    public synchronized long getWriteFailures() {
+        return writeFailures;
+    }
+    
+    /**
+     * @return false if the ACK was already waiting in the port's batch
+     */
+    private boolean queue(int port, int deviceId, int sequenceNumber) {
+        Batch batch = batches.get(port);
+        if (batch == null) {
+            batch = new Batch();
+            batches.put(port, batch);
+        }
+        if (batch.contains(deviceId, sequenceNumber)) {
+            return false;
+        }
+        
+        batch.deviceIds[batch.count] = deviceId;
+        batch.sequenceNumbers[batch.count] = sequenceNumber;
+        batch.count++;
+        if (batch.count == AckFrame.MAX_ENTRIES) {
+            // Full: send now rather than hold back the next wearer's ACK
+            byte[] frame = take(batch);
+            scheduler.execute(() -> write(port, frame));
+        } else if (batch.count == 1) {
+            batch.flush = scheduler.schedule(() -> flush(port), windowMs,
+                TimeUnit.MILLISECONDS);
+        }
+        return true;
+    }
+    
+    private void flush(int port) {
+        byte[] frame;
+        synchronized (this) {
+            Batch batch = batches.get(port);
+            if (batch == null || batch.count == 0) {
+                return;  // Already sent when it filled up
+            }
+            frame = take(batch);
+        }
+        write(port, frame);
+    }
+    
+    /**
+     * Encode the batch and empty it; called holding the lock
+     */
+    private byte[] take(Batch batch) {
+        byte[] frame = new byte[AckFrame.size(batch.count)];
+        AckFrame.encode(batch.deviceIds, batch.sequenceNumbers, batch.count, frame);
+        batch.count = 0;
+        if (batch.flush != null) {
+            batch.flush.cancel(false);
+            batch.flush = null;
+        }
+        return frame;
+    }
+    
+    private void write(int port, byte[] frame) {
+        int entries = frame[3] & 0xFF;
+        try {
+            writer.write(port, frame);
+        } catch (IOException | RuntimeException e) {
+            // The wearer retransmits and is acknowledged again from the recent set
+            synchronized (this) {
+                writeFailures++;
+            }
+            Metrics.ACK_WRITE_FAILURES.increment();
+            return;
+        }
+        synchronized (this) {
+            framesWritten++;
+        }
+        Metrics.ACK_FRAMES.increment();
+        Metrics.ACKS_SENT.add(entries);
+    }
+    
+    private static long key(int deviceId, int sequenceNumber, int timestamp) {
+        return (long) (deviceId & 0xFFFF) << 48 | (long) (sequenceNumber & 0xFFFF) << 32
+            | (timestamp & 0xFFFFFFFFL);
+    }
+}
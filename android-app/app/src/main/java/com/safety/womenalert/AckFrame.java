@@ -0,0 +1,98 @@
+package com.safety.womenalert;
+
+/**
+ * Women Safety System - ACK Frame
+ * Downlink acknowledgement the gateway radio sends back to the wearables
+ *
+ * One frame acknowledges up to MAX_ENTRIES (device, sequence) pairs, so a
+ * burst of alerts from many wearers costs one transmission. Layout, all
+ * fields big-endian as in the uplink packet:
+ *
+ *   [0-1]   magic 0xEF 0xFA (uplink frames use 0xEF 0xFD)
+ *   [2]     packet type 0x81
+ *   [3]     entry count, 1 to MAX_ENTRIES
+ *   [4..]   count entries of device ID (2 bytes) and sequence number (2 bytes)
+ *   [last]  CRC-16/CCITT-FALSE over every byte before it (2 bytes)
+ *
+ * Must match the ACK frame spec in esp32-firmware/lora_comm.h.
+ */
+public final class AckFrame {
+    
+    public static final int MAGIC_BYTE_1 = 0xEF;
+    public static final int MAGIC_BYTE_2 = 0xFA;
+    public static final int PACKET_TYPE_ACK = 0x81;
+    public static final int HEADER_SIZE = 4;
+    public static final int ENTRY_SIZE = 4;
+    public static final int CHECKSUM_SIZE = 2;
+    public static final int MAX_ENTRIES = 16;
+    public static final int MAX_SIZE = size(MAX_ENTRIES);
+    
+    private AckFrame() {}
+    
+    /**
+     * Bytes in a frame carrying count entries
+     */
+    public static int size(int count) {
+        return HEADER_SIZE + ENTRY_SIZE * count + CHECKSUM_SIZE;
+    }
+    
+    /**
+     * Write a frame acknowledging the first count pairs into out
+     * @return bytes written
+     */
+    public static int encode(int[] deviceIds, int[] sequenceNumbers, int count, byte[] out) {
+        if (count < 1 || count > MAX_ENTRIES) {
+            throw new IllegalArgumentException("ACK frame carries 1 to " + MAX_ENTRIES
+                + " entries, not " + count);
+        }
+        
+        out[0] = (byte) MAGIC_BYTE_1;
+        out[1] = (byte) MAGIC_BYTE_2;
+        out[2] = (byte) PACKET_TYPE_ACK;
+        out[3] = (byte) count;
+        int offset = HEADER_SIZE;
+        for (int i = 0; i < count; i++) {
+            out[offset] = (byte) (deviceIds[i] >> 8);
+            out[offset + 1] = (byte) deviceIds[i];
+            out[offset + 2] = (byte) (sequenceNumbers[i] >> 8);
+            out[offset + 3] = (byte) sequenceNumbers[i];
+            offset += ENTRY_SIZE;
+        }
+        
+        int checksum = Crc16Ccitt.compute(out, 0, offset);
+        out[offset] = (byte) (checksum >> 8);
+        out[offset + 1] = (byte) checksum;
+        return offset + CHECKSUM_SIZE;
+    }
+    
+    /**
+     * Read the entries of a frame at data[offset], as lora_ack_covers() does on the wearable
+     * @return entry count, or -1 if the bytes are not a whole, valid ACK frame
+     */
+    public static int decode(byte[] data, int offset, int length, int[] deviceIds,
+                             int[] sequenceNumbers) {
+        if (length < size(1)
+                || (data[offset] & 0xFF) != MAGIC_BYTE_1
+                || (data[offset + 1] & 0xFF) != MAGIC_BYTE_2
+                || (data[offset + 2] & 0xFF) != PACKET_TYPE_ACK) {
+            return -1;
+        }
+        
+        int count = data[offset + 3] & 0xFF;
+        if (count < 1 || count > MAX_ENTRIES || length < size(count)) {
+            return -1;
+        }
+        
+        int end = offset + HEADER_SIZE + ENTRY_SIZE * count;
+        int received = ((data[end] & 0xFF) << 8) | (data[end + 1] & 0xFF);
+        if (received != Crc16Ccitt.compute(data, offset, end - offset)) {
+            return -1;
+        }
+        
+        for (int i = 0, at = offset + HEADER_SIZE; i < count; i++, at += ENTRY_SIZE) {
+            deviceIds[i] = ((data[at] & 0xFF) << 8) | (data[at + 1] & 0xFF);
+            sequenceNumbers[i] = ((data[at + 2] & 0xFF) << 8) | (data[at + 3] & 0xFF);
+        }
+        return count;
+    }
+}
@@ -0,0 +1,75 @@
+package com.safety.womenalert;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Women Safety System - Alert Settings
+ * Immutable snapshot of the settings the alert path needs, normalized once when saved
+ *
+ * Contacts are trimmed with blanks dropped, so senders can use them as-is.
+ * Instances are swapped whole by {@link SettingsStore}; readers never see a
+ * half-updated mix of old and new settings.
+ */
+public final class AlertSettings {
+    
+    private final String backendUrl;
+    private final String apiKey;
+    private final String[] contacts;
+    
+    private AlertSettings(String backendUrl, String apiKey, String[] contacts) {
+        this.backendUrl = backendUrl;
+        this.apiKey = apiKey;
+        this.contacts = contacts;
+    }
+    
+    /**
+     * @param rawContacts contact fields as entered; null or blank entries are dropped
+     */
+    public static AlertSettings of(String backendUrl, String... rawContacts) {
+        List<String> contacts = new ArrayList<>(rawContacts.length);
+        for (String contact : rawContacts) {
+            String trimmed = contact != null ? contact.trim() : "";
+            if (!trimmed.isEmpty()) {
+                contacts.add(trimmed);
+            }
+        }
+        
+        String url = backendUrl != null ? backendUrl.trim() : "";
+        // "https://host/" + "/api/emergency" would double the slash
+        while (url.endsWith("/")) {
+            url = url.substring(0, url.length() - 1);
+        }
+        
+        return new AlertSettings(url, "", contacts.toArray(new String[0]));
+    }
+    
+    /**
+     * Same settings with the gateway API key sent to the backend; blank means none
+     */
+    public AlertSettings withApiKey(String apiKey) {
+        return new AlertSettings(backendUrl, apiKey != null ? apiKey.trim() : "", contacts);
+    }
+    
+    public String getBackendUrl() {
+        return backendUrl;
+    }
+    
+    /**
+     * Gateway API key, or "" if none is set
+     */
+    public String getApiKey() {
+        return apiKey;
+    }
+    
+    /**
+     * Shared array; EmergencyEvent copies it, other callers must not modify it
+     */
+    public String[] getContacts() {
+        return contacts;
+    }
+    
+    public boolean hasContacts() {
+        return contacts.length > 0;
+    }
+}
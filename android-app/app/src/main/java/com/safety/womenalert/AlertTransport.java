@@ -0,0 +1,35 @@
+package com.safety.womenalert;
+
+import java.util.function.Predicate;
+
+/**
+ * Women Safety System - Alert Transport
+ * A way to get an emergency event to someone: the backend, direct SMS, or a stub
+ *
+ * Sends are asynchronous. Each submitted event gets exactly one outcome on
+ * the Listener given to the transport, unless it is cancelled first.
+ * Implementations call the Listener with the same event instance that was
+ * submitted, so callers may track events by identity.
+ */
+public interface AlertTransport {
+    
+    /**
+     * Delivery outcome, called on a transport thread
+     */
+    interface Listener {
+        void onDelivered(EmergencyEvent event);
+        
+        void onFailed(EmergencyEvent event, String reason);
+    }
+    
+    void submit(EmergencyEvent event);
+    
+    /**
+     * Withdraw matching events that have not gone out yet; they get no outcome.
+     * Something already on the wire or handed to the radio cannot be recalled.
+     * @return true if anything was withdrawn
+     */
+    boolean cancel(Predicate<EmergencyEvent> matches);
+    
+    void shutdown();
+}
@@ -1,103 +1,175 @@
 package com.safety.womenalert;
 
 import android.content.Context;
-import android.content.SharedPreferences;
 import android.util.Log;
 
-import org.json.JSONArray;
-import org.json.JSONObject;
-
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Women Safety System - API Client
- * HTTP client for backend communication
+ * Asynchronous HTTP client for one-off backend calls; alerts go through EmergencyUplink
+ *
+ * Every call returns at once with a future for its {@link ApiResult}. An
+ * answer from the backend completes it normally, whatever the status;
+ * only transport failures (no URL, no network, timeouts) complete it
+ * exceptionally. Requests run on a small bounded pool: when MAX_QUEUED
+ * calls are already waiting, new ones fail immediately rather than pile up.
+ *
+ * Each response is scanned as it streams in, then drained and closed so
+ * the connection can be reused; a connection that failed mid-request is
+ * disconnected instead.
  */
 public class ApiClient {
     
     private static final String TAG = "ApiClient";
     private static final int TIMEOUT_MS = 10000;  // 10 seconds
+    private static final int IO_THREADS = 2;
+    private static final int MAX_QUEUED = 32;
+    private static final long IDLE_THREAD_MS = 30000;
     
     private final Context context;
+    private final ThreadPoolExecutor io;
     
     public ApiClient(Context context) {
         this.context = context;
+        this.io = new ThreadPoolExecutor(IO_THREADS, IO_THREADS, IDLE_THREAD_MS,
+            TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(MAX_QUEUED), runnable -> {
+                Thread thread = new Thread(runnable, "api-io");
+                thread.setDaemon(true);
+                return thread;
+            });
+        this.io.allowCoreThreadTimeOut(true);
     }
     
-    public boolean sendEmergencyAlert(int deviceId, double latitude, double longitude, 
-                                      int batteryLevel, int sequenceNumber, String[] contacts) {
+    /**
+     * Tell the backend a device cancelled its alert, so pending SMS and calls are not made
+     * @param sequenceNumber sequence number of the cancel frame
+     */
+    public CompletableFuture<ApiResult> cancelEmergency(int deviceId, int sequenceNumber,
+                                                        long timestamp) {
         try {
-            SharedPreferences prefs = context.getSharedPreferences("WomenSafetyPrefs", 
-                Context.MODE_PRIVATE);
-            String backendUrl = prefs.getString("backendUrl", "");
-            
-            if (backendUrl.isEmpty()) {
-                Log.e(TAG, "Backend URL not configured");
-                return false;
-            }
-            
-            // Build JSON payload
-            JSONObject payload = new JSONObject();
-            payload.put("deviceId", deviceId);
-            payload.put("latitude", latitude);
-            payload.put("longitude", longitude);
-            payload.put("batteryLevel", batteryLevel);
-            payload.put("sequenceNumber", sequenceNumber);
-            payload.put("timestamp", System.currentTimeMillis());
-            
-            JSONArray contactsArray = new JSONArray();
-            for (String contact : contacts) {
-                if (contact != null && !contact.isEmpty()) {
-                    contactsArray.put(contact);
+            return post("/api/emergency/cancel", EmergencyPayload.toCancelJson(deviceId,
+                sequenceNumber, timestamp));
+        } catch (Exception e) {
+            return failed(e);
+        }
+    }
+    
+    /**
+     * Send the backend a better fix for an alert that went out before its lookup finished;
+     * contacts already texted are sent the new location
+     */
+    public CompletableFuture<ApiResult> updateLocation(String incidentId,
+                                                       LocationFixCache.Fix fix) {
+        try {
+            return post("/api/emergency/" + incidentId + "/location",
+                EmergencyPayload.toLocationJson(fix.latitude, fix.longitude, fix.ageMillis));
+        } catch (Exception e) {
+            return failed(e);
+        }
+    }
+    
+    /**
+     * Let queued calls finish, then stop the I/O threads
+     */
+    public void shutdown() {
+        io.shutdown();
+    }
+    
+    private CompletableFuture<ApiResult> post(String path, String payload) {
+        CompletableFuture<ApiResult> future = new CompletableFuture<>();
+        try {
+            io.execute(() -> {
+                try {
+                    future.complete(execute(path, payload));
+                } catch (IOException | RuntimeException e) {
+                    Log.e(TAG, "POST " + path + " failed", e);
+                    future.completeExceptionally(e);
                 }
-            }
-            payload.put("emergencyContacts", contactsArray);
-            
-            // Create connection
-            URL url = new URL(backendUrl + "/api/emergency");
-            HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+            });
+        } catch (RejectedExecutionException e) {
+            Log.e(TAG, "POST " + path + " rejected: " + io.getQueue().size() + " queued");
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+    
+    private ApiResult execute(String path, String payload) throws IOException {
+        AlertSettings settings = SettingsStore.get(context).current();
+        String backendUrl = settings.getBackendUrl();
+        if (backendUrl.isEmpty()) {
+            throw new IOException("Backend URL not configured");
+        }
+        
+        byte[] body = payload.getBytes(StandardCharsets.UTF_8);
+        long startNanos = System.nanoTime();
+        HttpURLConnection conn = (HttpURLConnection) new URL(backendUrl + path).openConnection();
+        boolean reusable = false;
+        try {
             conn.setRequestMethod("POST");
             conn.setRequestProperty("Content-Type", "application/json");
+            ApiKey.apply(conn, settings::getApiKey);
             conn.setDoOutput(true);
             conn.setConnectTimeout(TIMEOUT_MS);
             conn.setReadTimeout(TIMEOUT_MS);
+            conn.setFixedLengthStreamingMode(body.length);
             
-            // Send request
             try (OutputStream os = conn.getOutputStream()) {
-                byte[] input = payload.toString().getBytes(StandardCharsets.UTF_8);
-                os.write(input, 0, input.length);
+                os.write(body);
             }
             
-            // Read response
             int responseCode = conn.getResponseCode();
+            long roundTripNanos = System.nanoTime() - startNanos;
+            Metrics.BACKEND_ROUND_TRIP.recordNanos(roundTripNanos);
             
-            if (responseCode == HttpURLConnection.HTTP_OK || 
-                responseCode == HttpURLConnection.HTTP_CREATED) {
-                
-                BufferedReader br = new BufferedReader(
-                    new InputStreamReader(conn.getInputStream(), StandardCharsets.UTF_8));
-                StringBuilder response = new StringBuilder();
-                String responseLine;
-                while ((responseLine = br.readLine()) != null) {
-                    response.append(responseLine.trim());
-                }
-                
-                Log.i(TAG, "Backend response: " + response.toString());
-                return true;
-                
-            } else {
-                Log.e(TAG, "Backend error: HTTP " + responseCode);
-                return false;
+            ApiResult result;
+            InputStream in = responseCode < 400 ? conn.getInputStream() : conn.getErrorStream();
+            try (InputStream stream = in) {
+                result = ApiResult.read(stream, responseCode, roundTripNanos);
+                drain(stream);
             }
+            reusable = true;
             
-        } catch (Exception e) {
-            Log.e(TAG, "Error sending emergency alert", e);
-            return false;
+            if (result.isSuccess()) {
+                Log.i(TAG, "POST " + path + ": " + result);
+            } else {
+                Log.e(TAG, "POST " + path + " rejected: " + result);
+            }
+            return result;
+        
+        } finally {
+            if (!reusable) {
+                conn.disconnect();
+            }
         }
     }
+    
+    /**
+     * Read whatever follows the scanned object, so the connection returns to the keep-alive pool
+     */
+    private static void drain(InputStream in) throws IOException {
+        if (in == null) {
+            return;
+        }
+        byte[] discard = new byte[256];
+        while (in.read(discard) != -1) {
+            // Discard
+        }
+    }
+    
+    private static CompletableFuture<ApiResult> failed(Exception e) {
+        CompletableFuture<ApiResult> future = new CompletableFuture<>();
+        future.completeExceptionally(e);
+        return future;
+    }
 }
@@ -0,0 +1,31 @@
+package com.safety.womenalert;
+
+import java.net.HttpURLConnection;
+import java.util.function.Supplier;
+
+/**
+ * Women Safety System - API Key
+ * Gateway API key the backend requires on every alert, cancel and telemetry request
+ */
+public final class ApiKey {
+    
+    public static final String HEADER = "X-Api-Key";
+    
+    /**
+     * For senders built without a key; the backend accepts them only in development
+     */
+    public static final Supplier<String> NONE = () -> "";
+    
+    private ApiKey() {
+    }
+    
+    /**
+     * Add the key to a request before it is sent; a null or blank key adds nothing
+     */
+    public static void apply(HttpURLConnection conn, Supplier<String> apiKey) {
+        String key = apiKey.get();
+        if (key != null && !key.isEmpty()) {
+            conn.setRequestProperty(HEADER, key);
+        }
+    }
+}
@@ -0,0 +1,352 @@
+package com.safety.womenalert;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Women Safety System - API Result
+ * Typed backend response: status, incident id, server timestamp and round-trip time
+ *
+ * The body is scanned as it streams in, a small buffer of UTF-8 bytes at
+ * a time. Only the top-level fields below are kept; everything else,
+ * nested values included, is skipped without being decoded or turned into
+ * strings, and the body is never held in memory whole. An empty or
+ * non-JSON body leaves the fields unset. A batch response's results array
+ * is scanned the same way, into one ApiResult per event.
+ */
+public final class ApiResult {
+    
+    private final int httpStatus;
+    private final long roundTripNanos;
+    private Boolean success;
+    private String incidentId;
+    private String serverTimestamp;
+    private String message;
+    private int cancelledCount = -1;
+    private List<ApiResult> results = Collections.emptyList();
+    
+    private ApiResult(int httpStatus, long roundTripNanos) {
+        this.httpStatus = httpStatus;
+        this.roundTripNanos = roundTripNanos;
+    }
+    
+    /**
+     * Scan a response body; the caller drains and closes the stream
+     *
+     * @param roundTripNanos request sent until the response headers arrived
+     */
+    public static ApiResult read(InputStream body, int httpStatus, long roundTripNanos)
+            throws IOException {
+        ApiResult result = new ApiResult(httpStatus, roundTripNanos);
+        if (body != null) {
+            new Scanner(body).readInto(result);
+        }
+        return result;
+    }
+    
+    /**
+     * 2xx, and the body did not say otherwise
+     */
+    public boolean isSuccess() {
+        return httpStatus >= 200 && httpStatus < 300 && (success == null || success);
+    }
+    
+    public int getHttpStatus() {
+        return httpStatus;
+    }
+    
+    /**
+     * Incident the backend created or matched, or null
+     */
+    public String getIncidentId() {
+        return incidentId;
+    }
+    
+    /**
+     * Backend clock when it answered, ISO 8601, or null
+     */
+    public String getServerTimestamp() {
+        return serverTimestamp;
+    }
+    
+    /**
+     * The body's error text, or its message if there was no error, or null
+     */
+    public String getMessage() {
+        return message;
+    }
+    
+    /**
+     * Incidents a cancel stopped, or -1 if the body did not list them
+     */
+    public int getCancelledCount() {
+        return cancelledCount;
+    }
+    
+    /**
+     * Per-event results of a batch, in request order; an entry that is not an object is null
+     */
+    public List<ApiResult> getResults() {
+        return results;
+    }
+    
+    public long getRoundTripNanos() {
+        return roundTripNanos;
+    }
+    
+    @Override
+    public String toString() {
+        return "HTTP " + httpStatus + (incidentId != null ? " incident " + incidentId : "")
+            + (message != null ? " - " + message : "");
+    }
+    
+    /**
+     * Single-pass reader over the top-level JSON object
+     */
+    private static final class Scanner {
+        private final InputStream in;
+        private final byte[] buffer = new byte[256];
+        private int position = 0;
+        private int limit = 0;
+        
+        // Current key, and the value of a field being kept
+        private final StringBuilder text = new StringBuilder();
+        
+        Scanner(InputStream in) {
+            this.in = in;
+        }
+        
+        void readInto(ApiResult result) throws IOException {
+            if (nextToken() != '{') {
+                return;
+            }
+            
+            int c = nextToken();
+            while (c == '"') {
+                readString(true);
+                if (nextToken() != ':') {
+                    return;
+                }
+                
+                if ("success".contentEquals(text)) {
+                    readScalar();
+                    result.success = "true".contentEquals(text);
+                } else if ("incidentId".contentEquals(text)) {
+                    result.incidentId = readScalar();
+                } else if ("timestamp".contentEquals(text)) {
+                    result.serverTimestamp = readScalar();
+                } else if ("error".contentEquals(text)) {
+                    result.message = readScalar();
+                } else if ("message".contentEquals(text)) {
+                    String message = readScalar();
+                    if (result.message == null) {
+                        result.message = message;
+                    }
+                } else if ("cancelled".contentEquals(text) && peekToken() == '[') {
+                    result.cancelledCount = countElements();
+                } else if ("results".contentEquals(text) && peekToken() == '[') {
+                    result.results = readResults(result);
+                } else {
+                    skipValue();
+                }
+                
+                c = nextToken();
+                if (c == ',') {
+                    c = nextToken();
+                }
+            }
+        }
+        
+        /**
+         * A string, number or literal as text; null for JSON null and for containers
+         */
+        private String readScalar() throws IOException {
+            int c = peekToken();
+            if (c == '"') {
+                position++;
+                readString(true);
+                return text.toString();
+            }
+            if (c == '{' || c == '[') {
+                skipValue();
+                return null;
+            }
+            
+            text.setLength(0);
+            while ((c = peek()) != -1 && !isDelimiter(c)) {
+                text.append((char) c);
+                position++;
+            }
+            return text.length() == 0 || "null".contentEquals(text) ? null : text.toString();
+        }
+        
+        /**
+         * Elements of the array at the cursor, which is consumed
+         */
+        private int countElements() throws IOException {
+            position++;  // '['
+            if (peekToken() == ']') {
+                position++;
+                return 0;
+            }
+            int count = 0;
+            int c;
+            do {
+                skipValue();
+                count++;
+            } while ((c = nextToken()) == ',');
+            return c == ']' ? count : -1;
+        }
+        
+        /**
+         * The array of result objects at the cursor, which is consumed
+         */
+        private List<ApiResult> readResults(ApiResult batch) throws IOException {
+            position++;  // '['
+            List<ApiResult> results = new ArrayList<>();
+            if (peekToken() == ']') {
+                position++;
+                return results;
+            }
+            do {
+                if (peekToken() == '{') {
+                    ApiResult item = new ApiResult(batch.httpStatus, batch.roundTripNanos);
+                    readInto(item);
+                    results.add(item);
+                } else {
+                    skipValue();
+                    results.add(null);
+                }
+            } while (nextToken() == ',');
+            return results;
+        }
+        
+        private void skipValue() throws IOException {
+            int depth = 0;
+            do {
+                int c = nextToken();
+                if (c == -1) {
+                    return;
+                } else if (c == '"') {
+                    readString(false);
+                } else if (c == '{' || c == '[') {
+                    depth++;
+                } else if (c == '}' || c == ']') {
+                    depth--;
+                } else if (c != ',' && c != ':') {
+                    // Number or literal
+                    while ((c = peek()) != -1 && !isDelimiter(c)) {
+                        position++;
+                    }
+                }
+            } while (depth > 0);
+        }
+        
+        /**
+         * The rest of a string whose opening quote was consumed, into text when keep is set
+         */
+        private void readString(boolean keep) throws IOException {
+            text.setLength(0);
+            int c;
+            while ((c = next()) != -1 && c != '"') {
+                if (c == '\\') {
+                    c = next();
+                    switch (c) {
+                        case 'b': c = '\b'; break;
+                        case 'f': c = '\f'; break;
+                        case 'n': c = '\n'; break;
+                        case 'r': c = '\r'; break;
+                        case 't': c = '\t'; break;
+                        case 'u': c = readHex(); break;
+                        default: break;  // \" \\ \/ stand for themselves
+                    }
+                } else if (c >= 0x80 && keep) {
+                    c = readMultibyte(c);  // Skipped strings pass through as raw bytes
+                }
+                if (keep && c != -1) {
+                    text.appendCodePoint(c);
+                }
+            }
+        }
+        
+        /**
+         * Code point of a UTF-8 sequence whose lead byte was consumed; U+FFFD if malformed
+         */
+        private int readMultibyte(int lead) throws IOException {
+            int extra = lead >= 0xF0 ? 3 : lead >= 0xE0 ? 2 : lead >= 0xC0 ? 1 : 0;
+            if (extra == 0 || lead >= 0xF8) {
+                return 0xFFFD;
+            }
+            int codePoint = lead & (0x3F >> extra);
+            for (int i = 0; i < extra; i++) {
+                int c = peek();
+                if ((c & 0xC0) != 0x80) {
+                    return 0xFFFD;
+                }
+                position++;
+                codePoint = (codePoint << 6) | (c & 0x3F);
+            }
+            return Character.isValidCodePoint(codePoint) ? codePoint : 0xFFFD;
+        }
+        
+        private int readHex() throws IOException {
+            int value = 0;
+            for (int i = 0; i < 4; i++) {
+                int digit = Character.digit(next(), 16);
+                if (digit < 0) {
+                    return 0xFFFD;
+                }
+                value = (value << 4) | digit;
+            }
+            return value;
+        }
+        
+        private static boolean isDelimiter(int c) {
+            return c == ',' || c == '}' || c == ']' || c == ':' || c == '"'
+                || isSpace(c);
+        }
+        
+        private static boolean isSpace(int c) {
+            return c == ' ' || c == '\n' || c == '\r' || c == '\t';
+        }
+        
+        private int nextToken() throws IOException {
+            int c = peekToken();
+            if (c != -1) {
+                position++;
+            }
+            return c;
+        }
+        
+        private int peekToken() throws IOException {
+            int c;
+            while ((c = peek()) != -1 && isSpace(c)) {
+                position++;
+            }
+            return c;
+        }
+        
+        private int next() throws IOException {
+            int c = peek();
+            if (c != -1) {
+                position++;
+            }
+            return c;
+        }
+        
+        private int peek() throws IOException {
+            if (position == limit) {
+                limit = in.read(buffer, 0, buffer.length);
+                position = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    return -1;
+                }
+            }
+            return buffer[position] & 0xFF;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.safety.womenalert;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Women Safety System - Byte Ring
+ * Lock-free single-producer/single-consumer byte queue from a serial callback to its decoder
+ *
+ * The producer (the USB reader thread) only copies bytes in and publishes
+ * the new write position: no locks, no allocation, no blocking. A chunk
+ * that does not fit is dropped whole and counted, so the reader never
+ * stalls and the decoder simply resyncs on the next sync word. The
+ * consumer hands contiguous spans straight to a Sink, normally
+ * FrameDecoder::feed, without copying them out.
+ *
+ * Exactly one thread may call offer() and exactly one thread drainTo().
+ */
+public class ByteRing {
+    
+    public static final int DEFAULT_CAPACITY = 16 * 1024;  // ~1.4 s at 115200 baud
+    
+    /**
+     * Takes drained bytes; the span is only valid during the call
+     */
+    public interface Sink {
+        void accept(byte[] data, int offset, int length);
+    }
+    
+    private final byte[] buffer;
+    private final int mask;
+    
+    // Absolute positions; index into buffer with (pos & mask)
+    private final AtomicLong head = new AtomicLong();  // Written by the consumer
+    private final AtomicLong tail = new AtomicLong();  // Written by the producer
+    
+    // Each side's own position, and the producer's last look at head
+    private long readPosition = 0;
+    private long writePosition = 0;
+    private long cachedHead = 0;
+    
+    // Written by the producer only
+    private volatile long bytesDropped = 0;
+    private volatile long chunksDropped = 0;
+    
+    public ByteRing() {
+        this(DEFAULT_CAPACITY);
+    }
+    
+    /**
+     * @param capacity size in bytes, rounded up to a power of two
+     */
+    public ByteRing(int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+        this.buffer = new byte[size];
+        this.mask = size - 1;
+    }
+    
+    /**
+     * Producer side: copy a chunk in, or drop all of it if it does not fit
+     * @return false if the chunk was dropped
+     */
+    public boolean offer(byte[] data, int offset, int length) {
+        long end = writePosition + length;
+        if (end - cachedHead > buffer.length) {
+            // Only look at the consumer's position when the ring seems full
+            cachedHead = head.get();
+            if (end - cachedHead > buffer.length) {
+                bytesDropped += length;
+                chunksDropped++;
+                return false;
+            }
+        }
+        
+        int start = (int) (writePosition & mask);
+        int first = Math.min(length, buffer.length - start);
+        System.arraycopy(data, offset, buffer, start, first);
+        System.arraycopy(data, offset + first, buffer, 0, length - first);
+        
+        writePosition = end;
+        // Volatile store, so a caller's "is the consumer parked?" check cannot move ahead of it
+        tail.set(end);
+        return true;
+    }
+    
+    /**
+     * Consumer side: pass everything published so far to the sink
+     * @return bytes drained
+     */
+    public int drainTo(Sink sink) {
+        long end = tail.get();
+        int available = (int) (end - readPosition);
+        if (available == 0) {
+            return 0;
+        }
+        
+        int start = (int) (readPosition & mask);
+        int first = Math.min(available, buffer.length - start);
+        sink.accept(buffer, start, first);
+        if (available > first) {
+            sink.accept(buffer, 0, available - first);
+        }
+        
+        readPosition = end;
+        head.lazySet(end);
+        return available;
+    }
+    
+    /**
+     * Consumer side: nothing published that drainTo() has not taken
+     */
+    public boolean isEmpty() {
+        return tail.get() == readPosition;
+    }
+    
+    public int capacity() {
+        return buffer.length;
+    }
+    
+    /**
+     * Bytes dropped because the consumer fell a full ring behind
+     */
+    public long getBytesDropped() {
+        return bytesDropped;
+    }
+    
+    public long getChunksDropped() {
+        return chunksDropped;
+    }
+}
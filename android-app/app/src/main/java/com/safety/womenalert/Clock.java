@@ -0,0 +1,12 @@
+package com.safety.womenalert;
+
+/**
+ * Women Safety System - Clock
+ * Monotonic millisecond time source, replaceable with a fake clock in tests
+ */
+public interface Clock {
+    
+    Clock SYSTEM = () -> System.nanoTime() / 1000000;
+    
+    long millis();
+}
@@ -0,0 +1,117 @@
+package com.safety.womenalert;
+
+/**
+ * Women Safety System - CRC16 Checksum
+ * CRC-16/CCITT-FALSE (poly 0x1021, init 0xFFFF, no reflection, no final XOR)
+ *
+ * Bit-identical to lora_calculate_crc16() in esp32-firmware/lora_comm.c.
+ * The standard check value is 0x29B1 for the ASCII bytes "123456789".
+ *
+ * Bulk input is processed eight bytes at a time with slicing-by-8 tables;
+ * the remainder goes through the single 256-entry table. An instance carries
+ * the running checksum across chunk boundaries.
+ */
+public class Crc16Ccitt {
+    
+    public static final int POLYNOMIAL = 0x1021;
+    public static final int INITIAL_VALUE = 0xFFFF;
+    public static final int CHECK_VALUE = 0x29B1;
+    
+    private static final int SLICES = 8;
+    
+    // TABLE[k * 256 + b] = CRC register after byte b followed by k zero bytes
+    private static final char[] TABLE = new char[SLICES * 256];
+    
+    static {
+        for (int b = 0; b < 256; b++) {
+            int crc = b << 8;
+            for (int j = 0; j < 8; j++) {
+                crc = (crc & 0x8000) != 0 ? (crc << 1) ^ POLYNOMIAL : crc << 1;
+            }
+            TABLE[b] = (char) crc;
+        }
+        
+        for (int k = 1; k < SLICES; k++) {
+            for (int b = 0; b < 256; b++) {
+                int prev = TABLE[(k - 1) * 256 + b];
+                TABLE[k * 256 + b] = (char) ((prev << 8) ^ TABLE[prev >>> 8]);
+            }
+        }
+    }
+    
+    private int crc = INITIAL_VALUE;
+    
+    public void update(int b) {
+        crc = ((crc << 8) ^ TABLE[((crc >>> 8) ^ b) & 0xFF]) & 0xFFFF;
+    }
+    
+    public void update(byte[] data, int offset, int length) {
+        crc = update(crc, data, offset, length);
+    }
+    
+    public int getValue() {
+        return crc;
+    }
+    
+    public void reset() {
+        crc = INITIAL_VALUE;
+    }
+    
+    /**
+     * Checksum of data[offset, offset + length) starting from 0xFFFF
+     */
+    public static int compute(byte[] data, int offset, int length) {
+        return update(INITIAL_VALUE, data, offset, length);
+    }
+    
+    /**
+     * Continue a running checksum with more bytes (slicing-by-8)
+     */
+    public static int update(int crc, byte[] data, int offset, int length) {
+        int i = offset;
+        int end = offset + length;
+        
+        for (; end - i >= SLICES; i += SLICES) {
+            crc = TABLE[7 * 256 + (((crc >>> 8) ^ data[i]) & 0xFF)]
+                ^ TABLE[6 * 256 + ((crc ^ data[i + 1]) & 0xFF)]
+                ^ TABLE[5 * 256 + (data[i + 2] & 0xFF)]
+                ^ TABLE[4 * 256 + (data[i + 3] & 0xFF)]
+                ^ TABLE[3 * 256 + (data[i + 4] & 0xFF)]
+                ^ TABLE[2 * 256 + (data[i + 5] & 0xFF)]
+                ^ TABLE[256 + (data[i + 6] & 0xFF)]
+                ^ TABLE[data[i + 7] & 0xFF];
+        }
+        
+        return updateTable(crc, data, i, end - i);
+    }
+    
+    /**
+     * Continue a running checksum one table lookup per byte
+     */
+    public static int updateTable(int crc, byte[] data, int offset, int length) {
+        for (int i = offset, end = offset + length; i < end; i++) {
+            crc = ((crc << 8) ^ TABLE[((crc >>> 8) ^ data[i]) & 0xFF]) & 0xFFFF;
+        }
+        return crc;
+    }
+    
+    /**
+     * Reference bit-at-a-time implementation, same loop as the firmware
+     */
+    public static int computeBitwise(byte[] data, int offset, int length) {
+        int crc = INITIAL_VALUE;
+        
+        for (int i = offset, end = offset + length; i < end; i++) {
+            crc ^= (data[i] & 0xFF) << 8;
+            for (int j = 0; j < 8; j++) {
+                if ((crc & 0x8000) != 0) {
+                    crc = (crc << 1) ^ POLYNOMIAL;
+                } else {
+                    crc = crc << 1;
+                }
+            }
+        }
+        
+        return crc & 0xFFFF;
+    }
+}
@@ -0,0 +1,254 @@
+package com.safety.womenalert;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Women Safety System - Emergency Codec
+ * Compact binary encoding of emergency events, an alternative to the JSON payloads
+ *
+ * Sent with Content-Type {@link #CONTENT_TYPE} to the same endpoints as JSON;
+ * a batch is records back to back. All fields are big-endian:
+ *
+ *   [0-1]   Length of the rest of the record
+ *   [2]     Version (1)
+ *   [3]     Flags: 0x01 = contacts inline, 0x02 = location age follows
+ *   [4-5]   Device ID
+ *   [6-9]   Latitude, 1e-7 degrees (signed)
+ *   [10-13] Longitude, 1e-7 degrees (signed)
+ *   [14]    Battery level
+ *   [15-16] Sequence number
+ *   [17-24] Timestamp, ms since epoch
+ *   [25-32] Contacts hash (first 64 bits of SHA-256 over device ID and contacts)
+ *   [33..]  If inline: count, then per contact a length byte and ASCII
+ *   [..]    If location age: seconds the fix was old at the timestamp (u32)
+ *
+ * The backend caches contacts by hash the first time they arrive inline, so
+ * later alerts from the same phone carry only the 8-byte hash. A backend that
+ * has lost its cache answers 409 and the sender inlines them again. The hash
+ * covers the device ID, and the backend recomputes it from inline contacts and
+ * scopes its cache per device, so one device's hash cannot be bound to another
+ * device's contacts.
+ */
+public final class EmergencyCodec {
+    
+    public static final String CONTENT_TYPE = "application/vnd.wss.emergency";
+    public static final int VERSION = 1;
+    public static final int FLAG_CONTACTS_INLINE = 0x01;
+    public static final int FLAG_LOCATION_AGE = 0x02;
+    
+    // Record size without inline contacts, length prefix included
+    public static final int FIXED_SIZE = 33;
+    
+    private static final double COORDINATE_SCALE = 1e7;
+    
+    private EmergencyCodec() {}
+    
+    /**
+     * Encode events back to back; contacts are inlined unless knownHashes has
+     * them or an earlier record in the same batch already carried them
+     * @param knownHashes contact hashes the backend has cached; not modified
+     */
+    public static byte[] encodeBatch(List<EmergencyEvent> events, Set<Long> knownHashes) {
+        int size = 0;
+        Set<Long> sent = new HashSet<>(knownHashes);
+        boolean[] inline = new boolean[events.size()];
+        
+        for (int i = 0; i < inline.length; i++) {
+            EmergencyEvent event = events.get(i);
+            inline[i] = sent.add(contactsHash(event.getDeviceId(), event.getContacts()));
+            size += encodedSize(event, inline[i]);
+        }
+        
+        ByteBuffer out = ByteBuffer.allocate(size);
+        for (int i = 0; i < inline.length; i++) {
+            encode(events.get(i), inline[i], out);
+        }
+        return out.array();
+    }
+    
+    public static byte[] encode(EmergencyEvent event, boolean inlineContacts) {
+        ByteBuffer out = ByteBuffer.allocate(encodedSize(event, inlineContacts));
+        encode(event, inlineContacts, out);
+        return out.array();
+    }
+    
+    /**
+     * Write one record at the buffer's position
+     * @return bytes written
+     */
+    public static int encode(EmergencyEvent event, boolean inlineContacts, ByteBuffer out) {
+        int start = out.position();
+        String[] contacts = event.getContacts();
+        long locationAge = event.getLocationAgeMs() / 1000;
+        int flags = (inlineContacts ? FLAG_CONTACTS_INLINE : 0)
+            | (locationAge > 0 ? FLAG_LOCATION_AGE : 0);
+        
+        out.putShort((short) 0);  // Length, patched below
+        out.put((byte) VERSION);
+        out.put((byte) flags);
+        out.putShort((short) event.getDeviceId());
+        out.putInt((int) Math.round(event.getLatitude() * COORDINATE_SCALE));
+        out.putInt((int) Math.round(event.getLongitude() * COORDINATE_SCALE));
+        out.put((byte) event.getBatteryLevel());
+        out.putShort((short) event.getSequenceNumber());
+        out.putLong(event.getTimestamp());
+        out.putLong(contactsHash(event.getDeviceId(), contacts));
+        
+        if (inlineContacts) {
+            int countAt = out.position();
+            out.put((byte) 0);
+            int count = 0;
+            for (String contact : contacts) {
+                if (contact == null || contact.isEmpty()) {
+                    continue;
+                }
+                byte[] bytes = contact.getBytes(StandardCharsets.US_ASCII);
+                out.put((byte) bytes.length);
+                out.put(bytes);
+                count++;
+            }
+            out.put(countAt, (byte) count);
+        }
+        if (locationAge > 0) {
+            out.putInt((int) Math.min(locationAge, 0xFFFFFFFFL));
+        }
+        
+        int length = out.position() - start;
+        out.putShort(start, (short) (length - 2));
+        return length;
+    }
+    
+    public static int encodedSize(EmergencyEvent event, boolean inlineContacts) {
+        int size = FIXED_SIZE;
+        if (inlineContacts) {
+            size++;
+            for (String contact : event.getContacts()) {
+                if (contact != null && !contact.isEmpty()) {
+                    checkContact(contact);
+                    size += 1 + contact.length();
+                }
+            }
+        }
+        if (event.getLocationAgeMs() >= 1000) {
+            size += 4;
+        }
+        return size;
+    }
+    
+    /**
+     * Decode every record in a body
+     * @param contactCache hash to contacts; inline contacts are added to it
+     * @throws IOException on a malformed record, unknown version or unknown contacts hash
+     */
+    public static List<EmergencyEvent> decodeBatch(ByteBuffer in,
+                                                   Map<Long, String[]> contactCache)
+            throws IOException {
+        List<EmergencyEvent> events = new ArrayList<>();
+        while (in.hasRemaining()) {
+            events.add(decode(in, contactCache));
+        }
+        return events;
+    }
+    
+    /**
+     * Decode the record at the buffer's position and advance past it
+     */
+    public static EmergencyEvent decode(ByteBuffer in, Map<Long, String[]> contactCache)
+            throws IOException {
+        try {
+            int length = in.getShort() & 0xFFFF;
+            int end = in.position() + length;
+            if (length < FIXED_SIZE - 2 || end > in.limit()) {
+                throw new IOException("Bad record length " + length);
+            }
+            
+            int version = in.get() & 0xFF;
+            if (version != VERSION) {
+                // Newer records keep the length prefix, so a reader could skip them
+                throw new IOException("Unsupported record version " + version);
+            }
+            
+            int flags = in.get() & 0xFF;
+            int deviceId = in.getShort() & 0xFFFF;
+            double latitude = in.getInt() / COORDINATE_SCALE;
+            double longitude = in.getInt() / COORDINATE_SCALE;
+            int batteryLevel = in.get() & 0xFF;
+            int sequenceNumber = in.getShort() & 0xFFFF;
+            long timestamp = in.getLong();
+            long hash = in.getLong();
+            
+            String[] contacts;
+            if ((flags & FLAG_CONTACTS_INLINE) != 0) {
+                contacts = new String[in.get() & 0xFF];
+                for (int i = 0; i < contacts.length; i++) {
+                    byte[] bytes = new byte[in.get() & 0xFF];
+                    in.get(bytes);
+                    contacts[i] = new String(bytes, StandardCharsets.US_ASCII);
+                }
+                if (contactsHash(deviceId, contacts) != hash) {
+                    throw new IOException("Contacts hash does not match the contacts");
+                }
+                contactCache.put(hash, contacts);
+            } else {
+                contacts = contactCache.get(hash);
+                if (contacts == null) {
+                    throw new IOException("Unknown contacts hash " + Long.toHexString(hash));
+                }
+            }
+            long locationAgeMs = (flags & FLAG_LOCATION_AGE) != 0
+                ? (in.getInt() & 0xFFFFFFFFL) * 1000 : 0;
+            
+            if (in.position() > end) {
+                throw new IOException("Record overruns its length");
+            }
+            in.position(end);
+            
+            return new EmergencyEvent(deviceId, latitude, longitude, batteryLevel,
+                sequenceNumber, timestamp, contacts).withLocationAge(locationAgeMs);
+        
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated record", e);
+        }
+    }
+    
+    /**
+     * First 64 bits of SHA-256 over the device ID (2 bytes) and each non-empty
+     * contact as a length byte and ASCII
+     */
+    public static long contactsHash(int deviceId, String[] contacts) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 unavailable", e);
+        }
+        
+        digest.update((byte) (deviceId >> 8));
+        digest.update((byte) deviceId);
+        for (String contact : contacts) {
+            if (contact == null || contact.isEmpty()) {
+                continue;
+            }
+            byte[] bytes = contact.getBytes(StandardCharsets.US_ASCII);
+            digest.update((byte) bytes.length);
+            digest.update(bytes);
+        }
+        return ByteBuffer.wrap(digest.digest()).getLong();
+    }
+    
+    private static void checkContact(String contact) {
+        if (contact.length() > 255) {
+            throw new IllegalArgumentException("Contact longer than 255 characters");
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package com.safety.womenalert;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Women Safety System - Emergency Dispatcher
+ * Bounded worker pool that runs each device's tasks in order and different devices in parallel
+ *
+ * Tasks are queued on a per-device lane. A lane is handed to the pool only
+ * while it has work, and runs one task at a time, so one wearer's slow
+ * location lookup or HTTP timeout never holds up another wearer's alert,
+ * while events from the same device keep their arrival order.
+ *
+ * At most maxPending tasks may be queued or running; {@link #dispatch}
+ * returns false beyond that so the caller can take a cheaper path instead
+ * of queueing without bound.
+ *
+ * A lane always leaves the map or goes back to the pool when its thread
+ * stops, even if a task throws an Error, so a device is never left with
+ * tasks that nothing will run.
+ */
+public class EmergencyDispatcher {
+    
+    public static final int DEFAULT_THREADS = 16;
+    public static final int DEFAULT_MAX_PENDING = 256;
+    
+    private static final class Task {
+        final Runnable runnable;
+        final long enqueuedNanos;
+        
+        Task(Runnable runnable, long enqueuedNanos) {
+            this.runnable = runnable;
+            this.enqueuedNanos = enqueuedNanos;
+        }
+    }
+    
+    private final class Lane implements Runnable {
+        final int key;
+        final ArrayDeque<Task> tasks = new ArrayDeque<>();
+        
+        Lane(int key) {
+            this.key = key;
+        }
+        
+        @Override
+        public void run() {
+            boolean idle = false;
+            try {
+                while (true) {
+                    Task task;
+                    synchronized (lanes) {
+                        task = tasks.poll();
+                        if (task == null) {
+                            // Idle lanes are dropped so the map only holds busy devices
+                            lanes.remove(key);
+                            idle = true;
+                            return;
+                        }
+                    }
+                    execute(task);
+                }
+            } finally {
+                if (!idle) {
+                    // A task threw an Error: hand the rest of the lane to another thread
+                    start(this);
+                }
+            }
+        }
+    }
+    
+    private final ExecutorService pool;
+    private final int maxPending;
+    
+    // Guarded by itself
+    private final Map<Integer, Lane> lanes = new HashMap<>();
+    
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicLong dispatched = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong started = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicInteger maxQueueDepth = new AtomicInteger();
+    
+    public EmergencyDispatcher() {
+        this(DEFAULT_THREADS, DEFAULT_MAX_PENDING);
+    }
+    
+    /**
+     * @param threads most devices served concurrently
+     * @param maxPending most tasks queued or running before dispatch() refuses
+     */
+    public EmergencyDispatcher(int threads, int maxPending) {
+        this.maxPending = maxPending;
+        
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads,
+            30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+                Thread t = new Thread(r, "emergency-dispatch-" + threadCount.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        executor.allowCoreThreadTimeOut(true);
+        this.pool = executor;
+    }
+    
+    /**
+     * Queue a task behind any earlier tasks for the same device
+     * @return false if the dispatcher is saturated or shut down; the task was not queued
+     */
+    public boolean dispatch(int deviceId, Runnable task) {
+        int depth = pending.incrementAndGet();
+        if (depth > maxPending || pool.isShutdown()) {
+            pending.decrementAndGet();
+            rejected.incrementAndGet();
+            return false;
+        }
+        updateMax(maxQueueDepth, depth);
+        
+        Task queued = new Task(task, System.nanoTime());
+        Lane start = null;
+        
+        synchronized (lanes) {
+            Lane lane = lanes.get(deviceId);
+            if (lane == null) {
+                lane = new Lane(deviceId);
+                lanes.put(deviceId, lane);
+                start = lane;
+            }
+            lane.tasks.add(queued);
+        }
+        
+        if (start != null && !start(start)) {
+            return false;
+        }
+        dispatched.incrementAndGet();
+        return true;
+    }
+    
+    /**
+     * Hand a lane to the pool, or drop it and its tasks if the pool has shut down
+     * @return false if the lane was dropped
+     */
+    private boolean start(Lane lane) {
+        try {
+            pool.execute(lane);
+            return true;
+        } catch (RejectedExecutionException e) {
+            int dropped;
+            synchronized (lanes) {
+                lanes.remove(lane.key, lane);
+                dropped = lane.tasks.size();
+                lane.tasks.clear();
+            }
+            pending.addAndGet(-dropped);
+            rejected.addAndGet(dropped);
+            return false;
+        }
+    }
+    
+    /**
+     * Tasks queued or running across all devices
+     */
+    public int getQueueDepth() {
+        return pending.get();
+    }
+    
+    public int getMaxQueueDepth() {
+        return maxQueueDepth.get();
+    }
+    
+    public int getActiveDevices() {
+        synchronized (lanes) {
+            return lanes.size();
+        }
+    }
+    
+    public long getDispatchedCount() {
+        return dispatched.get();
+    }
+    
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+    
+    public long getCompletedCount() {
+        return completed.get();
+    }
+    
+    /**
+     * Tasks that threw; they still count as completed
+     */
+    public long getFailedCount() {
+        return failed.get();
+    }
+    
+    /**
+     * Mean time between dispatch() and the task starting
+     */
+    public double getMeanWaitMillis() {
+        long count = started.get();
+        return count == 0 ? 0 : totalWaitNanos.get() / 1e6 / count;
+    }
+    
+    public double getMaxWaitMillis() {
+        return maxWaitNanos.get() / 1e6;
+    }
+    
+    /**
+     * Stop accepting tasks; queued tasks still run unless a lane has to be
+     * handed back to the pool after a task threw an Error
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+    
+    private void execute(Task task) {
+        long wait = System.nanoTime() - task.enqueuedNanos;
+        totalWaitNanos.addAndGet(wait);
+        started.incrementAndGet();
+        updateMax(maxWaitNanos, wait);
+        
+        try {
+            task.runnable.run();
+        } catch (RuntimeException e) {
+            // Keep the lane going; a crashed task must not strand later alerts
+            failed.incrementAndGet();
+        } finally {
+            completed.incrementAndGet();
+            pending.decrementAndGet();
+        }
+    }
+    
+    private static void updateMax(AtomicLong max, long value) {
+        long current;
+        while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+            // Lost a race with another update; re-read
+        }
+    }
+    
+    private static void updateMax(AtomicInteger max, int value) {
+        int current;
+        while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+            // Lost a race with another update; re-read
+        }
+    }
+}
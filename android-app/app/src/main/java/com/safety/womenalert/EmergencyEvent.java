@@ -0,0 +1,138 @@
+package com.safety.womenalert;
+
+/**
+ * Women Safety System - Emergency Event
+ * Immutable emergency alert as sent to the backend
+ */
+public final class EmergencyEvent {
+    
+    public static final long NO_OUTBOX_ID = -1;
+    
+    // A cancel covers only the alert of the same press: the wearable gives a press's
+    // EMERGENCY and CANCEL the same sequence number. Both must also be within this
+    // long of each other, so a number reused after a reboot never matches.
+    public static final long CANCEL_WINDOW_MS = 60 * 1000;
+    
+    private final int deviceId;
+    private final double latitude;
+    private final double longitude;
+    private final int batteryLevel;
+    private final int sequenceNumber;
+    private final long timestamp;
+    private final String[] contacts;
+    private final long locationAgeMs;
+    private final int attempt;
+    private final long outboxId;
+    
+    public EmergencyEvent(int deviceId, double latitude, double longitude, int batteryLevel,
+                          int sequenceNumber, long timestamp, String[] contacts) {
+        this(deviceId, latitude, longitude, batteryLevel, sequenceNumber, timestamp, contacts,
+            0, 0, NO_OUTBOX_ID);
+    }
+    
+    private EmergencyEvent(int deviceId, double latitude, double longitude, int batteryLevel,
+                           int sequenceNumber, long timestamp, String[] contacts,
+                           long locationAgeMs, int attempt, long outboxId) {
+        this.deviceId = deviceId;
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.batteryLevel = batteryLevel;
+        this.sequenceNumber = sequenceNumber;
+        this.timestamp = timestamp;
+        this.contacts = contacts.clone();
+        this.locationAgeMs = locationAgeMs;
+        this.attempt = attempt;
+        this.outboxId = outboxId;
+    }
+    
+    /**
+     * Same event, counted as one more delivery attempt
+     */
+    public EmergencyEvent nextAttempt() {
+        return new EmergencyEvent(deviceId, latitude, longitude, batteryLevel,
+            sequenceNumber, timestamp, contacts, locationAgeMs, attempt + 1, outboxId);
+    }
+    
+    /**
+     * Same event, tagged with its record id in the durable outbox
+     */
+    public EmergencyEvent withOutboxId(long id) {
+        return new EmergencyEvent(deviceId, latitude, longitude, batteryLevel,
+            sequenceNumber, timestamp, contacts, locationAgeMs, attempt, id);
+    }
+    
+    /**
+     * Same event, addressed to other contacts
+     */
+    public EmergencyEvent withContacts(String[] contacts) {
+        return new EmergencyEvent(deviceId, latitude, longitude, batteryLevel,
+            sequenceNumber, timestamp, contacts, locationAgeMs, attempt, outboxId);
+    }
+    
+    /**
+     * Same event, located by a fix that was already this old when the alert was raised
+     */
+    public EmergencyEvent withLocationAge(long ageMs) {
+        return new EmergencyEvent(deviceId, latitude, longitude, batteryLevel,
+            sequenceNumber, timestamp, contacts, Math.max(0, ageMs), attempt, outboxId);
+    }
+    
+    /**
+     * True if a cancel from the given device, heard at cancelMillis (ms since epoch),
+     * is for the same press as this event; an earlier alert is never covered
+     */
+    public boolean isCancelledBy(int cancelDeviceId, int cancelSequence, long cancelMillis) {
+        return cancelDeviceId == deviceId
+            && isSamePress(sequenceNumber, cancelSequence, cancelMillis - timestamp);
+    }
+    
+    /**
+     * Same test on bare sequence numbers, given the time between the two frames
+     */
+    public static boolean isSamePress(int sequenceNumber, int cancelSequence, long millisApart) {
+        return sequenceNumber == cancelSequence && Math.abs(millisApart) <= CANCEL_WINDOW_MS;
+    }
+    
+    public int getDeviceId() {
+        return deviceId;
+    }
+    
+    public double getLatitude() {
+        return latitude;
+    }
+    
+    public double getLongitude() {
+        return longitude;
+    }
+    
+    public int getBatteryLevel() {
+        return batteryLevel;
+    }
+    
+    public int getSequenceNumber() {
+        return sequenceNumber;
+    }
+    
+    public long getTimestamp() {
+        return timestamp;
+    }
+    
+    public String[] getContacts() {
+        return contacts.clone();
+    }
+    
+    /**
+     * How old the location fix was at the alert's timestamp; 0 for a current fix
+     */
+    public long getLocationAgeMs() {
+        return locationAgeMs;
+    }
+    
+    public int getAttempt() {
+        return attempt;
+    }
+    
+    public long getOutboxId() {
+        return outboxId;
+    }
+}
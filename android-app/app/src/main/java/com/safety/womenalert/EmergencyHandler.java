@@ -1,133 +1,696 @@
 package com.safety.womenalert;
 
-import android.Manifest;
 import android.content.Context;
-import android.content.SharedPreferences;
-import android.content.pm.PackageManager;
-import android.location.Location;
-import android.location.LocationManager;
+import android.net.ConnectivityManager;
+import android.net.Network;
 import android.os.Handler;
 import android.os.Looper;
 import android.util.Log;
 import android.widget.Toast;
 
-import androidx.core.app.ActivityCompat;
-
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
 
 /**
  * Women Safety System - Emergency Handler
- * Fetches GPS location and sends emergency event to backend
+ * Fetches GPS location and sends emergency event to backend, with direct SMS as fallback
+ *
+ * Delivery to the backend is not the end: each incident it opens is followed
+ * on the IncidentStatusChannel until its contact fan-out finishes. If the
+ * backend reports alert_failed, the contacts are texted from this phone,
+ * unless the race's SMS fallback already texted them for that press.
+ *
+ * The wearer retransmits until its frame is acknowledged, so an emergency
+ * is first persisted as a receipt without coordinates and acknowledged at
+ * once. The alert settles the receipt once it is in the outbox in turn; if
+ * the phone dies first, the receipt is replayed after the restart and still
+ * raises the alert.
+ * With no outbox, or a full one, nothing is acknowledged and the wearer
+ * keeps sending.
+ *
+ * The location lookup can take seconds, so the alert does not wait for it:
+ * it goes out with the best cached fix, or none. Unless that fix was good,
+ * the lookup runs meanwhile, and a better fix is sent to the incident once
+ * the backend has opened it, so contacts already texted get it too. The
+ * update is best effort and is not kept in the outbox.
+ *
+ * An alert the RetryScheduler gives up on stays in the outbox. It is
+ * replayed when connectivity returns and, while the phone stays online,
+ * on a backoff from one minute up to fifteen, reset by any delivery.
  */
-public class EmergencyHandler {
+public class EmergencyHandler implements AlertTransport.Listener, RetryScheduler.Listener {
     
     private static final String TAG = "EmergencyHandler";
     private static final long LOCATION_TIMEOUT_MS = 10000;  // 10 seconds
+    private static final long LOCATION_BUDGET_MS = 3000;    // Wait for a better fix
+    private static final double GOOD_FIX_METERS = 50;
+    private static final String OUTBOX_FILE = "emergency-outbox.log";
+    private static final long SMS_FALLBACK_AFTER_MS = 5000;  // Backend ack budget
+    private static final int RECENT_DIRECT_SMS = 64;
+    private static final long REDRAIN_BASE_MS = 60 * 1000;       // First outbox replay after a give-up
+    private static final long REDRAIN_MAX_MS = 15 * 60 * 1000;   // Longest wait between replays
+    
+    // Dispatcher lane for outbox replays; device ids are 16-bit and never negative
+    private static final int OUTBOX_LANE = -1;
+    
+    /**
+     * Tells the wearer a frame is safe, so it stops retransmitting it
+     */
+    public interface Acknowledger {
+        void acknowledge(int deviceId, int sequenceNumber, int timestamp);
+    }
+    
+    /**
+     * Last cancel frame heard from a device
+     */
+    private static final class Cancel {
+        final int sequenceNumber;
+        final long receivedNanos;
+        final long receivedMillis;  // Wall clock, comparable with event timestamps
+        
+        Cancel(int sequenceNumber, long receivedNanos, long receivedMillis) {
+            this.sequenceNumber = sequenceNumber;
+            this.receivedNanos = receivedNanos;
+            this.receivedMillis = receivedMillis;
+        }
+    }
+    
+    /**
+     * Alert sent before its location lookup finished, waiting for the incident the backend
+     * opens for it; completed with "" when delivered without an incident id
+     */
+    private static final class PendingFix {
+        final EmergencyEvent event;
+        final CompletableFuture<String> incident = new CompletableFuture<>();
+        
+        PendingFix(EmergencyEvent event) {
+            this.event = event;
+        }
+    }
     
     private final Context context;
-    private final ExecutorService executor;
+    private final EmergencyDispatcher dispatcher;
     private final Handler mainHandler;
+    private final AlertTransport transport;
+    private final RetryScheduler retryScheduler;
+    private final EmergencyOutbox outbox;
+    private final LocationTracker locationTracker;
+    private final SettingsStore settings;
     private final ApiClient apiClient;
+    private final IncidentStatusChannel statusChannel;
+    private final SmsTransport smsFallback;
+    private final Acknowledger acknowledger;
+    
+    // Outbox ids owned by the retry scheduler, so a drain does not resend them
+    private final Set<Long> inFlight = ConcurrentHashMap.newKeySet();
+    
+    // Keyed by device ID
+    private final Map<Integer, Cancel> cancels = new ConcurrentHashMap<>();
+    
+    // Keyed by press; removed on delivery, on a cancel, or when no better fix came
+    private final Map<String, PendingFix> pendingFixes = new ConcurrentHashMap<>();
     
-    public EmergencyHandler(Context context) {
+    // Presses the race texted directly, and whether the backend's fan-out then failed;
+    // guarded by itself
+    private final Map<String, Boolean> textedDirectly = new LinkedHashMap<String, Boolean>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+            return size() > RECENT_DIRECT_SMS;
+        }
+    };
+    
+    // Direct SMS after the backend's own fan-out failed; the outbox is already settled
+    private final AlertTransport.Listener fanOutFallbackListener = new AlertTransport.Listener() {
+        @Override
+        public void onDelivered(EmergencyEvent event) {
+            Log.i(TAG, "Contacts texted directly for device " + event.getDeviceId());
+            showToast("Contacts texted from this phone");
+        }
+        
+        @Override
+        public void onFailed(EmergencyEvent event, String reason) {
+            Log.e(TAG, "Direct SMS for device " + event.getDeviceId() + " failed: " + reason);
+            showToast("Could not text contacts: " + reason);
+        }
+    };
+    
+    // Replays the outbox while records the retry scheduler gave up on are still in it;
+    // guarded by this, with the backoff reset by every backend delivery
+    private boolean redrainScheduled = false;
+    private long redrainDelayMs = REDRAIN_BASE_MS;
+    private final Runnable redrain = () -> {
+        synchronized (this) {
+            redrainScheduled = false;
+        }
+        dispatcher.dispatch(OUTBOX_LANE, () -> drainOutbox());
+    };
+    
+    private final ConnectivityManager.NetworkCallback networkCallback =
+        new ConnectivityManager.NetworkCallback() {
+            @Override
+            public void onAvailable(Network network) {
+                dispatcher.dispatch(OUTBOX_LANE, () -> drainOutbox());
+            }
+        };
+    
+    public EmergencyHandler(Context context, Acknowledger acknowledger) {
         this.context = context;
-        this.executor = Executors.newSingleThreadExecutor();
+        this.acknowledger = acknowledger;
+        this.dispatcher = new EmergencyDispatcher();
         this.mainHandler = new Handler(Looper.getMainLooper());
+        this.settings = SettingsStore.get(context);
         this.apiClient = new ApiClient(context);
+        this.statusChannel = new IncidentStatusChannel(() -> settings.current().getBackendUrl(),
+            () -> settings.current().getApiKey());
+        this.smsFallback = new SmsTransport(context, fanOutFallbackListener);
+        // Backend first; direct SMS to the contacts if it has not acked within the budget
+        this.transport = new RacingTransport(
+            listener -> new EmergencyUplink(() -> settings.current().getBackendUrl(),
+                () -> settings.current().getApiKey(), listener, this::watchIncident),
+            this::raceSms,
+            SMS_FALLBACK_AFTER_MS, this);
+        this.retryScheduler = new RetryScheduler(transport::submit, this);
+        this.outbox = openOutbox(context);
+        this.locationTracker = new LocationTracker(context);
+        
+        retryScheduler.start();
+        locationTracker.start();
+        
+        // Replay anything left over from before a restart
+        dispatcher.dispatch(OUTBOX_LANE, () -> drainOutbox());
+        
+        ConnectivityManager connectivityManager = (ConnectivityManager) context.getSystemService(
+            Context.CONNECTIVITY_SERVICE);
+        if (connectivityManager != null) {
+            connectivityManager.registerDefaultNetworkCallback(networkCallback);
+        }
     }
     
-    public void handleEmergency(int deviceId, int batteryLevel, int sequenceNumber) {
-        Log.w(TAG, "Emergency triggered - Getting location...");
+    public void shutdown() {
+        ConnectivityManager connectivityManager = (ConnectivityManager) context.getSystemService(
+            Context.CONNECTIVITY_SERVICE);
+        if (connectivityManager != null) {
+            connectivityManager.unregisterNetworkCallback(networkCallback);
+        }
+        
+        locationTracker.stop();
+        mainHandler.removeCallbacks(redrain);
+        dispatcher.shutdown();
+        apiClient.shutdown();
+        statusChannel.shutdown();
+        smsFallback.shutdown();
+        retryScheduler.stop();
+        transport.shutdown();
         
-        // Execute on background thread
-        executor.execute(() -> {
+        if (outbox != null) {
             try {
-                // Get GPS location
-                Location location = getLastKnownLocation();
-                
-                if (location != null) {
-                    double latitude = location.getLatitude();
-                    double longitude = location.getLongitude();
-                    
-                    Log.i(TAG, String.format("Location: %.6f, %.6f", latitude, longitude));
-                    
-                    // Send to backend
-                    sendEmergencyToBackend(deviceId, latitude, longitude, batteryLevel, sequenceNumber);
-                    
-                } else {
-                    Log.e(TAG, "Failed to get location - sending without coordinates");
-                    sendEmergencyToBackend(deviceId, 0, 0, batteryLevel, sequenceNumber);
+                outbox.close();
+            } catch (IOException e) {
+                Log.e(TAG, "Error closing outbox", e);
+            }
+        }
+    }
+    
+    /**
+     * @param timestamp the frame's own timestamp, echoed in its ACK
+     */
+    public void handleEmergency(int deviceId, int batteryLevel, int sequenceNumber,
+                                int timestamp) {
+        Log.w(TAG, "Emergency triggered");
+        long frameNanos = System.nanoTime();
+        
+        // Persisted before the ACK; settled once the alert is in the outbox
+        EmergencyEvent receipt = persistReceipt(deviceId, batteryLevel, sequenceNumber);
+        if (receipt != null) {
+            acknowledger.acknowledge(deviceId, sequenceNumber, timestamp);
+        } else {
+            Log.w(TAG, "Emergency from device " + deviceId
+                + " not persisted - not acknowledged, the wearer keeps sending it");
+        }
+        
+        // Serialized per device; other wearers' alerts proceed in parallel
+        boolean queued = dispatcher.dispatch(deviceId, () -> {
+            Metrics.FRAME_TO_HANDLER.recordSince(frameNanos);
+            if (isCancelled(deviceId, sequenceNumber, frameNanos)) {
+                Log.i(TAG, "Emergency from device " + deviceId + " cancelled before sending");
+                settle(receipt);
+                return;
+            }
+            
+            boolean sent = false;
+            try {
+                // Sent at once with the best cached fix; a better one follows as an update
+                locationTracker.start();  // Permission may have been granted since
+                LocationFixCache.Fix cached = locationTracker.getBestFix();
+                EmergencyEvent event = newEvent(deviceId, cached, batteryLevel, sequenceNumber);
+                PendingFix pending = isGoodFix(cached) ? null : expectIncident(event);
+                sendEmergencyToBackend(event);
+                sent = true;
+                settle(receipt);
+                if (pending == null) {
+                    return;
                 }
                 
+                long lookupNanos = System.nanoTime();
+                LocationFixCache.Fix located = getLocation();
+                Metrics.LOCATION_LOOKUP.recordSince(lookupNanos);
+                
+                // The wearer may have cancelled while we waited for a fix
+                if (!isBetterFix(located, cached)
+                        || isCancelled(deviceId, sequenceNumber, frameNanos)) {
+                    pendingFixes.remove(pressKey(event));
+                    return;
+                }
+                Log.i(TAG, String.format("Better location: %.6f, %.6f (~%.0f m) - sent once"
+                    + " the alert is delivered", located.latitude, located.longitude,
+                    located.effectiveError));
+                pending.incident.thenAccept(incidentId ->
+                    sendLocationUpdate(pending.event, incidentId, located, frameNanos));
+            
             } catch (Exception e) {
                 Log.e(TAG, "Error handling emergency", e);
                 showToast("Emergency error: " + e.getMessage());
+                
+                // The receipt is all there is: send it rather than leave it for a restart
+                if (!sent && receipt != null
+                        && !isCancelled(deviceId, sequenceNumber, frameNanos)) {
+                    retryScheduler.submit(receipt);
+                }
             }
         });
+        
+        if (!queued) {
+            // Saturated: no location wait or outbox write on the ingest thread. The cached
+            // fix is queued for sending under the receipt's record, which stays pending
+            // until the send is delivered.
+            Log.w(TAG, "Dispatch queue full (" + dispatcher.getQueueDepth()
+                + ") - sending without waiting for location");
+            LocationFixCache.Fix fix = locationTracker.getBestFix();
+            EmergencyEvent event = new EmergencyEvent(deviceId, fix != null ? fix.latitude : 0,
+                fix != null ? fix.longitude : 0, batteryLevel, sequenceNumber,
+                System.currentTimeMillis(), settings.current().getContacts())
+                .withLocationAge(fix != null ? fix.ageMillis : 0);
+            retryScheduler.submit(receipt != null
+                ? event.withOutboxId(receipt.getOutboxId()) : event);
+        }
     }
     
-    private Location getLastKnownLocation() {
-        if (ActivityCompat.checkSelfPermission(context, Manifest.permission.ACCESS_FINE_LOCATION) 
-            != PackageManager.PERMISSION_GRANTED) {
-            Log.e(TAG, "Location permission not granted");
-            return null;
+    /**
+     * Abort a device's alert: its queued handler tasks stop, queued sends and retries
+     * are withdrawn and their outbox records settled, and the backend is told once
+     * @param sequenceNumber the cancel frame's sequence number, that of the press it
+     *                       cancels; earlier alerts from the device are never covered
+     */
+    public void handleCancel(int deviceId, int sequenceNumber, int timestamp) {
+        Cancel cancel = new Cancel(sequenceNumber, System.nanoTime(), System.currentTimeMillis());
+        cancels.put(deviceId, cancel);
+        int withdrawn = withdraw(deviceId, cancel);
+        Log.i(TAG, "Cancel from device " + deviceId + " - withdrew " + withdrawn
+            + " pending sends");
+        
+        // Covered records are settled in the outbox; the wearer can stop sending the cancel
+        acknowledger.acknowledge(deviceId, sequenceNumber, timestamp);
+        
+        // Runs after the device's queued tasks, which see the cancel and stop; anything
+        // they submitted in the meantime is withdrawn before the backend is called. The
+        // call itself runs on the API client's pool, so the device's lane moves on at once.
+        boolean queued = dispatcher.dispatch(deviceId, () -> {
+            withdraw(deviceId, cancel);
+            CompletableFuture<ApiResult> call = apiClient.cancelEmergency(deviceId,
+                sequenceNumber, cancel.receivedMillis);
+            call.whenComplete((result, error) -> {
+                if (error != null || !result.isSuccess()) {
+                    Log.e(TAG, "Backend did not accept cancel from device " + deviceId + ": "
+                        + (error != null ? error : result));
+                } else {
+                    Log.i(TAG, "Backend stopped " + result.getCancelledCount()
+                        + " incidents for device " + deviceId);
+                }
+            });
+        });
+        
+        if (!queued) {
+            Log.e(TAG, "Dispatch queue full (" + dispatcher.getQueueDepth()
+                + ") - cancel not sent to backend");
         }
+    }
+    
+    /**
+     * True if a cancel for the same press was heard after the frame; a new emergency
+     * after a cancel is never suppressed, even across a device reboot
+     */
+    private boolean isCancelled(int deviceId, int sequenceNumber, long frameNanos) {
+        Cancel cancel = cancels.get(deviceId);
+        return cancel != null && cancel.receivedNanos - frameNanos > 0
+            && EmergencyEvent.isSamePress(sequenceNumber, cancel.sequenceNumber,
+                TimeUnit.NANOSECONDS.toMillis(cancel.receivedNanos - frameNanos));
+    }
+    
+    /**
+     * Withdraw the cancelled press's events from the retry scheduler, the transports
+     * and the outbox
+     * @return number of sends taken back from the retry scheduler
+     */
+    private int withdraw(int deviceId, Cancel cancel) {
+        Predicate<EmergencyEvent> covered = event -> event.isCancelledBy(deviceId,
+            cancel.sequenceNumber, cancel.receivedMillis);
         
-        LocationManager locationManager = (LocationManager) context.getSystemService(
-            Context.LOCATION_SERVICE);
+        // Scheduler first: once it holds nothing covered, it cannot feed the transport more
+        List<EmergencyEvent> withdrawn = retryScheduler.cancel(covered);
+        transport.cancel(covered);
+        pendingFixes.values().removeIf(pending -> covered.test(pending.event));
         
-        if (locationManager == null) {
+        if (outbox != null) {
+            // Includes records already given up on and waiting for connectivity
+            for (EmergencyEvent event : outbox.pending()) {
+                if (covered.test(event)) {
+                    outbox.ack(event.getOutboxId());
+                    inFlight.remove(event.getOutboxId());
+                }
+            }
+        }
+        return withdrawn.size();
+    }
+    
+    /**
+     * Best fix within the latency budget: returns at once when a good fix is cached,
+     * waits up to LOCATION_BUDGET_MS for a better one, and up to LOCATION_TIMEOUT_MS
+     * only when nothing current is cached; the last known fix beats no fix at all
+     */
+    private LocationFixCache.Fix getLocation() throws InterruptedException {
+        LocationFixCache.Fix fix = locationTracker.getBestFix(GOOD_FIX_METERS, LOCATION_BUDGET_MS);
+        if (fix == null || fix.stale) {
+            fix = locationTracker.getBestFix(Double.MAX_VALUE,
+                LOCATION_TIMEOUT_MS - LOCATION_BUDGET_MS);
+        }
+        return fix;
+    }
+    
+    /**
+     * Outbox record standing in for the alert until the alert itself is appended;
+     * held in flight so a drain does not send it meanwhile
+     * @return the receipt, or null without an outbox or when it could not be written
+     */
+    private EmergencyEvent persistReceipt(int deviceId, int batteryLevel, int sequenceNumber) {
+        if (outbox == null) {
             return null;
         }
-        
-        // Try GPS first
-        Location gpsLocation = locationManager.getLastKnownLocation(LocationManager.GPS_PROVIDER);
-        if (gpsLocation != null) {
-            return gpsLocation;
+        EmergencyEvent receipt = outbox.append(new EmergencyEvent(deviceId, 0, 0, batteryLevel,
+            sequenceNumber, System.currentTimeMillis(), settings.current().getContacts()));
+        if (receipt.getOutboxId() == EmergencyEvent.NO_OUTBOX_ID) {
+            return null;  // Outbox full
+        }
+        inFlight.add(receipt.getOutboxId());
+        return receipt;
+    }
+    
+    private void settle(EmergencyEvent receipt) {
+        if (receipt != null) {
+            outbox.ack(receipt.getOutboxId());
+            inFlight.remove(receipt.getOutboxId());
+        }
+    }
+    
+    private static boolean isGoodFix(LocationFixCache.Fix fix) {
+        return fix != null && !fix.stale && fix.effectiveError <= GOOD_FIX_METERS;
+    }
+    
+    /**
+     * True if the located fix is worth an update over the one the alert was sent with
+     */
+    private static boolean isBetterFix(LocationFixCache.Fix located, LocationFixCache.Fix sent) {
+        if (located == null) {
+            return false;
+        }
+        if (sent == null || (sent.stale && !located.stale)) {
+            return true;
+        }
+        return located.stale == sent.stale && located.effectiveError < sent.effectiveError;
+    }
+    
+    /**
+     * Alert for the given fix, or without coordinates when there is none; the fix's age
+     * is kept so contacts know a last known location
+     */
+    private EmergencyEvent newEvent(int deviceId, LocationFixCache.Fix fix, int batteryLevel,
+                                    int sequenceNumber) {
+        if (fix == null) {
+            Log.w(TAG, "No location yet - sending without coordinates");
+        } else if (fix.stale) {
+            Log.w(TAG, String.format("No current fix - last known location %.6f, %.6f"
+                + " is %d s old", fix.latitude, fix.longitude, fix.ageMillis / 1000));
+        } else {
+            Log.i(TAG, String.format("Location: %.6f, %.6f (~%.0f m)",
+                fix.latitude, fix.longitude, fix.effectiveError));
         }
         
-        // Fallback to network location
-        Location networkLocation = locationManager.getLastKnownLocation(
-            LocationManager.NETWORK_PROVIDER);
-        if (networkLocation != null) {
-            return networkLocation;
+        // Snapshot read: no SharedPreferences I/O on the alert path
+        AlertSettings current = settings.current();
+        if (!current.hasContacts()) {
+            Log.w(TAG, "No emergency contacts configured");
+        }
+        String[] contacts = current.getContacts();
+        if (!EmergencyOutbox.fitsContacts(contacts)) {
+            Log.w(TAG, "Contacts too long for the outbox - a replay will use the settings then");
         }
         
-        // Fallback to passive location
-        return locationManager.getLastKnownLocation(LocationManager.PASSIVE_PROVIDER);
+        return new EmergencyEvent(deviceId, fix != null ? fix.latitude : 0,
+            fix != null ? fix.longitude : 0, batteryLevel, sequenceNumber,
+            System.currentTimeMillis(), contacts).withLocationAge(fix != null ? fix.ageMillis : 0);
     }
     
-    private void sendEmergencyToBackend(int deviceId, double latitude, double longitude, 
-                                        int batteryLevel, int sequenceNumber) {
-        SharedPreferences prefs = context.getSharedPreferences("WomenSafetyPrefs", 
-            Context.MODE_PRIVATE);
+    private void sendEmergencyToBackend(EmergencyEvent event) {
+        // Persist before sending so the event survives a crash or lost connectivity
+        if (outbox != null) {
+            event = outbox.append(event);
+            if (event.getOutboxId() != EmergencyEvent.NO_OUTBOX_ID) {
+                inFlight.add(event.getOutboxId());
+            }
+        }
         
-        String contact1 = prefs.getString("contact1", "");
-        String contact2 = prefs.getString("contact2", "");
-        String contact3 = prefs.getString("contact3", "");
+        // Fresh emergencies go ahead of pending retries
+        retryScheduler.submit(event);
+    }
+    
+    /**
+     * Registered before the alert is submitted, so its delivery cannot be missed
+     */
+    private PendingFix expectIncident(EmergencyEvent event) {
+        PendingFix pending = new PendingFix(event);
+        pendingFixes.put(pressKey(event), pending);
+        return pending;
+    }
+    
+    private void sendLocationUpdate(EmergencyEvent event, String incidentId,
+                                    LocationFixCache.Fix fix, long frameNanos) {
+        if (incidentId.isEmpty()
+                || isCancelled(event.getDeviceId(), event.getSequenceNumber(), frameNanos)) {
+            return;
+        }
+        apiClient.updateLocation(incidentId, fix).whenComplete((result, error) -> {
+            if (error != null || !result.isSuccess()) {
+                Log.e(TAG, "Backend did not take the better location for incident " + incidentId
+                    + ": " + (error != null ? error : result));
+            } else {
+                Log.i(TAG, "Incident " + incidentId + ": location updated");
+            }
+        });
+    }
+    
+    /**
+     * Resend unacknowledged outbox records in their original order
+     */
+    private void drainOutbox() {
+        if (outbox == null) {
+            return;
+        }
         
-        String[] contacts = new String[]{contact1, contact2, contact3};
+        for (EmergencyEvent event : outbox.pending()) {
+            if (inFlight.add(event.getOutboxId())) {
+                Log.i(TAG, "Replaying queued emergency from device " + event.getDeviceId());
+                if (event.getContacts().length == 0) {
+                    // Stored without contacts, as they did not fit the record
+                    event = event.withContacts(settings.current().getContacts());
+                }
+                retryScheduler.submit(event.nextAttempt());
+            }
+        }
+    }
+    
+    @Override
+    public void onDelivered(EmergencyEvent event) {
+        retryScheduler.onDelivered(event);
+        synchronized (this) {
+            redrainDelayMs = REDRAIN_BASE_MS;  // The backend is answering again
+        }
+        PendingFix pending = pendingFixes.remove(pressKey(event));
+        if (pending != null) {
+            pending.incident.complete("");  // No-op once watchIncident named the incident
+        }
         
-        boolean success = apiClient.sendEmergencyAlert(
-            deviceId, latitude, longitude, batteryLevel, sequenceNumber, contacts);
+        if (event.getOutboxId() != EmergencyEvent.NO_OUTBOX_ID) {
+            outbox.ack(event.getOutboxId());
+            inFlight.remove(event.getOutboxId());
+        }
         
-        if (success) {
+        if (event.getAttempt() == 0) {
             Log.i(TAG, "Emergency alert sent to backend successfully");
             showToast("Emergency alert sent!");
         } else {
-            Log.e(TAG, "Failed to send emergency alert to backend");
+            showToast("Alert sent on retry");
+        }
+    }
+    
+    @Override
+    public void onFailed(EmergencyEvent event, String reason) {
+        Log.e(TAG, "Failed to send emergency alert to backend: " + reason);
+        
+        if (event.getAttempt() == 0) {
             showToast("Failed to send alert - will retry");
+        }
+        
+        // Rescheduled with backoff, or handed to onGaveUp past the deadline
+        retryScheduler.onFailed(event);
+    }
+    
+    @Override
+    public void onGaveUp(EmergencyEvent event) {
+        Log.e(TAG, "Giving up on emergency from device " + event.getDeviceId()
+            + " after " + (event.getAttempt() + 1) + " attempts");
+        if (event.getOutboxId() == EmergencyEvent.NO_OUTBOX_ID) {
+            showToast("Alert not delivered");
+            return;  // Never persisted: nothing left to replay
+        }
+        showToast("Alert not delivered yet - still trying");
+        
+        // Left in the outbox; replayed when connectivity returns, and meanwhile on a
+        // backoff, as the phone may be online with the backend down
+        inFlight.remove(event.getOutboxId());
+        scheduleRedrain();
+    }
+    
+    /**
+     * Replay the outbox after the current backoff, unless a replay is already pending
+     */
+    private synchronized void scheduleRedrain() {
+        if (redrainScheduled) {
+            return;
+        }
+        redrainScheduled = true;
+        mainHandler.postDelayed(redrain, redrainDelayMs);
+        redrainDelayMs = Math.min(redrainDelayMs * 2, REDRAIN_MAX_MS);
+    }
+    
+    /**
+     * The race's SMS fallback, noting each press it texts so the fan-out does not text it again.
+     * Texting the contacts does not settle the alert: it stays in the outbox and the retry
+     * scheduler until the backend acks it.
+     */
+    private AlertTransport raceSms(AlertTransport.Listener listener) {
+        AlertTransport sms = new SmsTransport(context, new AlertTransport.Listener() {
+            @Override
+            public void onDelivered(EmergencyEvent event) {
+                Log.i(TAG, "Contacts texted directly for device " + event.getDeviceId()
+                    + " while the backend is still trying");
+                showToast("Contacts texted from this phone");
+                listener.onDelivered(event);
+            }
             
-            // Retry after 2 seconds
-            new Handler(Looper.getMainLooper()).postDelayed(() -> {
-                boolean retrySuccess = apiClient.sendEmergencyAlert(
-                    deviceId, latitude, longitude, batteryLevel, sequenceNumber, contacts);
-                
-                if (retrySuccess) {
-                    showToast("Alert sent on retry");
+            @Override
+            public void onFailed(EmergencyEvent event, String reason) {
+                Boolean fanOutFailed;
+                synchronized (textedDirectly) {
+                    fanOutFailed = textedDirectly.remove(pressKey(event));
+                }
+                if (Boolean.TRUE.equals(fanOutFailed)) {
+                    // The backend could not alert them either
+                    smsFallback.submit(event);
+                }
+                listener.onFailed(event, reason);
+            }
+        });
+        
+        return new AlertTransport() {
+            @Override
+            public void submit(EmergencyEvent event) {
+                synchronized (textedDirectly) {
+                    textedDirectly.put(pressKey(event), false);
+                }
+                sms.submit(event);
+            }
+            
+            @Override
+            public boolean cancel(Predicate<EmergencyEvent> matches) {
+                return sms.cancel(matches);
+            }
+            
+            @Override
+            public void shutdown() {
+                sms.shutdown();
+            }
+        };
+    }
+    
+    private static String pressKey(EmergencyEvent event) {
+        return event.getDeviceId() + ":" + event.getSequenceNumber() + ":" + event.getTimestamp();
+    }
+    
+    /**
+     * Follow an incident the backend opened until its contacts have been alerted
+     */
+    private void watchIncident(EmergencyEvent event, String incidentId) {
+        PendingFix pending = pendingFixes.get(pressKey(event));
+        if (pending != null) {
+            pending.incident.complete(incidentId);
+        }
+        statusChannel.watch(incidentId,
+            (id, status, error) -> onFanOutFinished(event, id, status, error));
+    }
+    
+    private void onFanOutFinished(EmergencyEvent event, String incidentId, String status,
+                                  String error) {
+        if (IncidentStatusChannel.STATUS_ALERTS_SENT.equals(status)) {
+            Log.i(TAG, "Incident " + incidentId + ": contacts alerted");
+            showToast("Contacts alerted");
+        } else if (IncidentStatusChannel.STATUS_ALERT_FAILED.equals(status)) {
+            Log.e(TAG, "Incident " + incidentId + ": backend could not alert contacts: " + error);
+            Cancel cancel = cancels.get(event.getDeviceId());
+            if (cancel != null && event.isCancelledBy(event.getDeviceId(), cancel.sequenceNumber,
+                    cancel.receivedMillis)) {
+                return;  // The wearer cancelled meanwhile
+            }
+            synchronized (textedDirectly) {
+                if (textedDirectly.containsKey(pressKey(event))) {
+                    // Sent or still sending; if it fails, it is retried on smsFallback
+                    textedDirectly.put(pressKey(event), true);
+                    Log.i(TAG, "Incident " + incidentId + ": contacts already texted directly");
+                    return;
                 }
-            }, 2000);
+            }
+            showToast("Backend could not alert contacts - texting them from this phone");
+            smsFallback.submit(event);
+        } else if (IncidentStatusChannel.STATUS_EXPIRED.equals(status)) {
+            Log.w(TAG, "Incident " + incidentId + ": no fan-out result from the backend");
+            showToast("Could not confirm contacts were alerted");
+        } else {
+            Log.i(TAG, "Incident " + incidentId + ": " + status);
+        }
+    }
+    
+    private static EmergencyOutbox openOutbox(Context context) {
+        try {
+            return new EmergencyOutbox(new File(context.getFilesDir(), OUTBOX_FILE));
+        } catch (IOException e) {
+            Log.e(TAG, "Outbox unavailable - events will not survive restarts", e);
+            return null;
         }
     }
     
@@ -0,0 +1,370 @@
+package com.safety.womenalert;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Women Safety System - Emergency Outbox
+ * Crash-safe, memory-mapped log of emergency events awaiting backend acknowledgement
+ *
+ * Every event is appended as a fixed-size record before the send is attempted
+ * and marked acknowledged once the backend accepts it. Pending records survive
+ * process death (mapped pages belong to the kernel page cache) and are replayed
+ * in append order after a restart. Appends are plain stores into the mapping;
+ * call {@link #sync()} where surviving power loss matters more than latency.
+ *
+ * Acknowledged records are compacted away. Once nothing is pending the log is
+ * rewound in place, which only ever clears acknowledged records. When the log
+ * fills up, the pending records are written in order to a temporary file that
+ * is synced and then renamed over the log, so a crash leaves either the old log
+ * or the compacted one, never a mix that could resurrect an acknowledged record.
+ *
+ * Contacts are stored as UTF-8, up to MAX_CONTACTS of CONTACT_SIZE bytes each.
+ * An event whose contacts do not fit is still persisted, but with no contacts
+ * rather than truncated ones, and counted by getContactOverflows(); whoever
+ * replays it supplies the contacts from the current settings.
+ */
+public class EmergencyOutbox {
+    
+    public static final int DEFAULT_CAPACITY = 1024;
+    
+    private static final int MAGIC = 0x57534F42;  // "WSOB"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int RECORD_SIZE = 128;
+    
+    private static final byte STATE_EMPTY = 0;
+    private static final byte STATE_PENDING = 1;
+    private static final byte STATE_ACKED = 2;
+    
+    public static final int MAX_CONTACTS = 3;
+    public static final int CONTACT_SIZE = 25;
+    
+    // Record layout
+    private static final int OFF_STATE = 0;
+    private static final int OFF_CONTACT_COUNT = 1;
+    private static final int OFF_DEVICE_ID = 4;
+    private static final int OFF_ID = 8;
+    private static final int OFF_LATITUDE = 16;
+    private static final int OFF_LONGITUDE = 24;
+    private static final int OFF_BATTERY = 32;
+    private static final int OFF_SEQUENCE = 36;
+    private static final int OFF_TIMESTAMP = 40;
+    private static final int OFF_CONTACTS = 48;  // MAX_CONTACTS x (length byte + CONTACT_SIZE)
+    private static final int OFF_LOCATION_AGE = 126;  // Seconds, saturating at 0xFFFF
+    
+    private final File path;
+    private final File compactPath;
+    private final int capacity;
+    private RandomAccessFile file;
+    private MappedByteBuffer buffer;
+    
+    private int writeIndex = 0;
+    private int pendingCount = 0;
+    private long nextId = 1;
+    private long contactOverflows = 0;
+    
+    public EmergencyOutbox(File path) throws IOException {
+        this(path, DEFAULT_CAPACITY);
+    }
+    
+    public EmergencyOutbox(File path, int capacity) throws IOException {
+        this.path = path;
+        this.compactPath = new File(path.getPath() + ".compact");
+        this.capacity = capacity;
+        this.file = new RandomAccessFile(path, "rw");
+        
+        boolean fresh = file.length() < HEADER_SIZE || file.readInt() != MAGIC;
+        if (!fresh) {
+            file.seek(8);
+            fresh = file.readInt() != capacity;
+        }
+        if (fresh) {
+            file.setLength(0);
+        }
+        file.setLength(size());
+        
+        this.buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size());
+        
+        if (fresh) {
+            writeHeader(buffer);
+        } else {
+            recover();
+        }
+    }
+    
+    /**
+     * Persist an event before sending it
+     * @return the event tagged with its outbox id, or untagged if the outbox is full
+     *         or could not be compacted
+     */
+    public synchronized EmergencyEvent append(EmergencyEvent event) {
+        if (writeIndex == capacity) {
+            try {
+                compact();
+            } catch (IOException e) {
+                return event;  // Not persisted; the caller still sends it
+            }
+            if (writeIndex == capacity) {
+                return event;
+            }
+        }
+        
+        long id = nextId++;
+        int base = offset(writeIndex++);
+        
+        buffer.putInt(base + OFF_DEVICE_ID, event.getDeviceId());
+        buffer.putLong(base + OFF_ID, id);
+        buffer.putDouble(base + OFF_LATITUDE, event.getLatitude());
+        buffer.putDouble(base + OFF_LONGITUDE, event.getLongitude());
+        buffer.putInt(base + OFF_BATTERY, event.getBatteryLevel());
+        buffer.putInt(base + OFF_SEQUENCE, event.getSequenceNumber());
+        buffer.putLong(base + OFF_TIMESTAMP, event.getTimestamp());
+        buffer.putChar(base + OFF_LOCATION_AGE,
+            (char) Math.min(event.getLocationAgeMs() / 1000, 0xFFFF));
+        
+        byte[][] contacts = encodeContacts(event.getContacts());
+        if (contacts == null) {
+            // A cut-down number would text a stranger: keep none and count it
+            contactOverflows++;
+            contacts = new byte[0][];
+        }
+        for (int c = 0; c < contacts.length; c++) {
+            int at = base + OFF_CONTACTS + c * (CONTACT_SIZE + 1);
+            buffer.put(at, (byte) contacts[c].length);
+            for (int i = 0; i < contacts[c].length; i++) {
+                buffer.put(at + 1 + i, contacts[c][i]);
+            }
+        }
+        buffer.put(base + OFF_CONTACT_COUNT, (byte) contacts.length);
+        
+        // State byte last: a record is only visible once fully written
+        buffer.put(base + OFF_STATE, STATE_PENDING);
+        pendingCount++;
+        
+        return event.withOutboxId(id);
+    }
+    
+    /**
+     * True if the contacts fit a record whole; otherwise append() stores none
+     */
+    public static boolean fitsContacts(String[] contacts) {
+        return encodeContacts(contacts) != null;
+    }
+    
+    /**
+     * Mark a record delivered; no-op for unknown or already acknowledged ids
+     */
+    public synchronized void ack(long id) {
+        for (int i = 0; i < writeIndex; i++) {
+            int base = offset(i);
+            if (buffer.getLong(base + OFF_ID) == id) {
+                if (buffer.get(base + OFF_STATE) == STATE_PENDING) {
+                    buffer.put(base + OFF_STATE, STATE_ACKED);
+                    pendingCount--;
+                }
+                break;
+            }
+        }
+        
+        if (pendingCount == 0) {
+            rewind();
+        }
+    }
+    
+    /**
+     * Unacknowledged events in append order, tagged with their outbox ids;
+     * events whose contacts did not fit come back with none
+     */
+    public synchronized List<EmergencyEvent> pending() {
+        List<EmergencyEvent> events = new ArrayList<>(pendingCount);
+        for (int i = 0; i < writeIndex; i++) {
+            int base = offset(i);
+            if (buffer.get(base + OFF_STATE) == STATE_PENDING) {
+                events.add(read(base));
+            }
+        }
+        return events;
+    }
+    
+    public synchronized int getPendingCount() {
+        return pendingCount;
+    }
+    
+    /**
+     * Events persisted without their contacts because they did not fit
+     */
+    public synchronized long getContactOverflows() {
+        return contactOverflows;
+    }
+    
+    /**
+     * Flush mapped pages to storage
+     */
+    public void sync() {
+        buffer.force();
+    }
+    
+    public synchronized void close() throws IOException {
+        buffer.force();
+        file.close();
+    }
+    
+    private EmergencyEvent read(int base) {
+        int count = buffer.get(base + OFF_CONTACT_COUNT);
+        String[] contacts = new String[count];
+        for (int c = 0; c < count; c++) {
+            int at = base + OFF_CONTACTS + c * (CONTACT_SIZE + 1);
+            byte[] bytes = new byte[buffer.get(at)];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = buffer.get(at + 1 + i);
+            }
+            contacts[c] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        
+        return new EmergencyEvent(
+            buffer.getInt(base + OFF_DEVICE_ID),
+            buffer.getDouble(base + OFF_LATITUDE),
+            buffer.getDouble(base + OFF_LONGITUDE),
+            buffer.getInt(base + OFF_BATTERY),
+            buffer.getInt(base + OFF_SEQUENCE),
+            buffer.getLong(base + OFF_TIMESTAMP),
+            contacts)
+            .withLocationAge(buffer.getChar(base + OFF_LOCATION_AGE) * 1000L)
+            .withOutboxId(buffer.getLong(base + OFF_ID));
+    }
+    
+    private void recover() throws IOException {
+        // Left by a compaction that did not finish; the log itself is intact
+        if (compactPath.exists() && !compactPath.delete()) {
+            throw new IOException("Cannot remove " + compactPath);
+        }
+        
+        writeIndex = 0;
+        pendingCount = 0;
+        
+        while (writeIndex < capacity) {
+            int base = offset(writeIndex);
+            byte state = buffer.get(base + OFF_STATE);
+            if (state == STATE_EMPTY) {
+                break;
+            }
+            if (state == STATE_PENDING) {
+                pendingCount++;
+            }
+            nextId = Math.max(nextId, buffer.getLong(base + OFF_ID) + 1);
+            writeIndex++;
+        }
+        
+        compact();
+    }
+    
+    /**
+     * Empty the log once nothing is pending; every record cleared is acknowledged,
+     * so stopping part-way cannot bring one back
+     */
+    private void rewind() {
+        for (int i = 0; i < writeIndex; i++) {
+            buffer.put(offset(i) + OFF_STATE, STATE_EMPTY);
+        }
+        writeIndex = 0;
+    }
+    
+    /**
+     * Move pending records to the front, in order, dropping acknowledged ones.
+     * The compacted log is built and synced in a separate file, then renamed
+     * over this one; the rename is the only step that changes what a restart
+     * would replay.
+     */
+    private void compact() throws IOException {
+        if (pendingCount == 0) {
+            rewind();
+            return;
+        }
+        if (pendingCount == writeIndex) {
+            return;  // Nothing acknowledged to drop
+        }
+        
+        int kept = 0;
+        try (RandomAccessFile out = new RandomAccessFile(compactPath, "rw")) {
+            out.setLength(0);
+            out.setLength(size());
+            MappedByteBuffer compacted = out.getChannel().map(
+                FileChannel.MapMode.READ_WRITE, 0, size());
+            writeHeader(compacted);
+            
+            byte[] record = new byte[RECORD_SIZE];
+            for (int i = 0; i < writeIndex; i++) {
+                int from = offset(i);
+                if (buffer.get(from + OFF_STATE) != STATE_PENDING) {
+                    continue;
+                }
+                buffer.position(from);
+                buffer.get(record);
+                compacted.position(offset(kept++));
+                compacted.put(record);
+            }
+            compacted.force();
+        }
+        
+        if (!compactPath.renameTo(path)) {
+            compactPath.delete();
+            throw new IOException("Cannot replace " + path + " with " + compactPath);
+        }
+        
+        // The old mapping still refers to the replaced file
+        file.close();
+        file = new RandomAccessFile(path, "rw");
+        buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size());
+        writeIndex = kept;
+    }
+    
+    /**
+     * Contacts as stored, or null if any does not fit whole
+     */
+    private static byte[][] encodeContacts(String[] contacts) {
+        int count = 0;
+        for (String contact : contacts) {
+            if (contact != null && !contact.isEmpty()) {
+                count++;
+            }
+        }
+        if (count > MAX_CONTACTS) {
+            return null;
+        }
+        
+        byte[][] encoded = new byte[count][];
+        int c = 0;
+        for (String contact : contacts) {
+            if (contact == null || contact.isEmpty()) {
+                continue;
+            }
+            byte[] bytes = contact.getBytes(StandardCharsets.UTF_8);
+            if (bytes.length > CONTACT_SIZE) {
+                return null;
+            }
+            encoded[c++] = bytes;
+        }
+        return encoded;
+    }
+    
+    private void writeHeader(MappedByteBuffer target) {
+        target.putInt(0, MAGIC);
+        target.putInt(4, VERSION);
+        target.putInt(8, capacity);
+    }
+    
+    private long size() {
+        return HEADER_SIZE + (long) RECORD_SIZE * capacity;
+    }
+    
+    private static int offset(int index) {
+        return HEADER_SIZE + index * RECORD_SIZE;
+    }
+}
@@ -0,0 +1,99 @@
+package com.safety.womenalert;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.List;
+
+/**
+ * Women Safety System - Emergency Payload
+ * Builds the JSON bodies for POST /api/emergency, /api/emergency/batch, /api/emergency/cancel
+ * and /api/emergency/:id/location
+ */
+public final class EmergencyPayload {
+    
+    private EmergencyPayload() {}
+    
+    public static String toJson(int deviceId, double latitude, double longitude,
+                                int batteryLevel, int sequenceNumber, long timestamp,
+                                String[] contacts) throws JSONException {
+        return toJsonObject(deviceId, latitude, longitude, batteryLevel,
+            sequenceNumber, timestamp, contacts).toString();
+    }
+    
+    public static String toJson(EmergencyEvent event) throws JSONException {
+        return toJsonObject(event).toString();
+    }
+    
+    public static String toBatchJson(List<EmergencyEvent> events) throws JSONException {
+        JSONArray eventsArray = new JSONArray();
+        for (EmergencyEvent event : events) {
+            eventsArray.put(toJsonObject(event));
+        }
+        
+        JSONObject payload = new JSONObject();
+        payload.put("events", eventsArray);
+        return payload.toString();
+    }
+    
+    /**
+     * @param sequenceNumber the cancel frame's own sequence number
+     * @param timestamp when the cancel was received, ms since epoch
+     */
+    public static String toCancelJson(int deviceId, int sequenceNumber, long timestamp)
+            throws JSONException {
+        JSONObject payload = new JSONObject();
+        payload.put("deviceId", deviceId);
+        payload.put("sequenceNumber", sequenceNumber);
+        payload.put("timestamp", timestamp);
+        return payload.toString();
+    }
+    
+    /**
+     * @param locationAgeMs how old the fix is; sent only for a last known location
+     */
+    public static String toLocationJson(double latitude, double longitude, long locationAgeMs)
+            throws JSONException {
+        JSONObject payload = new JSONObject();
+        payload.put("latitude", latitude);
+        payload.put("longitude", longitude);
+        if (locationAgeMs >= 1000) {
+            payload.put("locationAgeSeconds", locationAgeMs / 1000);
+        }
+        return payload.toString();
+    }
+    
+    private static JSONObject toJsonObject(EmergencyEvent event) throws JSONException {
+        JSONObject payload = toJsonObject(event.getDeviceId(), event.getLatitude(),
+            event.getLongitude(), event.getBatteryLevel(), event.getSequenceNumber(),
+            event.getTimestamp(), event.getContacts());
+        if (event.getLocationAgeMs() >= 1000) {
+            // Last known location, not a current one
+            payload.put("locationAgeSeconds", event.getLocationAgeMs() / 1000);
+        }
+        return payload;
+    }
+    
+    private static JSONObject toJsonObject(int deviceId, double latitude, double longitude,
+                                           int batteryLevel, int sequenceNumber, long timestamp,
+                                           String[] contacts) throws JSONException {
+        JSONObject payload = new JSONObject();
+        payload.put("deviceId", deviceId);
+        payload.put("latitude", latitude);
+        payload.put("longitude", longitude);
+        payload.put("batteryLevel", batteryLevel);
+        payload.put("sequenceNumber", sequenceNumber);
+        payload.put("timestamp", timestamp);
+        
+        JSONArray contactsArray = new JSONArray();
+        for (String contact : contacts) {
+            if (contact != null && !contact.isEmpty()) {
+                contactsArray.put(contact);
+            }
+        }
+        payload.put("emergencyContacts", contactsArray);
+        
+        return payload;
+    }
+}
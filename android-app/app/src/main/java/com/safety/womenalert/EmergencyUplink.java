@@ -0,0 +1,390 @@
+package com.safety.womenalert;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Women Safety System - Emergency Uplink
+ * Persistent-connection sender that coalesces bursts of alerts into batch requests
+ *
+ * An isolated alert is POSTed to /api/emergency as soon as it is submitted.
+ * When alerts arrive within the batch window of the previous send (a burst
+ * from many wearers), the sender lingers for that window and sends everything
+ * queued as one POST to /api/emergency/batch. Alerts that queue up while a
+ * request is in flight go out together in the next one.
+ *
+ * Response bodies are scanned as they stream in by {@link ApiResult}, then
+ * read to the end and closed without disconnect(), so HttpURLConnection
+ * keeps the TCP/TLS connection alive for the next request.
+ *
+ * Bodies are JSON until the backend lists {@link EmergencyCodec#CONTENT_TYPE}
+ * in an Accept-Post response header; from then on they use the binary
+ * encoding, and go back to JSON if the backend answers 415.
+ *
+ * The incident id the backend assigns each delivered event goes to the
+ * optional {@link IncidentListener}, which can follow the contact fan-out.
+ *
+ * Listeners are called once the outcome of a request is settled, never from
+ * inside it, so a listener that throws cannot turn a delivered alert into a
+ * retried one. Such exceptions are logged and the sender keeps running.
+ */
+public class EmergencyUplink implements AlertTransport {
+    
+    public interface IncidentListener {
+        
+        /**
+         * The backend accepted the event as this incident; called just before onDelivered
+         */
+        void onIncidentOpened(EmergencyEvent event, String incidentId);
+    }
+    
+    private static final Logger LOG = Logger.getLogger("EmergencyUplink");
+    
+    private static final int TIMEOUT_MS = 10000;  // 10 seconds
+    private static final long DEFAULT_BATCH_WINDOW_MS = 50;
+    private static final int DEFAULT_MAX_BATCH = 32;
+    private static final String JSON_CONTENT_TYPE = "application/json";
+    
+    private final Supplier<String> backendUrl;
+    private final Supplier<String> apiKey;
+    private final Listener listener;
+    private final IncidentListener incidents;
+    private final long batchWindowNanos;
+    private final int maxBatch;
+    private final LinkedBlockingQueue<EmergencyEvent> queue = new LinkedBlockingQueue<>();
+    private final Thread sender;
+    
+    private volatile boolean running = true;
+    private long lastSendNanos;
+    
+    // Uplink thread only: base URL known to accept binary bodies, and the
+    // per-device contact hashes it has cached
+    private String binaryUrl;
+    private final Set<Long> knownContactHashes = new HashSet<>();
+    
+    public EmergencyUplink(Supplier<String> backendUrl, Listener listener) {
+        this(backendUrl, listener, null);
+    }
+    
+    public EmergencyUplink(Supplier<String> backendUrl, Listener listener,
+                           IncidentListener incidents) {
+        this(backendUrl, ApiKey.NONE, listener, incidents);
+    }
+    
+    public EmergencyUplink(Supplier<String> backendUrl, Supplier<String> apiKey,
+                           Listener listener, IncidentListener incidents) {
+        this(backendUrl, apiKey, listener, incidents, DEFAULT_BATCH_WINDOW_MS,
+            DEFAULT_MAX_BATCH);
+    }
+    
+    public EmergencyUplink(Supplier<String> backendUrl, Listener listener,
+                           IncidentListener incidents, long batchWindowMs, int maxBatch) {
+        this(backendUrl, ApiKey.NONE, listener, incidents, batchWindowMs, maxBatch);
+    }
+    
+    /**
+     * @param backendUrl base URL, read before every request so settings changes apply
+     * @param apiKey gateway API key, read with the URL
+     * @param incidents told each delivered event's incident id, or null
+     * @param batchWindowMs how long to collect a burst; 0 disables lingering
+     * @param maxBatch most events per request; 1 disables batching
+     */
+    public EmergencyUplink(Supplier<String> backendUrl, Supplier<String> apiKey,
+                           Listener listener, IncidentListener incidents, long batchWindowMs,
+                           int maxBatch) {
+        this.backendUrl = backendUrl;
+        this.apiKey = apiKey;
+        this.listener = listener;
+        this.incidents = incidents;
+        this.batchWindowNanos = TimeUnit.MILLISECONDS.toNanos(batchWindowMs);
+        this.maxBatch = Math.max(1, maxBatch);
+        this.lastSendNanos = System.nanoTime() - batchWindowNanos;
+        this.sender = new Thread(this::runLoop, "emergency-uplink");
+        this.sender.setDaemon(true);
+        this.sender.start();
+    }
+    
+    /**
+     * Queue an event for delivery; never blocks
+     */
+    @Override
+    public void submit(EmergencyEvent event) {
+        if (!running) {
+            listener.onFailed(event, "Uplink shut down");
+            return;
+        }
+        queue.offer(event);
+    }
+    
+    @Override
+    public boolean cancel(Predicate<EmergencyEvent> matches) {
+        return queue.removeIf(matches);
+    }
+    
+    public int getQueueDepth() {
+        return queue.size();
+    }
+    
+    @Override
+    public void shutdown() {
+        running = false;
+        sender.interrupt();
+    }
+    
+    private void runLoop() {
+        List<EmergencyEvent> batch = new ArrayList<>(maxBatch);
+        
+        while (running) {
+            try {
+                batch.add(queue.take());
+                
+                if (System.nanoTime() - lastSendNanos < batchWindowNanos) {
+                    // Burst in progress: give other wearers' alerts a moment to join
+                    long deadline = System.nanoTime() + batchWindowNanos;
+                    while (batch.size() < maxBatch) {
+                        EmergencyEvent next = queue.poll(
+                            deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                        if (next == null) {
+                            break;
+                        }
+                        batch.add(next);
+                    }
+                } else {
+                    queue.drainTo(batch, maxBatch - 1);
+                }
+                
+                send(batch);
+                lastSendNanos = System.nanoTime();
+            
+            } catch (InterruptedException e) {
+                break;
+            } catch (RuntimeException e) {
+                // Nothing may stop the sender while alerts can still be queued
+                logError("Uplink send failed", e);
+            } finally {
+                batch.clear();
+            }
+        }
+        
+        // Report anything still queued so callers can retry elsewhere
+        EmergencyEvent event;
+        while ((event = queue.poll()) != null) {
+            failed(event, "Uplink shut down");
+        }
+    }
+    
+    private static void logError(String message, RuntimeException e) {
+        Metrics.UPLINK_ERRORS.increment();
+        LOG.log(Level.WARNING, message, e);
+    }
+    
+    private void send(List<EmergencyEvent> batch) {
+        String baseUrl = backendUrl.get();
+        if (baseUrl == null || baseUrl.isEmpty()) {
+            failAll(batch, "Backend URL not configured");
+            return;
+        }
+        
+        // Settle every outcome first: incident id if delivered, else the failure reason
+        String[] incidentIds = new String[batch.size()];
+        String[] errors = new String[batch.size()];
+        long startNanos = System.nanoTime();
+        try {
+            if (batch.size() == 1) {
+                ApiResult response = post(baseUrl, "/api/emergency", batch);
+                Metrics.BACKEND_ROUND_TRIP.recordSince(startNanos);
+                incidentIds[0] = incidentIdOf(response);
+            } else {
+                ApiResult response = post(baseUrl, "/api/emergency/batch", batch);
+                Metrics.BACKEND_ROUND_TRIP.recordSince(startNanos);
+                List<ApiResult> results = response.getResults();
+                
+                for (int i = 0; i < batch.size(); i++) {
+                    ApiResult result = i < results.size() ? results.get(i) : null;
+                    if (result != null && result.isSuccess()) {
+                        incidentIds[i] = incidentIdOf(result);
+                    } else if (result != null) {
+                        errors[i] = result.getMessage() != null
+                            ? result.getMessage() : "Rejected by backend";
+                    } else {
+                        errors[i] = "Missing batch result";
+                    }
+                }
+            }
+        
+        } catch (Exception e) {
+            failAll(batch, e.toString());
+            return;
+        }
+        
+        // Then report, outside the request: a throwing listener must not trigger a resend
+        for (int i = 0; i < batch.size(); i++) {
+            if (incidentIds[i] != null) {
+                delivered(batch.get(i), incidentIds[i]);
+            } else {
+                failed(batch.get(i), errors[i]);
+            }
+        }
+    }
+    
+    private void delivered(EmergencyEvent event, String incidentId) {
+        if (incidents != null && !incidentId.isEmpty()) {
+            try {
+                incidents.onIncidentOpened(event, incidentId);
+            } catch (RuntimeException e) {
+                logError("Incident listener failed", e);
+            }
+        }
+        try {
+            listener.onDelivered(event);
+        } catch (RuntimeException e) {
+            logError("Uplink listener failed", e);
+        }
+    }
+    
+    private void failed(EmergencyEvent event, String reason) {
+        try {
+            listener.onFailed(event, reason);
+        } catch (RuntimeException e) {
+            logError("Uplink listener failed", e);
+        }
+    }
+    
+    /**
+     * The incident id in a 2xx body, or "" if there is none; the event is delivered either way
+     */
+    private static String incidentIdOf(ApiResult result) {
+        return result.getIncidentId() != null ? result.getIncidentId() : "";
+    }
+    
+    private void failAll(List<EmergencyEvent> batch, String reason) {
+        for (EmergencyEvent event : batch) {
+            failed(event, reason);
+        }
+    }
+    
+    /**
+     * POST events in the negotiated format and return the scanned response
+     */
+    private ApiResult post(String baseUrl, String path, List<EmergencyEvent> batch)
+            throws Exception {
+        if (baseUrl.equals(binaryUrl)) {
+            try {
+                return postBinary(baseUrl + path, batch);
+            } catch (HttpStatusException e) {
+                if (e.code == 409) {
+                    // Backend lost its contact cache (restart); resend contacts inline
+                    knownContactHashes.clear();
+                    return postBinary(baseUrl + path, batch);
+                }
+                if (e.code != 415) {
+                    throw e;
+                }
+                binaryUrl = null;
+                knownContactHashes.clear();
+            }
+        }
+        
+        String json = batch.size() == 1
+            ? EmergencyPayload.toJson(batch.get(0))
+            : EmergencyPayload.toBatchJson(batch);
+        return post(baseUrl, baseUrl + path, JSON_CONTENT_TYPE,
+            json.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    private ApiResult postBinary(String url, List<EmergencyEvent> batch) throws IOException {
+        ApiResult response = post(binaryUrl, url, EmergencyCodec.CONTENT_TYPE,
+            EmergencyCodec.encodeBatch(batch, knownContactHashes));
+        for (EmergencyEvent event : batch) {
+            knownContactHashes.add(EmergencyCodec.contactsHash(event.getDeviceId(),
+                event.getContacts()));
+        }
+        return response;
+    }
+    
+    /**
+     * POST a body and return the scanned response; throws on non-2xx
+     */
+    private ApiResult post(String baseUrl, String url, String contentType, byte[] body)
+            throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
+        conn.setRequestMethod("POST");
+        conn.setRequestProperty("Content-Type", contentType);
+        conn.setRequestProperty("Accept", JSON_CONTENT_TYPE);
+        conn.setRequestProperty("Connection", "keep-alive");
+        ApiKey.apply(conn, apiKey);
+        conn.setDoOutput(true);
+        conn.setConnectTimeout(TIMEOUT_MS);
+        conn.setReadTimeout(TIMEOUT_MS);
+        
+        long startNanos = System.nanoTime();
+        conn.setFixedLengthStreamingMode(body.length);
+        try (OutputStream os = conn.getOutputStream()) {
+            os.write(body);
+        }
+        
+        int responseCode = conn.getResponseCode();
+        long roundTripNanos = System.nanoTime() - startNanos;
+        boolean ok = responseCode >= 200 && responseCode < 300;
+        
+        // Drain the body either way so the connection returns to the keep-alive pool
+        InputStream in = ok ? conn.getInputStream() : conn.getErrorStream();
+        ApiResult response = null;
+        try (InputStream stream = in) {
+            if (ok) {
+                response = ApiResult.read(stream, responseCode, roundTripNanos);
+            }
+            drain(stream);
+        }
+        
+        if (!ok) {
+            throw new HttpStatusException(responseCode);
+        }
+        
+        String acceptPost = conn.getHeaderField("Accept-Post");
+        if (acceptPost != null && acceptPost.contains(EmergencyCodec.CONTENT_TYPE)
+                && !baseUrl.equals(binaryUrl)) {
+            binaryUrl = baseUrl;
+            knownContactHashes.clear();
+        }
+        return response;
+    }
+    
+    private static final class HttpStatusException extends IOException {
+        private static final long serialVersionUID = 1L;
+        
+        final int code;
+        
+        HttpStatusException(int code) {
+            super("HTTP " + code);
+            this.code = code;
+        }
+    }
+    
+    /**
+     * Read whatever the scan left, so the connection returns to the keep-alive pool
+     */
+    private static void drain(InputStream in) throws IOException {
+        if (in == null) {
+            return;
+        }
+        byte[] discard = new byte[256];
+        while (in.read(discard) != -1) {
+            // Discard
+        }
+    }
+}
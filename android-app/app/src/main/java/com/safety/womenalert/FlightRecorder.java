@@ -0,0 +1,152 @@
+package com.safety.womenalert;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Women Safety System - Flight Recorder
+ * Every raw frame received, with time, port and checksum verdict, in a memory-mapped ring file
+ *
+ * Always on: each candidate frame the decoders see is written as a
+ * fixed-size record, overwriting the oldest once the file is full. A record
+ * is a few stores into the mapping, no syscalls and no allocation; the
+ * caller reads the clock once per serial chunk, not per frame. The pages
+ * belong to the kernel page cache, so the recording survives the process
+ * being killed. Recording continues across restarts of the service.
+ *
+ * Read a recording back with {@link FlightRecording}. Not thread-safe:
+ * record from one thread only (the ingest consumer).
+ */
+public class FlightRecorder implements Closeable {
+    
+    public static final int DEFAULT_CAPACITY = 65536;  // 2 MB, ~18 h of one frame per second
+    
+    static final int MAGIC = 0x57534652;  // "WSFR"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 64;
+    static final int RECORD_SIZE = 32;
+    
+    static final byte VERDICT_VALID = 1;
+    static final byte VERDICT_CHECKSUM_ERROR = 2;
+    
+    // Header layout
+    static final int OFF_CAPACITY = 8;
+    static final int OFF_NEXT = 16;  // Records written since the file was created
+    
+    // Record layout
+    static final int OFF_NUMBER = 0;  // 1-based record number, 0 = never or partly written
+    static final int OFF_RECEIVED_AT = 8;
+    static final int OFF_PORT = 16;
+    static final int OFF_VERDICT = 18;
+    static final int OFF_FRAME = 20;  // FrameDecoder.PACKET_SIZE bytes
+    
+    private final RandomAccessFile file;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    
+    private long next;
+    private int slot;
+    
+    public FlightRecorder(File path) throws IOException {
+        this(path, DEFAULT_CAPACITY);
+    }
+    
+    public FlightRecorder(File path, int capacity) throws IOException {
+        this.capacity = capacity;
+        this.file = new RandomAccessFile(path, "rw");
+        
+        long size = HEADER_SIZE + (long) RECORD_SIZE * capacity;
+        boolean fresh = file.length() != size || file.readInt() != MAGIC;
+        if (!fresh) {
+            file.seek(OFF_CAPACITY);
+            fresh = file.readInt() != capacity;
+        }
+        if (fresh) {
+            file.setLength(0);
+            file.setLength(size);
+        }
+        
+        this.buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        
+        if (fresh) {
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            buffer.putInt(OFF_CAPACITY, capacity);
+            buffer.putInt(12, RECORD_SIZE);
+        }
+        
+        // The header lags by one if the process died between a record and the header store
+        next = buffer.getLong(OFF_NEXT);
+        if (buffer.getLong(offset(slotOf(next)) + OFF_NUMBER) == next + 1) {
+            next++;
+        }
+        slot = slotOf(next);
+    }
+    
+    /**
+     * Append one candidate frame, as seen by FrameDecoder.RawFrameListener
+     * @param receivedAt epoch milliseconds, so records line up with backend and wearer reports
+     * @param port which adapter heard it, as numbered by the ingest
+     */
+    public void record(long receivedAt, int port, byte[] frame, boolean checksumValid) {
+        int base = offset(slot);
+        
+        // The slot's old number goes first, so a half-overwritten record is not read as it
+        buffer.putLong(base + OFF_NUMBER, 0);
+        buffer.putLong(base + OFF_RECEIVED_AT, receivedAt);
+        buffer.putShort(base + OFF_PORT, (short) port);
+        buffer.put(base + OFF_VERDICT, checksumValid ? VERDICT_VALID : VERDICT_CHECKSUM_ERROR);
+        
+        // The 12 frame bytes as one long and one int, in wire order
+        long first = 0;
+        for (int i = 0; i < 8; i++) {
+            first = first << 8 | (frame[i] & 0xFF);
+        }
+        int rest = (frame[8] & 0xFF) << 24 | (frame[9] & 0xFF) << 16
+            | (frame[10] & 0xFF) << 8 | (frame[11] & 0xFF);
+        buffer.putLong(base + OFF_FRAME, first);
+        buffer.putInt(base + OFF_FRAME + 8, rest);
+        
+        // Number last: a record without it is ignored on read
+        next++;
+        buffer.putLong(base + OFF_NUMBER, next);
+        buffer.putLong(OFF_NEXT, next);
+        slot = slot + 1 == capacity ? 0 : slot + 1;
+    }
+    
+    /**
+     * Records written since the file was created, including overwritten ones
+     */
+    public long getRecordCount() {
+        return next;
+    }
+    
+    public int getCapacity() {
+        return capacity;
+    }
+    
+    /**
+     * Flush to storage, for surviving power loss as well as process death
+     */
+    public void sync() {
+        buffer.force();
+    }
+    
+    @Override
+    public void close() throws IOException {
+        buffer.force();
+        file.close();
+    }
+    
+    private int slotOf(long number) {
+        return (int) (number % capacity);
+    }
+    
+    private static int offset(int slot) {
+        return HEADER_SIZE + slot * RECORD_SIZE;
+    }
+}
@@ -0,0 +1,181 @@
+package com.safety.womenalert;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Consumer;
+
+/**
+ * Women Safety System - Flight Recording
+ * A flight recorder file read back for export and replay
+ *
+ * Pull the file from a gateway with
+ *   adb exec-out run-as com.safety.womenalert cat files/flight-recorder.bin > flight.bin
+ * and load it with {@link #read(File)}. Records come back oldest first.
+ * {@link #replay} feeds them through a FrameDecoder exactly as the ingest
+ * did, so a recording can reproduce an incident or serve as benchmark input.
+ */
+public class FlightRecording {
+    
+    /**
+     * One received candidate frame
+     */
+    public static final class Record {
+        private final long number;
+        private final long receivedAt;
+        private final int port;
+        private final boolean checksumValid;
+        private final byte[] frame;
+        
+        Record(long number, long receivedAt, int port, boolean checksumValid, byte[] frame) {
+            this.number = number;
+            this.receivedAt = receivedAt;
+            this.port = port;
+            this.checksumValid = checksumValid;
+            this.frame = frame;
+        }
+        
+        public long getNumber() {
+            return number;
+        }
+        
+        /**
+         * Epoch milliseconds when the serial chunk carrying the frame was drained
+         */
+        public long getReceivedAt() {
+            return receivedAt;
+        }
+        
+        public int getPort() {
+            return port;
+        }
+        
+        public boolean isChecksumValid() {
+            return checksumValid;
+        }
+        
+        public byte[] getFrame() {
+            return frame.clone();
+        }
+        
+        public int getDeviceId() {
+            return ((frame[2] & 0xFF) << 8) | (frame[3] & 0xFF);
+        }
+        
+        public int getPacketType() {
+            return frame[4] & 0xFF;
+        }
+        
+        public int getSequenceNumber() {
+            return ((frame[8] & 0xFF) << 8) | (frame[9] & 0xFF);
+        }
+    }
+    
+    private final List<Record> records;
+    private final long recordsLost;
+    
+    private FlightRecording(List<Record> records, long recordsLost) {
+        this.records = records;
+        this.recordsLost = recordsLost;
+    }
+    
+    public static FlightRecording read(File path) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(path, "r")) {
+            if (file.length() < FlightRecorder.HEADER_SIZE || file.readInt() != FlightRecorder.MAGIC) {
+                throw new IOException("Not a flight recording: " + path);
+            }
+            
+            byte[] bytes = new byte[(int) file.length()];
+            file.seek(0);
+            file.readFully(bytes);
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            
+            int capacity = buffer.getInt(FlightRecorder.OFF_CAPACITY);
+            if (file.length() != offset(capacity)) {
+                throw new IOException("Truncated flight recording: " + path);
+            }
+            
+            // As in FlightRecorder, the header may lag the newest record by one
+            long next = buffer.getLong(FlightRecorder.OFF_NEXT);
+            if (buffer.getLong(offset((int) (next % capacity)) + FlightRecorder.OFF_NUMBER)
+                    == next + 1) {
+                next++;
+            }
+            
+            // Oldest first: once wrapped, the slot after the newest record
+            List<Record> records = new ArrayList<>();
+            long lost = 0;
+            for (long number = Math.max(1, next - capacity + 1); number <= next; number++) {
+                int base = offset((int) ((number - 1) % capacity));
+                if (buffer.getLong(base + FlightRecorder.OFF_NUMBER) != number) {
+                    lost++;  // Torn by a crash mid-record
+                    continue;
+                }
+                
+                byte[] frame = new byte[FrameDecoder.PACKET_SIZE];
+                for (int i = 0; i < frame.length; i++) {
+                    frame[i] = buffer.get(base + FlightRecorder.OFF_FRAME + i);
+                }
+                records.add(new Record(number,
+                    buffer.getLong(base + FlightRecorder.OFF_RECEIVED_AT),
+                    buffer.getShort(base + FlightRecorder.OFF_PORT) & 0xFFFF,
+                    buffer.get(base + FlightRecorder.OFF_VERDICT) == FlightRecorder.VERDICT_VALID,
+                    frame));
+            }
+            
+            return new FlightRecording(Collections.unmodifiableList(records), lost);
+        }
+    }
+    
+    public List<Record> getRecords() {
+        return records;
+    }
+    
+    /**
+     * Records counted in the header but never completed
+     */
+    public long getRecordsLost() {
+        return recordsLost;
+    }
+    
+    /**
+     * Feed every record through the decoder, one frame at a time
+     * @param before called with each record just before it is fed, or null
+     */
+    public void replay(FrameDecoder decoder, Consumer<Record> before) {
+        for (Record record : records) {
+            if (before != null) {
+                before.accept(record);
+            }
+            decoder.feed(record.frame);
+            // Frames are recorded whole; nothing carries over to the next one
+            decoder.reset();
+        }
+    }
+    
+    /**
+     * One line per record: number, receivedAt, port, verdict, decoded header fields, frame hex
+     */
+    public void writeCsv(Appendable out) throws IOException {
+        out.append("number,received_at,port,checksum,device_id,type,sequence,frame\n");
+        for (Record record : records) {
+            StringBuilder hex = new StringBuilder(FrameDecoder.PACKET_SIZE * 2);
+            for (byte b : record.frame) {
+                hex.append(String.format(Locale.ROOT, "%02X", b & 0xFF));
+            }
+            out.append(String.format(Locale.ROOT, "%d,%d,%d,%s,%d,%d,%d,%s\n",
+                record.number, record.receivedAt, record.port,
+                record.checksumValid ? "ok" : "bad", record.getDeviceId(),
+                record.getPacketType(), record.getSequenceNumber(), hex));
+        }
+    }
+    
+    private static int offset(int slot) {
+        return FlightRecorder.HEADER_SIZE + slot * FlightRecorder.RECORD_SIZE;
+    }
+}
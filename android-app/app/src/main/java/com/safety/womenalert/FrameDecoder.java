@@ -0,0 +1,244 @@
+package com.safety.womenalert;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Women Safety System - LoRa Frame Decoder
+ * Reassembles emergency packets from raw serial chunks without Android dependencies
+ *
+ * Incoming bytes are copied into a reusable ring buffer, scanned for the
+ * 0xEF 0xFD sync word and handed to a {@link FrameListener} as primitive fields.
+ * No objects are allocated per frame. Not thread-safe: feed from one thread only.
+ *
+ * With resync enabled, a frame that fails its checksum only consumes its sync
+ * word; the rest of the rejected window is rescanned so a valid frame starting
+ * inside it is still delivered.
+ */
+public class FrameDecoder {
+    
+    public static final int PACKET_SIZE = 12;
+    public static final byte MAGIC_BYTE_1 = (byte) 0xEF;
+    public static final byte MAGIC_BYTE_2 = (byte) 0xFD;
+    
+    public static final int PACKET_TYPE_EMERGENCY = 0x01;
+    public static final int PACKET_TYPE_CANCEL = 0x02;
+    public static final int PACKET_TYPE_HEARTBEAT = 0x03;
+    
+    private static final int DEFAULT_CAPACITY = 1024;
+    
+    /**
+     * Receives decoded frames on the thread that called {@code feed}
+     */
+    public interface FrameListener {
+        
+        void onFrame(int deviceId, int packetType, int batteryLevel,
+                     int timestamp, int sequenceNumber);
+        
+        void onChecksumError(int deviceId, int sequenceNumber);
+    }
+    
+    /**
+     * Sees every candidate frame, valid or not, just before the FrameListener does
+     */
+    public interface RawFrameListener {
+        
+        /**
+         * @param frame PACKET_SIZE bytes from the sync word on; only valid during the call
+         */
+        void onRawFrame(byte[] frame, boolean checksumValid);
+    }
+    
+    private final FrameListener listener;
+    private RawFrameListener rawListener;
+    private final byte[] ring;
+    private final int mask;
+    private final byte[] frame = new byte[PACKET_SIZE];
+    
+    // Absolute read/write positions; index into ring with (pos & mask)
+    private long head = 0;
+    private long tail = 0;
+    
+    private long bytesReceived = 0;
+    private long framesDecoded = 0;
+    private long checksumErrors = 0;
+    private long bytesSkipped = 0;
+    private long framesRecovered = 0;
+    
+    private boolean resyncEnabled = false;
+    // End of the most recently rejected window (absolute position)
+    private long rejectedUntil = 0;
+    
+    public FrameDecoder(FrameListener listener) {
+        this(listener, DEFAULT_CAPACITY);
+    }
+    
+    /**
+     * @param capacity ring size in bytes, rounded up to a power of two (min 2 frames)
+     */
+    public FrameDecoder(FrameListener listener, int capacity) {
+        if (listener == null) {
+            throw new IllegalArgumentException("listener must not be null");
+        }
+        
+        int size = Integer.highestOneBit(Math.max(capacity, PACKET_SIZE * 2) - 1) << 1;
+        this.listener = listener;
+        this.ring = new byte[size];
+        this.mask = size - 1;
+    }
+    
+    public void feed(byte[] data) {
+        feed(data, 0, data.length);
+    }
+    
+    public void feed(byte[] data, int offset, int length) {
+        if (offset < 0 || length < 0 || offset + length > data.length) {
+            throw new IndexOutOfBoundsException("offset=" + offset + ", length=" + length);
+        }
+        
+        bytesReceived += length;
+        
+        while (length > 0) {
+            int n = Math.min(length, writableContiguous());
+            System.arraycopy(data, offset, ring, (int) (tail & mask), n);
+            tail += n;
+            offset += n;
+            length -= n;
+            drain();
+        }
+    }
+    
+    public void feed(ByteBuffer data) {
+        if (data.hasArray()) {
+            int length = data.remaining();
+            feed(data.array(), data.arrayOffset() + data.position(), length);
+            data.position(data.position() + length);
+            return;
+        }
+        
+        bytesReceived += data.remaining();
+        
+        while (data.hasRemaining()) {
+            int n = Math.min(data.remaining(), writableContiguous());
+            data.get(ring, (int) (tail & mask), n);
+            tail += n;
+            drain();
+        }
+    }
+    
+    /**
+     * Discard any partially received frame
+     */
+    public void reset() {
+        bytesSkipped += tail - head;
+        head = tail;
+    }
+    
+    /**
+     * Rescan rejected frames for a following sync word instead of dropping them whole
+     */
+    public void setResyncEnabled(boolean enabled) {
+        this.resyncEnabled = enabled;
+    }
+    
+    public boolean isResyncEnabled() {
+        return resyncEnabled;
+    }
+    
+    /**
+     * @param rawListener called with the raw bytes of every candidate frame, or null for none
+     */
+    public void setRawFrameListener(RawFrameListener rawListener) {
+        this.rawListener = rawListener;
+    }
+    
+    public long getBytesReceived() {
+        return bytesReceived;
+    }
+    
+    public long getFramesDecoded() {
+        return framesDecoded;
+    }
+    
+    public long getChecksumErrors() {
+        return checksumErrors;
+    }
+    
+    /**
+     * Bytes discarded outside valid frames (noise and rejected frames)
+     */
+    public long getBytesSkipped() {
+        return bytesSkipped;
+    }
+    
+    /**
+     * Valid frames found by rescanning a window that failed its checksum
+     */
+    public long getFramesRecovered() {
+        return framesRecovered;
+    }
+    
+    private int writableContiguous() {
+        int free = ring.length - (int) (tail - head);
+        int untilWrap = ring.length - (int) (tail & mask);
+        return Math.min(free, untilWrap);
+    }
+    
+    private void drain() {
+        while (tail - head >= 2) {
+            // Look for magic bytes
+            if (ring[(int) (head & mask)] != MAGIC_BYTE_1
+                    || ring[(int) ((head + 1) & mask)] != MAGIC_BYTE_2) {
+                head++;
+                bytesSkipped++;
+                continue;
+            }
+            
+            if (tail - head < PACKET_SIZE) {
+                return;  // Wait for rest of packet
+            }
+            
+            for (int i = 0; i < PACKET_SIZE; i++) {
+                frame[i] = ring[(int) ((head + i) & mask)];
+            }
+            
+            int deviceId = ((frame[2] & 0xFF) << 8) | (frame[3] & 0xFF);
+            int sequenceNumber = ((frame[8] & 0xFF) << 8) | (frame[9] & 0xFF);
+            int receivedChecksum = ((frame[10] & 0xFF) << 8) | (frame[11] & 0xFF);
+            
+            boolean valid = receivedChecksum == Crc16Ccitt.compute(frame, 0, PACKET_SIZE - 2);
+            if (rawListener != null) {
+                rawListener.onRawFrame(frame, valid);
+            }
+            
+            if (!valid) {
+                checksumErrors++;
+                
+                if (resyncEnabled) {
+                    // Skip only the sync word and rescan the remainder
+                    rejectedUntil = head + PACKET_SIZE;
+                    head += 2;
+                    bytesSkipped += 2;
+                } else {
+                    head += PACKET_SIZE;
+                    bytesSkipped += PACKET_SIZE;
+                }
+                
+                listener.onChecksumError(deviceId, sequenceNumber);
+                continue;
+            }
+            
+            if (head < rejectedUntil) {
+                framesRecovered++;
+            }
+            
+            head += PACKET_SIZE;
+            framesDecoded++;
+            listener.onFrame(
+                deviceId,
+                frame[4] & 0xFF,
+                frame[5] & 0xFF,
+                ((frame[6] & 0xFF) << 8) | (frame[7] & 0xFF),
+                sequenceNumber);
+        }
+    }
+}
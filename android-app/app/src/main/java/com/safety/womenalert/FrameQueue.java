@@ -0,0 +1,128 @@
+package com.safety.womenalert;
+
+/**
+ * Women Safety System - Frame Queue
+ * Decoded frames waiting for dispatch, emergencies and cancels ahead of everything else
+ *
+ * Two bounded FIFO lanes of frames packed into longs. dispatchNext() always
+ * serves the urgent lane (EMERGENCY and CANCEL, in arrival order) before the
+ * routine lane (heartbeats and anything else). When the routine lane is full
+ * its oldest frame is shed and counted: a stale heartbeat is worth less than
+ * the one behind it. The urgent lane grows rather than shed an alert.
+ *
+ * Not thread-safe: owned by the ingest consumer thread.
+ */
+public class FrameQueue {
+    
+    public static final int DEFAULT_CAPACITY = 1024;
+    
+    private long[] urgent;
+    private int urgentHead = 0;
+    private int urgentSize = 0;
+    
+    private final long[] routine;
+    private int routineHead = 0;
+    private int routineSize = 0;
+    
+    private long framesShed = 0;
+    
+    public FrameQueue() {
+        this(DEFAULT_CAPACITY);
+    }
+    
+    /**
+     * @param capacity routine lane size in frames, rounded up to a power of two
+     */
+    public FrameQueue(int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+        this.routine = new long[size];
+        this.urgent = new long[Math.max(size / 8, 16)];
+    }
+    
+    public static boolean isUrgent(int packetType) {
+        return packetType == FrameDecoder.PACKET_TYPE_EMERGENCY
+            || packetType == FrameDecoder.PACKET_TYPE_CANCEL;
+    }
+    
+    public void add(int deviceId, int packetType, int batteryLevel,
+                    int timestamp, int sequenceNumber) {
+        long frame = pack(deviceId, packetType, batteryLevel, timestamp, sequenceNumber);
+        
+        if (isUrgent(packetType)) {
+            if (urgentSize == urgent.length) {
+                growUrgent();
+            }
+            urgent[(urgentHead + urgentSize++) & (urgent.length - 1)] = frame;
+            return;
+        }
+        
+        if (routineSize == routine.length) {
+            routineHead = (routineHead + 1) & (routine.length - 1);
+            routineSize--;
+            framesShed++;
+            Metrics.FRAMES_SHED.increment();
+        }
+        routine[(routineHead + routineSize++) & (routine.length - 1)] = frame;
+    }
+    
+    /**
+     * Hand the most urgent waiting frame to the listener
+     * @return false if the queue was empty
+     */
+    public boolean dispatchNext(FrameDecoder.FrameListener listener) {
+        long frame;
+        if (urgentSize > 0) {
+            frame = urgent[urgentHead];
+            urgentHead = (urgentHead + 1) & (urgent.length - 1);
+            urgentSize--;
+        } else if (routineSize > 0) {
+            frame = routine[routineHead];
+            routineHead = (routineHead + 1) & (routine.length - 1);
+            routineSize--;
+        } else {
+            return false;
+        }
+        
+        listener.onFrame(
+            (int) (frame >>> 48) & 0xFFFF,
+            (int) (frame >>> 40) & 0xFF,
+            (int) (frame >>> 32) & 0xFF,
+            (int) (frame >>> 16) & 0xFFFF,
+            (int) frame & 0xFFFF);
+        return true;
+    }
+    
+    public boolean isEmpty() {
+        return urgentSize == 0 && routineSize == 0;
+    }
+    
+    public int size() {
+        return urgentSize + routineSize;
+    }
+    
+    /**
+     * Routine frames dropped because the lane was full
+     */
+    public long getFramesShed() {
+        return framesShed;
+    }
+    
+    // Every field of a frame fits in 64 bits: 16 + 8 + 8 + 16 + 16
+    private static long pack(int deviceId, int packetType, int batteryLevel,
+                             int timestamp, int sequenceNumber) {
+        return (long) (deviceId & 0xFFFF) << 48
+            | (long) (packetType & 0xFF) << 40
+            | (long) (batteryLevel & 0xFF) << 32
+            | (long) (timestamp & 0xFFFF) << 16
+            | (sequenceNumber & 0xFFFF);
+    }
+    
+    private void growUrgent() {
+        long[] grown = new long[urgent.length * 2];
+        for (int i = 0; i < urgentSize; i++) {
+            grown[i] = urgent[(urgentHead + i) & (urgent.length - 1)];
+        }
+        urgent = grown;
+        urgentHead = 0;
+    }
+}
@@ -0,0 +1,33 @@
+package com.safety.womenalert;
+
+/**
+ * Women Safety System - Frame Tracker
+ * Duplicate suppression for everything a wearer sends, cancels included
+ *
+ * A CANCEL carries the sequence number of the press it cancels. When the
+ * wearer cancels an alert that already went out, that number has been seen
+ * on the EMERGENCY, and a single SequenceTracker would take the same number
+ * with a new timestamp for a reboot. Cancels are therefore tracked apart
+ * from the numbered stream of emergencies and heartbeats; a reboot seen on
+ * that stream also clears the device's cancels. Not thread-safe.
+ */
+public class FrameTracker {
+    
+    private final SequenceTracker frames = new SequenceTracker();
+    private final SequenceTracker cancels = new SequenceTracker();
+    
+    /**
+     * Record a frame and classify it
+     * @return a SequenceTracker verdict; DUPLICATE to drop the frame
+     */
+    public int track(int deviceId, int packetType, int timestamp, int sequenceNumber) {
+        if (packetType == FrameDecoder.PACKET_TYPE_CANCEL) {
+            return cancels.track(deviceId, timestamp, sequenceNumber);
+        }
+        int verdict = frames.track(deviceId, timestamp, sequenceNumber);
+        if (verdict == SequenceTracker.REBOOTED) {
+            cancels.restart(deviceId);
+        }
+        return verdict;
+    }
+}
@@ -0,0 +1,534 @@
+package com.safety.womenalert;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Women Safety System - Incident Status Channel
+ * One server-sent events stream carrying status changes for every incident the gateway awaits
+ *
+ * After the backend accepts an alert it still has to fan it out to the
+ * contacts. Each incident handed to {@link #watch} is followed over
+ * GET /api/emergency/events until it reaches a final status (alerts_sent,
+ * alert_failed, cancelled or resolved), and the watcher is told once.
+ * Events are matched to watchers by incident id, so any number of
+ * incidents share the one connection.
+ *
+ * The backend only sends the incidents a stream watches. The stream's
+ * first event names it; every watched id is then posted to
+ * /api/emergency/events/:streamId, and later watch() and unwatch() calls
+ * post theirs from the "incident-watch" thread. The backend sends each
+ * added incident's current status first, so a change made while
+ * disconnected or before the watch is not missed. If an update cannot be
+ * posted the stream is dropped, and the reconnect posts the whole set.
+ *
+ * The connection is only open while something is watched; it is closed
+ * at the first ping or event after the last watch ends. It is reopened
+ * with jittered exponential backoff after errors, and treated as dead
+ * after READ_TIMEOUT_MS without even a ping. A watch with no final status
+ * within the watch timeout, or the oldest once MAX_WATCHES are open, ends
+ * with STATUS_EXPIRED.
+ *
+ * Watchers run on the "incident-status" thread and must not block.
+ */
+public class IncidentStatusChannel {
+    
+    public static final String STATUS_ALERTS_SENT = "alerts_sent";
+    public static final String STATUS_ALERT_FAILED = "alert_failed";
+    public static final String STATUS_CANCELLED = "cancelled";
+    public static final String STATUS_RESOLVED = "resolved";
+    
+    // Not from the backend: no final status arrived before the watch timed out
+    public static final String STATUS_EXPIRED = "expired";
+    
+    public static final long DEFAULT_BASE_DELAY_MS = 1000;
+    public static final long DEFAULT_MAX_DELAY_MS = 60000;
+    public static final long DEFAULT_WATCH_TIMEOUT_MS = 10 * 60 * 1000;
+    
+    // The backend's limit per stream (MAX_WATCHED in services/statusStreams.js)
+    public static final int MAX_WATCHES = 1024;
+    
+    private static final int CONNECT_TIMEOUT_MS = 10000;
+    private static final int READ_TIMEOUT_MS = 45000;  // Three missed 15 s pings
+    private static final int RECENT_STATUSES = 256;
+    private static final String EVENT_STREAM = "stream";
+    
+    public interface Watcher {
+        
+        /**
+         * @param status the final status, or STATUS_EXPIRED
+         * @param error the backend's reason for alert_failed, otherwise null
+         */
+        void onFinalStatus(String incidentId, String status, String error);
+    }
+    
+    private static final class Watch {
+        final Watcher watcher;
+        final long deadline;
+        
+        Watch(Watcher watcher, long deadline) {
+            this.watcher = watcher;
+            this.deadline = deadline;
+        }
+    }
+    
+    /**
+     * Final status of an incident that was not being watched when it arrived
+     */
+    private static final class Outcome {
+        final String status;
+        final String error;
+        
+        Outcome(String status, String error) {
+            this.status = status;
+            this.error = error;
+        }
+    }
+    
+    private final Supplier<String> backendUrl;
+    private final Supplier<String> apiKey;
+    private final Random random;
+    private final long baseDelayMs;
+    private final long maxDelayMs;
+    private final int readTimeoutMs;
+    private final Clock clock;
+    private final long watchTimeoutMs;
+    private final Thread reader;
+    private final ExecutorService updates;
+    
+    // Guarded by this; in watch order, so the first entry expires first
+    private final Map<String, Watch> watchers = new LinkedHashMap<>();
+    private final Map<String, Outcome> recent = new LinkedHashMap<String, Outcome>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Outcome> eldest) {
+            return size() > RECENT_STATUSES;
+        }
+    };
+    private boolean running = true;
+    private boolean connected = false;
+    private HttpURLConnection live;
+    private String streamId;  // Named by the stream's first event
+    private final Set<String> posted = new HashSet<>();  // Ids the open stream watches
+    private long connects = 0;
+    private long events = 0;
+    
+    public IncidentStatusChannel(Supplier<String> backendUrl) {
+        this(backendUrl, ApiKey.NONE);
+    }
+    
+    public IncidentStatusChannel(Supplier<String> backendUrl, Supplier<String> apiKey) {
+        this(backendUrl, apiKey, new Random(), DEFAULT_BASE_DELAY_MS, DEFAULT_MAX_DELAY_MS,
+            READ_TIMEOUT_MS);
+    }
+    
+    /**
+     * @param backendUrl base URL, read before every connect so settings changes apply
+     * @param apiKey gateway API key, read with the URL
+     * @param readTimeoutMs silence after which the stream is reopened
+     */
+    public IncidentStatusChannel(Supplier<String> backendUrl, Supplier<String> apiKey,
+                                 Random random, long baseDelayMs, long maxDelayMs,
+                                 int readTimeoutMs) {
+        this(backendUrl, apiKey, random, baseDelayMs, maxDelayMs, readTimeoutMs, Clock.SYSTEM,
+            DEFAULT_WATCH_TIMEOUT_MS);
+    }
+    
+    /**
+     * @param watchTimeoutMs how long a watch waits for a final status before it expires
+     */
+    public IncidentStatusChannel(Supplier<String> backendUrl, Supplier<String> apiKey,
+                                 Random random, long baseDelayMs, long maxDelayMs,
+                                 int readTimeoutMs, Clock clock, long watchTimeoutMs) {
+        this.backendUrl = backendUrl;
+        this.apiKey = apiKey;
+        this.random = random;
+        this.baseDelayMs = baseDelayMs;
+        this.maxDelayMs = maxDelayMs;
+        this.readTimeoutMs = readTimeoutMs;
+        this.clock = clock;
+        this.watchTimeoutMs = watchTimeoutMs;
+        this.updates = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "incident-watch");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.reader = new Thread(this::runLoop, "incident-status");
+        this.reader.setDaemon(true);
+        this.reader.start();
+    }
+    
+    /**
+     * Tell the watcher once the incident's alerts have gone out, or failed to
+     */
+    public void watch(String incidentId, Watcher watcher) {
+        Outcome outcome;
+        Map.Entry<String, Watch> evicted = null;
+        synchronized (this) {
+            outcome = recent.remove(incidentId);
+            if (outcome == null) {
+                if (watchers.size() == MAX_WATCHES && !watchers.containsKey(incidentId)) {
+                    evicted = removeWatch(watchers.keySet().iterator().next());
+                }
+                watchers.put(incidentId, new Watch(watcher, clock.millis() + watchTimeoutMs));
+                if (streamId != null && posted.add(incidentId)) {
+                    postUpdate(streamId, Collections.singletonList(incidentId),
+                        Collections.<String>emptyList());
+                }
+                notifyAll();
+            }
+        }
+        if (outcome != null) {
+            // Already finished before the watch arrived
+            watcher.onFinalStatus(incidentId, outcome.status, outcome.error);
+        } else if (evicted != null) {
+            evicted.getValue().watcher.onFinalStatus(evicted.getKey(), STATUS_EXPIRED, null);
+        }
+    }
+    
+    public synchronized void unwatch(String incidentId) {
+        removeWatch(incidentId);
+    }
+    
+    public synchronized int getWatchCount() {
+        return watchers.size();
+    }
+    
+    public synchronized boolean isConnected() {
+        return connected;
+    }
+    
+    /**
+     * Streams opened so far, counting reconnects
+     */
+    public synchronized long getConnectCount() {
+        return connects;
+    }
+    
+    /**
+     * Status events received, for any incident
+     */
+    public synchronized long getEventCount() {
+        return events;
+    }
+    
+    public void shutdown() {
+        synchronized (this) {
+            running = false;
+            notifyAll();
+        }
+        reader.interrupt();
+        updates.shutdownNow();
+    }
+    
+    public static boolean isFinal(String status) {
+        return STATUS_ALERTS_SENT.equals(status) || STATUS_ALERT_FAILED.equals(status)
+            || STATUS_CANCELLED.equals(status) || STATUS_RESOLVED.equals(status);
+    }
+    
+    private void runLoop() {
+        int attempt = 0;
+        while (true) {
+            expireWatches();
+            synchronized (this) {
+                while (running && watchers.isEmpty()) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (!running) {
+                    return;
+                }
+            }
+            
+            long connectsBefore = getConnectCount();
+            try {
+                stream();
+            } catch (IOException | RuntimeException e) {
+                // Reconnect below
+            } finally {
+                synchronized (this) {
+                    connected = false;
+                    live = null;
+                    streamId = null;
+                    posted.clear();
+                }
+            }
+            
+            if (isIdle()) {
+                attempt = 0;
+                continue;
+            }
+            if (getConnectCount() != connectsBefore) {
+                attempt = 0;  // The stream was up, so back off from the start
+            }
+            try {
+                Thread.sleep(backoff(++attempt));
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+    
+    /**
+     * Read one connection until it ends, fails, or nothing is watched any more
+     */
+    private void stream() throws IOException {
+        String baseUrl = backendUrl.get();
+        if (baseUrl == null || baseUrl.isEmpty()) {
+            throw new IOException("Backend URL not configured");
+        }
+        
+        URL url = new URL(baseUrl + "/api/emergency/events");
+        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+        conn.setRequestProperty("Accept", "text/event-stream");
+        ApiKey.apply(conn, apiKey);
+        conn.setConnectTimeout(CONNECT_TIMEOUT_MS);
+        conn.setReadTimeout(readTimeoutMs);
+        
+        // Never reused: whichever way the stream ends, the socket goes with it
+        try {
+            int responseCode = conn.getResponseCode();
+            if (responseCode != HttpURLConnection.HTTP_OK) {
+                throw new IOException("HTTP " + responseCode);
+            }
+            synchronized (this) {
+                connected = true;
+                connects++;
+                live = conn;
+            }
+            
+            try (InputStream in = conn.getInputStream()) {
+                BufferedReader lines = new BufferedReader(
+                    new InputStreamReader(in, StandardCharsets.UTF_8));
+                StringBuilder data = new StringBuilder();
+                String event = null;
+                String line;
+                while ((line = lines.readLine()) != null) {
+                    if (line.isEmpty()) {
+                        // Blank line ends an event
+                        if (data.length() > 0) {
+                            dispatch(event, data.toString());
+                            data.setLength(0);
+                        }
+                        event = null;
+                    } else if (line.startsWith("event:")) {
+                        event = line.substring(line.startsWith("event: ") ? 7 : 6);
+                    } else if (line.startsWith("data:")) {
+                        if (data.length() > 0) {
+                            data.append('\n');
+                        }
+                        data.append(line, line.startsWith("data: ") ? 6 : 5, line.length());
+                    }
+                    // id:, retry: and ": ping" comments need nothing more
+                    
+                    expireWatches();
+                    if (isIdle()) {
+                        break;
+                    }
+                }
+            }
+        } finally {
+            conn.disconnect();
+        }
+    }
+    
+    private synchronized boolean isIdle() {
+        return watchers.isEmpty() || !running;
+    }
+    
+    private void dispatch(String name, String data) {
+        String incidentId;
+        String status;
+        String error;
+        try {
+            JSONObject event = new JSONObject(data);
+            if (EVENT_STREAM.equals(name)) {
+                onStreamNamed(event.getString("streamId"));
+                return;
+            }
+            incidentId = event.optString("incidentId", null);
+            status = event.optString("status", null);
+            error = event.optString("error", null);
+        } catch (JSONException e) {
+            return;  // Not ours to understand; skip it
+        }
+        
+        Watch watch;
+        synchronized (this) {
+            events++;
+            if (incidentId == null || !isFinal(status)) {
+                return;
+            }
+            watch = watchers.remove(incidentId);
+            posted.remove(incidentId);  // The backend ends its watch at a final status
+            if (watch == null) {
+                recent.put(incidentId, new Outcome(status, error));
+                return;
+            }
+        }
+        watch.watcher.onFinalStatus(incidentId, status, error);
+    }
+    
+    /**
+     * The open stream has an id to post watches to: post everything watched so far
+     */
+    private synchronized void onStreamNamed(String id) {
+        streamId = id;
+        List<String> add = new ArrayList<>();
+        for (String incidentId : watchers.keySet()) {
+            if (posted.add(incidentId)) {
+                add.add(incidentId);
+            }
+        }
+        if (!add.isEmpty()) {
+            postUpdate(id, add, Collections.<String>emptyList());
+        }
+    }
+    
+    /**
+     * End a watch; the open stream is told to stop sending it. Caller holds the lock.
+     * @return the watch, or null if the incident was not watched
+     */
+    private Map.Entry<String, Watch> removeWatch(String incidentId) {
+        Watch watch = watchers.remove(incidentId);
+        if (watch == null) {
+            return null;
+        }
+        if (streamId != null && posted.remove(incidentId)) {
+            postUpdate(streamId, Collections.<String>emptyList(),
+                Collections.singletonList(incidentId));
+        }
+        return new AbstractMap.SimpleImmutableEntry<>(incidentId, watch);
+    }
+    
+    /**
+     * End every watch past its deadline and tell its watcher
+     */
+    private void expireWatches() {
+        List<Map.Entry<String, Watch>> expired = new ArrayList<>();
+        synchronized (this) {
+            long now = clock.millis();
+            Iterator<Map.Entry<String, Watch>> it = watchers.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<String, Watch> entry = it.next();
+                if (entry.getValue().deadline <= now) {
+                    expired.add(entry);
+                }
+            }
+            for (Map.Entry<String, Watch> entry : expired) {
+                removeWatch(entry.getKey());
+            }
+        }
+        for (Map.Entry<String, Watch> entry : expired) {
+            entry.getValue().watcher.onFinalStatus(entry.getKey(), STATUS_EXPIRED, null);
+        }
+    }
+    
+    /**
+     * Queue a watch update for the stream; caller holds the lock
+     */
+    private void postUpdate(String stream, Collection<String> add, Collection<String> remove) {
+        if (!running) {
+            return;
+        }
+        List<String> added = new ArrayList<>(add);
+        List<String> removed = new ArrayList<>(remove);
+        try {
+            updates.execute(() -> {
+                try {
+                    sendUpdate(stream, added, removed);
+                } catch (IOException | JSONException e) {
+                    dropStream(stream);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Shutting down
+        }
+    }
+    
+    private void sendUpdate(String stream, List<String> add, List<String> remove)
+            throws IOException, JSONException {
+        String baseUrl = backendUrl.get();
+        if (baseUrl == null || baseUrl.isEmpty()) {
+            throw new IOException("Backend URL not configured");
+        }
+        
+        JSONObject update = new JSONObject();
+        update.put("add", new JSONArray(add));
+        update.put("remove", new JSONArray(remove));
+        byte[] body = update.toString().getBytes(StandardCharsets.UTF_8);
+        
+        HttpURLConnection conn = (HttpURLConnection) new URL(
+            baseUrl + "/api/emergency/events/" + stream).openConnection();
+        try {
+            conn.setRequestMethod("POST");
+            conn.setRequestProperty("Content-Type", "application/json");
+            ApiKey.apply(conn, apiKey);
+            conn.setDoOutput(true);
+            conn.setConnectTimeout(CONNECT_TIMEOUT_MS);
+            conn.setReadTimeout(CONNECT_TIMEOUT_MS);
+            conn.setFixedLengthStreamingMode(body.length);
+            try (OutputStream os = conn.getOutputStream()) {
+                os.write(body);
+            }
+            
+            int responseCode = conn.getResponseCode();
+            if (responseCode != HttpURLConnection.HTTP_OK) {
+                throw new IOException("HTTP " + responseCode);
+            }
+            conn.getInputStream().close();
+        } finally {
+            conn.disconnect();
+        }
+    }
+    
+    /**
+     * An update did not reach the stream: reconnect, which posts the whole set again
+     */
+    private void dropStream(String stream) {
+        HttpURLConnection conn;
+        synchronized (this) {
+            if (!stream.equals(streamId)) {
+                return;  // Already replaced
+            }
+            conn = live;
+        }
+        if (conn != null) {
+            conn.disconnect();
+        }
+    }
+    
+    private long backoff(int attempt) {
+        long delay = baseDelayMs << Math.min(attempt - 1, 30);
+        delay = Math.min(delay, maxDelayMs);
+        long half = delay / 2;
+        return half + (long) (random.nextDouble() * half);
+    }
+}
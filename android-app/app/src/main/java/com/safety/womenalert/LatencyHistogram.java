@@ -0,0 +1,169 @@
+package com.safety.womenalert;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Women Safety System - Latency Histogram
+ * Lock-free log-linear histogram of microsecond latencies, in the style of HdrHistogram
+ *
+ * Values below 32 us get a bucket each. Above that, every power of two is
+ * split into 32 equal sub-buckets, so any recorded value is known to within
+ * about 3%. Values are clamped to one hour. Recording is a handful of atomic
+ * increments and never allocates, so it can run on the serial callback.
+ * Every record method names the unit of its argument; all are stored in
+ * microseconds.
+ */
+public class LatencyHistogram {
+    
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    
+    public static final long MAX_VALUE_US = 60L * 60 * 1000 * 1000;  // 1 hour
+    
+    // Enough buckets for MAX_VALUE_US: 32 linear plus 32 per doubling above them
+    static final int BUCKET_COUNT = index(MAX_VALUE_US) + 1;
+    
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+    
+    /**
+     * Record an interval measured with System.nanoTime()
+     */
+    public void recordNanos(long nanos) {
+        recordMicros(nanos / 1000);
+    }
+    
+    /**
+     * Record the time since startNanos, a System.nanoTime() reading
+     */
+    public void recordSince(long startNanos) {
+        recordNanos(System.nanoTime() - startNanos);
+    }
+    
+    /**
+     * Record an interval from a millisecond clock, such as the supervisor's Clock
+     */
+    public void recordMillis(long millis) {
+        recordMicros(millis * 1000);
+    }
+    
+    public void recordMicros(long micros) {
+        long value = Math.max(0, Math.min(micros, MAX_VALUE_US));
+        counts.incrementAndGet(index(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+        
+        long current;
+        while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+            // Lost a race with another recorder; re-read
+        }
+    }
+    
+    public long getCount() {
+        return count.get();
+    }
+    
+    /**
+     * Copy of the current state; concurrent recordings may be partly included
+     */
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            copy[i] = counts.get(i);
+        }
+        return new Snapshot(copy, count.get(), sum.get(), max.get());
+    }
+    
+    /**
+     * Immutable histogram state with percentile queries
+     */
+    public static final class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long max;
+        
+        Snapshot(long[] counts, long count, long sum, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+        
+        public long getCount() {
+            return count;
+        }
+        
+        public long getSumMicros() {
+            return sum;
+        }
+        
+        public long getMaxMicros() {
+            return max;
+        }
+        
+        public double getMeanMicros() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+        
+        /**
+         * @param percentile 0 to 100
+         * @return upper bound of the bucket holding that percentile, capped at the max seen
+         */
+        public long getValueAtPercentile(double percentile) {
+            long total = 0;
+            for (long c : counts) {
+                total += c;
+            }
+            if (total == 0) {
+                return 0;
+            }
+            
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * total));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(upperBound(i), max);
+                }
+            }
+            return max;
+        }
+        
+        /**
+         * Raw bucket counts, indexed as by {@link LatencyHistogram#lowerBound(int)}
+         */
+        long[] getCounts() {
+            return counts;
+        }
+    }
+    
+    static int index(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        int sub = (int) (value >>> shift) - SUB_BUCKETS;
+        return SUB_BUCKETS + shift * SUB_BUCKETS + sub;
+    }
+    
+    static long lowerBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = (index - SUB_BUCKETS) / SUB_BUCKETS;
+        int sub = (index - SUB_BUCKETS) % SUB_BUCKETS;
+        return (long) (SUB_BUCKETS + sub) << shift;
+    }
+    
+    static long upperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = (index - SUB_BUCKETS) / SUB_BUCKETS;
+        return lowerBound(index) + (1L << shift) - 1;
+    }
+}
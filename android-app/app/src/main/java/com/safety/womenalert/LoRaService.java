@@ -4,58 +4,95 @@ import android.app.Notification;
 import android.app.NotificationChannel;
 import android.app.NotificationManager;
 import android.app.Service;
-import android.content.Context;
 import android.content.Intent;
-import android.hardware.usb.UsbDevice;
-import android.hardware.usb.UsbDeviceConnection;
-import android.hardware.usb.UsbManager;
 import android.os.Build;
+import android.os.Handler;
 import android.os.IBinder;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
 import android.util.Log;
 
 import androidx.core.app.NotificationCompat;
 
-import com.hoho.android.usbserial.driver.UsbSerialDriver;
-import com.hoho.android.usbserial.driver.UsbSerialPort;
-import com.hoho.android.usbserial.driver.UsbSerialProber;
-import com.hoho.android.usbserial.util.SerialInputOutputManager;
-
+import java.io.File;
 import java.io.IOException;
-import java.nio.ByteBuffer;
-import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
 /**
  * Women Safety System - LoRa Background Service
- * Listens for LoRa packets from ESP32 via USB serial adapter
+ * Listens for LoRa packets from ESP32 via USB serial adapters
+ *
+ * onCreate only builds what the frame path needs and returns; the serial
+ * ingest and the emergency handler come up in parallel on startup threads.
+ * Frames that arrive before the handler is warm wait for it on the ingest
+ * thread, so none are lost after a reboot or a START_STICKY restart. The
+ * StartupTrace logs when frames can first be handled, measured from
+ * process start, and feeds startup.frame_ready.
+ *
+ * A handler that cannot be built is retried a few times. If it still fails
+ * the service crashes on purpose and START_STICKY brings it back, rather
+ * than running on while every alert fails. Frames heard meanwhile were
+ * never acknowledged, so wearers keep resending them.
+ *
+ * Once the handler has persisted an emergency or cancel it is acknowledged
+ * over the serial port that heard it, so the wearer stops retransmitting.
  */
-public class LoRaService extends Service implements SerialInputOutputManager.Listener {
+public class LoRaService extends Service implements FrameDecoder.FrameListener {
     
     private static final String TAG = "LoRaService";
     private static final String CHANNEL_ID = "LoRaServiceChannel";
     private static final int NOTIFICATION_ID = 1;
+    private static final String FLIGHT_RECORDER_FILE = "flight-recorder.bin";
+    private static final int HANDLER_START_ATTEMPTS = 3;
+    private static final long HANDLER_RETRY_DELAY_MS = 1000;
     
-    private static final int PACKET_SIZE = 12;
-    private static final byte MAGIC_BYTE_1 = (byte) 0xEF;
-    private static final byte MAGIC_BYTE_2 = (byte) 0xFD;
-    private static final byte PACKET_TYPE_EMERGENCY = 0x01;
-    private static final byte PACKET_TYPE_CANCEL = 0x02;
-    
-    private UsbSerialPort serialPort;
-    private SerialInputOutputManager ioManager;
-    private EmergencyHandler emergencyHandler;
+    private StartupTrace startupTrace;
+    private CompletableFuture<UsbSerialIngest> serialIngest;
+    private CompletableFuture<EmergencyHandler> emergencyHandler;
+    private TelemetryAggregator telemetry;
+    private TelemetryUploader telemetryUploader;
     
-    private byte[] packetBuffer = new byte[PACKET_SIZE];
-    private int bufferIndex = 0;
+    // Opened by the ingest startup task
+    private volatile FlightRecorder flightRecorder;
     
     @Override
     public void onCreate() {
         super.onCreate();
         Log.d(TAG, "LoRa Service created");
         
-        emergencyHandler = new EmergencyHandler(this);
+        startupTrace = new StartupTrace(processStartNanos(), this::onFrameReady,
+            StartupTrace.FIRST_PORT_OPEN, StartupTrace.HANDLER_READY);
+        startupTrace.mark(StartupTrace.SERVICE_CREATED);
         createNotificationChannel();
-        connectToLoRaDevice();
+        
+        // Heartbeats and battery levels, uploaded as periodic deltas; settings are read on upload
+        telemetry = new TelemetryAggregator();
+        telemetryUploader = new TelemetryUploader(telemetry,
+            () -> SettingsStore.get(this).current().getBackendUrl(),
+            () -> SettingsStore.get(this).current().getApiKey());
+        telemetryUploader.start();
+        
+        // Disk, USB probing and location warm-up run off the main thread, side by side
+        ExecutorService startup = Executors.newFixedThreadPool(2, runnable -> {
+            Thread thread = new Thread(runnable, "service-startup");
+            thread.setDaemon(true);
+            return thread;
+        });
+        serialIngest = CompletableFuture.supplyAsync(this::startIngest, startup);
+        emergencyHandler = CompletableFuture.supplyAsync(this::startEmergencyHandler, startup);
+        emergencyHandler.exceptionally(e -> {
+            Log.e(TAG, "Emergency handler failed to start - restarting service", e);
+            new Handler(Looper.getMainLooper()).post(() -> {
+                throw new IllegalStateException("Emergency handler failed to start", e);
+            });
+            return null;
+        });
+        startup.shutdown();  // Threads exit once both tasks are done
+        
+        startupTrace.mark(StartupTrace.SERVICE_CREATE_RETURNED);
     }
     
     @Override
@@ -71,22 +108,104 @@ public class LoRaService extends Service implements SerialInputOutputManager.Lis
         super.onDestroy();
         Log.d(TAG, "LoRa Service destroyed");
         
-        if (ioManager != null) {
-            ioManager.stop();
+        // Startup may still be running; each part is torn down once it is up
+        serialIngest.thenAccept(ingest -> {
+            ingest.stop();
+            closeFlightRecorder();
+        });
+        telemetryUploader.stop();
+        emergencyHandler.thenAccept(EmergencyHandler::shutdown);
+    }
+    
+    @Override
+    public IBinder onBind(Intent intent) {
+        return null;
+    }
+    
+    /**
+     * Every attached adapter, plus any plugged in while the service runs
+     */
+    private UsbSerialIngest startIngest() {
+        int baudRate = getSharedPreferences(SettingsStore.PREFS_NAME, MODE_PRIVATE)
+            .getInt(SettingsStore.KEY_BAUD_RATE, UsbSerialIngest.DEFAULT_BAUD_RATE);
+        flightRecorder = openFlightRecorder();
+        UsbSerialIngest ingest = new UsbSerialIngest(this, this, baudRate, flightRecorder,
+            startupTrace);
+        ingest.start();
+        return ingest;
+    }
+    
+    /**
+     * Build the handler, retrying with a growing pause; throws the last failure
+     */
+    private EmergencyHandler startEmergencyHandler() {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                EmergencyHandler handler = new EmergencyHandler(this, this::acknowledge);
+                startupTrace.mark(StartupTrace.HANDLER_READY);
+                return handler;
+            } catch (RuntimeException e) {
+                if (attempt == HANDLER_START_ATTEMPTS) {
+                    throw e;
+                }
+                Log.w(TAG, "Emergency handler start failed, attempt " + attempt, e);
+                SystemClock.sleep(HANDLER_RETRY_DELAY_MS * attempt);
+            }
         }
-        
-        if (serialPort != null) {
+    }
+    
+    /**
+     * An adapter is open and the handler is warm: the next alert will be handled
+     */
+    private void onFrameReady() {
+        long readyNanos = startupTrace.getNanos(StartupTrace.SERVICE_CREATED,
+            StartupTrace.FRAME_READY);
+        Metrics.STARTUP_TO_FRAME_READY.recordNanos(readyNanos);
+        Log.i(TAG, "Ready for frames " + readyNanos / 1000000 + " ms after service creation: "
+            + startupTrace.summary());
+    }
+    
+    /**
+     * System.nanoTime() at process start, so milestones include the cold start
+     */
+    private static long processStartNanos() {
+        long ageMs = SystemClock.elapsedRealtime() - Process.getStartElapsedRealtime();
+        return System.nanoTime() - ageMs * 1000000;
+    }
+    
+    private FlightRecorder openFlightRecorder() {
+        try {
+            return new FlightRecorder(new File(getFilesDir(), FLIGHT_RECORDER_FILE));
+        } catch (IOException e) {
+            Log.e(TAG, "Flight recorder unavailable - raw frames will not be kept", e);
+            return null;
+        }
+    }
+    
+    private void closeFlightRecorder() {
+        if (flightRecorder != null) {
             try {
-                serialPort.close();
+                flightRecorder.close();
             } catch (IOException e) {
-                Log.e(TAG, "Error closing serial port", e);
+                Log.w(TAG, "Error closing flight recorder", e);
             }
         }
     }
     
-    @Override
-    public IBinder onBind(Intent intent) {
-        return null;
+    /**
+     * Queue a downlink ACK; frames are only handled once the ingest is up, so it rarely waits
+     */
+    private void acknowledge(int deviceId, int sequenceNumber, int timestamp) {
+        serialIngest.thenAccept(ingest -> ingest.acknowledge(deviceId, sequenceNumber,
+            timestamp));
+    }
+    
+    /**
+     * The warm handler; blocks the ingest thread while startup is still creating it.
+     * Throws if it could not be created; the service is crashing by then.
+     */
+    private EmergencyHandler emergencyHandler() {
+        return emergencyHandler.join();
     }
     
     private void createNotificationChannel() {
@@ -112,135 +231,54 @@ public class LoRaService extends Service implements SerialInputOutputManager.Lis
             .build();
     }
     
-    private void connectToLoRaDevice() {
-        UsbManager manager = (UsbManager) getSystemService(Context.USB_SERVICE);
-        List<UsbSerialDriver> availableDrivers = UsbSerialProber.getDefaultProber()
-            .findAllDrivers(manager);
-        
-        if (availableDrivers.isEmpty()) {
-            Log.w(TAG, "No USB serial devices found");
-            return;
-        }
-        
-        // Use first available driver
-        UsbSerialDriver driver = availableDrivers.get(0);
-        UsbDeviceConnection connection = manager.openDevice(driver.getDevice());
-        
-        if (connection == null) {
-            Log.e(TAG, "Failed to open USB device connection");
-            return;
-        }
-        
-        serialPort = driver.getPorts().get(0);
-        
-        try {
-            serialPort.open(connection);
-            serialPort.setParameters(9600, 8, UsbSerialPort.STOPBITS_1, UsbSerialPort.PARITY_NONE);
-            
-            // Start IO manager
-            ioManager = new SerialInputOutputManager(serialPort, this);
-            Executors.newSingleThreadExecutor().submit(ioManager);
-            
-            Log.i(TAG, "Connected to LoRa device via USB serial");
-            
-        } catch (IOException e) {
-            Log.e(TAG, "Error opening serial port", e);
-            try {
-                serialPort.close();
-            } catch (IOException ignored) {}
-        }
-    }
-    
     @Override
-    public void onNewData(byte[] data) {
-        // Process incoming LoRa data
-        for (byte b : data) {
-            if (bufferIndex == 0) {
-                // Look for magic byte 1
-                if (b == MAGIC_BYTE_1) {
-                    packetBuffer[bufferIndex++] = b;
-                }
-            } else if (bufferIndex == 1) {
-                // Verify magic byte 2
-                if (b == MAGIC_BYTE_2) {
-                    packetBuffer[bufferIndex++] = b;
-                } else {
-                    bufferIndex = 0;  // Reset if invalid
-                }
-            } else {
-                // Collect rest of packet
-                packetBuffer[bufferIndex++] = b;
-                
-                if (bufferIndex == PACKET_SIZE) {
-                    parsePacket(packetBuffer);
-                    bufferIndex = 0;  // Reset for next packet
-                }
-            }
-        }
-    }
-    
-    @Override
-    public void onRunError(Exception e) {
-        Log.e(TAG, "Serial communication error", e);
-    }
-    
-    private void parsePacket(byte[] packet) {
+    public void onFrame(int deviceId, int packetType, int batteryLevel,
+                        int timestamp, int sequenceNumber) {
         try {
-            // Verify checksum
-            if (!verifyChecksum(packet)) {
-                Log.w(TAG, "Invalid packet checksum");
-                return;
+            if (startupTrace.mark(StartupTrace.FIRST_FRAME)) {
+                Log.i(TAG, "First frame: " + startupTrace.summary());
             }
             
-            // Extract packet fields
-            int deviceId = ((packet[2] & 0xFF) << 8) | (packet[3] & 0xFF);
-            byte packetType = packet[4];
-            int batteryLevel = packet[5] & 0xFF;
-            int timestamp = ((packet[6] & 0xFF) << 8) | (packet[7] & 0xFF);
-            int sequenceNumber = ((packet[8] & 0xFF) << 8) | (packet[9] & 0xFF);
+            // Per-frame detail only when enabled: adb shell setprop log.tag.LoRaService DEBUG
+            if (Log.isLoggable(TAG, Log.DEBUG)) {
+                Log.d(TAG, String.format("Received packet - Device: 0x%04X, Type: 0x%02X, " +
+                    "Battery: %d%%, Seq: %d", deviceId, packetType, batteryLevel, sequenceNumber));
+            }
             
-            Log.i(TAG, String.format("Received packet - Device: 0x%04X, Type: 0x%02X, " +
-                "Battery: %d%%, Seq: %d", deviceId, packetType, batteryLevel, sequenceNumber));
+            // Every frame carries battery and sequence; duplicates were dropped by the ingest
+            telemetry.record(deviceId, batteryLevel, sequenceNumber);
             
             // Handle emergency packet
-            if (packetType == PACKET_TYPE_EMERGENCY) {
+            if (packetType == FrameDecoder.PACKET_TYPE_EMERGENCY) {
                 Log.w(TAG, "EMERGENCY ALERT RECEIVED!");
-                handleEmergency(deviceId, batteryLevel, sequenceNumber);
-            } else if (packetType == PACKET_TYPE_CANCEL) {
+                handleEmergency(deviceId, batteryLevel, sequenceNumber, timestamp);
+            } else if (packetType == FrameDecoder.PACKET_TYPE_CANCEL) {
                 Log.i(TAG, "Emergency cancelled");
+                handleCancel(deviceId, sequenceNumber, timestamp);
             }
-            
+        
         } catch (Exception e) {
             Log.e(TAG, "Error parsing packet", e);
         }
     }
     
-    private boolean verifyChecksum(byte[] packet) {
-        int receivedChecksum = ((packet[10] & 0xFF) << 8) | (packet[11] & 0xFF);
-        int calculatedChecksum = calculateCRC16(packet, PACKET_SIZE - 2);
-        return receivedChecksum == calculatedChecksum;
+    @Override
+    public void onChecksumError(int deviceId, int sequenceNumber) {
+        Log.w(TAG, "Invalid packet checksum");
     }
     
-    private int calculateCRC16(byte[] data, int length) {
-        int crc = 0xFFFF;
-        
-        for (int i = 0; i < length; i++) {
-            crc ^= (data[i] & 0xFF) << 8;
-            for (int j = 0; j < 8; j++) {
-                if ((crc & 0x8000) != 0) {
-                    crc = (crc << 1) ^ 0x1021;
-                } else {
-                    crc = crc << 1;
-                }
-            }
-        }
+    private void handleCancel(int deviceId, int sequenceNumber, int timestamp) {
+        emergencyHandler().handleCancel(deviceId, sequenceNumber, timestamp);
         
-        return crc & 0xFFFF;
+        Notification notification = createNotification("Emergency cancelled by wearer");
+        NotificationManager manager = getSystemService(NotificationManager.class);
+        manager.notify(NOTIFICATION_ID, notification);
     }
     
-    private void handleEmergency(int deviceId, int batteryLevel, int sequenceNumber) {
+    private void handleEmergency(int deviceId, int batteryLevel, int sequenceNumber,
+                                 int timestamp) {
         // Trigger emergency handler
-        emergencyHandler.handleEmergency(deviceId, batteryLevel, sequenceNumber);
+        emergencyHandler().handleEmergency(deviceId, batteryLevel, sequenceNumber, timestamp);
         
         // Update notification
         Notification notification = createNotification("EMERGENCY ALERT TRIGGERED!");
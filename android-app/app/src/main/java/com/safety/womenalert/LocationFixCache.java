@@ -0,0 +1,144 @@
+package com.safety.womenalert;
+
+/**
+ * Women Safety System - Location Fix Cache
+ * Bounded cache of recent location fixes, ranked by age and accuracy
+ *
+ * A fix's effective error is its reported accuracy plus how far the wearer
+ * could have walked since it was taken. The best fix is the one with the
+ * smallest effective error, so a fresh 30 m network fix beats a 5 m GPS fix
+ * from ten minutes ago.
+ *
+ * A fix older than maxAgeMs is stale: it still ranks, since for an SOS a
+ * last-known location is better than none, but it never ends a wait for a
+ * good fix early, and callers can tell from its age how far to trust it.
+ *
+ * Times are caller-supplied milliseconds on one monotonic clock
+ * (SystemClock.elapsedRealtime on Android). Thread-safe.
+ */
+public class LocationFixCache {
+    
+    public static final int DEFAULT_CAPACITY = 16;
+    public static final long DEFAULT_MAX_AGE_MS = 10 * 60 * 1000;
+    
+    // Assumed walking speed when aging a fix
+    private static final double DRIFT_METERS_PER_SECOND = 1.5;
+    
+    /**
+     * One ranked fix; effectiveError is in meters and ageMillis in ms at the time of ranking
+     */
+    public static final class Fix {
+        public final double latitude;
+        public final double longitude;
+        public final float accuracy;
+        public final long timeMillis;
+        public final long ageMillis;
+        public final double effectiveError;
+        public final boolean stale;
+        
+        Fix(double latitude, double longitude, float accuracy, long timeMillis,
+            long ageMillis, double effectiveError, boolean stale) {
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.accuracy = accuracy;
+            this.timeMillis = timeMillis;
+            this.ageMillis = ageMillis;
+            this.effectiveError = effectiveError;
+            this.stale = stale;
+        }
+    }
+    
+    private final double[] latitudes;
+    private final double[] longitudes;
+    private final float[] accuracies;
+    private final long[] times;
+    private final long maxAgeMs;
+    
+    private int next = 0;
+    private int count = 0;
+    
+    public LocationFixCache() {
+        this(DEFAULT_CAPACITY, DEFAULT_MAX_AGE_MS);
+    }
+    
+    public LocationFixCache(int capacity, long maxAgeMs) {
+        this.latitudes = new double[capacity];
+        this.longitudes = new double[capacity];
+        this.accuracies = new float[capacity];
+        this.times = new long[capacity];
+        this.maxAgeMs = maxAgeMs;
+    }
+    
+    /**
+     * Record a fix, evicting the oldest entry when full
+     * @param accuracy horizontal accuracy radius in meters
+     */
+    public synchronized void add(double latitude, double longitude, float accuracy,
+                                 long timeMillis) {
+        latitudes[next] = latitude;
+        longitudes[next] = longitude;
+        accuracies[next] = accuracy;
+        times[next] = timeMillis;
+        next = (next + 1) % times.length;
+        count = Math.min(count + 1, times.length);
+        notifyAll();
+    }
+    
+    /**
+     * @return the fix with the lowest effective error at nowMillis, stale or not,
+     *         or null if the cache is empty
+     */
+    public synchronized Fix best(long nowMillis) {
+        int bestIndex = -1;
+        double bestError = Double.MAX_VALUE;
+        
+        for (int i = 0; i < count; i++) {
+            double error = effectiveError(accuracies[i], nowMillis - times[i]);
+            if (error < bestError) {
+                bestError = error;
+                bestIndex = i;
+            }
+        }
+        
+        if (bestIndex < 0) {
+            return null;
+        }
+        long age = Math.max(0, nowMillis - times[bestIndex]);
+        return new Fix(latitudes[bestIndex], longitudes[bestIndex], accuracies[bestIndex],
+            times[bestIndex], age, bestError, age > maxAgeMs);
+    }
+    
+    /**
+     * Wait for a fresh fix at least as good as goodEnoughMeters, up to budgetMs
+     * @param clock same time base as the fixes
+     * @return the best fix when good enough or the budget runs out, possibly stale,
+     *         or null if the cache is empty
+     */
+    public synchronized Fix awaitBest(Clock clock, double goodEnoughMeters,
+                                      long budgetMs) throws InterruptedException {
+        long deadline = clock.millis() + budgetMs;
+        
+        while (true) {
+            long now = clock.millis();
+            Fix fix = best(now);
+            if ((fix != null && !fix.stale && fix.effectiveError <= goodEnoughMeters)
+                    || now >= deadline) {
+                return fix;
+            }
+            wait(deadline - now);
+        }
+    }
+    
+    public synchronized int size() {
+        return count;
+    }
+    
+    public synchronized void clear() {
+        count = 0;
+        next = 0;
+    }
+    
+    static double effectiveError(float accuracy, long ageMillis) {
+        return accuracy + Math.max(0, ageMillis) / 1000.0 * DRIFT_METERS_PER_SECOND;
+    }
+}
@@ -0,0 +1,124 @@
+package com.safety.womenalert;
+
+import android.Manifest;
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.location.Location;
+import android.location.LocationListener;
+import android.location.LocationManager;
+import android.os.Bundle;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.core.app.ActivityCompat;
+
+/**
+ * Women Safety System - Location Tracker
+ * Keeps a warm cache of recent fixes while the LoRa service is running
+ */
+public class LocationTracker implements LocationListener {
+    
+    private static final String TAG = "LocationTracker";
+    private static final long MIN_UPDATE_INTERVAL_MS = 5000;
+    private static final float MIN_UPDATE_DISTANCE_M = 0;
+    
+    // Fixes without an accuracy estimate are ranked as if this coarse
+    private static final float UNKNOWN_ACCURACY_M = 500;
+    
+    private static final String[] PROVIDERS = {
+        LocationManager.GPS_PROVIDER,
+        LocationManager.NETWORK_PROVIDER,
+        LocationManager.PASSIVE_PROVIDER
+    };
+    
+    private static final Clock ELAPSED_REALTIME = SystemClock::elapsedRealtime;
+    
+    private final Context context;
+    private final LocationFixCache cache = new LocationFixCache();
+    
+    private boolean started = false;
+    
+    public LocationTracker(Context context) {
+        this.context = context;
+    }
+    
+    /**
+     * Seed the cache from each provider's last known fix and subscribe to updates
+     */
+    public synchronized void start() {
+        if (started) {
+            return;
+        }
+        
+        if (ActivityCompat.checkSelfPermission(context, Manifest.permission.ACCESS_FINE_LOCATION)
+            != PackageManager.PERMISSION_GRANTED) {
+            Log.e(TAG, "Location permission not granted");
+            return;
+        }
+        
+        LocationManager locationManager = (LocationManager) context.getSystemService(
+            Context.LOCATION_SERVICE);
+        if (locationManager == null) {
+            return;
+        }
+        
+        for (String provider : PROVIDERS) {
+            if (!locationManager.getAllProviders().contains(provider)) {
+                continue;
+            }
+            
+            onLocationChanged(locationManager.getLastKnownLocation(provider));
+            locationManager.requestLocationUpdates(provider, MIN_UPDATE_INTERVAL_MS,
+                MIN_UPDATE_DISTANCE_M, this, Looper.getMainLooper());
+        }
+        
+        started = true;
+    }
+    
+    public synchronized void stop() {
+        if (!started) {
+            return;
+        }
+        
+        LocationManager locationManager = (LocationManager) context.getSystemService(
+            Context.LOCATION_SERVICE);
+        if (locationManager != null) {
+            locationManager.removeUpdates(this);
+        }
+        started = false;
+    }
+    
+    /**
+     * Best cached fix, waiting up to budgetMs for one within goodEnoughMeters
+     * @return null if no usable fix arrived within the budget
+     */
+    public LocationFixCache.Fix getBestFix(double goodEnoughMeters, long budgetMs)
+            throws InterruptedException {
+        return cache.awaitBest(ELAPSED_REALTIME, goodEnoughMeters, budgetMs);
+    }
+    
+    public LocationFixCache.Fix getBestFix() {
+        return cache.best(SystemClock.elapsedRealtime());
+    }
+    
+    @Override
+    public void onLocationChanged(Location location) {
+        if (location == null) {
+            return;
+        }
+        
+        cache.add(location.getLatitude(), location.getLongitude(),
+            location.hasAccuracy() ? location.getAccuracy() : UNKNOWN_ACCURACY_M,
+            location.getElapsedRealtimeNanos() / 1000000);
+    }
+    
+    @Override
+    public void onStatusChanged(String provider, int status, Bundle extras) {}
+    
+    @Override
+    public void onProviderEnabled(String provider) {}
+    
+    @Override
+    public void onProviderDisabled(String provider) {}
+}
@@ -23,6 +23,8 @@ import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
 
+import java.util.Collection;
+
 /**
  * Women Safety System - Main Activity
  * Minimal UI for app configuration and service control
@@ -44,12 +46,15 @@ public class MainActivity extends AppCompatActivity {
     private Switch serviceSwitch;
     private TextView statusText;
     private EditText contact1Input, contact2Input, contact3Input;
-    private EditText backendUrlInput;
+    private EditText backendUrlInput, apiKeyInput;
     private Button saveButton;
     
     private SharedPreferences prefs;
     private UsbManager usbManager;
     
+    // Written by the USB check thread, shown by updateStatus()
+    private volatile boolean usbConnected = false;
+    
     private final BroadcastReceiver usbReceiver = new BroadcastReceiver() {
         @Override
         public void onReceive(Context context, Intent intent) {
@@ -60,6 +65,7 @@ public class MainActivity extends AppCompatActivity {
                     if (intent.getBooleanExtra(UsbManager.EXTRA_PERMISSION_GRANTED, false)) {
                         if (device != null) {
                             Toast.makeText(context, "USB LoRa device connected", Toast.LENGTH_SHORT).show();
+                            usbConnected = true;
                             updateStatus();
                         }
                     } else {
@@ -75,7 +81,7 @@ public class MainActivity extends AppCompatActivity {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
         
-        prefs = getSharedPreferences("WomenSafetyPrefs", MODE_PRIVATE);
+        prefs = getSharedPreferences(SettingsStore.PREFS_NAME, MODE_PRIVATE);
         usbManager = (UsbManager) getSystemService(Context.USB_SERVICE);
         
         initializeViews();
@@ -88,8 +94,10 @@ public class MainActivity extends AppCompatActivity {
         IntentFilter filter = new IntentFilter(ACTION_USB_PERMISSION);
         registerReceiver(usbReceiver, filter);
         
-        // Check for USB device on startup
-        checkUsbDevice();
+        // Enumerating USB devices is a system call per device; keep it off the first frame
+        Thread usbCheck = new Thread(this::checkUsbDevice, "usb-check");
+        usbCheck.setDaemon(true);
+        usbCheck.start();
     }
     
     @Override
@@ -105,6 +113,7 @@ public class MainActivity extends AppCompatActivity {
         contact2Input = findViewById(R.id.contact2Input);
         contact3Input = findViewById(R.id.contact3Input);
         backendUrlInput = findViewById(R.id.backendUrlInput);
+        apiKeyInput = findViewById(R.id.apiKeyInput);
         saveButton = findViewById(R.id.saveButton);
     }
     
@@ -121,21 +130,28 @@ public class MainActivity extends AppCompatActivity {
     }
     
     private void loadSettings() {
-        contact1Input.setText(prefs.getString("contact1", ""));
-        contact2Input.setText(prefs.getString("contact2", ""));
-        contact3Input.setText(prefs.getString("contact3", ""));
-        backendUrlInput.setText(prefs.getString("backendUrl", "https://your-backend.com"));
+        contact1Input.setText(prefs.getString(SettingsStore.KEY_CONTACT_1, ""));
+        contact2Input.setText(prefs.getString(SettingsStore.KEY_CONTACT_2, ""));
+        contact3Input.setText(prefs.getString(SettingsStore.KEY_CONTACT_3, ""));
+        backendUrlInput.setText(prefs.getString(SettingsStore.KEY_BACKEND_URL,
+            "https://your-backend.com"));
+        apiKeyInput.setText(prefs.getString(SettingsStore.KEY_API_KEY, ""));
         
         boolean serviceRunning = prefs.getBoolean("serviceRunning", false);
         serviceSwitch.setChecked(serviceRunning);
     }
     
     private void saveSettings() {
+        // Make sure the store is listening before the write it should pick up
+        SettingsStore.get(this);
+        
+        // apply() notifies SettingsStore, which swaps in the new alert snapshot
         SharedPreferences.Editor editor = prefs.edit();
-        editor.putString("contact1", contact1Input.getText().toString());
-        editor.putString("contact2", contact2Input.getText().toString());
-        editor.putString("contact3", contact3Input.getText().toString());
-        editor.putString("backendUrl", backendUrlInput.getText().toString());
+        editor.putString(SettingsStore.KEY_CONTACT_1, contact1Input.getText().toString());
+        editor.putString(SettingsStore.KEY_CONTACT_2, contact2Input.getText().toString());
+        editor.putString(SettingsStore.KEY_CONTACT_3, contact3Input.getText().toString());
+        editor.putString(SettingsStore.KEY_BACKEND_URL, backendUrlInput.getText().toString());
+        editor.putString(SettingsStore.KEY_API_KEY, apiKeyInput.getText().toString());
         editor.apply();
         
         Toast.makeText(this, "Settings saved", Toast.LENGTH_SHORT).show();
@@ -177,8 +193,15 @@ public class MainActivity extends AppCompatActivity {
         }
     }
     
+    /**
+     * Request permission for every attached USB device; runs on the usb-check thread
+     */
     private void checkUsbDevice() {
-        for (UsbDevice device : usbManager.getDeviceList().values()) {
+        Collection<UsbDevice> devices = usbManager.getDeviceList().values();
+        usbConnected = !devices.isEmpty();
+        runOnUiThread(this::updateStatus);
+        
+        for (UsbDevice device : devices) {
             // Request permission for USB device
             PendingIntent permissionIntent = PendingIntent.getBroadcast(this, 0, 
                 new Intent(ACTION_USB_PERMISSION), PendingIntent.FLAG_IMMUTABLE);
@@ -224,7 +247,6 @@ public class MainActivity extends AppCompatActivity {
     
     private void updateStatus() {
         boolean serviceRunning = prefs.getBoolean("serviceRunning", false);
-        boolean usbConnected = !usbManager.getDeviceList().isEmpty();
         
         String status = "Service: " + (serviceRunning ? "Running" : "Stopped") + "\n" +
                        "USB LoRa: " + (usbConnected ? "Connected" : "Not connected");
@@ -0,0 +1,63 @@
+package com.safety.womenalert;
+
+/**
+ * Women Safety System - Metrics
+ * Process-wide registry and the hot-path metrics recorded by the service
+ *
+ * Pull Metrics.REGISTRY.snapshot() periodically; toBytes() gives the compact
+ * export and Snapshot.rate() turns SERIAL_BYTES into bytes per second.
+ */
+public final class Metrics {
+    
+    public static final MetricsRegistry REGISTRY = new MetricsRegistry();
+    
+    public static final MetricsRegistry.Counter SERIAL_BYTES =
+        REGISTRY.counter("serial.bytes");
+    public static final MetricsRegistry.Counter SERIAL_OVERFLOW_BYTES =
+        REGISTRY.counter("serial.overflow_bytes");
+    public static final MetricsRegistry.Counter SERIAL_RECONNECTS =
+        REGISTRY.counter("serial.reconnects");
+    public static final MetricsRegistry.Counter SERIAL_DOWNTIME_MS =
+        REGISTRY.counter("serial.downtime_ms");
+    public static final MetricsRegistry.Counter FRAMES_RECEIVED =
+        REGISTRY.counter("lora.frames");
+    public static final MetricsRegistry.Counter CRC_FAILURES =
+        REGISTRY.counter("lora.crc_failures");
+    public static final MetricsRegistry.Counter FRAMES_SUPPRESSED =
+        REGISTRY.counter("lora.frames_suppressed");
+    public static final MetricsRegistry.Counter FRAMES_SHED =
+        REGISTRY.counter("lora.frames_shed");
+    public static final MetricsRegistry.Counter TELEMETRY_UPLOADS =
+        REGISTRY.counter("telemetry.uploads");
+    public static final MetricsRegistry.Counter TELEMETRY_UPLOAD_FAILURES =
+        REGISTRY.counter("telemetry.upload_failures");
+    public static final MetricsRegistry.Counter FALLBACKS_STARTED =
+        REGISTRY.counter("transport.fallbacks_started");
+    public static final MetricsRegistry.Counter FALLBACK_WINS =
+        REGISTRY.counter("transport.fallback_wins");
+    public static final MetricsRegistry.Counter ACKS_SENT =
+        REGISTRY.counter("lora.acks_sent");
+    public static final MetricsRegistry.Counter ACK_FRAMES =
+        REGISTRY.counter("lora.ack_frames");
+    public static final MetricsRegistry.Counter ACK_WRITE_FAILURES =
+        REGISTRY.counter("lora.ack_write_failures");
+    // Exceptions caught on the uplink thread, mostly from listeners; it carries on
+    public static final MetricsRegistry.Counter UPLINK_ERRORS =
+        REGISTRY.counter("backend.uplink_errors");
+    
+    // Frame decoded until its emergency task starts on the dispatcher
+    public static final LatencyHistogram FRAME_TO_HANDLER =
+        REGISTRY.histogram("emergency.frame_to_handler");
+    public static final LatencyHistogram LOCATION_LOOKUP =
+        REGISTRY.histogram("emergency.location_lookup");
+    public static final LatencyHistogram BACKEND_ROUND_TRIP =
+        REGISTRY.histogram("backend.round_trip");
+    // Serial failure detected until the port is open again
+    public static final LatencyHistogram SERIAL_TIME_TO_RECOVER =
+        REGISTRY.histogram("serial.time_to_recover");
+    // LoRaService created until an adapter is open and the emergency handler is warm
+    public static final LatencyHistogram STARTUP_TO_FRAME_READY =
+        REGISTRY.histogram("startup.frame_ready");
+    
+    private Metrics() {}
+}
@@ -0,0 +1,204 @@
+package com.safety.womenalert;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Women Safety System - Metrics Registry
+ * Named counters and latency histograms with snapshots and a compact binary export
+ *
+ * Metrics are registered once, up front, and then updated through the
+ * returned objects; updates are lock-free and allocation-free. Snapshots and
+ * exports allocate and are meant to be pulled periodically, not per frame.
+ *
+ * Export format (all integers unsigned LEB128 varints unless noted):
+ *   "WSMX"  magic, 4 bytes
+ *   version byte (1)
+ *   snapshot time in ms since the registry was created
+ *   counter count, then per counter: name, value
+ *   histogram count, then per histogram: name, count, sum, max,
+ *       non-empty bucket count, then per bucket: index delta, bucket count
+ * Names are a length byte followed by ASCII. Histogram values are in
+ * microseconds; bucket bounds follow {@link LatencyHistogram}.
+ */
+public class MetricsRegistry {
+    
+    private static final byte[] MAGIC = {'W', 'S', 'M', 'X'};
+    private static final int VERSION = 1;
+    
+    /**
+     * Monotonic counter; increments are striped across threads to avoid contention
+     */
+    public static final class Counter {
+        private final LongAdder value = new LongAdder();
+        
+        public void increment() {
+            value.increment();
+        }
+        
+        public void add(long delta) {
+            value.add(delta);
+        }
+        
+        public long get() {
+            return value.sum();
+        }
+    }
+    
+    private final long createdNanos = System.nanoTime();
+    private final Map<String, Counter> counters = new LinkedHashMap<>();
+    private final Map<String, LatencyHistogram> histograms = new LinkedHashMap<>();
+    
+    /**
+     * Register a counter, or return the one already registered under this name
+     */
+    public synchronized Counter counter(String name) {
+        checkName(name);
+        Counter counter = counters.get(name);
+        if (counter == null) {
+            counter = new Counter();
+            counters.put(name, counter);
+        }
+        return counter;
+    }
+    
+    /**
+     * Register a histogram, or return the one already registered under this name
+     */
+    public synchronized LatencyHistogram histogram(String name) {
+        checkName(name);
+        LatencyHistogram histogram = histograms.get(name);
+        if (histogram == null) {
+            histogram = new LatencyHistogram();
+            histograms.put(name, histogram);
+        }
+        return histogram;
+    }
+    
+    public synchronized Snapshot snapshot() {
+        long elapsedMs = (System.nanoTime() - createdNanos) / 1000000;
+        
+        Map<String, Long> counterValues = new LinkedHashMap<>();
+        for (Map.Entry<String, Counter> entry : counters.entrySet()) {
+            counterValues.put(entry.getKey(), entry.getValue().get());
+        }
+        
+        Map<String, LatencyHistogram.Snapshot> histogramValues = new LinkedHashMap<>();
+        for (Map.Entry<String, LatencyHistogram> entry : histograms.entrySet()) {
+            histogramValues.put(entry.getKey(), entry.getValue().snapshot());
+        }
+        
+        return new Snapshot(elapsedMs, counterValues, histogramValues);
+    }
+    
+    /**
+     * Point-in-time copy of every metric
+     */
+    public static final class Snapshot {
+        private final long elapsedMs;
+        private final Map<String, Long> counters;
+        private final Map<String, LatencyHistogram.Snapshot> histograms;
+        
+        Snapshot(long elapsedMs, Map<String, Long> counters,
+                 Map<String, LatencyHistogram.Snapshot> histograms) {
+            this.elapsedMs = elapsedMs;
+            this.counters = Collections.unmodifiableMap(counters);
+            this.histograms = Collections.unmodifiableMap(histograms);
+        }
+        
+        /**
+         * Milliseconds between the registry's creation and this snapshot
+         */
+        public long getElapsedMs() {
+            return elapsedMs;
+        }
+        
+        public Map<String, Long> getCounters() {
+            return counters;
+        }
+        
+        public Map<String, LatencyHistogram.Snapshot> getHistograms() {
+            return histograms;
+        }
+        
+        public long getCounter(String name) {
+            Long value = counters.get(name);
+            return value != null ? value : 0;
+        }
+        
+        /**
+         * Per-second rate of a counter between an earlier snapshot and this one
+         */
+        public double rate(Snapshot earlier, String name) {
+            long ms = elapsedMs - earlier.elapsedMs;
+            return ms <= 0 ? 0 : (getCounter(name) - earlier.getCounter(name)) * 1000.0 / ms;
+        }
+        
+        public byte[] toBytes() {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+            out.write(MAGIC, 0, MAGIC.length);
+            out.write(VERSION);
+            writeVarint(out, elapsedMs);
+            
+            writeVarint(out, counters.size());
+            for (Map.Entry<String, Long> entry : counters.entrySet()) {
+                writeName(out, entry.getKey());
+                writeVarint(out, entry.getValue());
+            }
+            
+            writeVarint(out, histograms.size());
+            for (Map.Entry<String, LatencyHistogram.Snapshot> entry : histograms.entrySet()) {
+                LatencyHistogram.Snapshot histogram = entry.getValue();
+                long[] buckets = histogram.getCounts();
+                
+                writeName(out, entry.getKey());
+                writeVarint(out, histogram.getCount());
+                writeVarint(out, histogram.getSumMicros());
+                writeVarint(out, histogram.getMaxMicros());
+                
+                int used = 0;
+                for (long c : buckets) {
+                    if (c != 0) {
+                        used++;
+                    }
+                }
+                writeVarint(out, used);
+                
+                int last = 0;
+                for (int i = 0; i < buckets.length; i++) {
+                    if (buckets[i] != 0) {
+                        writeVarint(out, i - last);
+                        writeVarint(out, buckets[i]);
+                        last = i;
+                    }
+                }
+            }
+            
+            return out.toByteArray();
+        }
+    }
+    
+    private static void checkName(String name) {
+        if (name.isEmpty() || name.length() > 255) {
+            throw new IllegalArgumentException("Metric name must be 1-255 characters: " + name);
+        }
+    }
+    
+    private static void writeName(ByteArrayOutputStream out, String name) {
+        byte[] bytes = name.getBytes(StandardCharsets.US_ASCII);
+        out.write(bytes.length);
+        out.write(bytes, 0, bytes.length);
+    }
+    
+    private static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+}
@@ -0,0 +1,206 @@
+package com.safety.womenalert;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Women Safety System - Racing Transport
+ * Sends through a primary transport and starts a fallback if no ack arrives within a budget
+ *
+ * Every event goes to the primary (the backend). If the primary has not
+ * acknowledged it within budgetMs, or fails sooner, the same event goes to
+ * the fallback (direct SMS) as well, so the contacts hear sooner. Only the
+ * primary settles the event: the listener hears the backend's outcome and
+ * nothing else, so an event the backend has not acked stays failed, to be
+ * retried, however the SMS went. The backend alone logs the incident and
+ * places the calls. The fallback reports to the listener it was built
+ * with; a fallback still sending when the primary delivers is cancelled.
+ *
+ * Only first attempts race. Retries from the RetryScheduler use the primary
+ * alone, so a long outage does not send the contacts an SMS per retry.
+ */
+public class RacingTransport implements AlertTransport {
+    
+    /**
+     * One event's progress; guarded by races
+     */
+    private static final class Race {
+        final EmergencyEvent event;
+        final boolean fallbackAllowed;
+        ScheduledFuture<?> timer;
+        boolean fallbackStarted = false;
+        
+        Race(EmergencyEvent event, boolean fallbackAllowed) {
+            this.event = event;
+            this.fallbackAllowed = fallbackAllowed;
+        }
+    }
+    
+    private final AlertTransport primary;
+    private final AlertTransport fallback;
+    private final long budgetMs;
+    private final Listener listener;
+    private final ScheduledExecutorService timer;
+    
+    // Keyed by event identity; transports report the instance they were given
+    private final Map<EmergencyEvent, Race> races = new IdentityHashMap<>();
+    
+    /**
+     * @param primary builds the primary transport around the listener it must report to
+     * @param fallback builds the fallback transport around its own listener, which
+     *                 hears every fallback outcome
+     * @param budgetMs how long the primary has before the fallback starts too
+     * @param listener hears the primary's outcome for each event
+     */
+    public RacingTransport(Function<Listener, AlertTransport> primary,
+                           Function<Listener, AlertTransport> fallback,
+                           long budgetMs, Listener listener) {
+        this.primary = primary.apply(new Listener() {
+            @Override
+            public void onDelivered(EmergencyEvent event) {
+                primaryDelivered(event);
+            }
+            
+            @Override
+            public void onFailed(EmergencyEvent event, String reason) {
+                primaryFailed(event, reason);
+            }
+        });
+        this.fallback = fallback.apply(new Listener() {
+            @Override
+            public void onDelivered(EmergencyEvent event) {
+                synchronized (races) {
+                    if (races.get(event) != null) {
+                        Metrics.FALLBACK_WINS.increment();  // Ahead of the backend
+                    }
+                }
+            }
+            
+            @Override
+            public void onFailed(EmergencyEvent event, String reason) {
+                // The event's outcome is the primary's
+            }
+        });
+        this.budgetMs = budgetMs;
+        this.listener = listener;
+        this.timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "transport-race");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+    
+    @Override
+    public void submit(EmergencyEvent event) {
+        Race race = new Race(event, event.getAttempt() == 0);
+        synchronized (races) {
+            races.put(event, race);
+            if (race.fallbackAllowed) {
+                race.timer = timer.schedule(() -> startFallback(race), budgetMs,
+                    TimeUnit.MILLISECONDS);
+            }
+        }
+        primary.submit(event);
+    }
+    
+    @Override
+    public boolean cancel(Predicate<EmergencyEvent> matches) {
+        boolean any = false;
+        synchronized (races) {
+            Iterator<Race> it = races.values().iterator();
+            while (it.hasNext()) {
+                Race race = it.next();
+                if (matches.test(race.event)) {
+                    if (race.timer != null) {
+                        race.timer.cancel(false);
+                    }
+                    it.remove();
+                    any = true;
+                }
+            }
+        }
+        
+        // Both, whether or not the race was still open
+        any |= primary.cancel(matches);
+        any |= fallback.cancel(matches);
+        return any;
+    }
+    
+    @Override
+    public void shutdown() {
+        List<EmergencyEvent> open;
+        synchronized (races) {
+            open = new ArrayList<>(races.keySet());
+            races.clear();
+        }
+        
+        // Races are closed first, so what the transports report while stopping is ignored
+        timer.shutdownNow();
+        primary.shutdown();
+        fallback.shutdown();
+        
+        for (EmergencyEvent event : open) {
+            listener.onFailed(event, "Transport shut down");
+        }
+    }
+    
+    private void startFallback(Race race) {
+        synchronized (races) {
+            if (races.get(race.event) != race || race.fallbackStarted) {
+                return;  // Settled or already started
+            }
+            race.fallbackStarted = true;
+        }
+        Metrics.FALLBACKS_STARTED.increment();
+        fallback.submit(race.event);
+    }
+    
+    private void primaryDelivered(EmergencyEvent event) {
+        Race race = settle(event);
+        if (race == null) {
+            return;  // Cancelled, or shut down
+        }
+        if (race.fallbackStarted) {
+            // Whatever has not been texted yet is no longer needed
+            fallback.cancel(e -> e == event);
+        }
+        listener.onDelivered(event);
+    }
+    
+    private void primaryFailed(EmergencyEvent event, String reason) {
+        Race race = settle(event);
+        if (race == null) {
+            return;
+        }
+        if (race.fallbackAllowed && !race.fallbackStarted) {
+            // No point waiting out the budget; the contacts are texted while the backend is retried
+            race.fallbackStarted = true;
+            Metrics.FALLBACKS_STARTED.increment();
+            fallback.submit(event);
+        }
+        listener.onFailed(event, reason);
+    }
+    
+    /**
+     * Close the event's race once the primary has answered
+     * @return the race, or null if it was already closed
+     */
+    private Race settle(EmergencyEvent event) {
+        synchronized (races) {
+            Race race = races.remove(event);
+            if (race != null && race.timer != null) {
+                race.timer.cancel(false);
+            }
+            return race;
+        }
+    }
+}
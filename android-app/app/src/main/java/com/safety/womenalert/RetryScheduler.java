@@ -0,0 +1,239 @@
+package com.safety.womenalert;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.function.Predicate;
+
+/**
+ * Women Safety System - Retry Scheduler
+ * Jittered exponential backoff for emergency sends, with deadlines and priority
+ *
+ * Events are dispatched to a {@link Sender} with at most maxInFlight sends
+ * outstanding. A failed send is retried after base * 2^(attempt-1) ms, capped
+ * at maxDelay, with the upper half of that delay randomized so many gateways
+ * don't retry in lockstep. An event whose next retry would land past its
+ * deadline is given up and reported to the {@link Listener}.
+ *
+ * When a send slot frees up, fresh emergencies (fewest attempts) go before
+ * older retries; ties go in submission order.
+ *
+ * {@link #cancel} withdraws matching events whether waiting, ready or in
+ * flight; a late outcome for a cancelled send is ignored.
+ *
+ * Time comes from a {@link Clock}. Production code calls {@link #start()} to
+ * run a driver thread; tests use a fake clock and call {@link #pump()}.
+ */
+public class RetryScheduler {
+    
+    public static final long DEFAULT_BASE_DELAY_MS = 1000;
+    public static final long DEFAULT_MAX_DELAY_MS = 30000;
+    public static final long DEFAULT_DEADLINE_MS = 5 * 60 * 1000;
+    public static final int DEFAULT_MAX_IN_FLIGHT = 32;
+    
+    /**
+     * Starts an asynchronous send; the outcome comes back through onDelivered/onFailed
+     */
+    public interface Sender {
+        void send(EmergencyEvent event);
+    }
+    
+    public interface Listener {
+        void onGaveUp(EmergencyEvent event);
+    }
+    
+    private static final class Task {
+        final EmergencyEvent event;
+        final long deadline;
+        final long order;
+        final long dueAt;
+        
+        Task(EmergencyEvent event, long deadline, long order, long dueAt) {
+            this.event = event;
+            this.deadline = deadline;
+            this.order = order;
+            this.dueAt = dueAt;
+        }
+    }
+    
+    private final Clock clock;
+    private final Sender sender;
+    private final Listener listener;
+    private final Random random;
+    private final long baseDelayMs;
+    private final long maxDelayMs;
+    private final long deadlineMs;
+    private final int maxInFlight;
+    
+    private final PriorityQueue<Task> waiting = new PriorityQueue<>(16,
+        (a, b) -> Long.compare(a.dueAt, b.dueAt));
+    private final PriorityQueue<Task> ready = new PriorityQueue<>(16, (a, b) -> {
+        int byAttempt = Integer.compare(a.event.getAttempt(), b.event.getAttempt());
+        return byAttempt != 0 ? byAttempt : Long.compare(a.order, b.order);
+    });
+    private final Map<EmergencyEvent, Task> inFlight = new IdentityHashMap<>();
+    
+    private long nextOrder = 0;
+    private Thread driver;
+    private boolean running = false;
+    
+    public RetryScheduler(Sender sender, Listener listener) {
+        this(Clock.SYSTEM, new Random(), sender, listener, DEFAULT_BASE_DELAY_MS,
+            DEFAULT_MAX_DELAY_MS, DEFAULT_DEADLINE_MS, DEFAULT_MAX_IN_FLIGHT);
+    }
+    
+    public RetryScheduler(Clock clock, Random random, Sender sender, Listener listener,
+                          long baseDelayMs, long maxDelayMs, long deadlineMs, int maxInFlight) {
+        this.clock = clock;
+        this.random = random;
+        this.sender = sender;
+        this.listener = listener;
+        this.baseDelayMs = baseDelayMs;
+        this.maxDelayMs = maxDelayMs;
+        this.deadlineMs = deadlineMs;
+        this.maxInFlight = maxInFlight;
+    }
+    
+    /**
+     * Schedule an event for immediate send; its deadline starts now
+     */
+    public synchronized void submit(EmergencyEvent event) {
+        long now = clock.millis();
+        ready.add(new Task(event, now + deadlineMs, nextOrder++, now));
+        pump();
+    }
+    
+    public synchronized void onDelivered(EmergencyEvent event) {
+        if (inFlight.remove(event) != null) {
+            pump();
+        }
+    }
+    
+    public synchronized void onFailed(EmergencyEvent event) {
+        Task task = inFlight.remove(event);
+        if (task == null) {
+            return;
+        }
+        
+        long now = clock.millis();
+        long retryAt = now + backoff(event.getAttempt() + 1);
+        
+        if (retryAt > task.deadline) {
+            listener.onGaveUp(event);
+        } else {
+            waiting.add(new Task(event.nextAttempt(), task.deadline, nextOrder++, retryAt));
+        }
+        pump();
+    }
+    
+    /**
+     * Withdraw every matching event: queued ones are dropped, and in-flight ones
+     * release their slot and are never retried
+     * @return the withdrawn events, so the caller can settle their outbox records
+     */
+    public synchronized List<EmergencyEvent> cancel(Predicate<EmergencyEvent> matches) {
+        List<EmergencyEvent> cancelled = new ArrayList<>();
+        removeMatching(waiting.iterator(), matches, cancelled);
+        removeMatching(ready.iterator(), matches, cancelled);
+        
+        Iterator<EmergencyEvent> sending = inFlight.keySet().iterator();
+        while (sending.hasNext()) {
+            EmergencyEvent event = sending.next();
+            if (matches.test(event)) {
+                sending.remove();
+                cancelled.add(event);
+            }
+        }
+        
+        if (!cancelled.isEmpty()) {
+            pump();
+        }
+        return cancelled;
+    }
+    
+    private static void removeMatching(Iterator<Task> tasks, Predicate<EmergencyEvent> matches,
+                                       List<EmergencyEvent> removed) {
+        while (tasks.hasNext()) {
+            Task task = tasks.next();
+            if (matches.test(task.event)) {
+                tasks.remove();
+                removed.add(task.event);
+            }
+        }
+    }
+    
+    /**
+     * Dispatch everything that is due and fits in the in-flight budget
+     * @return milliseconds until the next retry is due, or -1 if none is waiting
+     */
+    public synchronized long pump() {
+        long now = clock.millis();
+        
+        while (!waiting.isEmpty() && waiting.peek().dueAt <= now) {
+            ready.add(waiting.poll());
+        }
+        
+        while (inFlight.size() < maxInFlight && !ready.isEmpty()) {
+            Task task = ready.poll();
+            inFlight.put(task.event, task);
+            sender.send(task.event);
+        }
+        
+        notifyAll();
+        return waiting.isEmpty() ? -1 : Math.max(0, waiting.peek().dueAt - now);
+    }
+    
+    /**
+     * Delay before the given attempt (1 = first retry), half fixed and half jitter
+     */
+    long backoff(int attempt) {
+        long delay = baseDelayMs << Math.min(attempt - 1, 30);
+        delay = Math.min(delay, maxDelayMs);
+        long half = delay / 2;
+        return half + (half > 0 ? (long) (random.nextDouble() * half) : 0);
+    }
+    
+    public synchronized int getInFlightCount() {
+        return inFlight.size();
+    }
+    
+    public synchronized int getQueuedCount() {
+        return ready.size() + waiting.size();
+    }
+    
+    /**
+     * Run a driver thread that wakes for due retries on the real clock
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        driver = new Thread(this::runLoop, "retry-scheduler");
+        driver.setDaemon(true);
+        driver.start();
+    }
+    
+    public synchronized void stop() {
+        running = false;
+        if (driver != null) {
+            driver.interrupt();
+        }
+    }
+    
+    private synchronized void runLoop() {
+        try {
+            while (running) {
+                long wait = pump();
+                // Woken early by submit/onDelivered/onFailed via notifyAll
+                wait(wait < 0 ? 0 : Math.max(1, wait));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
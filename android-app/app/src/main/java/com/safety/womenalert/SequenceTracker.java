@@ -0,0 +1,271 @@
+package com.safety.womenalert;
+
+import java.util.Arrays;
+
+/**
+ * Women Safety System - Sequence Tracker
+ * Per-device duplicate suppression for retransmitted LoRa frames
+ *
+ * The firmware numbers every packet with a 16-bit sequence counter and
+ * resends a packet byte for byte until it is acknowledged. For each deviceId
+ * this remembers the last 64 sequence numbers actually seen together with
+ * the seconds-since-boot timestamp each one carried. A frame is a DUPLICATE
+ * only if that exact (sequence, timestamp) pair was seen; sequence numbers
+ * compare with 16-bit serial arithmetic, so wraparound is handled.
+ *
+ * Anything else is delivered. A frame that fills a gap in the window is
+ * REORDERED, a late frame that was never seen. A firmware reboot restarts
+ * the counter and the clock; it is detected, and the device's state reset,
+ * when a sequence number lands far behind the window, when a number already
+ * seen comes back with another timestamp, or when a newer number carries a
+ * timestamp from well before the last one. No frame is ever dropped on a
+ * guess about where the window is, so an emergency is only suppressed when
+ * it is a copy of one already delivered.
+ *
+ * State lives in parallel primitive arrays indexed by an open-addressing
+ * table, so tracking a frame never allocates. Not thread-safe.
+ */
+public class SequenceTracker {
+    
+    public static final int ACCEPTED = 0;
+    public static final int DUPLICATE = 1;  // The only verdict to drop
+    public static final int REORDERED = 2;  // Accepted, arrived after a newer frame
+    public static final int REBOOTED = 3;   // Accepted, device state was reset
+    
+    private static final int WINDOW = 64;
+    private static final int EMPTY = -1;
+    private static final int DEFAULT_CAPACITY = 64;
+    
+    // A newer frame may be stamped this much before the last one: timestamps are
+    // whole seconds, taken when each packet is built, not when it is sent
+    private static final int CLOCK_SLACK_S = 5;
+    
+    /**
+     * Receives per-device counters from {@link #forEachDevice}
+     */
+    public interface StatsVisitor {
+        void visit(int deviceId, long accepted, long duplicates, long reordered,
+                   long lost, long reboots);
+    }
+    
+    private int[] keys;
+    private int[] lastSequence;
+    private int[] lastTimestamp;
+    private long[] window;
+    // Timestamp of each sequence number in the window, at slot * WINDOW + (sequence % WINDOW)
+    private char[] seenTimestamp;
+    private long[] accepted;
+    private long[] duplicates;
+    private long[] reordered;
+    private long[] lost;
+    private long[] reboots;
+    private int size = 0;
+    
+    public SequenceTracker() {
+        this(DEFAULT_CAPACITY);
+    }
+    
+    public SequenceTracker(int expectedDevices) {
+        allocate(Integer.highestOneBit(Math.max(expectedDevices, 4) * 2 - 1) << 1);
+    }
+    
+    /**
+     * Record a frame and classify it
+     * @return ACCEPTED, REORDERED or REBOOTED to deliver the frame, DUPLICATE to drop it
+     */
+    public int track(int deviceId, int timestamp, int sequenceNumber) {
+        deviceId &= 0xFFFF;
+        timestamp &= 0xFFFF;
+        sequenceNumber &= 0xFFFF;
+        
+        int slot = find(deviceId);
+        if (keys[slot] == EMPTY) {
+            slot = insert(deviceId);
+            reset(slot, timestamp, sequenceNumber);
+            accepted[slot]++;
+            return ACCEPTED;
+        }
+        
+        if (window[slot] == 0) {
+            // Restarted: nothing it sent before counts against this frame
+            reset(slot, timestamp, sequenceNumber);
+            accepted[slot]++;
+            return ACCEPTED;
+        }
+        
+        int ahead = (sequenceNumber - lastSequence[slot]) & 0xFFFF;
+        
+        if (ahead != 0 && ahead < 0x8000) {
+            int timeBack = (lastTimestamp[slot] - timestamp) & 0xFFFF;
+            if (timeBack > CLOCK_SLACK_S && timeBack < 0x8000) {
+                return rebooted(slot, timestamp, sequenceNumber);
+            }
+            
+            // Newer frame: slide the window, count the gap as lost for now
+            window[slot] = ahead >= WINDOW ? 1L : (window[slot] << ahead) | 1L;
+            lost[slot] += ahead - 1;
+            lastSequence[slot] = sequenceNumber;
+            if (((timestamp - lastTimestamp[slot]) & 0xFFFF) < 0x8000) {
+                lastTimestamp[slot] = timestamp;
+            }
+            seenTimestamp[slot * WINDOW + (sequenceNumber & (WINDOW - 1))] = (char) timestamp;
+            accepted[slot]++;
+            return ACCEPTED;
+        }
+        
+        int behind = ahead == 0 ? 0 : 0x10000 - ahead;
+        if (behind >= WINDOW) {
+            // Far behind anything this device recently sent: its counter restarted
+            return rebooted(slot, timestamp, sequenceNumber);
+        }
+        
+        int seen = slot * WINDOW + (sequenceNumber & (WINDOW - 1));
+        long bit = 1L << behind;
+        if ((window[slot] & bit) != 0) {
+            if (seenTimestamp[seen] == timestamp) {
+                duplicates[slot]++;
+                return DUPLICATE;
+            }
+            // Same number, different packet: the counter restarted and caught up
+            return rebooted(slot, timestamp, sequenceNumber);
+        }
+        
+        // Late arrival of a frame counted as lost
+        window[slot] |= bit;
+        seenTimestamp[seen] = (char) timestamp;
+        lost[slot]--;
+        reordered[slot]++;
+        return REORDERED;
+    }
+    
+    /**
+     * Forget the frames a device sent, once it is known to have restarted by other means
+     */
+    public void restart(int deviceId) {
+        int slot = find(deviceId & 0xFFFF);
+        if (keys[slot] != EMPTY) {
+            window[slot] = 0;
+        }
+    }
+    
+    /**
+     * Lost frames as a fraction of frames the device sent, or 0 if unknown
+     */
+    public double getLossRate(int deviceId) {
+        int slot = find(deviceId & 0xFFFF);
+        if (keys[slot] == EMPTY) {
+            return 0;
+        }
+        long sent = accepted[slot] + reordered[slot] + lost[slot];
+        return sent == 0 ? 0 : (double) lost[slot] / sent;
+    }
+    
+    /**
+     * Duplicates as a fraction of all frames received from the device, or 0 if unknown
+     */
+    public double getDuplicateRate(int deviceId) {
+        int slot = find(deviceId & 0xFFFF);
+        if (keys[slot] == EMPTY) {
+            return 0;
+        }
+        long received = accepted[slot] + reordered[slot] + duplicates[slot];
+        return received == 0 ? 0 : (double) duplicates[slot] / received;
+    }
+    
+    public void forEachDevice(StatsVisitor visitor) {
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != EMPTY) {
+                visitor.visit(keys[slot], accepted[slot], duplicates[slot],
+                    reordered[slot], lost[slot], reboots[slot]);
+            }
+        }
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    private int rebooted(int slot, int timestamp, int sequenceNumber) {
+        reset(slot, timestamp, sequenceNumber);
+        accepted[slot]++;
+        reboots[slot]++;
+        return REBOOTED;
+    }
+    
+    private void reset(int slot, int timestamp, int sequenceNumber) {
+        lastSequence[slot] = sequenceNumber;
+        lastTimestamp[slot] = timestamp;
+        window[slot] = 1L;
+        seenTimestamp[slot * WINDOW + (sequenceNumber & (WINDOW - 1))] = (char) timestamp;
+    }
+    
+    private int find(int deviceId) {
+        int mask = keys.length - 1;
+        int slot = mix(deviceId) & mask;
+        while (keys[slot] != EMPTY && keys[slot] != deviceId) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+    
+    private int insert(int deviceId) {
+        if ((size + 1) * 2 > keys.length) {
+            grow();
+        }
+        int slot = find(deviceId);
+        keys[slot] = deviceId;
+        size++;
+        return slot;
+    }
+    
+    private void grow() {
+        int[] oldKeys = keys;
+        int[] oldSequence = lastSequence;
+        int[] oldTimestamp = lastTimestamp;
+        long[] oldWindow = window;
+        char[] oldSeen = seenTimestamp;
+        long[] oldAccepted = accepted;
+        long[] oldDuplicates = duplicates;
+        long[] oldReordered = reordered;
+        long[] oldLost = lost;
+        long[] oldReboots = reboots;
+        
+        allocate(oldKeys.length * 2);
+        
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == EMPTY) {
+                continue;
+            }
+            int slot = find(oldKeys[i]);
+            keys[slot] = oldKeys[i];
+            lastSequence[slot] = oldSequence[i];
+            lastTimestamp[slot] = oldTimestamp[i];
+            window[slot] = oldWindow[i];
+            System.arraycopy(oldSeen, i * WINDOW, seenTimestamp, slot * WINDOW, WINDOW);
+            accepted[slot] = oldAccepted[i];
+            duplicates[slot] = oldDuplicates[i];
+            reordered[slot] = oldReordered[i];
+            lost[slot] = oldLost[i];
+            reboots[slot] = oldReboots[i];
+        }
+    }
+    
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+        lastSequence = new int[capacity];
+        lastTimestamp = new int[capacity];
+        window = new long[capacity];
+        seenTimestamp = new char[capacity * WINDOW];
+        accepted = new long[capacity];
+        duplicates = new long[capacity];
+        reordered = new long[capacity];
+        lost = new long[capacity];
+        reboots = new long[capacity];
+    }
+    
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,48 @@
+package com.safety.womenalert;
+
+import java.io.IOException;
+
+/**
+ * Women Safety System - Serial Link
+ * One serial port that can be opened, read and closed over and over
+ *
+ * Implemented over usb-serial-for-android by UsbSerialLink; a fake link
+ * stands in for reconnect tests on a plain JVM. A {@link SerialSupervisor}
+ * decides when to open and close it.
+ */
+public interface SerialLink {
+    
+    /**
+     * Bytes as the port delivers them, on the link's reader thread
+     */
+    interface DataSink {
+        void onData(byte[] data);
+    }
+    
+    interface Callback extends DataSink {
+        
+        /**
+         * The reader has stopped; nothing more will arrive from this open
+         */
+        void onError(Exception e);
+    }
+    
+    /**
+     * Open the port and start a reader thread calling back until close()
+     * @throws IOException if the port cannot be opened; nothing is left running
+     */
+    void open(Callback callback) throws IOException;
+    
+    /**
+     * Stop the reader and release the port; safe to call when not open
+     */
+    void close();
+    
+    /**
+     * Send bytes out of the open port, e.g. downlink ACKs for the gateway radio
+     * @throws IOException if the port is not open or the write fails or times out
+     */
+    void write(byte[] data) throws IOException;
+    
+    String getName();
+}
@@ -0,0 +1,316 @@
+package com.safety.womenalert;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Women Safety System - Serial Supervisor
+ * Keeps one serial link open: reopens it with backoff after reader errors and stalls
+ *
+ * A link is down when its reader reports an error or when it fails to
+ * open. The supervisor closes it and reopens after base * 2^(attempt-1) ms,
+ * capped at maxDelay, with the upper half jittered as in RetryScheduler.
+ * The attempt count resets once a connection has stayed open for
+ * STABLE_AFTER_MS, or has delivered data, so a port that opens and dies at
+ * once still backs off while a long-lived one is reopened promptly.
+ *
+ * Silence is not an error: the dongle only forwards what wearers in range
+ * send, and an empty channel is healthy. A stall watchdog, closing a link
+ * that has delivered nothing for stallTimeoutMs, is only for links with a
+ * keepalive of their own and is off unless a timeout is given. Each silent
+ * reopen doubles the timeout, up to MAX_STALL_TIMEOUT_MS.
+ *
+ * Every open is a new connection: the {@link Listener} hands out a fresh
+ * sink for it, and late bytes from an earlier connection are dropped, so
+ * bytes from either side of a gap are never joined into one frame.
+ *
+ * Time to recover (failure detected until the port is open again) goes to
+ * serial.time_to_recover, and the same span to serial.downtime_ms.
+ *
+ * The link is closed on whichever thread detects the failure, and opened
+ * on the scheduler, which should be single-threaded.
+ */
+public class SerialSupervisor {
+    
+    public static final long DEFAULT_BASE_DELAY_MS = 250;
+    public static final long DEFAULT_MAX_DELAY_MS = 30000;
+    public static final long NO_STALL_TIMEOUT = 0;
+    public static final long MAX_STALL_TIMEOUT_MS = 15 * 60 * 1000;
+    public static final long STABLE_AFTER_MS = 10000;
+    
+    public interface Listener {
+        
+        /**
+         * A new connection is about to open; its bytes go to the returned sink.
+         * Nothing from earlier connections is delivered after this call.
+         */
+        SerialLink.DataSink onConnecting(int connection);
+        
+        /**
+         * The connection is open; its bytes may already have started to arrive
+         */
+        void onConnected(int connection);
+        
+        /**
+         * The connection went down and will be reopened after retryInMs
+         */
+        void onDisconnected(int connection, String reason, long retryInMs);
+    }
+    
+    /**
+     * One open of the link; stale once current moves on
+     */
+    private final class Connection implements SerialLink.Callback {
+        final int number;
+        SerialLink.DataSink sink;
+        
+        // Written by the link's reader thread only
+        volatile long chunks = 0;
+        
+        Connection(int number) {
+            this.number = number;
+        }
+        
+        @Override
+        public void onData(byte[] data) {
+            if (current != this) {
+                return;  // Late read from a connection already replaced
+            }
+            chunks++;
+            sink.onData(data);
+        }
+        
+        @Override
+        public void onError(Exception e) {
+            fail(this, "Reader stopped: " + e.getMessage());
+        }
+    }
+    
+    private final SerialLink link;
+    private final Listener listener;
+    private final ScheduledExecutorService scheduler;
+    private final Clock clock;
+    private final Random random;
+    private final long baseDelayMs;
+    private final long maxDelayMs;
+    private final long baseStallTimeoutMs;
+    
+    // Set under this; read without it on the data path
+    private volatile Connection current;
+    
+    // Guarded by this
+    private boolean running = false;
+    private boolean open = false;
+    private int connections = 0;
+    private int attempt = 0;
+    private long downSince = -1;
+    private long stallTimeoutMs;
+    private long lastChunks;
+    private long lastProgressAt;
+    private long openedAt;
+    private ScheduledFuture<?> watchdog;
+    private long reconnects = 0;
+    private long downtimeMs = 0;
+    
+    public SerialSupervisor(SerialLink link, Listener listener,
+                            ScheduledExecutorService scheduler) {
+        this(link, listener, scheduler, Clock.SYSTEM, new Random(), DEFAULT_BASE_DELAY_MS,
+            DEFAULT_MAX_DELAY_MS, NO_STALL_TIMEOUT);
+    }
+    
+    /**
+     * @param scheduler runs opens, closes and the stall watchdog; may be shared by supervisors
+     * @param stallTimeoutMs silence after which the link is reopened; NO_STALL_TIMEOUT never
+     */
+    public SerialSupervisor(SerialLink link, Listener listener,
+                            ScheduledExecutorService scheduler, Clock clock, Random random,
+                            long baseDelayMs, long maxDelayMs, long stallTimeoutMs) {
+        this.link = link;
+        this.listener = listener;
+        this.scheduler = scheduler;
+        this.clock = clock;
+        this.random = random;
+        this.baseDelayMs = baseDelayMs;
+        this.maxDelayMs = maxDelayMs;
+        this.baseStallTimeoutMs = stallTimeoutMs;
+        this.stallTimeoutMs = stallTimeoutMs;
+    }
+    
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        scheduler.execute(this::connect);
+        
+        if (baseStallTimeoutMs > 0) {
+            long tick = Math.max(1, baseStallTimeoutMs / 4);
+            watchdog = scheduler.scheduleWithFixedDelay(this::checkStall, tick, tick,
+                TimeUnit.MILLISECONDS);
+        }
+    }
+    
+    /**
+     * Close the link for good; no reconnects after this
+     */
+    public void stop() {
+        synchronized (this) {
+            if (!running) {
+                return;
+            }
+            running = false;
+            current = null;
+            open = false;
+            if (watchdog != null) {
+                watchdog.cancel(false);
+            }
+        }
+        link.close();
+    }
+    
+    /**
+     * Write to the current connection
+     * @throws IOException if the link is down or the write fails
+     */
+    public void write(byte[] data) throws IOException {
+        synchronized (this) {
+            if (!open) {
+                throw new IOException(link.getName() + " is reconnecting");
+            }
+        }
+        link.write(data);
+    }
+    
+    public synchronized boolean isConnected() {
+        return open;
+    }
+    
+    /**
+     * Successful reopens after a failure
+     */
+    public synchronized long getReconnectCount() {
+        return reconnects;
+    }
+    
+    /**
+     * Total time spent between detecting a failure and reopening, in ms
+     */
+    public synchronized long getDowntimeMs() {
+        return downtimeMs;
+    }
+    
+    private void connect() {
+        Connection connection;
+        synchronized (this) {
+            if (!running) {
+                return;
+            }
+            connection = new Connection(++connections);
+            connection.sink = listener.onConnecting(connection.number);
+            current = connection;
+        }
+        
+        try {
+            link.open(connection);
+        } catch (IOException | RuntimeException e) {
+            fail(connection, "Open failed: " + e.getMessage());
+            return;
+        }
+        
+        synchronized (this) {
+            if (current != connection) {
+                if (!running) {
+                    link.close();  // Stopped while opening
+                }
+                return;  // Otherwise the reader already died and fail() has it
+            }
+            open = true;
+            lastChunks = connection.chunks;
+            lastProgressAt = clock.millis();
+            openedAt = lastProgressAt;
+            
+            if (downSince >= 0) {
+                long down = lastProgressAt - downSince;
+                downSince = -1;
+                reconnects++;
+                downtimeMs += down;
+                Metrics.SERIAL_RECONNECTS.increment();
+                Metrics.SERIAL_DOWNTIME_MS.add(down);
+                Metrics.SERIAL_TIME_TO_RECOVER.recordMillis(down);
+            }
+        }
+        listener.onConnected(connection.number);
+    }
+    
+    private void fail(Connection connection, String reason) {
+        long delay;
+        synchronized (this) {
+            if (current != connection || !running) {
+                return;  // Already handled, or stopping
+            }
+            long now = clock.millis();
+            if (open && (connection.chunks > lastChunks || now - openedAt >= STABLE_AFTER_MS)) {
+                attempt = 0;  // It worked for a while: not the port failing over and over
+            }
+            current = null;
+            open = false;
+            if (downSince < 0) {
+                downSince = now;
+            }
+            delay = backoff(++attempt);
+        }
+        
+        link.close();
+        listener.onDisconnected(connection.number, reason, delay);
+        try {
+            scheduler.schedule(this::connect, delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Scheduler shut down under a running supervisor: nothing left to reopen on
+            synchronized (this) {
+                running = false;
+            }
+        }
+    }
+    
+    private void checkStall() {
+        Connection connection;
+        String reason;
+        synchronized (this) {
+            connection = current;
+            if (!open || connection == null) {
+                return;
+            }
+            
+            long now = clock.millis();
+            long chunks = connection.chunks;
+            if (chunks != lastChunks) {
+                // Data is flowing: this connection is healthy
+                lastChunks = chunks;
+                lastProgressAt = now;
+                attempt = 0;
+                stallTimeoutMs = baseStallTimeoutMs;
+                return;
+            }
+            if (now - lastProgressAt < stallTimeoutMs) {
+                return;
+            }
+            reason = "No data for " + (now - lastProgressAt) + " ms";
+            stallTimeoutMs = Math.min(stallTimeoutMs * 2, MAX_STALL_TIMEOUT_MS);
+        }
+        fail(connection, reason);
+    }
+    
+    /**
+     * Delay before the given reopen (1 = first), half fixed and half jitter
+     */
+    long backoff(int attempt) {
+        long delay = baseDelayMs << Math.min(attempt - 1, 30);
+        delay = Math.min(delay, maxDelayMs);
+        long half = delay / 2;
+        return half + (half > 0 ? (long) (random.nextDouble() * half) : 0);
+    }
+}
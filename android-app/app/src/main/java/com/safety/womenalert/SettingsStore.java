@@ -0,0 +1,73 @@
+package com.safety.womenalert;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+/**
+ * Women Safety System - Settings Store
+ * Process-wide holder of the current AlertSettings snapshot
+ *
+ * Preferences are read once, on first use. After that, any write to
+ * WomenSafetyPrefs (MainActivity.saveSettings) rebuilds the snapshot in the
+ * change listener and publishes it with a single volatile write, so the
+ * alert path reads settings without locks or disk I/O.
+ */
+public final class SettingsStore {
+    
+    public static final String PREFS_NAME = "WomenSafetyPrefs";
+    public static final String KEY_CONTACT_1 = "contact1";
+    public static final String KEY_CONTACT_2 = "contact2";
+    public static final String KEY_CONTACT_3 = "contact3";
+    public static final String KEY_BACKEND_URL = "backendUrl";
+    public static final String KEY_API_KEY = "apiKey";
+    public static final String KEY_BAUD_RATE = "baudRate";
+    
+    private static SettingsStore instance;
+    
+    private final SharedPreferences prefs;
+    private volatile AlertSettings current;
+    
+    // SharedPreferences only keeps a weak reference to its listeners
+    private final SharedPreferences.OnSharedPreferenceChangeListener prefsListener =
+        (sharedPreferences, key) -> {
+            if (key == null || isAlertKey(key)) {
+                reload();
+            }
+        };
+    
+    private SettingsStore(Context context) {
+        this.prefs = context.getApplicationContext()
+            .getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        reload();
+        prefs.registerOnSharedPreferenceChangeListener(prefsListener);
+    }
+    
+    public static synchronized SettingsStore get(Context context) {
+        if (instance == null) {
+            instance = new SettingsStore(context);
+        }
+        return instance;
+    }
+    
+    /**
+     * Current snapshot; never null, safe from any thread
+     */
+    public AlertSettings current() {
+        return current;
+    }
+    
+    private void reload() {
+        current = AlertSettings.of(
+            prefs.getString(KEY_BACKEND_URL, ""),
+            prefs.getString(KEY_CONTACT_1, ""),
+            prefs.getString(KEY_CONTACT_2, ""),
+            prefs.getString(KEY_CONTACT_3, ""))
+            .withApiKey(prefs.getString(KEY_API_KEY, ""));
+    }
+    
+    private static boolean isAlertKey(String key) {
+        return KEY_CONTACT_1.equals(key) || KEY_CONTACT_2.equals(key)
+            || KEY_CONTACT_3.equals(key) || KEY_BACKEND_URL.equals(key)
+            || KEY_API_KEY.equals(key);
+    }
+}
@@ -0,0 +1,247 @@
+package com.safety.womenalert;
+
+import android.Manifest;
+import android.app.Activity;
+import android.app.PendingIntent;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.pm.PackageManager;
+import android.os.Build;
+import android.telephony.SmsManager;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Women Safety System - SMS Transport
+ * Texts the emergency contacts straight from the gateway phone, without the backend
+ *
+ * An event counts as delivered once every part of the message to at least
+ * one contact has been accepted by the radio, and as failed when no contact
+ * could be reached. A message handed to the radio cannot be recalled, so
+ * {@link #cancel} never withdraws anything.
+ *
+ * Sent reports can go missing (the radio restarts, the process is frozen).
+ * A send still waiting for one after SENT_REPORT_TIMEOUT_MS is settled with
+ * what has been reported so far: delivered if some contact has every part
+ * sent, failed otherwise, so the caller never waits on it forever.
+ */
+public class SmsTransport implements AlertTransport {
+    
+    private static final String TAG = "SmsTransport";
+    private static final String ACTION_SMS_SENT = "com.safety.womenalert.SMS_SENT";
+    private static final String EXTRA_SEND_ID = "sendId";
+    private static final String EXTRA_CONTACT = "contact";
+    private static final long SENT_REPORT_TIMEOUT_MS = 30000;  // 30 seconds
+    
+    /**
+     * Parts still awaiting a sent report, per contact; guarded by sends
+     */
+    private static final class Send {
+        final EmergencyEvent event;
+        final int[] partsLeft;
+        final boolean[] contactFailed;
+        int lastError;
+        ScheduledFuture<?> deadline;
+        
+        Send(EmergencyEvent event, int contacts) {
+            this.event = event;
+            this.partsLeft = new int[contacts];
+            this.contactFailed = new boolean[contacts];
+        }
+        
+        boolean isDone() {
+            for (int parts : partsLeft) {
+                if (parts > 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+        boolean anyContactReached() {
+            for (int i = 0; i < partsLeft.length; i++) {
+                if (partsLeft[i] == 0 && !contactFailed[i]) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+    
+    private final Context context;
+    private final Listener listener;
+    private final Map<Integer, Send> sends = new HashMap<>();
+    private final ScheduledExecutorService timer;
+    private int nextSendId = 0;
+    private int nextRequestCode = 0;
+    
+    private final BroadcastReceiver sentReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            onPartSent(intent.getIntExtra(EXTRA_SEND_ID, -1),
+                intent.getIntExtra(EXTRA_CONTACT, -1), getResultCode());
+        }
+    };
+    
+    public SmsTransport(Context context, Listener listener) {
+        this.context = context.getApplicationContext();
+        this.listener = listener;
+        this.timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "sms-deadline");
+            t.setDaemon(true);
+            return t;
+        });
+        
+        IntentFilter filter = new IntentFilter(ACTION_SMS_SENT);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
+            this.context.registerReceiver(sentReceiver, filter, Context.RECEIVER_NOT_EXPORTED);
+        } else {
+            this.context.registerReceiver(sentReceiver, filter);
+        }
+    }
+    
+    @Override
+    public void submit(EmergencyEvent event) {
+        String[] contacts = event.getContacts();
+        if (contacts.length == 0) {
+            listener.onFailed(event, "No contacts for SMS");
+            return;
+        }
+        // Checked per send: the permission may be granted or revoked while running
+        if (context.checkSelfPermission(Manifest.permission.SEND_SMS)
+                != PackageManager.PERMISSION_GRANTED) {
+            listener.onFailed(event, "SEND_SMS not granted");
+            return;
+        }
+        
+        SmsManager smsManager = Build.VERSION.SDK_INT >= Build.VERSION_CODES.S
+            ? context.getSystemService(SmsManager.class)
+            : SmsManager.getDefault();
+        ArrayList<String> parts = smsManager.divideMessage(messageFor(event));
+        
+        int sendId;
+        synchronized (sends) {
+            sendId = nextSendId++;
+            Send send = new Send(event, contacts.length);
+            for (int i = 0; i < contacts.length; i++) {
+                send.partsLeft[i] = parts.size();
+            }
+            sends.put(sendId, send);
+            int id = sendId;
+            send.deadline = timer.schedule(() -> expire(id), SENT_REPORT_TIMEOUT_MS,
+                TimeUnit.MILLISECONDS);
+        }
+        
+        for (int i = 0; i < contacts.length; i++) {
+            ArrayList<PendingIntent> sentIntents = new ArrayList<>(parts.size());
+            for (int part = 0; part < parts.size(); part++) {
+                Intent intent = new Intent(ACTION_SMS_SENT)
+                    .setPackage(context.getPackageName())
+                    .putExtra(EXTRA_SEND_ID, sendId)
+                    .putExtra(EXTRA_CONTACT, i);
+                sentIntents.add(PendingIntent.getBroadcast(context, nextRequestCode(), intent,
+                    PendingIntent.FLAG_ONE_SHOT | PendingIntent.FLAG_IMMUTABLE));
+            }
+            
+            try {
+                smsManager.sendMultipartTextMessage(contacts[i], null, parts, sentIntents, null);
+            } catch (RuntimeException e) {
+                // Bad number or no telephony; no sent reports will come for this contact
+                Log.e(TAG, "SMS to " + contacts[i] + " failed", e);
+                for (int part = 0; part < parts.size(); part++) {
+                    onPartSent(sendId, i, SmsManager.RESULT_ERROR_GENERIC_FAILURE);
+                }
+            }
+        }
+    }
+    
+    @Override
+    public boolean cancel(Predicate<EmergencyEvent> matches) {
+        return false;
+    }
+    
+    @Override
+    public void shutdown() {
+        context.unregisterReceiver(sentReceiver);
+        timer.shutdownNow();
+    }
+    
+    private synchronized int nextRequestCode() {
+        return nextRequestCode++;
+    }
+    
+    private void onPartSent(int sendId, int contact, int resultCode) {
+        Send send;
+        synchronized (sends) {
+            send = sends.get(sendId);
+            if (send == null || contact < 0 || contact >= send.partsLeft.length
+                    || send.partsLeft[contact] == 0) {
+                return;
+            }
+            send.partsLeft[contact]--;
+            if (resultCode != Activity.RESULT_OK) {
+                send.contactFailed[contact] = true;
+                send.lastError = resultCode;
+            }
+            if (!send.isDone()) {
+                return;
+            }
+            sends.remove(sendId);
+            send.deadline.cancel(false);
+        }
+        
+        if (send.anyContactReached()) {
+            listener.onDelivered(send.event);
+        } else {
+            listener.onFailed(send.event, "SMS error " + send.lastError);
+        }
+    }
+    
+    /**
+     * Settle a send whose sent reports did not all arrive in time
+     */
+    private void expire(int sendId) {
+        Send send;
+        synchronized (sends) {
+            send = sends.remove(sendId);
+            if (send == null) {
+                return;
+            }
+        }
+        
+        Log.w(TAG, "No SMS sent report within " + SENT_REPORT_TIMEOUT_MS + " ms");
+        if (send.anyContactReached()) {
+            listener.onDelivered(send.event);
+        } else {
+            listener.onFailed(send.event, "SMS sent report timed out");
+        }
+    }
+    
+    /**
+     * Same facts as the backend's SMS, kept short enough for one or two parts
+     */
+    static String messageFor(EmergencyEvent event) {
+        String location = "Location not available";
+        if (event.getLatitude() != 0 || event.getLongitude() != 0) {
+            location = String.format(Locale.US, "https://maps.google.com/?q=%.6f,%.6f",
+                event.getLatitude(), event.getLongitude());
+            if (event.getLocationAgeMs() >= 60000) {
+                location = "Last known location (" + event.getLocationAgeMs() / 60000
+                    + " min old) " + location;
+            }
+        }
+        return "EMERGENCY ALERT from safety device " + event.getDeviceId() + ". "
+            + location + ". Battery " + event.getBatteryLevel() + "%. Please respond now.";
+    }
+}
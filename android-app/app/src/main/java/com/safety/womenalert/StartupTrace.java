@@ -0,0 +1,123 @@
+package com.safety.womenalert;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Women Safety System - Startup Trace
+ * Named startup milestones, in ms since process start, and when frames can first be handled
+ *
+ * Startup work runs on several threads at once, so each milestone is
+ * marked by whoever reaches it; only the first mark counts. The trace is
+ * ready once every required milestone is marked - for LoRaService, an
+ * adapter open and the emergency handler warm - and then runs its ready
+ * action once. Marking an already marked milestone is a map lookup, so
+ * the frame path can mark FIRST_FRAME unconditionally.
+ */
+public final class StartupTrace {
+    
+    public static final String SERVICE_CREATED = "service_created";
+    public static final String SERVICE_CREATE_RETURNED = "service_create_returned";
+    public static final String INGEST_STARTED = "ingest_started";
+    public static final String ADAPTERS_PROBED = "adapters_probed";
+    public static final String FIRST_PORT_OPEN = "first_port_open";
+    public static final String HANDLER_READY = "handler_ready";
+    public static final String FRAME_READY = "frame_ready";
+    public static final String FIRST_FRAME = "first_frame";
+    
+    private final long originNanos;
+    private final String[] required;
+    private final Runnable onReady;
+    
+    // Nanos since origin, keyed by milestone
+    private final Map<String, Long> marks = new ConcurrentHashMap<>();
+    
+    /**
+     * @param originNanos System.nanoTime() at process start
+     * @param onReady run once, on the thread marking the last required milestone
+     * @param required milestones after which a frame can be received and handled
+     */
+    public StartupTrace(long originNanos, Runnable onReady, String... required) {
+        this.originNanos = originNanos;
+        this.onReady = onReady;
+        this.required = required.clone();
+    }
+    
+    /**
+     * Record the milestone now, unless already recorded
+     *
+     * @return true for the first mark
+     */
+    public boolean mark(String milestone) {
+        if (marks.containsKey(milestone)) {
+            return false;
+        }
+        if (marks.putIfAbsent(milestone, System.nanoTime() - originNanos) != null) {
+            return false;
+        }
+        
+        if (!FRAME_READY.equals(milestone) && isReadyReached() && mark(FRAME_READY)) {
+            onReady.run();
+        }
+        return true;
+    }
+    
+    public boolean isMarked(String milestone) {
+        return marks.containsKey(milestone);
+    }
+    
+    /**
+     * Milliseconds from process start to the milestone, or -1 if not reached
+     */
+    public long getMillis(String milestone) {
+        Long nanos = marks.get(milestone);
+        return nanos != null ? nanos / 1000000 : -1;
+    }
+    
+    /**
+     * Milliseconds between two milestones, or -1 if either is not reached
+     */
+    public long getMillis(String from, String to) {
+        long nanos = getNanos(from, to);
+        return nanos >= 0 ? nanos / 1000000 : -1;
+    }
+    
+    /**
+     * Nanoseconds between two milestones, or -1 if either is not reached
+     */
+    public long getNanos(String from, String to) {
+        Long start = marks.get(from);
+        Long end = marks.get(to);
+        return start != null && end != null ? end - start : -1;
+    }
+    
+    /**
+     * Milestones so far in the order reached, e.g. "service_created=412ms handler_ready=460ms"
+     */
+    public String summary() {
+        List<Map.Entry<String, Long>> reached = new ArrayList<>(marks.entrySet());
+        Collections.sort(reached, (a, b) -> Long.compare(a.getValue(), b.getValue()));
+        
+        StringBuilder summary = new StringBuilder();
+        for (Map.Entry<String, Long> entry : reached) {
+            if (summary.length() > 0) {
+                summary.append(' ');
+            }
+            summary.append(entry.getKey()).append('=').append(entry.getValue() / 1000000)
+                .append("ms");
+        }
+        return summary.toString();
+    }
+    
+    private boolean isReadyReached() {
+        for (String milestone : required) {
+            if (!marks.containsKey(milestone)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,124 @@
+package com.safety.womenalert;
+
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+
+/**
+ * Women Safety System - Stub Transport
+ * In-process transport with scripted latency and outcome, for fake-transport runs
+ *
+ * Each event is answered after delayMs(event) on a timer thread, failing
+ * when fails(event) is true. A negative delay never answers, like a
+ * request stuck on a dead link, until the event is cancelled.
+ */
+public class StubTransport implements AlertTransport {
+    
+    private final Listener listener;
+    private final ToLongFunction<EmergencyEvent> delayMs;
+    private final Predicate<EmergencyEvent> fails;
+    private final ScheduledThreadPoolExecutor timer;
+    
+    // Guarded by itself; a null future marks an event that never answers
+    private final Map<EmergencyEvent, ScheduledFuture<?>> pending = new IdentityHashMap<>();
+    
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong cancelled = new AtomicLong();
+    
+    /**
+     * Every event delivered after a fixed delay
+     */
+    public StubTransport(Listener listener, long delayMs) {
+        this(listener, event -> delayMs, event -> false);
+    }
+    
+    public StubTransport(Listener listener, ToLongFunction<EmergencyEvent> delayMs,
+                         Predicate<EmergencyEvent> fails) {
+        this.listener = listener;
+        this.delayMs = delayMs;
+        this.fails = fails;
+        this.timer = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread t = new Thread(r, "stub-transport");
+            t.setDaemon(true);
+            return t;
+        });
+        this.timer.setRemoveOnCancelPolicy(true);
+    }
+    
+    @Override
+    public void submit(EmergencyEvent event) {
+        submitted.incrementAndGet();
+        long delay = delayMs.applyAsLong(event);
+        
+        synchronized (pending) {
+            pending.put(event, delay < 0 ? null
+                : timer.schedule(() -> answer(event), delay, TimeUnit.MILLISECONDS));
+        }
+    }
+    
+    @Override
+    public boolean cancel(Predicate<EmergencyEvent> matches) {
+        boolean any = false;
+        synchronized (pending) {
+            Iterator<Map.Entry<EmergencyEvent, ScheduledFuture<?>>> entries =
+                pending.entrySet().iterator();
+            while (entries.hasNext()) {
+                Map.Entry<EmergencyEvent, ScheduledFuture<?>> entry = entries.next();
+                if (matches.test(entry.getKey())) {
+                    if (entry.getValue() != null) {
+                        entry.getValue().cancel(false);
+                    }
+                    entries.remove();
+                    cancelled.incrementAndGet();
+                    any = true;
+                }
+            }
+        }
+        return any;
+    }
+    
+    @Override
+    public void shutdown() {
+        timer.shutdownNow();
+    }
+    
+    public long getSubmittedCount() {
+        return submitted.get();
+    }
+    
+    public long getDeliveredCount() {
+        return delivered.get();
+    }
+    
+    public long getFailedCount() {
+        return failed.get();
+    }
+    
+    public long getCancelledCount() {
+        return cancelled.get();
+    }
+    
+    private void answer(EmergencyEvent event) {
+        synchronized (pending) {
+            if (pending.remove(event) == null) {
+                return;  // Cancelled meanwhile
+            }
+        }
+        
+        if (fails.test(event)) {
+            failed.incrementAndGet();
+            listener.onFailed(event, "Stub failure");
+        } else {
+            delivered.incrementAndGet();
+            listener.onDelivered(event);
+        }
+    }
+}
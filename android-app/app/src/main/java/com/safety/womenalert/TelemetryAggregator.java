@@ -0,0 +1,380 @@
+package com.safety.womenalert;
+
+import java.util.Arrays;
+
+/**
+ * Women Safety System - Telemetry Aggregator
+ * Per-device heartbeat and battery rollups in fixed memory, uploaded as deltas
+ *
+ * Every frame updates its device's current time window in a ring of
+ * {@code windows} windows: frames heard, frames lost (sequence gaps) and
+ * the battery sum. Rollups are computed from the ring: last battery level,
+ * battery trend in percent per hour (least squares over the window means),
+ * and link quality (heard / (heard + lost)).
+ *
+ * {@link #drain} returns only devices heard since they were last reported,
+ * with full rollups only for those whose rollup moved past a threshold;
+ * {@link #commit} marks a delta as reported once the backend has it. A
+ * failed upload is simply drained again next time.
+ *
+ * All state is in primitive arrays sized at construction. When maxDevices
+ * are tracked, a new device evicts the one heard longest ago, so wearers
+ * retired or passing by do not lock out new ones. Thread-safe; record()
+ * holds the lock for a handful of array writes, plus a table scan when it
+ * evicts.
+ */
+public class TelemetryAggregator {
+    
+    public static final long DEFAULT_WINDOW_MS = 5 * 60 * 1000;
+    public static final int DEFAULT_WINDOWS = 12;  // One hour
+    public static final int DEFAULT_MAX_DEVICES = 4096;
+    
+    private static final int EMPTY = -1;
+    private static final int NEVER = Integer.MIN_VALUE;
+    
+    // Larger jumps, forward or back, are a reboot or a long outage, not frames lost on air
+    private static final int MAX_GAP = 1024;
+    
+    // Rollup changes smaller than these are not worth an upload
+    private static final int LINK_CHANGE_PERCENT = 2;
+    private static final int TREND_CHANGE_TENTHS = 10;  // 1 %/h
+    
+    /**
+     * Devices heard since their last report; rollup fields are valid where isChanged(i)
+     */
+    public static final class Delta {
+        private final long takenAt;
+        private int size;
+        private final int[] slots;
+        private final int[] deviceIds;
+        private final long[] lastSeen;
+        private final boolean[] changed;
+        private final int[] battery;
+        private final int[] trendTenths;
+        private final int[] linkPercent;
+        
+        Delta(long takenAt, int capacity) {
+            this.takenAt = takenAt;
+            this.slots = new int[capacity];
+            this.deviceIds = new int[capacity];
+            this.lastSeen = new long[capacity];
+            this.changed = new boolean[capacity];
+            this.battery = new int[capacity];
+            this.trendTenths = new int[capacity];
+            this.linkPercent = new int[capacity];
+        }
+        
+        public int size() {
+            return size;
+        }
+        
+        public int getDeviceId(int i) {
+            return deviceIds[i];
+        }
+        
+        /**
+         * Time since the device was last heard, as of the drain
+         */
+        public long getMillisSinceSeen(int i) {
+            return takenAt - lastSeen[i];
+        }
+        
+        public boolean isChanged(int i) {
+            return changed[i];
+        }
+        
+        public int getBatteryLevel(int i) {
+            return battery[i];
+        }
+        
+        /**
+         * Percent per hour; negative while draining
+         */
+        public double getBatteryTrend(int i) {
+            return trendTenths[i] / 10.0;
+        }
+        
+        /**
+         * Fraction of the device's frames heard over the ring, 0..1
+         */
+        public double getLinkQuality(int i) {
+            return linkPercent[i] / 100.0;
+        }
+    }
+    
+    private final Clock clock;
+    private final long windowMs;
+    private final int windows;
+    private final int maxDevices;
+    
+    // Open-addressing table: keys[slot] is a device ID, or EMPTY
+    private final int[] keys;
+    private final int[] lastSequence;
+    private final long[] lastSeen;
+    private final int[] battery;
+    
+    // What the backend has: reportedSeen == lastSeen means nothing new
+    private final long[] reportedSeen;
+    private final int[] reportedBattery;
+    private final int[] reportedTrend;
+    private final int[] reportedLink;
+    
+    // Ring of windows per device, at slot * windows + (window % windows)
+    private final int[] windowIds;
+    private final int[] heard;
+    private final int[] lost;
+    private final int[] batterySum;
+    
+    private int size = 0;
+    private long devicesEvicted = 0;
+    
+    public TelemetryAggregator() {
+        this(Clock.SYSTEM, DEFAULT_WINDOW_MS, DEFAULT_WINDOWS, DEFAULT_MAX_DEVICES);
+    }
+    
+    public TelemetryAggregator(Clock clock, long windowMs, int windows, int maxDevices) {
+        this.clock = clock;
+        this.windowMs = windowMs;
+        this.windows = windows;
+        this.maxDevices = maxDevices;
+        
+        int tableSize = Integer.highestOneBit(Math.max(maxDevices, 4) * 2 - 1) << 1;
+        this.keys = new int[tableSize];
+        this.lastSequence = new int[tableSize];
+        this.lastSeen = new long[tableSize];
+        this.battery = new int[tableSize];
+        this.reportedSeen = new long[tableSize];
+        this.reportedBattery = new int[tableSize];
+        this.reportedTrend = new int[tableSize];
+        this.reportedLink = new int[tableSize];
+        this.windowIds = new int[tableSize * windows];
+        this.heard = new int[tableSize * windows];
+        this.lost = new int[tableSize * windows];
+        this.batterySum = new int[tableSize * windows];
+        Arrays.fill(keys, EMPTY);
+    }
+    
+    /**
+     * Count a frame from a device; duplicates must already be filtered out
+     */
+    public synchronized void record(int deviceId, int batteryLevel, int sequenceNumber) {
+        deviceId &= 0xFFFF;
+        sequenceNumber &= 0xFFFF;
+        long now = clock.millis();
+        
+        int slot = find(deviceId);
+        boolean known = keys[slot] != EMPTY;
+        if (!known) {
+            if (size == maxDevices) {
+                remove(oldest());
+                devicesEvicted++;
+                slot = find(deviceId);
+            }
+            keys[slot] = deviceId;
+            size++;
+            reportedSeen[slot] = Long.MIN_VALUE;
+            reportedBattery[slot] = NEVER;
+            reportedTrend[slot] = NEVER;
+            reportedLink[slot] = NEVER;
+            Arrays.fill(windowIds, slot * windows, (slot + 1) * windows, NEVER);
+        }
+        
+        int window = (int) Math.floorDiv(now, windowMs);
+        int cell = slot * windows + Math.floorMod(window, windows);
+        if (windowIds[cell] != window) {
+            windowIds[cell] = window;
+            heard[cell] = 0;
+            lost[cell] = 0;
+            batterySum[cell] = 0;
+        }
+        
+        heard[cell]++;
+        batterySum[cell] += batteryLevel;
+        // Up to MAX_GAP behind is a frame overtaken on the way: its gap was already
+        // counted, and the newest frame's number and battery level stay current
+        int ahead = (sequenceNumber - lastSequence[slot]) & 0xFFFF;
+        if (!known || (ahead != 0 && ahead <= 0x10000 - MAX_GAP)) {
+            if (known && ahead <= MAX_GAP) {
+                lost[cell] += ahead - 1;
+            }
+            lastSequence[slot] = sequenceNumber;
+            battery[slot] = batteryLevel;
+        }
+        lastSeen[slot] = now;
+    }
+    
+    /**
+     * Devices heard since last reported, at most maxDevices of them; nothing is
+     * marked reported until {@link #commit}
+     */
+    public synchronized Delta drain(int maxDevices) {
+        long now = clock.millis();
+        int current = (int) Math.floorDiv(now, windowMs);
+        
+        int pending = 0;
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != EMPTY && lastSeen[slot] != reportedSeen[slot]) {
+                pending++;
+            }
+        }
+        
+        Delta delta = new Delta(now, Math.min(pending, maxDevices));
+        for (int slot = 0; slot < keys.length && delta.size < delta.slots.length; slot++) {
+            if (keys[slot] == EMPTY || lastSeen[slot] == reportedSeen[slot]) {
+                continue;
+            }
+            
+            int i = delta.size++;
+            delta.slots[i] = slot;
+            delta.deviceIds[i] = keys[slot];
+            delta.lastSeen[i] = lastSeen[slot];
+            delta.battery[i] = battery[slot];
+            delta.trendTenths[i] = trendTenths(slot, current);
+            delta.linkPercent[i] = linkPercent(slot, current);
+            
+            delta.changed[i] = battery[slot] != reportedBattery[slot]
+                || Math.abs(delta.linkPercent[i] - reportedLink[slot]) >= LINK_CHANGE_PERCENT
+                || Math.abs(delta.trendTenths[i] - reportedTrend[slot]) >= TREND_CHANGE_TENTHS
+                || reportedLink[slot] == NEVER;
+        }
+        return delta;
+    }
+    
+    /**
+     * Mark a drained delta as received by the backend
+     */
+    public synchronized void commit(Delta delta) {
+        for (int i = 0; i < delta.size; i++) {
+            int slot = delta.slots[i];
+            if (keys[slot] != delta.deviceIds[i]) {
+                // Moved by an eviction since the drain, or evicted itself
+                slot = find(delta.deviceIds[i]);
+                if (keys[slot] == EMPTY) {
+                    continue;
+                }
+            }
+            reportedSeen[slot] = delta.lastSeen[i];
+            if (delta.changed[i]) {
+                reportedBattery[slot] = delta.battery[i];
+                reportedTrend[slot] = delta.trendTenths[i];
+                reportedLink[slot] = delta.linkPercent[i];
+            }
+        }
+    }
+    
+    public synchronized int size() {
+        return size;
+    }
+    
+    /**
+     * Devices forgotten to make room for new ones
+     */
+    public synchronized long getDevicesEvicted() {
+        return devicesEvicted;
+    }
+    
+    /**
+     * Heard / (heard + lost) over the ring, in percent
+     */
+    private int linkPercent(int slot, int current) {
+        long received = 0;
+        long missing = 0;
+        for (int cell = slot * windows; cell < (slot + 1) * windows; cell++) {
+            if (isLive(cell, current)) {
+                received += heard[cell];
+                missing += lost[cell];
+            }
+        }
+        return received == 0 ? 0 : (int) (received * 100 / (received + missing));
+    }
+    
+    /**
+     * Least-squares slope of the window mean battery levels, in tenths of a percent per hour
+     */
+    private int trendTenths(int slot, int current) {
+        int n = 0;
+        double sumX = 0, sumY = 0, sumXX = 0, sumXY = 0;
+        for (int cell = slot * windows; cell < (slot + 1) * windows; cell++) {
+            if (isLive(cell, current) && heard[cell] > 0) {
+                double x = windowIds[cell] - current;
+                double y = (double) batterySum[cell] / heard[cell];
+                n++;
+                sumX += x;
+                sumY += y;
+                sumXX += x * x;
+                sumXY += x * y;
+            }
+        }
+        
+        double denominator = n * sumXX - sumX * sumX;
+        if (n < 2 || denominator == 0) {
+            return 0;
+        }
+        double perWindow = (n * sumXY - sumX * sumY) / denominator;
+        return (int) Math.round(perWindow * (3600000.0 / windowMs) * 10);
+    }
+    
+    private boolean isLive(int cell, int current) {
+        return windowIds[cell] != NEVER && current - windowIds[cell] < windows;
+    }
+    
+    /**
+     * Slot of the device heard longest ago
+     */
+    private int oldest() {
+        int oldest = EMPTY;
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != EMPTY && (oldest == EMPTY || lastSeen[slot] < lastSeen[oldest])) {
+                oldest = slot;
+            }
+        }
+        return oldest;
+    }
+    
+    /**
+     * Empty a slot, shifting later entries of its probe run back so find() still reaches them
+     */
+    private void remove(int slot) {
+        int mask = keys.length - 1;
+        int hole = slot;
+        for (int next = (hole + 1) & mask; keys[next] != EMPTY; next = (next + 1) & mask) {
+            // Movable unless its home slot lies after the hole
+            int home = mix(keys[next]) & mask;
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                move(next, hole);
+                hole = next;
+            }
+        }
+        keys[hole] = EMPTY;
+        size--;
+    }
+    
+    private void move(int from, int to) {
+        keys[to] = keys[from];
+        lastSequence[to] = lastSequence[from];
+        lastSeen[to] = lastSeen[from];
+        battery[to] = battery[from];
+        reportedSeen[to] = reportedSeen[from];
+        reportedBattery[to] = reportedBattery[from];
+        reportedTrend[to] = reportedTrend[from];
+        reportedLink[to] = reportedLink[from];
+        System.arraycopy(windowIds, from * windows, windowIds, to * windows, windows);
+        System.arraycopy(heard, from * windows, heard, to * windows, windows);
+        System.arraycopy(lost, from * windows, lost, to * windows, windows);
+        System.arraycopy(batterySum, from * windows, batterySum, to * windows, windows);
+    }
+    
+    private int find(int deviceId) {
+        int mask = keys.length - 1;
+        int slot = mix(deviceId) & mask;
+        while (keys[slot] != EMPTY && keys[slot] != deviceId) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+    
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
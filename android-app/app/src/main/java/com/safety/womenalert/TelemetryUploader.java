@@ -0,0 +1,168 @@
+package com.safety.womenalert;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Women Safety System - Telemetry Uploader
+ * Posts telemetry deltas to /api/telemetry on a fixed schedule
+ *
+ * One request per interval carries every device heard since the last
+ * successful upload, in pages of MAX_DEVICES_PER_REQUEST. A page is only
+ * committed to the aggregator after a 2xx, so failures are retried on the
+ * next tick without any extra bookkeeping.
+ */
+public class TelemetryUploader {
+    
+    public static final long DEFAULT_INTERVAL_MS = 60000;
+    
+    private static final int TIMEOUT_MS = 10000;  // 10 seconds
+    
+    // Keeps each body well under the backend's 100 kB JSON limit
+    private static final int MAX_DEVICES_PER_REQUEST = 500;
+    
+    private final TelemetryAggregator aggregator;
+    private final Supplier<String> backendUrl;
+    private final Supplier<String> apiKey;
+    private final long intervalMs;
+    private ScheduledExecutorService executor;
+    
+    public TelemetryUploader(TelemetryAggregator aggregator, Supplier<String> backendUrl) {
+        this(aggregator, backendUrl, ApiKey.NONE, DEFAULT_INTERVAL_MS);
+    }
+    
+    public TelemetryUploader(TelemetryAggregator aggregator, Supplier<String> backendUrl,
+                             Supplier<String> apiKey) {
+        this(aggregator, backendUrl, apiKey, DEFAULT_INTERVAL_MS);
+    }
+    
+    public TelemetryUploader(TelemetryAggregator aggregator, Supplier<String> backendUrl,
+                             Supplier<String> apiKey, long intervalMs) {
+        this.aggregator = aggregator;
+        this.backendUrl = backendUrl;
+        this.apiKey = apiKey;
+        this.intervalMs = intervalMs;
+    }
+    
+    public synchronized void start() {
+        if (executor != null) {
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "telemetry-uplink");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::uploadPending, intervalMs, intervalMs,
+            TimeUnit.MILLISECONDS);
+    }
+    
+    public synchronized void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+    
+    /**
+     * Upload everything pending now
+     * @return false if a request failed; the rest stays pending for the next tick
+     */
+    public boolean uploadPending() {
+        String baseUrl = backendUrl.get();
+        if (baseUrl == null || baseUrl.isEmpty()) {
+            return false;
+        }
+        
+        // Bounded: devices heard while paging must not keep the loop going
+        int pages = aggregator.size() / MAX_DEVICES_PER_REQUEST + 1;
+        for (int page = 0; page < pages; page++) {
+            TelemetryAggregator.Delta delta = aggregator.drain(MAX_DEVICES_PER_REQUEST);
+            if (delta.size() == 0) {
+                break;
+            }
+            
+            try {
+                post(baseUrl + "/api/telemetry", toJson(delta).getBytes(StandardCharsets.UTF_8));
+                aggregator.commit(delta);
+                Metrics.TELEMETRY_UPLOADS.increment();
+            } catch (IOException | JSONException e) {
+                Metrics.TELEMETRY_UPLOAD_FAILURES.increment();
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Body for POST /api/telemetry: "seen" maps every device in the delta to
+     * seconds since it was heard; "devices" has rollups for the changed ones
+     */
+    public static String toJson(TelemetryAggregator.Delta delta) throws JSONException {
+        JSONObject seen = new JSONObject();
+        JSONArray devices = new JSONArray();
+        
+        for (int i = 0; i < delta.size(); i++) {
+            int deviceId = delta.getDeviceId(i);
+            seen.put(Integer.toString(deviceId), delta.getMillisSinceSeen(i) / 1000);
+            
+            if (delta.isChanged(i)) {
+                JSONObject device = new JSONObject();
+                device.put("deviceId", deviceId);
+                device.put("batteryLevel", delta.getBatteryLevel(i));
+                device.put("batteryTrend", delta.getBatteryTrend(i));
+                device.put("linkQuality", delta.getLinkQuality(i));
+                devices.put(device);
+            }
+        }
+        
+        JSONObject payload = new JSONObject();
+        payload.put("seen", seen);
+        payload.put("devices", devices);
+        return payload.toString();
+    }
+    
+    private void post(String url, byte[] body) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
+        conn.setRequestMethod("POST");
+        conn.setRequestProperty("Content-Type", "application/json");
+        ApiKey.apply(conn, apiKey);
+        conn.setDoOutput(true);
+        conn.setConnectTimeout(TIMEOUT_MS);
+        conn.setReadTimeout(TIMEOUT_MS);
+        
+        conn.setFixedLengthStreamingMode(body.length);
+        try (OutputStream os = conn.getOutputStream()) {
+            os.write(body);
+        }
+        
+        int responseCode = conn.getResponseCode();
+        boolean ok = responseCode >= 200 && responseCode < 300;
+        
+        // Drain the body so the connection can be reused
+        try (InputStream in = ok ? conn.getInputStream() : conn.getErrorStream()) {
+            if (in != null) {
+                byte[] buffer = new byte[512];
+                while (in.read(buffer) != -1) {
+                    // Discard
+                }
+            }
+        }
+        
+        if (!ok) {
+            throw new IOException("HTTP " + responseCode);
+        }
+    }
+}
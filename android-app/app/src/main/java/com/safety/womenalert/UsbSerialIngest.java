@@ -0,0 +1,509 @@
+package com.safety.womenalert;
+
+import android.app.PendingIntent;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.hardware.usb.UsbDevice;
+import android.hardware.usb.UsbManager;
+import android.os.Build;
+import android.util.Log;
+
+import com.hoho.android.usbserial.driver.UsbSerialDriver;
+import com.hoho.android.usbserial.driver.UsbSerialPort;
+import com.hoho.android.usbserial.driver.UsbSerialProber;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Women Safety System - USB Serial Ingest
+ * Reads every attached LoRa adapter and merges their frames into one deduplicated stream
+ *
+ * Each serial port gets its own reader thread, whose callback only copies
+ * bytes into the port's ByteRing. A SerialSupervisor per port reopens it
+ * after reader errors; each reconnect starts a new ring and the
+ * decoder is reset between them. One consumer thread drains every ring
+ * through that port's FrameDecoder, drops copies already heard via another
+ * dongle with a shared FrameTracker, and queues the rest in a FrameQueue
+ * so emergencies and cancels reach the listener ahead of heartbeats. A slow
+ * listener therefore backs up the queue, not the USB reads. Adapters are
+ * opened and closed as they are plugged in and out, without restarting the
+ * service, and start() leaves probing and opening to the supervisor thread.
+ *
+ * Emergencies and cancels are acknowledged back over the air through the
+ * port that heard them first, once the listener has persisted them and
+ * calls acknowledge(); an AckBatcher packs the ACKs into shared frames.
+ */
+public class UsbSerialIngest {
+    
+    private static final String TAG = "UsbSerialIngest";
+    private static final String ACTION_USB_PERMISSION = "com.safety.womenalert.USB_PERMISSION";
+    
+    public static final int DEFAULT_BAUD_RATE = 9600;
+    
+    /**
+     * Per-port counters at the time of {@link #getPortStats()}; read without
+     * stopping the consumer, so approximate while data is flowing
+     */
+    public static final class PortStats {
+        public final String name;
+        public final int baudRate;
+        public final long bytesReceived;
+        public final long framesDecoded;
+        public final long framesDuplicate;
+        public final long checksumErrors;
+        public final long bytesSkipped;
+        public final long bytesDropped;
+        
+        PortStats(String name, int baudRate, long bytesReceived, long framesDecoded,
+                  long framesDuplicate, long checksumErrors, long bytesSkipped,
+                  long bytesDropped) {
+            this.name = name;
+            this.baudRate = baudRate;
+            this.bytesReceived = bytesReceived;
+            this.framesDecoded = framesDecoded;
+            this.framesDuplicate = framesDuplicate;
+            this.checksumErrors = checksumErrors;
+            this.bytesSkipped = bytesSkipped;
+            this.bytesDropped = bytesDropped;
+        }
+        
+        /**
+         * Frames this port heard first; the rest were already delivered via another port
+         */
+        public long getFramesUnique() {
+            return framesDecoded - framesDuplicate;
+        }
+    }
+    
+    /**
+     * One serial port: its supervised link, the ring of its current connection, and its decoder
+     */
+    private final class PortReader implements SerialSupervisor.Listener,
+            FrameDecoder.FrameListener {
+        final String name;
+        final int number;
+        final UsbSerialLink link;
+        final SerialSupervisor supervisor;
+        final FrameDecoder decoder = new FrameDecoder(this);
+        final ByteRing.Sink decoderInput = decoder::feed;
+        final AtomicLong duplicates = new AtomicLong();
+        
+        // A fresh ring per connection, written by that connection's reader thread
+        volatile ByteRing ring = new ByteRing();
+        
+        // Consumer thread only: the ring being decoded, and wall clock at the current drain
+        ByteRing draining = ring;
+        long drainedAt;
+        volatile long bytesDroppedBefore = 0;  // By rings of earlier connections
+        
+        PortReader(String name, int number, UsbSerialLink link) {
+            this.name = name;
+            this.number = number;
+            this.link = link;
+            this.supervisor = new SerialSupervisor(link, this, supervisorExecutor);
+            this.decoder.setResyncEnabled(true);
+            if (recorder != null) {
+                this.decoder.setRawFrameListener(
+                    (frame, checksumValid) -> recorder.record(drainedAt, number, frame,
+                        checksumValid));
+            }
+        }
+        
+        // Supervisor callbacks
+        
+        @Override
+        public SerialLink.DataSink onConnecting(int connection) {
+            ByteRing fresh = connection == 1 ? ring : new ByteRing();
+            ring = fresh;
+            return data -> {
+                // Reader thread: copy and go, everything else is on the consumer
+                if (!fresh.offer(data, 0, data.length)) {
+                    Metrics.SERIAL_OVERFLOW_BYTES.add(data.length);
+                }
+                wakeConsumer();
+            };
+        }
+        
+        @Override
+        public void onConnected(int connection) {
+            if (trace != null) {
+                trace.mark(StartupTrace.FIRST_PORT_OPEN);
+            }
+        }
+        
+        @Override
+        public void onDisconnected(int connection, String reason, long retryInMs) {
+            Log.w(TAG, name + ": " + reason + "; reconnecting in " + retryInMs + " ms");
+        }
+        
+        // Decoder callbacks, on the consumer thread
+        
+        @Override
+        public void onFrame(int deviceId, int packetType, int batteryLevel,
+                            int timestamp, int sequenceNumber) {
+            merge(this, deviceId, packetType, batteryLevel, timestamp, sequenceNumber);
+        }
+        
+        @Override
+        public void onChecksumError(int deviceId, int sequenceNumber) {
+            Metrics.CRC_FAILURES.increment();
+            listener.onChecksumError(deviceId, sequenceNumber);
+        }
+    }
+    
+    private final Context context;
+    private final UsbManager usbManager;
+    private final FrameDecoder.FrameListener listener;
+    private final int baudRate;
+    private final FlightRecorder recorder;
+    private final StartupTrace trace;
+    
+    // Opens and closes for every port's supervisor; exists while started
+    private ScheduledExecutorService supervisorExecutor;
+    
+    // Flushes on the supervisor thread; exists while started
+    private volatile AckBatcher acks;
+    
+    // Guarded by this; keyed by "deviceName#portIndex"
+    private final Map<String, PortReader> readers = new LinkedHashMap<>();
+    
+    // Guarded by this; numbers ports in the flight recording, never reused
+    private int nextPortNumber = 0;
+    
+    // Open readers for the consumer; replaced under this whenever readers changes
+    private volatile PortReader[] active = new PortReader[0];
+    
+    // Consumer thread only; the tracker is shared by all ports so copies heard twice are dropped
+    private final FrameTracker frameTracker = new FrameTracker();
+    private final FrameQueue frameQueue = new FrameQueue();
+    
+    private volatile Thread consumer;
+    private volatile boolean consumerParked = false;
+    
+    private boolean started = false;
+    
+    private final BroadcastReceiver usbReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            UsbDevice device = intent.getParcelableExtra(UsbManager.EXTRA_DEVICE);
+            if (device == null) {
+                return;
+            }
+            
+            String action = intent.getAction();
+            if (UsbManager.ACTION_USB_DEVICE_DETACHED.equals(action)) {
+                closeDevice(device);
+            } else if (UsbManager.ACTION_USB_DEVICE_ATTACHED.equals(action)
+                    || ACTION_USB_PERMISSION.equals(action)) {
+                openDevice(device);
+            }
+        }
+    };
+    
+    /**
+     * @param listener receives each frame once, on the "lora-ingest" consumer thread
+     * @param baudRate line rate for every adapter, e.g. 9600 or 115200
+     * @param recorder gets every raw frame on the consumer thread, or null to record nothing
+     * @param trace marked as the ingest starts and the first port opens, or null
+     */
+    public UsbSerialIngest(Context context, FrameDecoder.FrameListener listener, int baudRate,
+                           FlightRecorder recorder, StartupTrace trace) {
+        this.context = context;
+        this.usbManager = (UsbManager) context.getSystemService(Context.USB_SERVICE);
+        this.listener = listener;
+        this.baudRate = baudRate;
+        this.recorder = recorder;
+        this.trace = trace;
+    }
+    
+    /**
+     * Watch for hot-plug and open every attached adapter. Returns without
+     * waiting for driver probing or opens, which run on the supervisor thread.
+     */
+    public synchronized void start() {
+        if (started || usbManager == null) {
+            return;
+        }
+        started = true;
+        
+        consumer = new Thread(this::consume, "lora-ingest");
+        consumer.setDaemon(true);
+        consumer.start();
+        
+        supervisorExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "serial-supervisor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        acks = new AckBatcher(this::writeAck, supervisorExecutor);
+        
+        IntentFilter filter = new IntentFilter();
+        filter.addAction(UsbManager.ACTION_USB_DEVICE_ATTACHED);
+        filter.addAction(UsbManager.ACTION_USB_DEVICE_DETACHED);
+        filter.addAction(ACTION_USB_PERMISSION);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
+            context.registerReceiver(usbReceiver, filter, Context.RECEIVER_NOT_EXPORTED);
+        } else {
+            context.registerReceiver(usbReceiver, filter);
+        }
+        
+        supervisorExecutor.execute(this::openAttached);
+        if (trace != null) {
+            trace.mark(StartupTrace.INGEST_STARTED);
+        }
+    }
+    
+    public synchronized void stop() {
+        if (!started) {
+            return;
+        }
+        started = false;
+        
+        context.unregisterReceiver(usbReceiver);
+        for (PortReader reader : readers.values()) {
+            reader.supervisor.stop();
+        }
+        readers.clear();
+        active = new PortReader[0];
+        acks = null;  // ACKs still batched are dropped; the wearers retransmit
+        supervisorExecutor.shutdownNow();
+        supervisorExecutor = null;
+        
+        // Frames still queued are dropped with the thread
+        Thread stopping = consumer;
+        consumer = null;
+        LockSupport.unpark(stopping);
+    }
+    
+    /**
+     * Tell the wearer its frame is safe and it can stop retransmitting; call
+     * once the emergency or cancel has been persisted. Any thread.
+     */
+    public void acknowledge(int deviceId, int sequenceNumber, int timestamp) {
+        AckBatcher batcher = acks;
+        if (batcher != null) {
+            batcher.acknowledge(deviceId, sequenceNumber, timestamp);
+        }
+    }
+    
+    public synchronized int getPortCount() {
+        return readers.size();
+    }
+    
+    public synchronized List<PortStats> getPortStats() {
+        List<PortStats> stats = new ArrayList<>(readers.size());
+        for (PortReader reader : readers.values()) {
+            FrameDecoder decoder = reader.decoder;
+            stats.add(new PortStats(reader.name, baudRate, decoder.getBytesReceived(),
+                decoder.getFramesDecoded(), reader.duplicates.get(),
+                decoder.getChecksumErrors(), decoder.getBytesSkipped(),
+                reader.bytesDroppedBefore + reader.ring.getBytesDropped()));
+        }
+        return stats;
+    }
+    
+    /**
+     * Probe the adapters attached before start(); on the supervisor thread,
+     * outside the lock, since probing reads every device's descriptors
+     */
+    private void openAttached() {
+        List<UsbSerialDriver> drivers = UsbSerialProber.getDefaultProber()
+            .findAllDrivers(usbManager);
+        if (trace != null) {
+            trace.mark(StartupTrace.ADAPTERS_PROBED);
+        }
+        if (drivers.isEmpty()) {
+            Log.w(TAG, "No USB serial devices found");
+        }
+        for (UsbSerialDriver driver : drivers) {
+            openDevice(driver.getDevice());
+        }
+    }
+    
+    private synchronized void openDevice(UsbDevice device) {
+        if (!started) {
+            return;
+        }
+        
+        UsbSerialDriver driver = UsbSerialProber.getDefaultProber().probeDevice(device);
+        if (driver == null) {
+            return;  // Not a serial adapter
+        }
+        
+        if (!usbManager.hasPermission(device)) {
+            // Opened from usbReceiver once the user grants access
+            Intent intent = new Intent(ACTION_USB_PERMISSION).setPackage(context.getPackageName());
+            PendingIntent permissionIntent = PendingIntent.getBroadcast(context, 0, intent,
+                PendingIntent.FLAG_MUTABLE);
+            usbManager.requestPermission(device, permissionIntent);
+            return;
+        }
+        
+        List<UsbSerialPort> ports = driver.getPorts();
+        for (int i = 0; i < ports.size(); i++) {
+            String name = device.getDeviceName() + "#" + i;
+            if (readers.containsKey(name)) {
+                continue;
+            }
+            
+            // Opened, and reopened after failures, by the supervisor
+            UsbSerialLink link = new UsbSerialLink(name, usbManager, device, ports.get(i),
+                baudRate);
+            PortReader reader = new PortReader(name, nextPortNumber++, link);
+            readers.put(name, reader);
+            active = readers.values().toArray(new PortReader[0]);
+            reader.supervisor.start();
+            Log.i(TAG, "Supervising LoRa adapter " + name + " (port " + reader.number + ") at "
+                + baudRate + " baud");
+        }
+    }
+    
+    private synchronized void closeDevice(UsbDevice device) {
+        List<PortReader> detached = new ArrayList<>();
+        for (PortReader reader : readers.values()) {
+            if (reader.link.getDevice().getDeviceId() == device.getDeviceId()) {
+                detached.add(reader);
+            }
+        }
+        for (PortReader reader : detached) {
+            closePort(reader);
+        }
+    }
+    
+    private synchronized void closePort(PortReader reader) {
+        if (readers.remove(reader.name) == reader) {
+            active = readers.values().toArray(new PortReader[0]);
+            reader.supervisor.stop();
+            Log.i(TAG, "Disconnected LoRa adapter " + reader.name);
+        }
+    }
+    
+    private void merge(PortReader from, int deviceId, int packetType, int batteryLevel,
+                       int timestamp, int sequenceNumber) {
+        Metrics.FRAMES_RECEIVED.increment();
+        
+        int verdict = frameTracker.track(deviceId, packetType, timestamp, sequenceNumber);
+        
+        // Drop firmware retransmissions and copies already heard on another port;
+        // late frames that were never seen go through
+        boolean acked = packetType == FrameDecoder.PACKET_TYPE_EMERGENCY
+            || packetType == FrameDecoder.PACKET_TYPE_CANCEL;
+        AckBatcher batcher = acks;
+        if (verdict == SequenceTracker.DUPLICATE) {
+            from.duplicates.incrementAndGet();
+            Metrics.FRAMES_SUPPRESSED.increment();
+            if (acked && batcher != null) {
+                batcher.onDuplicate(deviceId, sequenceNumber, timestamp, from.number);
+            }
+            return;
+        }
+        if (verdict == SequenceTracker.REBOOTED) {
+            Log.i(TAG, "Device " + deviceId + " restarted, sequence reset");
+            if (batcher != null) {
+                batcher.rebooted(deviceId);
+            }
+        }
+        if (acked && batcher != null) {
+            batcher.heard(deviceId, from.number);
+        }
+        
+        frameQueue.add(deviceId, packetType, batteryLevel, timestamp, sequenceNumber);
+    }
+    
+    /**
+     * Consumer loop: drain every ring, then dispatch one frame, so an emergency
+     * that has just arrived overtakes heartbeats already queued
+     */
+    private void consume() {
+        Thread self = Thread.currentThread();
+        while (consumer == self) {
+            boolean received = false;
+            for (PortReader reader : active) {
+                ByteRing ring = reader.ring;
+                if (ring != reader.draining) {
+                    // Reconnected: finish the old connection, then never join bytes across the gap
+                    received |= drain(reader, reader.draining);
+                    reader.decoder.reset();
+                    reader.bytesDroppedBefore += reader.draining.getBytesDropped();
+                    reader.draining = ring;
+                }
+                received |= drain(reader, ring);
+            }
+            
+            try {
+                if (frameQueue.dispatchNext(listener)) {
+                    continue;
+                }
+            } catch (RuntimeException e) {
+                // A bad frame must not take the ingest down with it
+                Log.e(TAG, "Frame listener failed", e);
+                continue;
+            }
+            if (received) {
+                continue;
+            }
+            
+            // Set before the final check; producers unpark after publishing
+            consumerParked = true;
+            if (allRingsEmpty() && consumer == self) {
+                LockSupport.park(this);
+            }
+            consumerParked = false;
+        }
+    }
+    
+    /**
+     * AckBatcher writer: out of the numbered port, if it is still attached and open
+     */
+    private void writeAck(int port, byte[] frame) throws IOException {
+        for (PortReader reader : active) {
+            if (reader.number == port) {
+                try {
+                    reader.supervisor.write(frame);
+                } catch (IOException e) {
+                    Log.w(TAG, "ACK not written to " + reader.name + ": " + e.getMessage());
+                    throw e;
+                }
+                return;
+            }
+        }
+        throw new IOException("Port " + port + " is no longer attached");
+    }
+    
+    private boolean drain(PortReader reader, ByteRing ring) {
+        if (ring.isEmpty()) {
+            return false;
+        }
+        reader.drainedAt = System.currentTimeMillis();
+        Metrics.SERIAL_BYTES.add(ring.drainTo(reader.decoderInput));
+        return true;
+    }
+    
+    private boolean allRingsEmpty() {
+        for (PortReader reader : active) {
+            if (reader.ring != reader.draining || !reader.ring.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private void wakeConsumer() {
+        if (consumerParked) {
+            Thread thread = consumer;
+            if (thread != null) {
+                LockSupport.unpark(thread);
+            }
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.safety.womenalert;
+
+import android.hardware.usb.UsbDevice;
+import android.hardware.usb.UsbDeviceConnection;
+import android.hardware.usb.UsbManager;
+import android.util.Log;
+
+import com.hoho.android.usbserial.driver.UsbSerialPort;
+import com.hoho.android.usbserial.util.SerialInputOutputManager;
+
+import java.io.IOException;
+
+/**
+ * Women Safety System - USB Serial Link
+ * One port of a USB serial adapter, opened with its own reader thread
+ */
+public class UsbSerialLink implements SerialLink {
+    
+    private static final String TAG = "UsbSerialLink";
+    private static final int WRITE_TIMEOUT_MS = 200;
+    
+    private final String name;
+    private final UsbManager usbManager;
+    private final UsbDevice device;
+    private final UsbSerialPort port;
+    private final int baudRate;
+    
+    // Guarded by this
+    private SerialInputOutputManager ioManager;
+    
+    public UsbSerialLink(String name, UsbManager usbManager, UsbDevice device,
+                         UsbSerialPort port, int baudRate) {
+        this.name = name;
+        this.usbManager = usbManager;
+        this.device = device;
+        this.port = port;
+        this.baudRate = baudRate;
+    }
+    
+    @Override
+    public synchronized void open(Callback callback) throws IOException {
+        if (ioManager != null) {
+            throw new IOException(name + " is already open");
+        }
+        
+        UsbDeviceConnection connection = usbManager.openDevice(device);
+        if (connection == null) {
+            throw new IOException("Failed to open USB device connection for " + name);
+        }
+        
+        try {
+            port.open(connection);
+            port.setParameters(baudRate, 8, UsbSerialPort.STOPBITS_1,
+                UsbSerialPort.PARITY_NONE);
+        } catch (IOException e) {
+            closePort();
+            throw e;
+        }
+        
+        ioManager = new SerialInputOutputManager(port, new SerialInputOutputManager.Listener() {
+            @Override
+            public void onNewData(byte[] data) {
+                callback.onData(data);
+            }
+            
+            @Override
+            public void onRunError(Exception e) {
+                callback.onError(e);
+            }
+        });
+        Thread thread = new Thread(ioManager, "lora-serial-" + name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+    
+    @Override
+    public synchronized void close() {
+        if (ioManager != null) {
+            ioManager.stop();
+            ioManager = null;
+        }
+        closePort();
+    }
+    
+    @Override
+    public synchronized void write(byte[] data) throws IOException {
+        if (ioManager == null) {
+            throw new IOException(name + " is not open");
+        }
+        port.write(data, WRITE_TIMEOUT_MS);
+    }
+    
+    @Override
+    public String getName() {
+        return name;
+    }
+    
+    public UsbDevice getDevice() {
+        return device;
+    }
+    
+    private void closePort() {
+        if (!port.isOpen()) {
+            return;
+        }
+        try {
+            port.close();
+        } catch (IOException e) {
+            Log.w(TAG, "Error closing " + name, e);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.safety.womenalert;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Women Safety System - AckBatcher Test
+ * Retransmissions are re-acked only for frames persisted since the wearer last rebooted
+ */
+public class AckBatcherTest {
+    
+    private static final int PORT = 0;
+    
+    private final List<String> written = Collections.synchronizedList(new ArrayList<>());
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private final AckBatcher batcher = new AckBatcher((port, frame) -> {
+        int[] deviceIds = new int[AckFrame.MAX_ENTRIES];
+        int[] sequenceNumbers = new int[AckFrame.MAX_ENTRIES];
+        int count = AckFrame.decode(frame, 0, frame.length, deviceIds, sequenceNumbers);
+        for (int i = 0; i < count; i++) {
+            written.add(deviceIds[i] + ":" + sequenceNumbers[i]);
+        }
+    }, scheduler, 1);
+    
+    @After
+    public void tearDown() {
+        scheduler.shutdownNow();
+    }
+    
+    private static boolean await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            Thread.sleep(1);
+        }
+        return true;
+    }
+    
+    private void acknowledge(int deviceId, int sequenceNumber, int timestamp)
+            throws InterruptedException {
+        long frames = batcher.getFramesWritten();
+        batcher.heard(deviceId, PORT);
+        batcher.acknowledge(deviceId, sequenceNumber, timestamp);
+        assertTrue(await(() -> batcher.getFramesWritten() == frames + 1));
+    }
+    
+    @Test
+    public void reAcksOnlyThePersistedFrame() throws InterruptedException {
+        // Not yet acknowledged: its ACK is still on its way
+        batcher.onDuplicate(7, 1, 100, PORT);
+        acknowledge(7, 1, 100);
+        
+        // Same number, another timestamp: a different frame, never persisted
+        batcher.onDuplicate(7, 1, 160, PORT);
+        assertEquals(0, batcher.getReacks());
+        
+        batcher.onDuplicate(7, 1, 100, PORT);
+        assertEquals(1, batcher.getReacks());
+        assertTrue(await(() -> batcher.getFramesWritten() == 2));
+        assertEquals("[7:1, 7:1]", written.toString());
+    }
+    
+    @Test
+    public void rebootForgetsTheDevicesAcks() throws InterruptedException {
+        acknowledge(7, 1, 100);
+        acknowledge(8, 1, 100);
+        
+        batcher.rebooted(7);
+        batcher.onDuplicate(7, 1, 100, PORT);
+        assertEquals(0, batcher.getReacks());
+        
+        // Other wearers are unaffected
+        batcher.onDuplicate(8, 1, 100, PORT);
+        assertEquals(1, batcher.getReacks());
+    }
+}
@@ -0,0 +1,69 @@
+package com.safety.womenalert;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Women Safety System - ApiResult Test
+ * Single and batch emergency responses as EmergencyUplink reads them
+ */
+public class ApiResultTest {
+    
+    private static ApiResult read(String body, int status) throws IOException {
+        return ApiResult.read(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)),
+            status, 0);
+    }
+    
+    @Test
+    public void readsSingleResponse() throws IOException {
+        ApiResult result = read("{\"success\":true,\"incidentId\":\"inc-1\","
+            + "\"message\":\"Emergency alert received\",\"timestamp\":\"2026-01-19T21:30:00Z\"}",
+            201);
+        
+        assertTrue(result.isSuccess());
+        assertEquals("inc-1", result.getIncidentId());
+        assertEquals("2026-01-19T21:30:00Z", result.getServerTimestamp());
+        assertTrue(result.getResults().isEmpty());
+    }
+    
+    @Test
+    public void readsBatchResultsInOrder() throws IOException {
+        ApiResult batch = read("{\"success\":false,\"results\":["
+            + "{\"success\":true,\"incidentId\":\"inc-1\",\"alerts\":{\"sms\":[1,2]}},"
+            + "{\"success\":false,\"error\":\"Device ID is required\"},"
+            + "7,"
+            + "{\"success\":true,\"incidentId\":\"inc-3\"}"
+            + "],\"timestamp\":\"2026-01-19T21:30:00Z\"}", 200);
+        
+        List<ApiResult> results = batch.getResults();
+        assertEquals(4, results.size());
+        assertTrue(results.get(0).isSuccess());
+        assertEquals("inc-1", results.get(0).getIncidentId());
+        assertFalse(results.get(1).isSuccess());
+        assertEquals("Device ID is required", results.get(1).getMessage());
+        assertNull(results.get(2));
+        assertEquals("inc-3", results.get(3).getIncidentId());
+        
+        // Fields after the array still belong to the batch
+        assertEquals("2026-01-19T21:30:00Z", batch.getServerTimestamp());
+        assertNull(batch.getIncidentId());
+    }
+    
+    @Test
+    public void emptyBodyLeavesFieldsUnset() throws IOException {
+        ApiResult result = read("", 201);
+        
+        assertTrue(result.isSuccess());
+        assertNull(result.getIncidentId());
+        assertTrue(result.getResults().isEmpty());
+    }
+}
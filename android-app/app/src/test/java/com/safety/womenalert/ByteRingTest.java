@@ -0,0 +1,218 @@
+package com.safety.womenalert;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Women Safety System - ByteRing Test
+ * Wraparound, whole-chunk drops, and a producer and a parking consumer on two threads
+ */
+public class ByteRingTest {
+    
+    /**
+     * Drains on its own thread and parks while the ring is empty, as the ingest consumer does
+     */
+    private static final class ParkingConsumer extends Thread {
+        private final ByteRing ring;
+        private final ByteRing.Sink sink;
+        private volatile boolean running = true;
+        volatile boolean parked = false;
+        
+        ParkingConsumer(ByteRing ring, ByteRing.Sink sink) {
+            super("ring-consumer");
+            this.ring = ring;
+            this.sink = sink;
+            setDaemon(true);
+        }
+        
+        @Override
+        public void run() {
+            while (running) {
+                if (ring.drainTo(sink) > 0) {
+                    continue;
+                }
+                // Set before the final check; the producer unparks after publishing
+                parked = true;
+                if (ring.isEmpty() && running) {
+                    LockSupport.park(this);
+                }
+                parked = false;
+            }
+        }
+        
+        /**
+         * Producer side, after each offer
+         */
+        void wake() {
+            if (parked) {
+                LockSupport.unpark(this);
+            }
+        }
+        
+        void finish() throws InterruptedException {
+            running = false;
+            LockSupport.unpark(this);
+            join(5000);
+        }
+    }
+    
+    private ParkingConsumer consumer;
+    
+    @After
+    public void tearDown() throws InterruptedException {
+        if (consumer != null) {
+            consumer.finish();
+        }
+    }
+    
+    private static boolean await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            Thread.sleep(1);
+        }
+        return true;
+    }
+    
+    private static byte[] bytes(int from, int length) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) (from + i);
+        }
+        return data;
+    }
+    
+    private static byte[] drain(ByteRing ring, int[] spans) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ring.drainTo((data, offset, length) -> {
+            out.write(data, offset, length);
+            spans[0]++;
+        });
+        return out.toByteArray();
+    }
+    
+    @Test
+    public void capacityRoundsUpToAPowerOfTwo() {
+        assertEquals(1024, new ByteRing(1000).capacity());
+        assertEquals(16, new ByteRing(16).capacity());
+    }
+    
+    @Test
+    public void chunkAcrossTheEndWrapsAround() {
+        ByteRing ring = new ByteRing(16);
+        int[] spans = new int[1];
+        assertTrue(ring.offer(bytes(0, 10), 0, 10));
+        assertArrayEquals(bytes(0, 10), drain(ring, spans));
+        
+        // 6 bytes at the end of the array, 4 at its start
+        assertTrue(ring.offer(bytes(10, 10), 0, 10));
+        spans[0] = 0;
+        assertArrayEquals(bytes(10, 10), drain(ring, spans));
+        assertEquals(2, spans[0]);
+        assertTrue(ring.isEmpty());
+    }
+    
+    @Test
+    public void offerCopiesOnlyTheGivenRange() {
+        ByteRing ring = new ByteRing(16);
+        assertTrue(ring.offer(bytes(0, 10), 3, 4));
+        
+        assertArrayEquals(bytes(3, 4), drain(ring, new int[1]));
+    }
+    
+    @Test
+    public void chunkThatDoesNotFitIsDroppedWhole() {
+        ByteRing ring = new ByteRing(16);
+        assertTrue(ring.offer(bytes(0, 12), 0, 12));
+        assertFalse(ring.offer(bytes(12, 8), 0, 8));
+        assertEquals(8, ring.getBytesDropped());
+        assertEquals(1, ring.getChunksDropped());
+        
+        // What was accepted is intact, and the space is usable once drained
+        assertArrayEquals(bytes(0, 12), drain(ring, new int[1]));
+        assertTrue(ring.offer(bytes(12, 8), 0, 8));
+        assertArrayEquals(bytes(12, 8), drain(ring, new int[1]));
+    }
+    
+    @Test
+    public void fillsToExactlyItsCapacity() {
+        ByteRing ring = new ByteRing(16);
+        assertTrue(ring.offer(bytes(0, 16), 0, 16));
+        assertFalse(ring.offer(bytes(16, 1), 0, 1));
+        
+        assertArrayEquals(bytes(0, 16), drain(ring, new int[1]));
+        assertEquals(0, ring.drainTo((data, offset, length) -> {
+            throw new AssertionError("Nothing to drain");
+        }));
+    }
+    
+    @Test
+    public void producerWakesAParkedConsumer() throws InterruptedException {
+        ByteRing ring = new ByteRing(16);
+        AtomicLong received = new AtomicLong();
+        consumer = new ParkingConsumer(ring, (data, offset, length) -> received.addAndGet(length));
+        consumer.start();
+        
+        // Each byte is offered as the consumer parks; a lost wakeup would strand it
+        for (int i = 1; i <= 500; i++) {
+            assertTrue(await(() -> consumer.parked));
+            assertTrue(ring.offer(bytes(i, 1), 0, 1));
+            consumer.wake();
+            long expected = i;
+            assertTrue("Consumer stranded after " + (i - 1) + " bytes",
+                await(() -> received.get() == expected));
+        }
+    }
+    
+    @Test
+    public void everyByteArrivesInOrderAcrossThreads() throws InterruptedException {
+        final long total = 8 * 1024 * 1024;
+        ByteRing ring = new ByteRing(1024);
+        AtomicLong received = new AtomicLong();
+        AtomicLong misplaced = new AtomicLong(-1);
+        consumer = new ParkingConsumer(ring, (data, offset, length) -> {
+            long position = received.get();
+            for (int i = 0; i < length; i++) {
+                if (data[offset + i] != (byte) ((position + i) % 251) && misplaced.get() < 0) {
+                    misplaced.set(position + i);
+                }
+            }
+            received.addAndGet(length);
+        });
+        consumer.start();
+        
+        // Chunks of random size, retried when the ring is full, as a reader that must not lose data
+        Random random = new Random(42);
+        byte[] chunk = new byte[300];
+        long sent = 0;
+        while (sent < total) {
+            int length = (int) Math.min(1 + random.nextInt(chunk.length), total - sent);
+            for (int i = 0; i < length; i++) {
+                chunk[i] = (byte) ((sent + i) % 251);
+            }
+            while (!ring.offer(chunk, 0, length)) {
+                consumer.wake();
+                Thread.yield();
+            }
+            consumer.wake();
+            sent += length;
+        }
+        
+        assertTrue(await(() -> received.get() == total));
+        assertEquals(-1, misplaced.get());
+    }
+}
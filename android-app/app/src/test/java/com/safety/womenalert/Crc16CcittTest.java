@@ -0,0 +1,195 @@
+package com.safety.womenalert;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Women Safety System - Crc16Ccitt Test
+ * Checks every code path against the check vectors shared with the firmware
+ *
+ * esp32-firmware/test/crc16_vectors.txt is also run through the firmware's
+ * lora_calculate_crc16() by esp32-firmware/test/test_crc16.c, so a vector
+ * passing both tests means the phone and the wearable agree on it.
+ */
+public class Crc16CcittTest {
+    
+    private static final String VECTORS = "esp32-firmware/test/crc16_vectors.txt";
+    
+    /**
+     * One line of the vector file
+     */
+    private static final class Vector {
+        final String description;
+        final byte[] input;
+        final int expected;
+        
+        Vector(String description, byte[] input, int expected) {
+            this.description = description;
+            this.input = input;
+            this.expected = expected;
+        }
+    }
+    
+    private static List<Vector> vectors;
+    
+    @BeforeClass
+    public static void loadVectors() throws IOException {
+        vectors = new ArrayList<>();
+        File file = findVectors();
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(
+                new FileInputStream(file), StandardCharsets.US_ASCII))) {
+            String description = "";
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.startsWith("#")) {
+                    description = line.substring(1).trim();
+                } else if (!line.trim().isEmpty()) {
+                    String[] fields = line.trim().split("\\s+");
+                    vectors.add(new Vector(description, hex(fields[0]),
+                        Integer.parseInt(fields[1], 16)));
+                }
+            }
+        }
+        assertTrue("no vectors in " + file, vectors.size() > 0);
+    }
+    
+    /**
+     * The repository copy, from whichever directory the tests run in
+     */
+    private static File findVectors() throws IOException {
+        for (File dir = new File("").getAbsoluteFile(); dir != null; dir = dir.getParentFile()) {
+            File file = new File(dir, VECTORS);
+            if (file.isFile()) {
+                return file;
+            }
+        }
+        throw new IOException(VECTORS + " not found above " + new File("").getAbsolutePath());
+    }
+    
+    private static byte[] hex(String hex) {
+        if (hex.equals("-")) {
+            return new byte[0];
+        }
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) Integer.parseInt(hex.substring(2 * i, 2 * i + 2), 16);
+        }
+        return bytes;
+    }
+    
+    @Test
+    public void checkValueConstantMatchesVectors() {
+        assertEquals("123456789", new String(vectors.get(0).input, StandardCharsets.US_ASCII));
+        assertEquals(Crc16Ccitt.CHECK_VALUE, vectors.get(0).expected);
+    }
+    
+    @Test
+    public void slicingPathMatchesVectors() {
+        for (Vector v : vectors) {
+            assertEquals(v.description, v.expected, Crc16Ccitt.compute(v.input, 0, v.input.length));
+        }
+    }
+    
+    @Test
+    public void tablePathMatchesVectors() {
+        for (Vector v : vectors) {
+            assertEquals(v.description, v.expected,
+                Crc16Ccitt.updateTable(Crc16Ccitt.INITIAL_VALUE, v.input, 0, v.input.length));
+        }
+    }
+    
+    @Test
+    public void bitwiseReferenceMatchesVectors() {
+        for (Vector v : vectors) {
+            assertEquals(v.description, v.expected,
+                Crc16Ccitt.computeBitwise(v.input, 0, v.input.length));
+        }
+    }
+    
+    @Test
+    public void runningChecksumMatchesVectorsAtEverySplit() {
+        Crc16Ccitt crc = new Crc16Ccitt();
+        for (Vector v : vectors) {
+            for (int split = 0; split <= v.input.length; split++) {
+                crc.reset();
+                crc.update(v.input, 0, split);
+                crc.update(v.input, split, v.input.length - split);
+                assertEquals(v.description + ", split at " + split, v.expected, crc.getValue());
+            }
+            
+            crc.reset();
+            for (byte b : v.input) {
+                crc.update(b & 0xFF);
+            }
+            assertEquals(v.description + ", byte at a time", v.expected, crc.getValue());
+        }
+    }
+    
+    @Test
+    public void offsetsIntoLargerBuffer() {
+        for (Vector v : vectors) {
+            byte[] padded = new byte[v.input.length + 11];
+            new Random(v.input.length).nextBytes(padded);
+            System.arraycopy(v.input, 0, padded, 5, v.input.length);
+            assertEquals(v.description, v.expected, Crc16Ccitt.compute(padded, 5, v.input.length));
+        }
+    }
+    
+    @Test
+    public void slicingAgreesWithReferenceOnRandomInput() {
+        Random random = new Random(0x1021);
+        for (int length = 0; length < 300; length++) {
+            byte[] data = new byte[length];
+            random.nextBytes(data);
+            assertEquals("length " + length, Crc16Ccitt.computeBitwise(data, 0, length),
+                Crc16Ccitt.compute(data, 0, length));
+        }
+    }
+    
+    @Test
+    public void packetVectorsAreWhatTheDecoderAccepts() {
+        // Every uplink packet vector, completed with its checksum, decodes as a valid frame
+        final int[] decoded = {0};
+        FrameDecoder decoder = new FrameDecoder(new FrameDecoder.FrameListener() {
+            @Override
+            public void onFrame(int deviceId, int packetType, int batteryLevel,
+                                int timestamp, int sequenceNumber) {
+                decoded[0]++;
+            }
+            
+            @Override
+            public void onChecksumError(int deviceId, int sequenceNumber) {
+                throw new AssertionError("checksum rejected for device " + deviceId);
+            }
+        });
+        
+        int packets = 0;
+        for (Vector v : vectors) {
+            if (v.input.length == FrameDecoder.PACKET_SIZE - 2
+                    && v.input[0] == FrameDecoder.MAGIC_BYTE_1
+                    && v.input[1] == FrameDecoder.MAGIC_BYTE_2) {
+                byte[] packet = new byte[FrameDecoder.PACKET_SIZE];
+                System.arraycopy(v.input, 0, packet, 0, v.input.length);
+                packet[10] = (byte) (v.expected >> 8);
+                packet[11] = (byte) v.expected;
+                decoder.feed(packet);
+                packets++;
+            }
+        }
+        assertTrue(packets > 0);
+        assertEquals(packets, decoded[0]);
+    }
+}
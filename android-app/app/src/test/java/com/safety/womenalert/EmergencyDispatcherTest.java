@@ -0,0 +1,101 @@
+package com.safety.womenalert;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Women Safety System - EmergencyDispatcher Test
+ * Per-device ordering, saturation, and lanes surviving failed tasks and shutdown
+ */
+public class EmergencyDispatcherTest {
+    
+    private final EmergencyDispatcher dispatcher = new EmergencyDispatcher(4, 8);
+    
+    @After
+    public void tearDown() {
+        dispatcher.shutdown();
+    }
+    
+    private boolean awaitIdle() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (dispatcher.getQueueDepth() > 0 || dispatcher.getActiveDevices() > 0) {
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            Thread.sleep(1);
+        }
+        return true;
+    }
+    
+    @Test
+    public void runsOneDevicesTasksInOrder() throws InterruptedException {
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            int n = i;
+            assertTrue(dispatcher.dispatch(1, () -> {
+                synchronized (order) {
+                    order.add(n);
+                }
+            }));
+        }
+        
+        assertTrue(awaitIdle());
+        assertEquals("[0, 1, 2, 3, 4, 5, 6, 7]", order.toString());
+    }
+    
+    @Test
+    public void refusesBeyondMaxPending() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        for (int i = 0; i < 8; i++) {
+            assertTrue(dispatcher.dispatch(i, () -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+        }
+        
+        assertFalse(dispatcher.dispatch(9, () -> { }));
+        assertEquals(1, dispatcher.getRejectedCount());
+        
+        release.countDown();
+        assertTrue(awaitIdle());
+        assertTrue(dispatcher.dispatch(9, () -> { }));
+    }
+    
+    @Test
+    public void errorInTaskDoesNotWedgeTheLane() throws InterruptedException {
+        CountDownLatch ran = new CountDownLatch(1);
+        dispatcher.dispatch(1, () -> {
+            throw new AssertionError("task died");
+        });
+        dispatcher.dispatch(1, ran::countDown);
+        
+        assertTrue(ran.await(5, TimeUnit.SECONDS));
+        assertTrue(awaitIdle());
+        
+        // The device's lane is still usable afterwards
+        CountDownLatch again = new CountDownLatch(1);
+        assertTrue(dispatcher.dispatch(1, again::countDown));
+        assertTrue(again.await(5, TimeUnit.SECONDS));
+    }
+    
+    @Test
+    public void dispatchAfterShutdownLeavesNothingBusy() {
+        dispatcher.shutdown();
+        
+        assertFalse(dispatcher.dispatch(1, () -> { }));
+        assertEquals(0, dispatcher.getQueueDepth());
+        assertEquals(0, dispatcher.getActiveDevices());
+    }
+}
@@ -0,0 +1,163 @@
+package com.safety.womenalert;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Predicate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Women Safety System - EmergencyEvent Test
+ * A cancel stops an alert already sent for its press, and never an earlier SOS
+ */
+public class EmergencyEventTest {
+    
+    private static final String[] CONTACTS = {"+911234567890"};
+    private static final long T0 = 1705680000000L;
+    
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+    
+    private static EmergencyEvent sos(int deviceId, int sequenceNumber, long timestamp) {
+        return new EmergencyEvent(deviceId, 12.97, 77.59, 80, sequenceNumber, timestamp,
+            CONTACTS);
+    }
+    
+    @Test
+    public void cancelStopsAnAlertAlreadySent() throws IOException {
+        // As main.c sends them: a heartbeat, the press's EMERGENCY (sent twice, as its
+        // ACK was missed), then a press after sending: CANCEL under the same number
+        byte[][] air = {
+            FrameDecoderTest.packet(1, FrameDecoder.PACKET_TYPE_HEARTBEAT, 80, 60, 41),
+            FrameDecoderTest.packet(1, FrameDecoder.PACKET_TYPE_EMERGENCY, 80, 103, 42),
+            FrameDecoderTest.packet(1, FrameDecoder.PACKET_TYPE_EMERGENCY, 80, 103, 42),
+            FrameDecoderTest.packet(1, FrameDecoder.PACKET_TYPE_CANCEL, 80, 115, 42),
+            FrameDecoderTest.packet(1, FrameDecoder.PACKET_TYPE_CANCEL, 80, 115, 42),
+            FrameDecoderTest.packet(1, FrameDecoder.PACKET_TYPE_HEARTBEAT, 80, 175, 43),
+        };
+        long[] heardAt = {T0 - 43000, T0, T0 + 2000, T0 + 12000, T0 + 13000, T0 + 72000};
+        
+        List<EmergencyEvent> sent = new ArrayList<>();
+        RetryScheduler retries = new RetryScheduler(() -> T0, new Random(1), sent::add,
+            event -> { }, 1000, 30000, 60000, 4);
+        EmergencyOutbox outbox = new EmergencyOutbox(new File(folder.getRoot(), "outbox.log"), 8);
+        try {
+            // As UsbSerialIngest drops copies, then EmergencyHandler handles the rest
+            FrameTracker tracker = new FrameTracker();
+            List<String> verdicts = new ArrayList<>();
+            for (int i = 0; i < air.length; i++) {
+                long now = heardAt[i];
+                new FrameDecoder(new FrameDecoder.FrameListener() {
+                    @Override
+                    public void onFrame(int deviceId, int packetType, int batteryLevel,
+                                        int timestamp, int sequenceNumber) {
+                        int verdict = tracker.track(deviceId, packetType, timestamp,
+                            sequenceNumber);
+                        verdicts.add(packetType + ":" + verdict);
+                        if (verdict == SequenceTracker.DUPLICATE) {
+                            return;
+                        }
+                        if (packetType == FrameDecoder.PACKET_TYPE_EMERGENCY) {
+                            retries.submit(outbox.append(sos(deviceId, sequenceNumber, now)));
+                        } else if (packetType == FrameDecoder.PACKET_TYPE_CANCEL) {
+                            Predicate<EmergencyEvent> covered =
+                                event -> event.isCancelledBy(deviceId, sequenceNumber, now);
+                            assertEquals(1, retries.cancel(covered).size());
+                            for (EmergencyEvent event : outbox.pending()) {
+                                if (covered.test(event)) {
+                                    outbox.ack(event.getOutboxId());
+                                }
+                            }
+                        }
+                    }
+                    
+                    @Override
+                    public void onChecksumError(int deviceId, int sequenceNumber) {
+                        fail("bad CRC");
+                    }
+                }).feed(air[i]);
+            }
+            
+            // The cancel is neither dropped as a copy nor taken for a reboot
+            assertEquals("[3:" + SequenceTracker.ACCEPTED + ", 1:" + SequenceTracker.ACCEPTED
+                + ", 1:" + SequenceTracker.DUPLICATE + ", 2:" + SequenceTracker.ACCEPTED
+                + ", 2:" + SequenceTracker.DUPLICATE + ", 3:" + SequenceTracker.ACCEPTED + "]",
+                verdicts.toString());
+            assertEquals(1, sent.size());
+            assertEquals(0, outbox.pending().size());
+            
+            // A late outcome of the withdrawn send is never retried
+            retries.onFailed(sent.get(0));
+            assertEquals(1, sent.size());
+        } finally {
+            outbox.close();
+        }
+    }
+    
+    @Test
+    public void copiedEventStaysCoveredByItsCancel() {
+        EmergencyEvent event = sos(1, 42, T0);
+        
+        assertTrue(event.isCancelledBy(1, 42, T0 + 4000));
+        assertTrue(event.nextAttempt().withOutboxId(7).isCancelledBy(1, 42, T0 + 4000));
+    }
+    
+    @Test
+    public void cancelNeverWithdrawsEarlierSos() {
+        // First press sent its SOS; the wearer pressed again and cancelled the second one
+        EmergencyEvent earlier = sos(1, 41, T0);
+        EmergencyEvent cancelled = sos(1, 43, T0 + 20000);
+        
+        assertFalse(earlier.isCancelledBy(1, 43, T0 + 25000));
+        assertTrue(cancelled.isCancelledBy(1, 43, T0 + 25000));
+        
+        // Even one sequence number apart, and even when it comes right after
+        assertFalse(sos(1, 42, T0).isCancelledBy(1, 43, T0 + 1));
+    }
+    
+    @Test
+    public void cancelDoesNotCrossDevices() {
+        assertFalse(sos(2, 42, T0).isCancelledBy(1, 42, T0 + 1000));
+    }
+    
+    @Test
+    public void sequenceReusedAfterRebootIsNotCovered() {
+        long apart = EmergencyEvent.CANCEL_WINDOW_MS + 1;
+        
+        assertFalse(sos(1, 42, T0).isCancelledBy(1, 42, T0 + apart));
+        assertFalse(sos(1, 42, T0 + apart).isCancelledBy(1, 42, T0));
+        assertTrue(EmergencyEvent.isSamePress(42, 42, -EmergencyEvent.CANCEL_WINDOW_MS));
+    }
+    
+    @Test
+    public void earlierSosSurvivesCancelInOutbox() throws IOException {
+        EmergencyOutbox outbox = new EmergencyOutbox(new File(folder.getRoot(), "outbox.log"), 8);
+        try {
+            outbox.append(sos(1, 41, T0));
+            outbox.append(sos(1, 43, T0 + 20000));
+            
+            // As EmergencyHandler.withdraw settles the cancelled press's records
+            for (EmergencyEvent event : outbox.pending()) {
+                if (event.isCancelledBy(1, 43, T0 + 25000)) {
+                    outbox.ack(event.getOutboxId());
+                }
+            }
+            
+            List<EmergencyEvent> pending = outbox.pending();
+            assertEquals(1, pending.size());
+            assertEquals(41, pending.get(0).getSequenceNumber());
+        } finally {
+            outbox.close();
+        }
+    }
+}
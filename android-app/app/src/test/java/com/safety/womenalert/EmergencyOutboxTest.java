@@ -0,0 +1,169 @@
+package com.safety.womenalert;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+
+/**
+ * Women Safety System - EmergencyOutbox Test
+ * Replay order, compaction across reopen, and contacts that do not fit
+ */
+public class EmergencyOutboxTest {
+    
+    private static final String[] CONTACTS = {"+911234567890", "+919876543210"};
+    
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+    
+    private File path;
+    private EmergencyOutbox outbox;
+    
+    @Before
+    public void open() throws IOException {
+        path = new File(folder.getRoot(), "outbox.log");
+        outbox = new EmergencyOutbox(path, 8);
+    }
+    
+    @After
+    public void close() throws IOException {
+        outbox.close();
+    }
+    
+    private void reopen() throws IOException {
+        outbox.close();
+        outbox = new EmergencyOutbox(path, 8);
+    }
+    
+    private static EmergencyEvent event(int sequenceNumber, String... contacts) {
+        return new EmergencyEvent(1, 12.5, 77.5, 60, sequenceNumber, 1000L + sequenceNumber,
+            contacts.length > 0 ? contacts : CONTACTS);
+    }
+    
+    private List<Integer> pendingSequences() {
+        List<Integer> sequences = new ArrayList<>();
+        for (EmergencyEvent event : outbox.pending()) {
+            sequences.add(event.getSequenceNumber());
+        }
+        return sequences;
+    }
+    
+    @Test
+    public void pendingSurvivesReopenInAppendOrder() throws IOException {
+        outbox.append(event(1));
+        long acked = outbox.append(event(2)).getOutboxId();
+        outbox.append(event(3));
+        outbox.ack(acked);
+        
+        reopen();
+        assertEquals("[1, 3]", pendingSequences().toString());
+        EmergencyEvent first = outbox.pending().get(0);
+        assertArrayEquals(CONTACTS, first.getContacts());
+        assertEquals(12.5, first.getLatitude(), 0);
+    }
+    
+    @Test
+    public void fullLogCompactsOutAcknowledgedRecords() throws IOException {
+        List<Long> ids = new ArrayList<>();
+        for (int seq = 0; seq < 8; seq++) {
+            ids.add(outbox.append(event(seq)).getOutboxId());
+        }
+        for (int seq = 0; seq < 8; seq += 2) {
+            outbox.ack(ids.get(seq));
+        }
+        
+        // Full: this append compacts the four pending records to the front first
+        EmergencyEvent appended = outbox.append(event(8));
+        assertNotEquals(EmergencyEvent.NO_OUTBOX_ID, appended.getOutboxId());
+        assertEquals("[1, 3, 5, 7, 8]", pendingSequences().toString());
+        assertFalse(new File(path.getPath() + ".compact").exists());
+        
+        // Acks after compaction land on the compacted log
+        outbox.ack(ids.get(3));
+        reopen();
+        assertEquals("[1, 5, 7, 8]", pendingSequences().toString());
+    }
+    
+    @Test
+    public void fullOfPendingRejectsAppend() {
+        for (int seq = 0; seq < 8; seq++) {
+            outbox.append(event(seq));
+        }
+        assertEquals(EmergencyEvent.NO_OUTBOX_ID, outbox.append(event(8)).getOutboxId());
+        assertEquals(8, outbox.getPendingCount());
+    }
+    
+    @Test
+    public void unfinishedCompactionIsDiscarded() throws IOException {
+        outbox.append(event(1));
+        long acked = outbox.append(event(2)).getOutboxId();
+        outbox.ack(acked);
+        
+        // A crash before the rename leaves a partial compacted file beside the log
+        File leftover = new File(path.getPath() + ".compact");
+        try (FileOutputStream out = new FileOutputStream(leftover)) {
+            out.write(new byte[100]);
+        }
+        
+        reopen();
+        assertEquals("[1]", pendingSequences().toString());
+        assertFalse(leftover.exists());
+    }
+    
+    @Test
+    public void rewindsOnceNothingIsPending() throws IOException {
+        long id = outbox.append(event(1)).getOutboxId();
+        outbox.ack(id);
+        assertEquals(0, outbox.getPendingCount());
+        
+        // Ids keep increasing across the rewind, so a stale ack cannot hit a new record
+        long next = outbox.append(event(2)).getOutboxId();
+        assertNotEquals(id, next);
+        outbox.ack(id);
+        reopen();
+        assertEquals("[2]", pendingSequences().toString());
+    }
+    
+    @Test
+    public void contactTooLongIsNotTruncated() throws IOException {
+        String tooLong = "+91 98765 43210 (Mother, mobile)";
+        outbox.append(event(1, "+911234567890", tooLong));
+        
+        assertEquals(1, outbox.getContactOverflows());
+        reopen();
+        EmergencyEvent replayed = outbox.pending().get(0);
+        assertEquals(0, replayed.getContacts().length);
+        assertEquals(1, replayed.getSequenceNumber());
+    }
+    
+    @Test
+    public void tooManyContactsAreNotDropped() {
+        String[] four = {"+911", "+912", "+913", "+914"};
+        assertFalse(EmergencyOutbox.fitsContacts(four));
+        outbox.append(event(1, four));
+        
+        assertEquals(1, outbox.getContactOverflows());
+        assertEquals(0, outbox.pending().get(0).getContacts().length);
+    }
+    
+    @Test
+    public void nonAsciiContactRoundTrips() throws IOException {
+        String name = "+91 \u0928\u0902\u092C\u0930";
+        outbox.append(event(1, name));
+        reopen();
+        assertArrayEquals(new String[] {name}, outbox.pending().get(0).getContacts());
+        assertEquals(0, outbox.getContactOverflows());
+    }
+}
@@ -0,0 +1,119 @@
+package com.safety.womenalert;
+
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Women Safety System - EmergencyUplink Test
+ * Listener failures against a local HTTP backend
+ */
+public class EmergencyUplinkTest {
+    
+    private static final String[] CONTACTS = {"+911234567890"};
+    
+    private HttpServer server;
+    private String baseUrl;
+    private final AtomicInteger posts = new AtomicInteger();
+    private EmergencyUplink uplink;
+    
+    @Before
+    public void startBackend() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/api/emergency", exchange -> {
+            try (InputStream in = exchange.getRequestBody()) {
+                while (in.read() != -1) {
+                    // Drain the request
+                }
+            }
+            int n = posts.incrementAndGet();
+            byte[] body = ("{\"success\":true,\"incidentId\":\"inc-" + n + "\"}")
+                .getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(201, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+    
+    @After
+    public void stop() {
+        if (uplink != null) {
+            uplink.shutdown();
+        }
+        server.stop(0);
+    }
+    
+    private static EmergencyEvent event(int sequenceNumber) {
+        return new EmergencyEvent(1, 12.97, 77.59, 80, sequenceNumber, 1000L, CONTACTS);
+    }
+    
+    @Test
+    public void throwingListenerDoesNotResendDeliveredAlert() throws Exception {
+        BlockingQueue<String> outcomes = new LinkedBlockingQueue<>();
+        uplink = new EmergencyUplink(() -> baseUrl, new AlertTransport.Listener() {
+            @Override
+            public void onDelivered(EmergencyEvent event) {
+                outcomes.add("delivered " + event.getSequenceNumber());
+                throw new IllegalStateException("listener bug");
+            }
+            
+            @Override
+            public void onFailed(EmergencyEvent event, String reason) {
+                outcomes.add("failed " + event.getSequenceNumber() + ": " + reason);
+            }
+        }, null, 0, 1);
+        
+        uplink.submit(event(1));
+        assertEquals("delivered 1", outcomes.poll(5, TimeUnit.SECONDS));
+        
+        // The sender survived, and the first alert got exactly one outcome and one POST
+        uplink.submit(event(2));
+        assertEquals("delivered 2", outcomes.poll(5, TimeUnit.SECONDS));
+        assertNull(outcomes.poll(200, TimeUnit.MILLISECONDS));
+        assertEquals(2, posts.get());
+    }
+    
+    @Test
+    public void throwingIncidentListenerStillReportsOnce() throws Exception {
+        BlockingQueue<String> outcomes = new LinkedBlockingQueue<>();
+        uplink = new EmergencyUplink(() -> baseUrl, new AlertTransport.Listener() {
+            @Override
+            public void onDelivered(EmergencyEvent event) {
+                outcomes.add("delivered " + event.getSequenceNumber());
+            }
+            
+            @Override
+            public void onFailed(EmergencyEvent event, String reason) {
+                outcomes.add("failed " + event.getSequenceNumber());
+            }
+        }, (event, incidentId) -> {
+            throw new IllegalStateException("incident listener bug");
+        }, 0, 1);
+        
+        uplink.submit(event(7));
+        uplink.submit(event(8));
+        assertEquals("delivered 7", outcomes.poll(5, TimeUnit.SECONDS));
+        assertEquals("delivered 8", outcomes.poll(5, TimeUnit.SECONDS));
+        assertNull(outcomes.poll(200, TimeUnit.MILLISECONDS));
+        assertEquals(2, posts.get());
+    }
+}
@@ -0,0 +1,156 @@
+package com.safety.womenalert;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Women Safety System - FlightRecorder Test
+ * Recordings read back after close, wraparound, and records a crash left unfinished
+ */
+public class FlightRecorderTest {
+    
+    private static final int CAPACITY = 4;
+    
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+    
+    private File path() {
+        return new File(folder.getRoot(), "flight.bin");
+    }
+    
+    private static byte[] frame(int deviceId, int sequence) {
+        return FrameDecoderTest.packet(deviceId, FrameDecoder.PACKET_TYPE_HEARTBEAT, 80,
+            1000 + sequence, sequence);
+    }
+    
+    /**
+     * Records count frames from device 7 starting at sequence from, one second apart, on port 1
+     */
+    private void record(int from, int count) throws IOException {
+        try (FlightRecorder recorder = new FlightRecorder(path(), CAPACITY)) {
+            for (int sequence = from; sequence < from + count; sequence++) {
+                recorder.record(sequence * 1000L, 1, frame(7, sequence), sequence % 3 != 0);
+            }
+        }
+    }
+    
+    private List<Long> numbers(FlightRecording recording) {
+        List<Long> numbers = new ArrayList<>();
+        for (FlightRecording.Record record : recording.getRecords()) {
+            numbers.add(record.getNumber());
+        }
+        return numbers;
+    }
+    
+    private static long offset(long number) {
+        return FlightRecorder.HEADER_SIZE + ((number - 1) % CAPACITY) * FlightRecorder.RECORD_SIZE;
+    }
+    
+    @Test
+    public void recordsReadBackAfterClose() throws IOException {
+        record(1, 3);
+        
+        FlightRecording recording = FlightRecording.read(path());
+        List<FlightRecording.Record> records = recording.getRecords();
+        assertEquals(3, records.size());
+        assertEquals(0, recording.getRecordsLost());
+        
+        FlightRecording.Record third = records.get(2);
+        assertEquals(3, third.getNumber());
+        assertEquals(3000, third.getReceivedAt());
+        assertEquals(1, third.getPort());
+        assertFalse(third.isChecksumValid());
+        assertTrue(records.get(0).isChecksumValid());
+        assertEquals(7, third.getDeviceId());
+        assertEquals(FrameDecoder.PACKET_TYPE_HEARTBEAT, third.getPacketType());
+        assertEquals(3, third.getSequenceNumber());
+        assertArrayEquals(frame(7, 3), third.getFrame());
+    }
+    
+    @Test
+    public void reopenedRecorderAppends() throws IOException {
+        record(1, 2);
+        record(3, 1);
+        
+        try (FlightRecorder recorder = new FlightRecorder(path(), CAPACITY)) {
+            assertEquals(3, recorder.getRecordCount());
+        }
+        assertEquals(3, FlightRecording.read(path()).getRecords().get(2).getSequenceNumber());
+    }
+    
+    @Test
+    public void wrappedRecordingKeepsTheNewestOldestFirst() throws IOException {
+        record(1, 10);
+        
+        FlightRecording recording = FlightRecording.read(path());
+        List<Long> expected = new ArrayList<>();
+        for (long number = 7; number <= 10; number++) {
+            expected.add(number);
+        }
+        assertEquals(expected, numbers(recording));
+        assertEquals(0, recording.getRecordsLost());
+        assertEquals(10, recording.getRecords().get(3).getSequenceNumber());
+    }
+    
+    @Test
+    public void partlyWrittenRecordIsSkipped() throws IOException {
+        record(1, 6);
+        
+        // What a crash leaves midway through record 7: the slot of record 3 has its number
+        // cleared and some new bytes in, and the header still says 6
+        try (RandomAccessFile file = new RandomAccessFile(path(), "rw")) {
+            file.seek(offset(3) + FlightRecorder.OFF_NUMBER);
+            file.writeLong(0);
+            file.seek(offset(3) + FlightRecorder.OFF_RECEIVED_AT);
+            file.writeLong(7000);
+        }
+        
+        FlightRecording recording = FlightRecording.read(path());
+        assertEquals(4, numbers(recording).get(0).longValue());
+        assertEquals(3, recording.getRecords().size());
+        assertEquals(1, recording.getRecordsLost());
+        
+        // The recorder resumes after record 6, over the torn slot
+        record(7, 1);
+        recording = FlightRecording.read(path());
+        assertEquals(7, recording.getRecords().get(3).getSequenceNumber());
+        assertEquals(0, recording.getRecordsLost());
+    }
+    
+    @Test
+    public void recordWhoseHeaderStoreWasLostIsKept() throws IOException {
+        record(1, 3);
+        
+        // Killed between record 3's number and the header store
+        try (RandomAccessFile file = new RandomAccessFile(path(), "rw")) {
+            file.seek(FlightRecorder.OFF_NEXT);
+            file.writeLong(2);
+        }
+        
+        assertEquals(3, FlightRecording.read(path()).getRecords().size());
+        try (FlightRecorder recorder = new FlightRecorder(path(), CAPACITY)) {
+            assertEquals(3, recorder.getRecordCount());
+        }
+    }
+    
+    @Test(expected = IOException.class)
+    public void otherFilesAreRejected() throws IOException {
+        File other = folder.newFile("other.bin");
+        try (RandomAccessFile file = new RandomAccessFile(other, "rw")) {
+            file.setLength(FlightRecorder.HEADER_SIZE + FlightRecorder.RECORD_SIZE);
+        }
+        FlightRecording.read(other);
+    }
+}
@@ -0,0 +1,158 @@
+package com.safety.womenalert;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Women Safety System - FrameQueue Test
+ * Urgent frames overtake routine ones, and only routine frames are shed
+ */
+public class FrameQueueTest {
+    
+    private static final int EMERGENCY = FrameDecoder.PACKET_TYPE_EMERGENCY;
+    private static final int CANCEL = FrameDecoder.PACKET_TYPE_CANCEL;
+    private static final int HEARTBEAT = FrameDecoder.PACKET_TYPE_HEARTBEAT;
+    
+    /**
+     * Records dispatched frames as "type:device:seq"
+     */
+    private static final class Recorder implements FrameDecoder.FrameListener {
+        final List<String> frames = new ArrayList<>();
+        
+        @Override
+        public void onFrame(int deviceId, int packetType, int batteryLevel,
+                            int timestamp, int sequenceNumber) {
+            frames.add(packetType + ":" + deviceId + ":" + sequenceNumber);
+        }
+        
+        @Override
+        public void onChecksumError(int deviceId, int sequenceNumber) {
+            throw new AssertionError("FrameQueue never reports checksum errors");
+        }
+    }
+    
+    private Recorder recorder;
+    
+    @Before
+    public void setUp() {
+        recorder = new Recorder();
+    }
+    
+    private static void add(FrameQueue queue, int packetType, int deviceId, int sequenceNumber) {
+        queue.add(deviceId, packetType, 80, 0, sequenceNumber);
+    }
+    
+    private List<String> dispatchAll(FrameQueue queue) {
+        while (queue.dispatchNext(recorder)) {
+            // Recorded by the listener
+        }
+        return recorder.frames;
+    }
+    
+    @Test
+    public void urgentFramesOvertakeQueuedHeartbeats() {
+        FrameQueue queue = new FrameQueue(8);
+        add(queue, HEARTBEAT, 1, 1);
+        add(queue, EMERGENCY, 2, 1);
+        add(queue, HEARTBEAT, 3, 1);
+        add(queue, CANCEL, 2, 1);
+        
+        assertEquals(Arrays.asList("1:2:1", "2:2:1", "3:1:1", "3:3:1"), dispatchAll(queue));
+        assertTrue(queue.isEmpty());
+        assertFalse(queue.dispatchNext(recorder));
+    }
+    
+    @Test
+    public void fieldsSurvivePacking() {
+        FrameQueue queue = new FrameQueue(8);
+        queue.add(0xFFFF, HEARTBEAT, 0xFF, 0xFFFF, 0xFFFF);
+        queue.add(0xABCD, EMERGENCY, 42, 0x1234, 0x8001);
+        
+        List<int[]> frames = new ArrayList<>();
+        FrameDecoder.FrameListener listener = new FrameDecoder.FrameListener() {
+            @Override
+            public void onFrame(int deviceId, int packetType, int batteryLevel,
+                                int timestamp, int sequenceNumber) {
+                frames.add(new int[] {deviceId, packetType, batteryLevel, timestamp,
+                    sequenceNumber});
+            }
+            
+            @Override
+            public void onChecksumError(int deviceId, int sequenceNumber) {
+            }
+        };
+        while (queue.dispatchNext(listener)) {
+            // Collected by the listener
+        }
+        
+        assertEquals(2, frames.size());
+        assertEquals(Arrays.toString(new int[] {0xABCD, EMERGENCY, 42, 0x1234, 0x8001}),
+            Arrays.toString(frames.get(0)));
+        assertEquals(Arrays.toString(new int[] {0xFFFF, HEARTBEAT, 0xFF, 0xFFFF, 0xFFFF}),
+            Arrays.toString(frames.get(1)));
+    }
+    
+    @Test
+    public void fullRoutineLaneShedsItsOldestFrame() {
+        FrameQueue queue = new FrameQueue(4);
+        for (int seq = 1; seq <= 6; seq++) {
+            add(queue, HEARTBEAT, 1, seq);
+        }
+        
+        assertEquals(2, queue.getFramesShed());
+        assertEquals(4, queue.size());
+        assertEquals(Arrays.asList("3:1:3", "3:1:4", "3:1:5", "3:1:6"), dispatchAll(queue));
+    }
+    
+    @Test
+    public void routineLaneWrapsAround() {
+        FrameQueue queue = new FrameQueue(4);
+        add(queue, HEARTBEAT, 1, 1);
+        add(queue, HEARTBEAT, 1, 2);
+        add(queue, HEARTBEAT, 1, 3);
+        queue.dispatchNext(recorder);
+        queue.dispatchNext(recorder);
+        
+        // Head is at 2: these wrap to the start of the array
+        add(queue, HEARTBEAT, 1, 4);
+        add(queue, HEARTBEAT, 1, 5);
+        add(queue, HEARTBEAT, 1, 6);
+        
+        assertEquals(0, queue.getFramesShed());
+        assertEquals(Arrays.asList("3:1:1", "3:1:2", "3:1:3", "3:1:4", "3:1:5", "3:1:6"),
+            dispatchAll(queue));
+    }
+    
+    @Test
+    public void urgentLaneGrowsRatherThanShed() {
+        FrameQueue queue = new FrameQueue(4);
+        List<String> expected = new ArrayList<>();
+        
+        // Far more alerts than the urgent lane starts with, mixed with a flood of heartbeats
+        for (int seq = 1; seq <= 100; seq++) {
+            add(queue, HEARTBEAT, 1, seq);
+            add(queue, seq % 2 == 0 ? CANCEL : EMERGENCY, 2, seq);
+            expected.add((seq % 2 == 0 ? CANCEL : EMERGENCY) + ":2:" + seq);
+            if (seq == 10) {
+                // Move the urgent lane's head off zero, so it grows while wrapped
+                queue.dispatchNext(recorder);
+                recorder.frames.clear();
+                expected.remove(0);
+            }
+        }
+        for (int seq = 97; seq <= 100; seq++) {
+            expected.add(HEARTBEAT + ":1:" + seq);
+        }
+        
+        assertEquals(96, queue.getFramesShed());
+        assertEquals(expected, dispatchAll(queue));
+    }
+}
@@ -0,0 +1,85 @@
+package com.safety.womenalert;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Women Safety System - IncidentStatusChannel Test
+ * Watches expire without a final status, and the oldest gives way at the limit
+ */
+public class IncidentStatusChannelTest {
+    
+    private static final long WATCH_TIMEOUT_MS = 60000;
+    
+    private volatile long now = 0;
+    private final List<String> outcomes = Collections.synchronizedList(new ArrayList<>());
+    private final IncidentStatusChannel.Watcher watcher =
+        (incidentId, status, error) -> outcomes.add(incidentId + " " + status);
+    
+    // No backend configured: every connect fails and is retried after a few ms
+    private final IncidentStatusChannel channel = new IncidentStatusChannel(() -> "",
+        ApiKey.NONE, new Random(1), 5, 10, 1000, () -> now, WATCH_TIMEOUT_MS);
+    
+    @After
+    public void tearDown() {
+        channel.shutdown();
+    }
+    
+    private static boolean await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            Thread.sleep(1);
+        }
+        return true;
+    }
+    
+    @Test
+    public void watchExpiresWithoutFinalStatus() throws InterruptedException {
+        channel.watch("incident-1", watcher);
+        now = WATCH_TIMEOUT_MS / 2;
+        channel.watch("incident-2", watcher);
+        
+        now = WATCH_TIMEOUT_MS;
+        assertTrue(await(() -> outcomes.size() == 1));
+        assertEquals("incident-1 " + IncidentStatusChannel.STATUS_EXPIRED, outcomes.get(0));
+        assertEquals(1, channel.getWatchCount());
+        
+        now = WATCH_TIMEOUT_MS * 2;
+        assertTrue(await(() -> outcomes.size() == 2));
+        assertEquals("[incident-1 expired, incident-2 expired]", outcomes.toString());
+    }
+    
+    @Test
+    public void oldestWatchExpiresAtLimit() {
+        for (int i = 0; i <= IncidentStatusChannel.MAX_WATCHES; i++) {
+            channel.watch("incident-" + i, watcher);
+        }
+        
+        assertEquals("[incident-0 expired]", outcomes.toString());
+        assertEquals(IncidentStatusChannel.MAX_WATCHES, channel.getWatchCount());
+    }
+    
+    @Test
+    public void unwatchedIncidentIsNotReported() throws InterruptedException {
+        channel.watch("incident-1", watcher);
+        channel.unwatch("incident-1");
+        
+        now = WATCH_TIMEOUT_MS;
+        Thread.sleep(50);
+        assertEquals(0, channel.getWatchCount());
+        assertEquals(0, outcomes.size());
+    }
+}
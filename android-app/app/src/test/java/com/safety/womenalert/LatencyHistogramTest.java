@@ -0,0 +1,101 @@
+package com.safety.womenalert;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Women Safety System - LatencyHistogram Test
+ * Bucket boundaries, percentile error, clamping and the units of each record method
+ */
+public class LatencyHistogramTest {
+    
+    @Test
+    public void smallValuesHaveABucketEach() {
+        for (int value = 0; value < 32; value++) {
+            assertEquals(value, LatencyHistogram.index(value));
+            assertEquals(value, LatencyHistogram.lowerBound(value));
+            assertEquals(value, LatencyHistogram.upperBound(value));
+        }
+    }
+    
+    @Test
+    public void bucketsTileTheRangeWithoutGaps() {
+        for (int i = 0; i < LatencyHistogram.BUCKET_COUNT - 1; i++) {
+            long lower = LatencyHistogram.lowerBound(i);
+            long upper = LatencyHistogram.upperBound(i);
+            assertEquals(i, LatencyHistogram.index(lower));
+            assertEquals(i, LatencyHistogram.index(upper));
+            assertEquals("after bucket " + i, upper + 1, LatencyHistogram.lowerBound(i + 1));
+            
+            // Log-linear: no bucket wider than 1/32 of its lower bound
+            assertTrue("bucket " + i, (upper - lower + 1) * 32 <= Math.max(lower, 32));
+        }
+        assertEquals(LatencyHistogram.BUCKET_COUNT - 1,
+            LatencyHistogram.index(LatencyHistogram.MAX_VALUE_US));
+    }
+    
+    @Test
+    public void percentilesAreWithinOneBucketOfExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        int n = 100000;
+        for (int value = 1; value <= n; value++) {
+            histogram.recordMicros(value);
+        }
+        
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        for (double percentile : new double[] {1, 50, 90, 99, 99.9, 100}) {
+            long exact = (long) Math.ceil(percentile / 100 * n);
+            long reported = snapshot.getValueAtPercentile(percentile);
+            assertTrue(percentile + "th: " + reported + " < " + exact, reported >= exact);
+            assertTrue(percentile + "th: " + reported + " vs " + exact,
+                reported - exact <= exact / 32);
+        }
+        assertEquals(n, snapshot.getMaxMicros());
+        assertEquals((n + 1) / 2.0, snapshot.getMeanMicros(), 1e-9);
+    }
+    
+    @Test
+    public void valuesAreClampedToTheRange() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.recordMicros(-5);
+        histogram.recordMicros(LatencyHistogram.MAX_VALUE_US * 2);
+        
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(0, snapshot.getValueAtPercentile(50));
+        assertEquals(LatencyHistogram.MAX_VALUE_US, snapshot.getMaxMicros());
+        assertEquals(LatencyHistogram.MAX_VALUE_US, snapshot.getSumMicros());
+    }
+    
+    @Test
+    public void everyUnitIsStoredInMicros() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.recordNanos(3000000);
+        histogram.recordMicros(3000);
+        histogram.recordMillis(3);
+        
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(3, snapshot.getCounts()[LatencyHistogram.index(3000)]);
+        assertEquals(9000, snapshot.getSumMicros());
+        assertEquals(3000, snapshot.getMaxMicros());
+    }
+    
+    @Test
+    public void startupIntervalIsRecordedInMicros() throws InterruptedException {
+        StartupTrace trace = new StartupTrace(System.nanoTime(), () -> { },
+            StartupTrace.FRAME_READY);
+        trace.mark(StartupTrace.SERVICE_CREATED);
+        Thread.sleep(20);
+        trace.mark(StartupTrace.FRAME_READY);
+        
+        // As LoRaService records it once frames can be handled
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.recordNanos(trace.getNanos(StartupTrace.SERVICE_CREATED,
+            StartupTrace.FRAME_READY));
+        
+        long millis = trace.getMillis(StartupTrace.SERVICE_CREATED, StartupTrace.FRAME_READY);
+        assertTrue(millis >= 20);
+        assertEquals(millis, histogram.snapshot().getMaxMicros() / 1000);
+    }
+}
@@ -0,0 +1,137 @@
+package com.safety.womenalert;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Women Safety System - LocationFixCache Test
+ * Ranking of cached fixes by accuracy and age, including stale ones
+ */
+public class LocationFixCacheTest {
+    
+    private static final long MINUTE_MS = 60 * 1000;
+    
+    private final LocationFixCache cache = new LocationFixCache(4, 10 * MINUTE_MS);
+    
+    @Test
+    public void emptyCacheHasNoFix() {
+        assertNull(cache.best(0));
+    }
+    
+    @Test
+    public void moreAccurateFixWinsAtSameAge() {
+        cache.add(1, 1, 30, 0);
+        cache.add(2, 2, 5, 0);
+        cache.add(3, 3, 100, 0);
+        
+        LocationFixCache.Fix fix = cache.best(0);
+        assertEquals(2, fix.latitude, 0);
+        assertEquals(5, fix.effectiveError, 1e-9);
+    }
+    
+    @Test
+    public void freshNetworkFixBeatsOldGpsFix() {
+        cache.add(1, 1, 5, 0);                 // GPS, 5 m
+        cache.add(2, 2, 30, 9 * MINUTE_MS);    // Network, 30 m, a minute ago
+        
+        LocationFixCache.Fix fix = cache.best(10 * MINUTE_MS);
+        assertEquals(2, fix.latitude, 0);
+        assertEquals(MINUTE_MS, fix.ageMillis);
+        // 30 m reported plus a minute of walking at 1.5 m/s
+        assertEquals(120, fix.effectiveError, 1e-9);
+        assertFalse(fix.stale);
+    }
+    
+    @Test
+    public void newerFixOvertakesAnAgingOneOnlyWhenBetter() {
+        cache.add(1, 1, 5, 0);
+        cache.add(2, 2, 50, 20 * 1000);
+        
+        // Both drift at the same rate: 5 + 30 m against 50 m, then 5 + 60 against 50 + 30
+        assertEquals(1, cache.best(20 * 1000).latitude, 0);
+        assertEquals(1, cache.best(40 * 1000).latitude, 0);
+        
+        cache.add(3, 3, 10, 40 * 1000);
+        assertEquals(3, cache.best(40 * 1000).latitude, 0);
+    }
+    
+    @Test
+    public void staleFixIsReturnedWithItsAge() {
+        cache.add(1, 1, 8, 0);
+        
+        LocationFixCache.Fix fix = cache.best(30 * MINUTE_MS);
+        assertEquals(1, fix.latitude, 0);
+        assertEquals(30 * MINUTE_MS, fix.ageMillis);
+        assertTrue(fix.stale);
+    }
+    
+    @Test
+    public void freshFixBeatsStaleOne() {
+        cache.add(1, 1, 3, 0);
+        cache.add(2, 2, 500, 29 * MINUTE_MS);
+        
+        LocationFixCache.Fix fix = cache.best(30 * MINUTE_MS);
+        assertEquals(2, fix.latitude, 0);
+        assertFalse(fix.stale);
+    }
+    
+    @Test
+    public void oldestFixIsEvictedWhenFull() {
+        cache.add(1, 1, 1, 0);
+        for (int i = 2; i <= 5; i++) {
+            cache.add(i, i, 100, 0);
+        }
+        
+        assertEquals(4, cache.size());
+        assertEquals(100, cache.best(0).accuracy, 0);
+    }
+    
+    @Test
+    public void awaitReturnsGoodFixAtOnce() throws InterruptedException {
+        cache.add(1, 1, 10, 0);
+        long[] now = {0};
+        
+        LocationFixCache.Fix fix = cache.awaitBest(() -> now[0], 50, 60 * 1000);
+        assertEquals(1, fix.latitude, 0);
+    }
+    
+    @Test
+    public void staleFixDoesNotEndTheWaitButIsReturnedAtTheDeadline() throws InterruptedException {
+        cache.add(1, 1, 10, 0);
+        long start = 30 * MINUTE_MS;
+        Clock clock = new Clock() {
+            int calls = 0;
+            
+            @Override
+            public long millis() {
+                // Budget runs out on the second look
+                return start + (calls++ == 0 ? 0 : 1000);
+            }
+        };
+        
+        LocationFixCache.Fix fix = cache.awaitBest(clock, Double.MAX_VALUE, 1000);
+        assertTrue(fix.stale);
+        assertEquals(1, fix.latitude, 0);
+    }
+    
+    @Test
+    public void newFixWakesWaiter() throws InterruptedException {
+        Thread producer = new Thread(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                return;
+            }
+            cache.add(7, 7, 20, 0);
+        });
+        producer.start();
+        
+        LocationFixCache.Fix fix = cache.awaitBest(() -> 0, 50, 10 * 1000);
+        producer.join();
+        assertEquals(7, fix.latitude, 0);
+    }
+}
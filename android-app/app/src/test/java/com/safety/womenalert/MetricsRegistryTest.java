@@ -0,0 +1,133 @@
+package com.safety.womenalert;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Women Safety System - MetricsRegistry Test
+ * Counters and histograms updated from many threads, snapshots and the binary export
+ */
+public class MetricsRegistryTest {
+    
+    private static final int THREADS = 8;
+    private static final int UPDATES = 100000;
+    
+    private static void onThreads(Runnable work) throws InterruptedException {
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            threads.add(new Thread(work));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+    
+    private static long readVarint(ByteArrayInputStream in) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = in.read();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+    
+    private static String readName(ByteArrayInputStream in) {
+        byte[] name = new byte[in.read()];
+        in.read(name, 0, name.length);
+        return new String(name);
+    }
+    
+    @Test
+    public void nameRegistersOneMetric() {
+        MetricsRegistry registry = new MetricsRegistry();
+        assertSame(registry.counter("frames"), registry.counter("frames"));
+        assertSame(registry.histogram("latency"), registry.histogram("latency"));
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void emptyNameIsRejected() {
+        new MetricsRegistry().counter("");
+    }
+    
+    @Test
+    public void countersAggregateAcrossThreads() throws InterruptedException {
+        MetricsRegistry registry = new MetricsRegistry();
+        MetricsRegistry.Counter frames = registry.counter("frames");
+        MetricsRegistry.Counter bytes = registry.counter("bytes");
+        
+        onThreads(() -> {
+            for (int i = 0; i < UPDATES; i++) {
+                frames.increment();
+                bytes.add(12);
+            }
+        });
+        
+        MetricsRegistry.Snapshot snapshot = registry.snapshot();
+        assertEquals((long) THREADS * UPDATES, snapshot.getCounter("frames"));
+        assertEquals(12L * THREADS * UPDATES, snapshot.getCounter("bytes"));
+        assertEquals(0, snapshot.getCounter("unregistered"));
+    }
+    
+    @Test
+    public void histogramsAggregateAcrossThreads() throws InterruptedException {
+        MetricsRegistry registry = new MetricsRegistry();
+        LatencyHistogram latency = registry.histogram("latency");
+        
+        onThreads(() -> {
+            for (int i = 1; i <= UPDATES; i++) {
+                latency.recordMicros(i);
+            }
+        });
+        
+        LatencyHistogram.Snapshot snapshot = registry.snapshot().getHistograms().get("latency");
+        assertEquals((long) THREADS * UPDATES, snapshot.getCount());
+        assertEquals((long) THREADS * UPDATES * (UPDATES + 1) / 2, snapshot.getSumMicros());
+        assertEquals(UPDATES, snapshot.getMaxMicros());
+    }
+    
+    @Test
+    public void exportReadsBack() {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.counter("frames").add(300);
+        LatencyHistogram latency = registry.histogram("latency");
+        latency.recordMicros(5);
+        latency.recordMicros(5);
+        latency.recordMicros(1000);
+        
+        ByteArrayInputStream in = new ByteArrayInputStream(registry.snapshot().toBytes());
+        byte[] magic = new byte[4];
+        in.read(magic, 0, 4);
+        assertEquals("WSMX", new String(magic));
+        assertEquals(1, in.read());
+        readVarint(in);  // Snapshot time
+        
+        assertEquals(1, readVarint(in));
+        assertEquals("frames", readName(in));
+        assertEquals(300, readVarint(in));
+        
+        assertEquals(1, readVarint(in));
+        assertEquals("latency", readName(in));
+        assertEquals(3, readVarint(in));
+        assertEquals(1010, readVarint(in));
+        assertEquals(1000, readVarint(in));
+        
+        // Two buckets used: 5, then 1000's, as deltas between indexes
+        assertEquals(2, readVarint(in));
+        assertEquals(5, readVarint(in));
+        assertEquals(2, readVarint(in));
+        assertEquals(LatencyHistogram.index(1000) - 5, readVarint(in));
+        assertEquals(1, readVarint(in));
+        assertEquals(-1, in.read());
+    }
+}
@@ -0,0 +1,174 @@
+package com.safety.womenalert;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Women Safety System - RacingTransport Test
+ * When SMS joins the backend, and why only the backend settles an alert
+ */
+public class RacingTransportTest {
+    
+    private static final long BUDGET_MS = 100;
+    private static final String[] CONTACTS = {"+919876543210"};
+    
+    /**
+     * Records every outcome reported to the caller, in order
+     */
+    private static final class Recorder implements AlertTransport.Listener {
+        final List<String> outcomes = new ArrayList<>();
+        
+        @Override
+        public synchronized void onDelivered(EmergencyEvent event) {
+            outcomes.add("delivered " + event.getSequenceNumber());
+        }
+        
+        @Override
+        public synchronized void onFailed(EmergencyEvent event, String reason) {
+            outcomes.add("failed " + event.getSequenceNumber() + ": " + reason);
+        }
+        
+        synchronized String get() {
+            return outcomes.toString();
+        }
+        
+        synchronized int count() {
+            return outcomes.size();
+        }
+    }
+    
+    private final Recorder recorder = new Recorder();
+    private StubTransport backend;
+    private StubTransport sms;
+    private RacingTransport transport;
+    
+    @After
+    public void tearDown() {
+        if (transport != null) {
+            transport.shutdown();
+        }
+    }
+    
+    /**
+     * @param backendMs backend answer delay; negative never answers
+     * @param smsMs SMS answer delay
+     */
+    private void race(long backendMs, boolean backendFails, long smsMs, boolean smsFails) {
+        transport = new RacingTransport(
+            listener -> backend = new StubTransport(listener, event -> backendMs,
+                event -> backendFails),
+            listener -> sms = new StubTransport(listener, event -> smsMs, event -> smsFails),
+            BUDGET_MS, recorder);
+    }
+    
+    private static EmergencyEvent event(int sequenceNumber) {
+        return new EmergencyEvent(1, 12.97, 77.59, 80, sequenceNumber, 0, CONTACTS);
+    }
+    
+    private static boolean await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            Thread.sleep(1);
+        }
+        return true;
+    }
+    
+    @Test
+    public void backendWithinBudgetNeverTextsContacts() throws InterruptedException {
+        race(10, false, 10, false);
+        transport.submit(event(1));
+        
+        assertTrue(await(() -> recorder.count() == 1));
+        Thread.sleep(2 * BUDGET_MS);
+        assertEquals("[delivered 1]", recorder.get());
+        assertEquals(0, sms.getSubmittedCount());
+    }
+    
+    @Test
+    public void smsAheadOfBackendDoesNotSettleTheAlert() throws InterruptedException {
+        race(4 * BUDGET_MS, false, 10, false);
+        transport.submit(event(1));
+        
+        // Contacts texted; the alert is settled only by the backend's ack
+        assertTrue(await(() -> sms.getDeliveredCount() == 1));
+        assertEquals(0, recorder.count());
+        
+        assertTrue(await(() -> recorder.count() == 1));
+        assertEquals("[delivered 1]", recorder.get());
+        assertEquals(0, backend.getCancelledCount());
+    }
+    
+    @Test
+    public void backendFailureAfterSmsIsReportedForRetry() throws InterruptedException {
+        race(2 * BUDGET_MS, true, 10, false);
+        transport.submit(event(1));
+        
+        assertTrue(await(() -> recorder.count() == 1));
+        assertEquals("[failed 1: Stub failure]", recorder.get());
+        assertEquals(1, sms.getDeliveredCount());
+    }
+    
+    @Test
+    public void backendWinsAndStopsRunningSms() throws InterruptedException {
+        race(2 * BUDGET_MS, false, 10 * BUDGET_MS, false);
+        transport.submit(event(1));
+        
+        assertTrue(await(() -> recorder.count() == 1));
+        assertEquals("[delivered 1]", recorder.get());
+        assertEquals(1, sms.getSubmittedCount());
+        assertEquals(1, sms.getCancelledCount());
+    }
+    
+    @Test
+    public void backendFailureStartsSmsAtOnce() throws InterruptedException {
+        race(0, true, 10, false);
+        transport.submit(event(1));
+        
+        // Well inside the budget: the failure does not wait it out
+        assertTrue(await(() -> sms.getDeliveredCount() == 1));
+        assertEquals("[failed 1: Stub failure]", recorder.get());
+    }
+    
+    @Test
+    public void smsOutcomeIsNeverReported() throws InterruptedException {
+        race(0, true, 10, true);
+        transport.submit(event(1));
+        
+        assertTrue(await(() -> sms.getFailedCount() == 1));
+        assertEquals("[failed 1: Stub failure]", recorder.get());
+    }
+    
+    @Test
+    public void retriesNeverFallBackToSms() throws InterruptedException {
+        race(0, true, 10, false);
+        transport.submit(event(1).nextAttempt());
+        
+        assertTrue(await(() -> recorder.count() == 1));
+        Thread.sleep(2 * BUDGET_MS);
+        assertEquals("[failed 1: Stub failure]", recorder.get());
+        assertEquals(0, sms.getSubmittedCount());
+    }
+    
+    @Test
+    public void cancelWithdrawsBothLegs() throws InterruptedException {
+        race(-1, false, -1, false);
+        transport.submit(event(1));
+        assertTrue(await(() -> sms.getSubmittedCount() == 1));
+        
+        assertTrue(transport.cancel(e -> e.getSequenceNumber() == 1));
+        assertEquals(1, backend.getCancelledCount());
+        assertEquals(1, sms.getCancelledCount());
+        assertEquals("[]", recorder.get());
+    }
+}
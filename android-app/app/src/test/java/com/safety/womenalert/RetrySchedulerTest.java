@@ -0,0 +1,155 @@
+package com.safety.womenalert;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Women Safety System - RetryScheduler Test
+ * Backoff schedule, deadlines and send priority against a fake clock
+ */
+public class RetrySchedulerTest {
+    
+    private static final long BASE_MS = 1000;
+    private static final long MAX_MS = 30000;
+    private static final long DEADLINE_MS = 60000;
+    
+    /**
+     * Jitter pinned to a fixed fraction of the randomized half
+     */
+    private static final class FixedRandom extends Random {
+        double fraction;
+        
+        @Override
+        public double nextDouble() {
+            return fraction;
+        }
+    }
+    
+    private long now;
+    private FixedRandom random;
+    private List<EmergencyEvent> sent;
+    private List<EmergencyEvent> gaveUp;
+    
+    @Before
+    public void setUp() {
+        now = 0;
+        random = new FixedRandom();
+        sent = new ArrayList<>();
+        gaveUp = new ArrayList<>();
+    }
+    
+    private RetryScheduler scheduler(int maxInFlight) {
+        return new RetryScheduler(() -> now, random, sent::add, gaveUp::add,
+            BASE_MS, MAX_MS, DEADLINE_MS, maxInFlight);
+    }
+    
+    private static EmergencyEvent event(int deviceId) {
+        return new EmergencyEvent(deviceId, 0, 0, 80, 1, 0, new String[0]);
+    }
+    
+    private EmergencyEvent lastSent() {
+        return sent.get(sent.size() - 1);
+    }
+    
+    @Test
+    public void backoffDoublesUpToCapWithJitterInUpperHalf() {
+        RetryScheduler retries = scheduler(1);
+        long[] expectedFloor = {500, 1000, 2000, 4000, 8000, 15000, 15000, 15000};
+        
+        for (int attempt = 1; attempt <= expectedFloor.length; attempt++) {
+            random.fraction = 0;
+            assertEquals("attempt " + attempt, expectedFloor[attempt - 1], retries.backoff(attempt));
+            random.fraction = 0.999;
+            long top = retries.backoff(attempt);
+            assertTrue("attempt " + attempt, top < 2 * expectedFloor[attempt - 1]);
+            assertTrue("attempt " + attempt, top >= expectedFloor[attempt - 1]);
+        }
+    }
+    
+    @Test
+    public void retryIsSentOnlyOnceDue() {
+        RetryScheduler retries = scheduler(4);
+        retries.submit(event(1));
+        assertEquals(1, sent.size());
+        
+        now = 100;
+        retries.onFailed(lastSent());
+        assertEquals(1, retries.getQueuedCount());
+        
+        // First retry waits 500..1000 ms; with no jitter, exactly 500
+        now = 599;
+        assertEquals(1, retries.pump());
+        assertEquals(1, sent.size());
+        
+        now = 600;
+        assertEquals(-1, retries.pump());
+        assertEquals(2, sent.size());
+        assertEquals(1, lastSent().getAttempt());
+    }
+    
+    @Test
+    public void followsScheduleUntilDeadlineThenGivesUp() {
+        RetryScheduler retries = scheduler(1);
+        retries.submit(event(1));
+        
+        List<Long> sendTimes = new ArrayList<>();
+        while (gaveUp.isEmpty()) {
+            sendTimes.add(now);
+            retries.onFailed(lastSent());
+            long wait = retries.pump();
+            if (wait > 0) {
+                now += wait;
+                retries.pump();
+            }
+        }
+        
+        // 0.5 + 1 + 2 + 4 + 8 + 15 s = 30.5 s, then 15 s steps until 60 s would be passed
+        assertEquals("[0, 500, 1500, 3500, 7500, 15500, 30500, 45500]", sendTimes.toString());
+        assertEquals(1, gaveUp.size());
+        assertEquals(7, gaveUp.get(0).getAttempt());
+        assertEquals(0, retries.getQueuedCount());
+        assertEquals(0, retries.getInFlightCount());
+    }
+    
+    @Test
+    public void freshEmergenciesGoBeforeRetries() {
+        RetryScheduler retries = scheduler(1);
+        retries.submit(event(1));
+        retries.onFailed(lastSent());
+        now = 1000;  // Device 1's retry is due
+        retries.submit(event(2));
+        retries.submit(event(3));
+        
+        // Device 2 went straight out; 3 and the retry wait for the slot
+        assertEquals(2, lastSent().getDeviceId());
+        retries.onDelivered(lastSent());
+        assertEquals(3, lastSent().getDeviceId());
+        retries.onDelivered(lastSent());
+        assertEquals(1, lastSent().getDeviceId());
+        assertEquals(1, lastSent().getAttempt());
+    }
+    
+    @Test
+    public void cancelledInFlightSendIsNeverRetried() {
+        RetryScheduler retries = scheduler(1);
+        retries.submit(event(1));
+        retries.submit(event(2));
+        EmergencyEvent first = lastSent();
+        
+        assertEquals(1, retries.cancel(e -> e.getDeviceId() == 1).size());
+        assertEquals(2, lastSent().getDeviceId());
+        
+        retries.onFailed(first);  // Late outcome for the cancelled send
+        now += MAX_MS;
+        retries.pump();
+        assertEquals(2, sent.size());
+        assertEquals(0, retries.getQueuedCount());
+    }
+}
@@ -0,0 +1,115 @@
+package com.safety.womenalert;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Women Safety System - SequenceTracker Test
+ * Only exact copies are dropped; reboots and late frames are delivered
+ */
+public class SequenceTrackerTest {
+    
+    private final SequenceTracker tracker = new SequenceTracker();
+    
+    @Test
+    public void exactCopyIsDuplicate() {
+        assertEquals(SequenceTracker.ACCEPTED, tracker.track(1, 100, 7));
+        assertEquals(SequenceTracker.DUPLICATE, tracker.track(1, 100, 7));
+        assertEquals(SequenceTracker.ACCEPTED, tracker.track(1, 101, 8));
+        assertEquals(SequenceTracker.DUPLICATE, tracker.track(1, 100, 7));
+    }
+    
+    @Test
+    public void devicesAreIndependent() {
+        assertEquals(SequenceTracker.ACCEPTED, tracker.track(1, 100, 7));
+        assertEquals(SequenceTracker.ACCEPTED, tracker.track(2, 100, 7));
+    }
+    
+    @Test
+    public void rebootWithSmallClockStepIsDetected() {
+        // Sequence 500 at 1000 s, then the wearer restarts and is heard 200 s into the new boot
+        assertEquals(SequenceTracker.ACCEPTED, tracker.track(1, 1000, 500));
+        assertEquals(SequenceTracker.REBOOTED, tracker.track(1, 1200, 3));
+        assertEquals(SequenceTracker.ACCEPTED, tracker.track(1, 1201, 4));
+    }
+    
+    @Test
+    public void rebootReusingRecentNumberIsNotDuplicate() {
+        assertEquals(SequenceTracker.ACCEPTED, tracker.track(1, 0, 0));
+        assertEquals(SequenceTracker.ACCEPTED, tracker.track(1, 40, 1));
+        assertEquals(SequenceTracker.ACCEPTED, tracker.track(1, 55, 2));
+        
+        // Restarted: its emergency reuses number 1, stamped with the new boot's clock
+        assertEquals(SequenceTracker.REBOOTED, tracker.track(1, 12, 1));
+        assertEquals(SequenceTracker.DUPLICATE, tracker.track(1, 12, 1));
+        assertEquals(SequenceTracker.ACCEPTED, tracker.track(1, 13, 2));
+    }
+    
+    @Test
+    public void restartForgetsFramesSeen() {
+        assertEquals(SequenceTracker.ACCEPTED, tracker.track(1, 40, 3));
+        tracker.restart(1);
+        tracker.restart(2);  // Never heard: nothing to forget
+        
+        // The same pair again is a new frame from the new boot
+        assertEquals(SequenceTracker.ACCEPTED, tracker.track(1, 40, 3));
+        assertEquals(SequenceTracker.DUPLICATE, tracker.track(1, 40, 3));
+        assertEquals(SequenceTracker.ACCEPTED, tracker.track(1, 41, 4));
+    }
+    
+    @Test
+    public void newerNumberFromEarlierClockIsReboot() {
+        assertEquals(SequenceTracker.ACCEPTED, tracker.track(1, 5000, 65530));
+        // Counter wrapped past zero after a restart, clock far behind
+        assertEquals(SequenceTracker.REBOOTED, tracker.track(1, 30, 2));
+    }
+    
+    @Test
+    public void newerNumberWithinClockSlackIsAccepted() {
+        assertEquals(SequenceTracker.ACCEPTED, tracker.track(1, 103, 10));
+        assertEquals(SequenceTracker.ACCEPTED, tracker.track(1, 101, 11));
+    }
+    
+    @Test
+    public void lateFrameNeverSeenIsDelivered() {
+        assertEquals(SequenceTracker.ACCEPTED, tracker.track(1, 100, 10));
+        assertEquals(SequenceTracker.ACCEPTED, tracker.track(1, 103, 13));
+        
+        assertEquals(SequenceTracker.REORDERED, tracker.track(1, 101, 11));
+        assertEquals(SequenceTracker.DUPLICATE, tracker.track(1, 101, 11));
+        assertEquals(SequenceTracker.REORDERED, tracker.track(1, 102, 12));
+        assertEquals(0.0, tracker.getLossRate(1), 0.0);
+    }
+    
+    @Test
+    public void wrapsAroundSixteenBits() {
+        assertEquals(SequenceTracker.ACCEPTED, tracker.track(1, 100, 65535));
+        assertEquals(SequenceTracker.ACCEPTED, tracker.track(1, 101, 0));
+        assertEquals(SequenceTracker.DUPLICATE, tracker.track(1, 100, 65535));
+    }
+    
+    @Test
+    public void timestampWrapIsNotReboot() {
+        assertEquals(SequenceTracker.ACCEPTED, tracker.track(1, 65535, 9));
+        assertEquals(SequenceTracker.ACCEPTED, tracker.track(1, 2, 10));
+    }
+    
+    @Test
+    public void gapIsCountedLost() {
+        tracker.track(1, 0, 0);
+        tracker.track(1, 1, 4);
+        assertEquals(3.0 / 5, tracker.getLossRate(1), 1e-9);
+    }
+    
+    @Test
+    public void windowSurvivesGrowth() {
+        SequenceTracker small = new SequenceTracker(1);
+        small.track(1, 50, 20);
+        for (int device = 2; device < 100; device++) {
+            small.track(device, 0, 0);
+        }
+        assertEquals(100 - 1, small.size());
+        assertEquals(SequenceTracker.DUPLICATE, small.track(1, 50, 20));
+    }
+}
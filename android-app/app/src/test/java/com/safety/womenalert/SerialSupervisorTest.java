@@ -0,0 +1,194 @@
+package com.safety.womenalert;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Women Safety System - SerialSupervisor Test
+ * Quiet links stay open, backoff resets on healthy connections, shutdown is safe
+ */
+public class SerialSupervisorTest {
+    
+    private static final long BASE_DELAY_MS = 20;
+    
+    /**
+     * A port that opens every time and fails only when told to
+     */
+    private static final class FakeLink implements SerialLink {
+        volatile SerialLink.Callback callback;
+        volatile int opens = 0;
+        
+        @Override
+        public void open(Callback callback) {
+            this.callback = callback;
+            opens++;
+        }
+        
+        @Override
+        public void close() {
+        }
+        
+        @Override
+        public void write(byte[] data) throws IOException {
+        }
+        
+        @Override
+        public String getName() {
+            return "fake";
+        }
+    }
+    
+    /**
+     * Records reopen delays
+     */
+    private static final class Recorder implements SerialSupervisor.Listener {
+        final List<Long> retries = new ArrayList<>();
+        
+        @Override
+        public SerialLink.DataSink onConnecting(int connection) {
+            return data -> { };
+        }
+        
+        @Override
+        public void onConnected(int connection) {
+        }
+        
+        @Override
+        public synchronized void onDisconnected(int connection, String reason, long retryInMs) {
+            retries.add(retryInMs);
+        }
+        
+        synchronized String get() {
+            return retries.toString();
+        }
+    }
+    
+    /**
+     * Jitter-free: every delay is the fixed half of its backoff step
+     */
+    private static final Random NO_JITTER = new Random() {
+        @Override
+        public double nextDouble() {
+            return 0;
+        }
+    };
+    
+    private final ScheduledExecutorService scheduler =
+        Executors.newSingleThreadScheduledExecutor();
+    private final FakeLink link = new FakeLink();
+    private final Recorder recorder = new Recorder();
+    private volatile long now = 0;
+    
+    @After
+    public void tearDown() {
+        scheduler.shutdownNow();
+    }
+    
+    private SerialSupervisor supervisor(long stallTimeoutMs) {
+        return new SerialSupervisor(link, recorder, scheduler, () -> now, NO_JITTER,
+            BASE_DELAY_MS, 1000, stallTimeoutMs);
+    }
+    
+    private static boolean await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            Thread.sleep(1);
+        }
+        return true;
+    }
+    
+    /**
+     * Fail the current connection and wait for it to be reopened
+     */
+    private void failAndAwaitReopen(SerialSupervisor supervisor) throws InterruptedException {
+        int opens = link.opens;
+        link.callback.onError(new IOException("unplugged"));
+        assertTrue(await(() -> link.opens == opens + 1 && supervisor.isConnected()));
+    }
+    
+    @Test
+    public void quietLinkIsNeverClosedByDefault() throws InterruptedException {
+        SerialSupervisor supervisor = supervisor(SerialSupervisor.NO_STALL_TIMEOUT);
+        supervisor.start();
+        assertTrue(await(supervisor::isConnected));
+        
+        now += SerialSupervisor.MAX_STALL_TIMEOUT_MS;
+        Thread.sleep(50);
+        
+        assertTrue(supervisor.isConnected());
+        assertEquals(1, link.opens);
+        supervisor.stop();
+    }
+    
+    @Test
+    public void backoffGrowsWhilePortKeepsFailing() throws InterruptedException {
+        SerialSupervisor supervisor = supervisor(SerialSupervisor.NO_STALL_TIMEOUT);
+        supervisor.start();
+        assertTrue(await(supervisor::isConnected));
+        
+        failAndAwaitReopen(supervisor);
+        failAndAwaitReopen(supervisor);
+        failAndAwaitReopen(supervisor);
+        
+        assertEquals("[10, 20, 40]", recorder.get());
+        supervisor.stop();
+    }
+    
+    @Test
+    public void backoffResetsAfterStableConnection() throws InterruptedException {
+        SerialSupervisor supervisor = supervisor(SerialSupervisor.NO_STALL_TIMEOUT);
+        supervisor.start();
+        assertTrue(await(supervisor::isConnected));
+        
+        failAndAwaitReopen(supervisor);
+        failAndAwaitReopen(supervisor);
+        now += SerialSupervisor.STABLE_AFTER_MS;  // Up a while, though silent
+        failAndAwaitReopen(supervisor);
+        
+        assertEquals("[10, 20, 10]", recorder.get());
+        supervisor.stop();
+    }
+    
+    @Test
+    public void backoffResetsAfterData() throws InterruptedException {
+        SerialSupervisor supervisor = supervisor(SerialSupervisor.NO_STALL_TIMEOUT);
+        supervisor.start();
+        assertTrue(await(supervisor::isConnected));
+        
+        failAndAwaitReopen(supervisor);
+        link.callback.onData(new byte[] {1});
+        failAndAwaitReopen(supervisor);
+        
+        assertEquals("[10, 10]", recorder.get());
+        supervisor.stop();
+    }
+    
+    @Test
+    public void failureAfterSchedulerShutdownIsQuiet() throws InterruptedException {
+        SerialSupervisor supervisor = supervisor(SerialSupervisor.NO_STALL_TIMEOUT);
+        supervisor.start();
+        assertTrue(await(supervisor::isConnected));
+        
+        scheduler.shutdownNow();
+        link.callback.onError(new IOException("unplugged"));
+        
+        assertFalse(supervisor.isConnected());
+        supervisor.stop();
+    }
+}
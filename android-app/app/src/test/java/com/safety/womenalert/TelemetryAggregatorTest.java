@@ -0,0 +1,181 @@
+package com.safety.womenalert;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Women Safety System - TelemetryAggregator Test
+ * Loss counting, window rollover, eviction and delta uploads against a fake clock
+ */
+public class TelemetryAggregatorTest {
+    
+    private static final long WINDOW_MS = 15 * 60 * 1000;
+    private static final int WINDOWS = 4;  // One hour
+    private static final int MAX_DEVICES = 8;
+    private static final double DELTA = 1e-9;
+    
+    private long now;
+    private TelemetryAggregator aggregator;
+    
+    @Before
+    public void setUp() {
+        now = 0;
+        aggregator = new TelemetryAggregator(() -> now, WINDOW_MS, WINDOWS, MAX_DEVICES);
+    }
+    
+    private void record(int deviceId, int... sequenceNumbers) {
+        for (int sequenceNumber : sequenceNumbers) {
+            aggregator.record(deviceId, 80, sequenceNumber);
+        }
+    }
+    
+    /**
+     * Drain without committing, as an upload that has not been acknowledged yet
+     */
+    private TelemetryAggregator.Delta drain() {
+        return aggregator.drain(MAX_DEVICES);
+    }
+    
+    private static int indexOf(TelemetryAggregator.Delta delta, int deviceId) {
+        for (int i = 0; i < delta.size(); i++) {
+            if (delta.getDeviceId(i) == deviceId) {
+                return i;
+            }
+        }
+        throw new AssertionError("Device " + deviceId + " not in delta");
+    }
+    
+    private double linkQuality(int deviceId) {
+        TelemetryAggregator.Delta delta = drain();
+        return delta.getLinkQuality(indexOf(delta, deviceId));
+    }
+    
+    private static List<Integer> deviceIds(TelemetryAggregator.Delta delta) {
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < delta.size(); i++) {
+            ids.add(delta.getDeviceId(i));
+        }
+        Collections.sort(ids);
+        return ids;
+    }
+    
+    @Test
+    public void sequenceGapsCountAsLost() {
+        record(7, 1, 2, 5);
+        
+        // 3 heard, 3 and 4 lost
+        assertEquals(0.6, linkQuality(7), DELTA);
+    }
+    
+    @Test
+    public void lateFrameIsNotLostTwice() {
+        record(7, 1, 3, 2, 4);
+        
+        // 2 was counted lost when 3 arrived; 4 follows 3, not the late 2
+        assertEquals(0.8, linkQuality(7), DELTA);
+    }
+    
+    @Test
+    public void sequenceWrapIsNotALoss() {
+        record(7, 0xFFFE, 0xFFFF, 0, 1);
+        
+        assertEquals(1.0, linkQuality(7), DELTA);
+    }
+    
+    @Test
+    public void rebootResynchronizes() {
+        record(7, 5000, 5001, 1, 2, 3);
+        
+        assertEquals(1.0, linkQuality(7), DELTA);
+    }
+    
+    @Test
+    public void windowsRollOutOfTheRing() {
+        record(7, 1, 3);
+        assertEquals(2 / 3.0, linkQuality(7), 0.01);
+        
+        // The lossy window is more than an hour old
+        now = WINDOWS * WINDOW_MS;
+        record(7, 4, 5);
+        assertEquals(1.0, linkQuality(7), DELTA);
+    }
+    
+    @Test
+    public void batteryTrendIsFittedOverTheWindows() {
+        for (int window = 0; window < WINDOWS; window++) {
+            now = window * WINDOW_MS;
+            aggregator.record(7, 90 - window, window + 1);
+        }
+        
+        TelemetryAggregator.Delta delta = drain();
+        assertEquals(87, delta.getBatteryLevel(0));
+        assertEquals(-4.0, delta.getBatteryTrend(0), DELTA);  // 1 % per 15 minutes
+    }
+    
+    @Test
+    public void deltaCarriesOnlyDevicesHeardSinceTheLastUpload() {
+        record(7, 1);
+        record(8, 1);
+        TelemetryAggregator.Delta first = drain();
+        assertEquals(Arrays.asList(7, 8), deviceIds(first));
+        assertTrue(first.isChanged(0) && first.isChanged(1));
+        aggregator.commit(first);
+        
+        assertEquals(0, drain().size());
+        
+        // Heard again with nothing new: listed as seen, rollup not resent
+        now += 30000;
+        record(7, 2);
+        TelemetryAggregator.Delta steady = drain();
+        assertEquals(Collections.singletonList(7), deviceIds(steady));
+        assertFalse(steady.isChanged(0));
+        assertEquals(0, steady.getMillisSinceSeen(0));
+        
+        // Not committed, as after a failed upload: drained again
+        now += 1000;
+        assertEquals(1000, drain().getMillisSinceSeen(0));
+        
+        aggregator.record(7, 79, 3);
+        TelemetryAggregator.Delta drop = drain();
+        assertTrue(drop.isChanged(0));
+        assertEquals(79, drop.getBatteryLevel(0));
+    }
+    
+    @Test
+    public void fullTableEvictsTheLongestSilentDevice() {
+        for (int device = 1; device <= MAX_DEVICES; device++) {
+            now += 1000;
+            record(device, 1);
+        }
+        now += 1000;
+        record(1, 2);  // Device 2 is now the longest silent
+        
+        now += 1000;
+        record(100, 1);
+        assertEquals(MAX_DEVICES, aggregator.size());
+        assertEquals(1, aggregator.getDevicesEvicted());
+        
+        List<Integer> ids = deviceIds(drain());
+        assertFalse(ids.contains(2));
+        assertTrue(ids.contains(1) && ids.contains(100));
+        
+        // Devices moved by the eviction are still found, not added twice
+        for (int device = 1; device <= MAX_DEVICES; device++) {
+            if (device != 2) {
+                record(device, 2, 3);
+            }
+        }
+        record(100, 2);
+        assertEquals(MAX_DEVICES, aggregator.size());
+        assertEquals(1, aggregator.getDevicesEvicted());
+    }
+}
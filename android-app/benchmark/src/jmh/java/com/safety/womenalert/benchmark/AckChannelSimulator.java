@@ -0,0 +1,572 @@
+package com.safety.womenalert.benchmark;
+
+import com.safety.womenalert.AckBatcher;
+import com.safety.womenalert.AckFrame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Women Safety System - ACK Channel Simulator
+ * LoRa channel occupancy with blind retransmits vs retransmits stopped by gateway ACKs
+ *
+ * A fleet of wearables shares one SF7 / 125 kHz channel with the gateway.
+ * Each sends a heartbeat as main.c does: HEARTBEAT_PERIOD_S give or take
+ * HEARTBEAT_JITTER_S after its last packet, and none while an alert is
+ * being sent. Now and then a wearer sends an emergency. Without ACKs the
+ * firmware sends every emergency BLIND_COPIES times, as FleetSimulator
+ * models it. With ACKs it sends once and listens, resending as
+ * lora_send_reliable() does until acknowledged; the gateway persists the
+ * alert, then writes an ACK through the real AckBatcher and AckFrame, and
+ * the radio airs it on the same channel.
+ *
+ * Resends follow the channel: a wearer that heard ACK_BUSY_FRAMES or more
+ * other frames while listening treats the channel as busy, doubles its
+ * pause and stops after ACK_BUSY_MAX_ATTEMPTS sends. No wearer resends
+ * after ACK_GIVE_UP_S, which bounds how long loop() is held up.
+ *
+ * Collisions are pure ALOHA: any overlap loses every frame involved,
+ * including ACKs, and the gateway cannot hear while it transmits. Airtime
+ * follows the Semtech formula for 8 preamble symbols, explicit header, CRC
+ * and coding rate 4/5. Two workloads run over the same fleet sizes:
+ *
+ *   - steady: STEADY_ALERTS_PER_DEVICE_HOUR for an hour;
+ *   - surge: SURGE_SHARE of the fleet alerting within SURGE_SPREAD_S, as in
+ *     a crowd incident, measured over SURGE_S.
+ *
+ * Per run the simulator reports channel occupancy (airtime over elapsed
+ * time, all frames), alert frames aired per alert, ACK frames and entries,
+ * the share of alerts the gateway heard, and for ACKs the share of wearers
+ * that learned so and the longest a wearer spent sending one alert.
+ * Virtual time, so a run takes seconds.
+ *
+ * Run with: gradle -p android-app/benchmark ackTest
+ */
+public class AckChannelSimulator {
+    
+    private static final int[] FLEET_SIZES = {50, 100, 200, 400, 800};
+    private static final double HEARTBEAT_PERIOD_S = 60;  // HEARTBEAT_INTERVAL_MS
+    private static final double HEARTBEAT_JITTER_S = 6;   // HEARTBEAT_JITTER_MS
+    private static final double STEADY_ALERTS_PER_DEVICE_HOUR = 0.1;
+    private static final double STEADY_S = 24 * 3600;
+    private static final double SURGE_SHARE = 0.2;
+    private static final double SURGE_SPREAD_S = 60;
+    private static final double SURGE_S = 180;
+    
+    // Without ACKs
+    private static final int BLIND_COPIES = 3;
+    private static final double BLIND_SPACING_S = 1;
+    
+    // With ACKs, as esp32-firmware/config.h
+    private static final double ACK_TIMEOUT_S = 1.0;
+    private static final double ACK_BACKOFF_BASE_S = 1;
+    private static final double ACK_BACKOFF_MAX_S = 16;
+    private static final int ACK_MAX_ATTEMPTS = 6;
+    private static final int ACK_BUSY_FRAMES = 2;
+    private static final int ACK_BUSY_MAX_ATTEMPTS = 3;
+    private static final double ACK_GIVE_UP_S = 20;
+    
+    // Gateway: receipt into the outbox, serial write at 115200 baud, radio turnaround
+    private static final double PERSIST_S = 0.02;
+    private static final double SERIAL_BYTE_S = 10.0 / 115200;
+    private static final double TURNAROUND_S = 0.005;
+    
+    // Radio, as lora_init()
+    private static final int SPREADING_FACTOR = 7;
+    private static final double BANDWIDTH_HZ = 125000;
+    private static final int CODING_RATE = 1;  // 4/5
+    private static final int PREAMBLE_SYMBOLS = 8;
+    private static final int UPLINK_BYTES = 12;
+    
+    private static final int HEARTBEAT = 0;
+    private static final int ALERT = 1;
+    private static final int ACK = 2;
+    
+    /**
+     * One frame on air
+     */
+    private static final class Transmission {
+        final int kind;
+        final int deviceId;
+        final int sequenceNumber;
+        final byte[] frame;  // ACKs only
+        boolean collided;
+        
+        Transmission(int kind, int deviceId, int sequenceNumber, byte[] frame) {
+            this.kind = kind;
+            this.deviceId = deviceId;
+            this.sequenceNumber = sequenceNumber;
+            this.frame = frame;
+        }
+    }
+    
+    /**
+     * One emergency on a wearable, from the button to its last send
+     */
+    private static final class Alert {
+        final int deviceId;
+        final int sequenceNumber;
+        double startedAt;
+        int sends;
+        int framesHeard;  // Other frames heard in the current listen window
+        boolean listening;
+        boolean acked;
+        boolean heard;
+        
+        Alert(int deviceId, int sequenceNumber) {
+            this.deviceId = deviceId;
+            this.sequenceNumber = sequenceNumber;
+        }
+    }
+    
+    private static final class Result {
+        double airtimeS;
+        double alertAirtimeS;  // Alert uplinks and ACKs
+        long alerts;
+        long alertFrames;
+        long ackFrames;
+        long ackEntries;
+        long heard;
+        long acked;
+        double longestSendS;
+    }
+    
+    public static void main(String[] args) {
+        System.out.printf("Uplink %d B = %.1f ms, ACK %d-%d B = %.1f-%.1f ms on air; "
+                + "blind %d copies vs ACK timeout %.0f ms, up to %d sends (%d when busy) "
+                + "within %.0f s%n",
+            UPLINK_BYTES, airtime(UPLINK_BYTES) * 1000, AckFrame.size(1), AckFrame.MAX_SIZE,
+            airtime(AckFrame.size(1)) * 1000, airtime(AckFrame.MAX_SIZE) * 1000, BLIND_COPIES,
+            ACK_TIMEOUT_S * 1000, ACK_MAX_ATTEMPTS, ACK_BUSY_MAX_ATTEMPTS, ACK_GIVE_UP_S);
+        
+        run("steady", false);
+        run("surge", true);
+    }
+    
+    private static void run(String workload, boolean surge) {
+        System.out.printf("%n%s: %s%n", workload, surge
+            ? String.format("%.0f%% of the fleet alerts within %.0f s, %.0f s measured",
+                SURGE_SHARE * 100, SURGE_SPREAD_S, SURGE_S)
+            : String.format("%.1f alerts per device-hour, %.0f s measured",
+                STEADY_ALERTS_PER_DEVICE_HOUR, STEADY_S));
+        System.out.printf("%-8s %-6s %7s %9s %9s %8s %8s %9s %8s %8s %9s %8s%n", "devices",
+            "mode", "alerts", "occupancy", "alert air", "saved", "tx/alert", "ack frms",
+            "per ack", "heard", "wearer ok", "longest");
+        
+        for (int devices : FLEET_SIZES) {
+            Result blind = new Channel(devices, surge, false).run();
+            Result acked = new Channel(devices, surge, true).run();
+            double duration = surge ? SURGE_S : STEADY_S;
+            print(devices, "blind", blind, duration, Double.NaN);
+            print(devices, "ack", acked, duration,
+                1 - acked.alertAirtimeS / blind.alertAirtimeS);
+        }
+    }
+    
+    private static void print(int devices, String mode, Result result, double duration,
+                              double saved) {
+        System.out.printf("%-8d %-6s %7d %8.2f%% %8.3f%% %8s %8.2f %9s %8s %7.1f%% %9s %7.1fs%n",
+            devices, mode, result.alerts, result.airtimeS / duration * 100,
+            result.alertAirtimeS / duration * 100,
+            Double.isNaN(saved) ? "" : String.format("%.1f%%", saved * 100),
+            (double) result.alertFrames / Math.max(1, result.alerts),
+            mode.equals("ack") ? Long.toString(result.ackFrames) : "",
+            mode.equals("ack") ? String.format("%.2f",
+                (double) result.ackEntries / Math.max(1, result.ackFrames)) : "",
+            100.0 * result.heard / Math.max(1, result.alerts),
+            mode.equals("ack") ? String.format("%.1f%%",
+                100.0 * result.acked / Math.max(1, result.alerts)) : "",
+            result.longestSendS);
+    }
+    
+    /**
+     * Time on air in seconds for a LoRa packet of the given payload size
+     */
+    static double airtime(int payloadBytes) {
+        double symbol = (1 << SPREADING_FACTOR) / BANDWIDTH_HZ;
+        double preamble = (PREAMBLE_SYMBOLS + 4.25) * symbol;
+        // Explicit header, CRC on, no low data rate optimisation at SF7
+        int bits = 8 * payloadBytes - 4 * SPREADING_FACTOR + 28 + 16;
+        int payloadSymbols = 8 + Math.max(
+            (int) Math.ceil(bits / (4.0 * SPREADING_FACTOR)) * (CODING_RATE + 4), 0);
+        return preamble + payloadSymbols * symbol;
+    }
+    
+    /**
+     * One run: a fleet, a workload and a firmware mode, in virtual time
+     */
+    private static final class Channel {
+        final int devices;
+        final boolean surge;
+        final boolean acks;
+        final Random random = new Random(42);
+        final Random backoff = new Random(7);
+        final Random jitter = new Random(11);
+        final VirtualScheduler scheduler = new VirtualScheduler();
+        final List<Transmission> onAir = new ArrayList<>();
+        final Result result = new Result();
+        
+        // Gateway side
+        final Set<Integer> accepted = new HashSet<>();
+        final AckBatcher batcher;
+        
+        // Wearer side, keyed by device ID << 16 | sequence number
+        final Map<Integer, Alert> alerts = new HashMap<>();
+        final Set<Alert> listening = new HashSet<>();
+        final VirtualScheduler.Task[] heartbeats;
+        final int[] sending;  // Alerts in progress per device
+        final int[] ackDeviceIds = new int[AckFrame.MAX_ENTRIES];
+        final int[] ackSequences = new int[AckFrame.MAX_ENTRIES];
+        
+        Channel(int devices, boolean surge, boolean acks) {
+            this.devices = devices;
+            this.surge = surge;
+            this.acks = acks;
+            this.heartbeats = new VirtualScheduler.Task[devices + 1];
+            this.sending = new int[devices + 1];
+            // One gateway dongle, port 0
+            this.batcher = new AckBatcher((port, frame) -> scheduler.after(
+                frame.length * SERIAL_BYTE_S + TURNAROUND_S,
+                () -> transmit(new Transmission(ACK, 0, 0, frame))), scheduler);
+        }
+        
+        Result run() {
+            double duration = surge ? SURGE_S : STEADY_S;
+            
+            // Same alerts in both modes: the workload stream is consumed identically
+            for (int device = 1; device <= devices; device++) {
+                int deviceId = device;
+                double phase = random.nextDouble() * HEARTBEAT_PERIOD_S;
+                heartbeats[device] = scheduler.at(phase, () -> heartbeat(deviceId));
+            }
+            
+            List<double[]> triggers = new ArrayList<>();
+            if (surge) {
+                int count = (int) Math.round(devices * SURGE_SHARE);
+                List<Integer> ids = new ArrayList<>();
+                for (int device = 1; device <= devices; device++) {
+                    ids.add(device);
+                }
+                Collections.shuffle(ids, random);
+                for (int i = 0; i < count; i++) {
+                    triggers.add(new double[] {random.nextDouble() * SURGE_SPREAD_S, ids.get(i)});
+                }
+            } else {
+                double rate = devices * STEADY_ALERTS_PER_DEVICE_HOUR / 3600;
+                for (double t = -Math.log(1 - random.nextDouble()) / rate; t < duration;
+                     t += -Math.log(1 - random.nextDouble()) / rate) {
+                    triggers.add(new double[] {t, 1 + random.nextInt(devices)});
+                }
+            }
+            int sequence = 0;
+            for (double[] trigger : triggers) {
+                Alert alert = new Alert((int) trigger[1], ++sequence);
+                alerts.put(key(alert.deviceId, alert.sequenceNumber), alert);
+                scheduler.at(trigger[0], () -> send(alert));
+            }
+            
+            scheduler.runUntil(duration);
+            
+            result.alerts = alerts.size();
+            for (Alert alert : alerts.values()) {
+                result.alertFrames += alert.sends;
+                result.heard += alert.heard ? 1 : 0;
+                result.acked += alert.acked ? 1 : 0;
+            }
+            return result;
+        }
+        
+        void heartbeat(int deviceId) {
+            transmit(new Transmission(HEARTBEAT, deviceId, 0, null));
+            scheduleHeartbeat(deviceId);
+        }
+        
+        /**
+         * As schedule_heartbeat(): one interval, give or take the jitter, from now
+         */
+        void scheduleHeartbeat(int deviceId) {
+            double interval = HEARTBEAT_PERIOD_S - HEARTBEAT_JITTER_S
+                + jitter.nextDouble() * 2 * HEARTBEAT_JITTER_S;
+            heartbeats[deviceId] = scheduler.after(interval, () -> heartbeat(deviceId));
+        }
+        
+        void send(Alert alert) {
+            if (alert.sends == 0) {
+                // Not idle: no heartbeats until the alert is done
+                alert.startedAt = scheduler.now;
+                if (sending[alert.deviceId]++ == 0) {
+                    heartbeats[alert.deviceId].cancel(false);
+                }
+            }
+            alert.sends++;
+            transmit(new Transmission(ALERT, alert.deviceId, alert.sequenceNumber, null));
+            
+            if (!acks) {
+                if (alert.sends < BLIND_COPIES) {
+                    scheduler.after(BLIND_SPACING_S, () -> send(alert));
+                } else {
+                    scheduler.after(airtime(UPLINK_BYTES), () -> finish(alert));
+                }
+                return;
+            }
+            
+            double endOfSend = airtime(UPLINK_BYTES);
+            scheduler.after(endOfSend, () -> {
+                alert.framesHeard = 0;
+                alert.listening = true;
+                listening.add(alert);
+            });
+            scheduler.after(endOfSend + ACK_TIMEOUT_S, () -> {
+                alert.listening = false;
+                listening.remove(alert);
+                
+                // As lora_send_reliable(): back off harder and give up sooner on a busy channel
+                boolean busy = alert.framesHeard >= ACK_BUSY_FRAMES;
+                double pause = Math.min(ACK_BACKOFF_BASE_S * (1 << (alert.sends - 1)),
+                    ACK_BACKOFF_MAX_S) * (busy ? 2 : 1);
+                int maxSends = busy ? ACK_BUSY_MAX_ATTEMPTS : ACK_MAX_ATTEMPTS;
+                if (alert.acked || alert.sends >= maxSends
+                        || scheduler.now + pause > alert.startedAt + ACK_GIVE_UP_S) {
+                    finish(alert);
+                    return;
+                }
+                // Half fixed, half jitter
+                scheduler.after(pause / 2 + backoff.nextDouble() * pause / 2,
+                    () -> send(alert));
+            });
+        }
+        
+        /**
+         * The wearer is done with the alert and idle again
+         */
+        void finish(Alert alert) {
+            result.longestSendS = Math.max(result.longestSendS, scheduler.now - alert.startedAt);
+            if (--sending[alert.deviceId] == 0) {
+                scheduleHeartbeat(alert.deviceId);
+            }
+        }
+        
+        void transmit(Transmission transmission) {
+            double duration = airtime(transmission.kind == ACK
+                ? transmission.frame.length : UPLINK_BYTES);
+            result.airtimeS += duration;
+            if (transmission.kind != HEARTBEAT) {
+                result.alertAirtimeS += duration;
+            }
+            if (transmission.kind == ACK) {
+                result.ackFrames++;
+                result.ackEntries += transmission.frame[3] & 0xFF;
+            }
+            
+            // Everything overlapping is lost, the new frame included
+            for (Transmission other : onAir) {
+                other.collided = true;
+                transmission.collided = true;
+            }
+            onAir.add(transmission);
+            scheduler.after(duration, () -> {
+                onAir.remove(transmission);
+                if (!transmission.collided) {
+                    received(transmission);
+                }
+            });
+        }
+        
+        void received(Transmission transmission) {
+            // Every wearer in range hears it; those listening for an ACK count it
+            for (Alert alert : listening) {
+                if (transmission.kind != ACK) {
+                    alert.framesHeard++;
+                }
+            }
+            if (transmission.kind == HEARTBEAT) {
+                return;
+            }
+            
+            if (transmission.kind == ACK) {
+                byte[] frame = transmission.frame;
+                int count = AckFrame.decode(frame, 0, frame.length, ackDeviceIds,
+                    ackSequences);
+                for (int i = 0; i < count; i++) {
+                    Alert alert = alerts.get(key(ackDeviceIds[i], ackSequences[i]));
+                    if (alert != null && alert.listening) {
+                        alert.acked = true;
+                    }
+                }
+                return;
+            }
+            
+            // Alert at the gateway: first copy is persisted then acknowledged, later ones re-acked
+            alerts.get(key(transmission.deviceId, transmission.sequenceNumber)).heard = true;
+            if (!acks) {
+                return;
+            }
+            int deviceId = transmission.deviceId;
+            int sequenceNumber = transmission.sequenceNumber;
+            // No wearer reboots here, so one frame timestamp serves for all
+            if (accepted.add(key(deviceId, sequenceNumber))) {
+                batcher.heard(deviceId, 0);
+                scheduler.after(PERSIST_S, () -> batcher.acknowledge(deviceId, sequenceNumber, 0));
+            } else {
+                batcher.onDuplicate(deviceId, sequenceNumber, 0, 0);
+            }
+        }
+        
+        static int key(int deviceId, int sequenceNumber) {
+            return (deviceId << 16) | sequenceNumber;
+        }
+    }
+    
+    /**
+     * Single-threaded scheduler over virtual seconds, enough for AckBatcher
+     */
+    private static final class VirtualScheduler extends AbstractExecutorService
+            implements ScheduledExecutorService {
+        
+        private final class Task implements ScheduledFuture<Object> {
+            final double at;
+            final long order = tasks++;
+            final Runnable action;
+            boolean cancelled;
+            boolean done;
+            
+            Task(double at, Runnable action) {
+                this.at = at;
+                this.action = action;
+            }
+            
+            @Override
+            public long getDelay(TimeUnit unit) {
+                return unit.convert((long) ((at - now) * 1e9), TimeUnit.NANOSECONDS);
+            }
+            
+            @Override
+            public int compareTo(Delayed other) {
+                Task task = (Task) other;
+                int byTime = Double.compare(at, task.at);
+                return byTime != 0 ? byTime : Long.compare(order, task.order);
+            }
+            
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                if (done) {
+                    return false;
+                }
+                cancelled = true;
+                return true;
+            }
+            
+            @Override
+            public boolean isCancelled() {
+                return cancelled;
+            }
+            
+            @Override
+            public boolean isDone() {
+                return done || cancelled;
+            }
+            
+            @Override
+            public Object get() {
+                throw new UnsupportedOperationException();
+            }
+            
+            @Override
+            public Object get(long timeout, TimeUnit unit) {
+                throw new UnsupportedOperationException();
+            }
+        }
+        
+        private final PriorityQueue<Task> queue = new PriorityQueue<>();
+        private double now = 0;
+        private long tasks = 0;
+        
+        Task at(double time, Runnable action) {
+            Task task = new Task(time, action);
+            queue.add(task);
+            return task;
+        }
+        
+        Task after(double seconds, Runnable action) {
+            return at(now + seconds, action);
+        }
+        
+        void runUntil(double end) {
+            while (!queue.isEmpty() && queue.peek().at < end) {
+                Task task = queue.poll();
+                if (!task.cancelled) {
+                    now = task.at;
+                    task.done = true;
+                    task.action.run();
+                }
+            }
+        }
+        
+        @Override
+        public void execute(Runnable command) {
+            after(0, command);
+        }
+        
+        @Override
+        public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+            return after(unit.toNanos(delay) / 1e9, command);
+        }
+        
+        @Override
+        public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+            throw new UnsupportedOperationException();
+        }
+        
+        @Override
+        public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay,
+                                                      long period, TimeUnit unit) {
+            throw new UnsupportedOperationException();
+        }
+        
+        @Override
+        public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay,
+                                                         long delay, TimeUnit unit) {
+            throw new UnsupportedOperationException();
+        }
+        
+        @Override
+        public void shutdown() {
+            queue.clear();
+        }
+        
+        @Override
+        public List<Runnable> shutdownNow() {
+            queue.clear();
+            return Arrays.asList();
+        }
+        
+        @Override
+        public boolean isShutdown() {
+            return false;
+        }
+        
+        @Override
+        public boolean isTerminated() {
+            return false;
+        }
+        
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return true;
+        }
+    }
+}
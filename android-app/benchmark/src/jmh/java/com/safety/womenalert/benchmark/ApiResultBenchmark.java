@@ -0,0 +1,67 @@
+package com.safety.womenalert.benchmark;
+
+import com.safety.womenalert.ApiResult;
+
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Women Safety System - API Result Benchmark
+ * Getting the incident id out of a POST /api/emergency response
+ *
+ * bufferedJson is the old ApiClient path (read every line into a
+ * StringBuilder, then parse the string) plus the JSONObject needed to
+ * get the id out; streamed is ApiResult scanning the stream directly.
+ * Run with -prof gc to compare allocation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ApiResultBenchmark {
+    
+    // As routes/emergency.js answers a new incident
+    private static final String RESPONSE = "{\"success\":true,"
+        + "\"incidentId\":\"INC-1700000000000-a1b2c3\","
+        + "\"message\":\"Emergency alert received and being processed\","
+        + "\"timestamp\":\"2024-11-14T22:13:20.000Z\"}\n";
+    
+    private byte[] body;
+    
+    @Setup
+    public void setup() throws IOException {
+        body = RESPONSE.getBytes(StandardCharsets.UTF_8);
+        if (!"INC-1700000000000-a1b2c3".equals(streamed()) || !streamed().equals(bufferedJson())) {
+            throw new IllegalStateException("Parsers disagree");
+        }
+    }
+    
+    @Benchmark
+    public String bufferedJson() throws IOException {
+        BufferedReader br = new BufferedReader(
+            new InputStreamReader(new ByteArrayInputStream(body), StandardCharsets.UTF_8));
+        StringBuilder response = new StringBuilder();
+        String responseLine;
+        while ((responseLine = br.readLine()) != null) {
+            response.append(responseLine.trim());
+        }
+        return new JSONObject(response.toString()).optString("incidentId", null);
+    }
+    
+    @Benchmark
+    public String streamed() throws IOException {
+        return ApiResult.read(new ByteArrayInputStream(body), 201, 0).getIncidentId();
+    }
+}
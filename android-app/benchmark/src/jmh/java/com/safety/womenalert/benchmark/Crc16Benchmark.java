@@ -0,0 +1,52 @@
+package com.safety.womenalert.benchmark;
+
+import com.safety.womenalert.Crc16Ccitt;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Women Safety System - CRC16 Benchmark
+ * Bitwise vs table vs slicing-by-8 on a packet header and on bulk input
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class Crc16Benchmark {
+    
+    // 10 = checksummed part of one packet
+    @Param({"10", "4096"})
+    public int length;
+    
+    private byte[] data;
+    
+    @Setup
+    public void setup() {
+        data = new byte[length];
+        new Random(0xC2C).nextBytes(data);
+    }
+    
+    @Benchmark
+    public int legacyBitwise() {
+        return LegacyPacketPath.calculateCRC16(data, length);
+    }
+    
+    @Benchmark
+    public int table() {
+        return Crc16Ccitt.updateTable(Crc16Ccitt.INITIAL_VALUE, data, 0, length);
+    }
+    
+    @Benchmark
+    public int slicingBy8() {
+        return Crc16Ccitt.compute(data, 0, length);
+    }
+}
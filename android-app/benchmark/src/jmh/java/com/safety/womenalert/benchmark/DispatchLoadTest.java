@@ -0,0 +1,145 @@
+package com.safety.womenalert.benchmark;
+
+import com.safety.womenalert.AlertTransport;
+import com.safety.womenalert.EmergencyDispatcher;
+import com.safety.womenalert.EmergencyEvent;
+import com.safety.womenalert.EmergencyUplink;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Women Safety System - Dispatch Load Test
+ * Many wearers triggering at once, from frame arrival to backend acknowledgement
+ *
+ * Each alert runs EmergencyHandler's shape of work: a location lookup of
+ * random length (cached fix up to a full wait for a better one), then a
+ * submit to EmergencyUplink against a slow StubBackend. The old
+ * single-thread executor is compared with EmergencyDispatcher at a few pool
+ * sizes; every device sends several frames so per-device ordering is checked.
+ *
+ * Run with: gradle -p android-app/benchmark loadTest
+ */
+public class DispatchLoadTest {
+    
+    private static final int DEVICES = 64;
+    private static final int FRAMES_PER_DEVICE = 2;
+    private static final long MAX_LOOKUP_MS = 100;
+    private static final long BACKEND_DELAY_MS = 50;
+    private static final String[] CONTACTS = {"+919876543210", "+919812345678"};
+    
+    /**
+     * Runs a device's task; the single-thread baseline ignores the device
+     */
+    private interface Dispatch {
+        boolean dispatch(int deviceId, Runnable task);
+    }
+    
+    public static void main(String[] args) throws Exception {
+        System.out.printf("%d devices x %d frames, lookup 0-%d ms, backend %d ms%n%n",
+            DEVICES, FRAMES_PER_DEVICE, MAX_LOOKUP_MS, BACKEND_DELAY_MS);
+        System.out.printf("%-22s %9s %9s %9s %9s %9s%n",
+            "dispatch", "p50 ms", "p99 ms", "max ms", "wait ms", "ordered");
+        
+        ExecutorService single = Executors.newSingleThreadExecutor();
+        run("single-thread", (deviceId, task) -> {
+            single.execute(task);
+            return true;
+        }, null);
+        single.shutdown();
+        
+        for (int threads : new int[] {4, 16, 64}) {
+            EmergencyDispatcher dispatcher = new EmergencyDispatcher(threads,
+                EmergencyDispatcher.DEFAULT_MAX_PENDING);
+            run("dispatcher x" + threads, dispatcher::dispatch, dispatcher);
+            dispatcher.shutdown();
+        }
+    }
+    
+    private static void run(String name, Dispatch dispatch, EmergencyDispatcher dispatcher)
+            throws Exception {
+        int total = DEVICES * FRAMES_PER_DEVICE;
+        long[] frameNanos = new long[total];
+        long[] latencies = new long[total];
+        CountDownLatch done = new CountDownLatch(total);
+        
+        // Per device, the sequence numbers in the order they were delivered
+        ConcurrentHashMap<Integer, List<Integer>> order = new ConcurrentHashMap<>();
+        
+        try (StubBackend backend = new StubBackend(BACKEND_DELAY_MS)) {
+            String url = backend.getUrl();
+            EmergencyUplink uplink = new EmergencyUplink(() -> url, new AlertTransport.Listener() {
+                @Override
+                public void onDelivered(EmergencyEvent event) {
+                    int index = (int) event.getTimestamp();
+                    latencies[index] = System.nanoTime() - frameNanos[index];
+                    order.computeIfAbsent(event.getDeviceId(),
+                        k -> new ArrayList<>()).add(event.getSequenceNumber());
+                    done.countDown();
+                }
+                
+                @Override
+                public void onFailed(EmergencyEvent event, String reason) {
+                    throw new IllegalStateException(reason);
+                }
+            });
+            
+            Random random = new Random(42);
+            for (int seq = 0; seq < FRAMES_PER_DEVICE; seq++) {
+                for (int device = 0; device < DEVICES; device++) {
+                    int index = seq * DEVICES + device;
+                    long lookupMs = (long) (random.nextDouble() * MAX_LOOKUP_MS);
+                    int deviceId = device;
+                    int sequence = seq;
+                    
+                    frameNanos[index] = System.nanoTime();
+                    dispatch.dispatch(deviceId, () -> {
+                        sleep(lookupMs);
+                        // Timestamp carries the sample index back to the listener
+                        uplink.submit(new EmergencyEvent(deviceId, 12.971599, 77.594566, 80,
+                            sequence, index, CONTACTS));
+                    });
+                }
+            }
+            
+            if (!done.await(2, TimeUnit.MINUTES)) {
+                throw new IllegalStateException(name + ": timed out");
+            }
+            uplink.shutdown();
+        }
+        
+        Arrays.sort(latencies);
+        boolean ordered = true;
+        for (List<Integer> sequences : order.values()) {
+            for (int i = 1; i < sequences.size(); i++) {
+                ordered &= sequences.get(i - 1) < sequences.get(i);
+            }
+        }
+        
+        System.out.printf("%-22s %9.1f %9.1f %9.1f %9s %9s%n", name,
+            millis(latencies[total / 2]),
+            millis(latencies[(int) (total * 0.99)]),
+            millis(latencies[total - 1]),
+            dispatcher != null ? String.format("%.1f", dispatcher.getMeanWaitMillis()) : "-",
+            ordered ? "yes" : "NO");
+    }
+    
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+    
+    private static void sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.safety.womenalert.benchmark;
+
+import com.safety.womenalert.SerialLink;
+
+import java.io.IOException;
+
+/**
+ * Women Safety System - Fake Serial Link
+ * A serial port on a plain JVM, airing a byte stream in chunks, with injectable faults
+ *
+ * The stream is "on air" whether or not the port is open: a chunk aired
+ * while the port is closed, broken or stalled is lost, as on a real link.
+ * Faults: killReader() stops the reader with an error, stall() makes it go
+ * silent without one, and refuseOpens(n) fails the next n opens. Writes
+ * are counted and otherwise discarded.
+ */
+public class FakeSerialLink implements SerialLink {
+    
+    private final String name;
+    private final byte[] stream;
+    private final int chunkSize;
+    private final long chunkIntervalMs;
+    private final Thread air;
+    
+    // Guarded by this
+    private Callback callback;
+    private boolean stalled = false;
+    private int refuseOpens = 0;
+    private int position = 0;
+    private long opens = 0;
+    private long bytesWritten = 0;
+    
+    public FakeSerialLink(String name, byte[] stream, int chunkSize, long chunkIntervalMs) {
+        this.name = name;
+        this.stream = stream;
+        this.chunkSize = chunkSize;
+        this.chunkIntervalMs = chunkIntervalMs;
+        this.air = new Thread(this::air, "fake-serial-" + name);
+        this.air.setDaemon(true);
+        this.air.start();
+    }
+    
+    @Override
+    public synchronized void open(Callback callback) throws IOException {
+        opens++;
+        if (refuseOpens > 0) {
+            refuseOpens--;
+            throw new IOException("Device busy");
+        }
+        this.callback = callback;
+        this.stalled = false;
+    }
+    
+    @Override
+    public synchronized void close() {
+        callback = null;
+    }
+    
+    @Override
+    public synchronized void write(byte[] data) throws IOException {
+        if (callback == null) {
+            throw new IOException(name + " is not open");
+        }
+        bytesWritten += data.length;
+    }
+    
+    @Override
+    public String getName() {
+        return name;
+    }
+    
+    /**
+     * The reader dies with an I/O error, like a USB transfer failing
+     */
+    public void killReader() {
+        Callback dying;
+        synchronized (this) {
+            dying = callback;
+            callback = null;
+        }
+        if (dying != null) {
+            dying.onError(new IOException("USB transfer failed"));
+        }
+    }
+    
+    /**
+     * The reader stays up but nothing more arrives until the port is reopened
+     */
+    public synchronized void stall() {
+        stalled = true;
+    }
+    
+    public synchronized void refuseOpens(int count) {
+        refuseOpens = count;
+    }
+    
+    public synchronized long getOpenCount() {
+        return opens;
+    }
+    
+    public synchronized long getBytesWritten() {
+        return bytesWritten;
+    }
+    
+    /**
+     * Bytes aired so far, delivered or not
+     */
+    public synchronized int getPosition() {
+        return position;
+    }
+    
+    private void air() {
+        try {
+            while (true) {
+                Thread.sleep(chunkIntervalMs);
+                
+                Callback receiving;
+                byte[] chunk;
+                synchronized (this) {
+                    int length = Math.min(chunkSize, stream.length - position);
+                    if (length == 0) {
+                        return;  // Stream finished
+                    }
+                    chunk = new byte[length];
+                    System.arraycopy(stream, position, chunk, 0, length);
+                    position += length;
+                    receiving = stalled ? null : callback;
+                }
+                if (receiving != null) {
+                    receiving.onData(chunk);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
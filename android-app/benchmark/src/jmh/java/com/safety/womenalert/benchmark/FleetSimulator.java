@@ -0,0 +1,337 @@
+package com.safety.womenalert.benchmark;
+
+import com.safety.womenalert.AlertTransport;
+import com.safety.womenalert.EmergencyDispatcher;
+import com.safety.womenalert.EmergencyEvent;
+import com.safety.womenalert.EmergencyUplink;
+import com.safety.womenalert.FrameDecoder;
+import com.safety.womenalert.LatencyHistogram;
+import com.safety.womenalert.SequenceTracker;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Women Safety System - Fleet Simulator
+ * Drives the gateway receive pipeline with a simulated fleet of wearables, no hardware needed
+ *
+ * Each step models a fleet of N devices sending emergency_packet_t frames
+ * (esp32-firmware/lora_comm.h): a heartbeat every HEARTBEAT_PERIOD_S and the
+ * occasional emergency, which the firmware transmits RETRANSMITS times
+ * under one sequence number. Frames share one serial line at the given baud rate;
+ * frames the dongle cannot send within its buffer time are lost. The
+ * surviving bytes get bit errors and truncation, then arrive in USB reads
+ * of random size, like SerialInputOutputManager delivers them.
+ *
+ * Virtual time runs SPEEDUP times faster than the wall clock. The bytes are
+ * pushed through FrameDecoder, SequenceTracker, EmergencyDispatcher and
+ * EmergencyUplink to a StubBackend, the same chain as LoRaService and
+ * EmergencyHandler. Per step the simulator reports:
+ *
+ *   - line use and frames lost on the air link;
+ *   - sustained decode rate on the serial thread;
+ *   - alerts delivered and latency from frame arrival to backend ack.
+ *
+ * A step is saturated when the line is full, the serial thread falls behind,
+ * or alerts back up. Because time is compressed, a pipeline that keeps up
+ * at N devices here keeps up with N x SPEEDUP in real time.
+ *
+ * Run with: gradle -p android-app/benchmark simulate [--args=<baud>]
+ */
+public class FleetSimulator {
+    
+    private static final int[] FLEET_SIZES = {1000, 4000, 16000, 32000, 64000};
+    private static final double HEARTBEAT_PERIOD_S = 30;
+    private static final double ALERTS_PER_DEVICE_HOUR = 0.1;
+    private static final int RETRANSMITS = 3;
+    private static final double RETRANSMIT_SPACING_S = 1;
+    
+    private static final int DEFAULT_BAUD_RATE = 115200;
+    private static final double DONGLE_BUFFER_S = 2;  // Queued airtime before frames are lost
+    private static final double BIT_ERROR_RATE = 1e-5;
+    private static final double TRUNCATE_RATE = 0.002;
+    private static final int MAX_CHUNK = 64;
+    
+    private static final int SPEEDUP = 60;
+    private static final double STEP_WALL_S = 5;
+    private static final long BACKEND_DELAY_MS = 20;
+    private static final String[] CONTACTS = {"+919876543210", "+919812345678"};
+    
+    private static int baudRate = DEFAULT_BAUD_RATE;
+    
+    /**
+     * Frames of one step in air order, with their wall-clock arrival offsets
+     */
+    private static final class Schedule {
+        byte[] bytes;
+        long[] byteArrivalNanos;  // Per byte, since the step started
+        int offeredFrames;
+        int lostFrames;
+        int alerts;
+        double lineUse;
+        final Map<Integer, Long> alertSentNanos = new HashMap<>();
+    }
+    
+    /**
+     * @param args optional line rate in baud; raise it to find the pipeline's own limit
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0) {
+            baudRate = Integer.parseInt(args[0]);
+        }
+        
+        System.out.printf("Heartbeat %.0f s, %.1f alerts/device-hour x%d, %d baud, "
+                + "BER %.0e, truncation %.1f%%, time x%d%n%n",
+            HEARTBEAT_PERIOD_S, ALERTS_PER_DEVICE_HOUR, RETRANSMITS, baudRate,
+            BIT_ERROR_RATE, TRUNCATE_RATE * 100, SPEEDUP);
+        System.out.printf("%8s %9s %7s %7s %10s %8s %8s %9s %8s %8s  %s%n",
+            "devices", "air fps", "line%", "lost", "decode/s", "crc", "dups",
+            "alerts", "p50 ms", "p99 ms", "verdict");
+        
+        int saturatedAt = -1;
+        String limit = null;
+        
+        try (StubBackend backend = new StubBackend(BACKEND_DELAY_MS)) {
+            for (int devices : FLEET_SIZES) {
+                String verdict = runStep(devices, backend.getUrl());
+                if (verdict != null && saturatedAt < 0) {
+                    saturatedAt = devices;
+                    limit = verdict;
+                }
+            }
+        }
+        
+        System.out.println();
+        if (saturatedAt < 0) {
+            System.out.printf("No saturation up to %d devices%n",
+                FLEET_SIZES[FLEET_SIZES.length - 1]);
+        } else {
+            System.out.printf("Gateway saturates at about %d devices (%s)%n", saturatedAt, limit);
+        }
+    }
+    
+    /**
+     * @return null if the pipeline kept up, else what limited it
+     */
+    private static String runStep(int devices, String backendUrl) throws Exception {
+        Schedule schedule = schedule(new Random(devices), devices);
+        
+        LatencyHistogram latency = new LatencyHistogram();
+        AtomicLong delivered = new AtomicLong();
+        long[] startNanos = new long[1];
+        
+        EmergencyUplink uplink = new EmergencyUplink(() -> backendUrl,
+            new AlertTransport.Listener() {
+                @Override
+                public void onDelivered(EmergencyEvent event) {
+                    Long sent = schedule.alertSentNanos.get((int) event.getTimestamp());
+                    if (sent != null) {
+                        latency.recordNanos(System.nanoTime() - startNanos[0] - sent);
+                    }
+                    delivered.incrementAndGet();
+                }
+                
+                @Override
+                public void onFailed(EmergencyEvent event, String reason) {
+                    System.err.println("Alert from device " + event.getDeviceId()
+                        + " failed: " + reason);
+                }
+            });
+        EmergencyDispatcher dispatcher = new EmergencyDispatcher();
+        SequenceTracker tracker = new SequenceTracker(devices);
+        AtomicLong duplicates = new AtomicLong();
+        
+        FrameDecoder decoder = new FrameDecoder(new FrameDecoder.FrameListener() {
+            @Override
+            public void onFrame(int deviceId, int packetType, int batteryLevel,
+                                int timestamp, int sequenceNumber) {
+                int verdict = tracker.track(deviceId, timestamp, sequenceNumber);
+                if (verdict == SequenceTracker.DUPLICATE) {
+                    duplicates.incrementAndGet();
+                    return;
+                }
+                if (packetType != FrameDecoder.PACKET_TYPE_EMERGENCY) {
+                    return;
+                }
+                
+                int key = deviceId << 16 | sequenceNumber;
+                dispatcher.dispatch(deviceId, () -> uplink.submit(new EmergencyEvent(deviceId,
+                    12.971599, 77.594566, batteryLevel, sequenceNumber, key, CONTACTS)));
+            }
+            
+            @Override
+            public void onChecksumError(int deviceId, int sequenceNumber) {
+                // Counted by the decoder
+            }
+        });
+        decoder.setResyncEnabled(true);
+        
+        // The serial thread: USB reads of random size, paced to arrival times
+        Random chunking = new Random(~devices);
+        startNanos[0] = System.nanoTime();
+        long behindNanos = 0;
+        
+        for (int at = 0; at < schedule.bytes.length; ) {
+            int length = Math.min(1 + chunking.nextInt(MAX_CHUNK), schedule.bytes.length - at);
+            long due = startNanos[0] + schedule.byteArrivalNanos[at + length - 1];
+            long now = System.nanoTime();
+            if (now < due) {
+                LockSupport.parkNanos(due - now);
+            } else {
+                behindNanos = Math.max(behindNanos, now - due);
+            }
+            decoder.feed(schedule.bytes, at, length);
+            at += length;
+        }
+        
+        long decodeNanos = System.nanoTime() - startNanos[0];
+        
+        // Give alerts still in flight the same slack a wearer would get
+        long drainDeadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (delivered.get() < schedule.alerts && System.nanoTime() < drainDeadline) {
+            Thread.sleep(5);
+        }
+        dispatcher.shutdown();
+        uplink.shutdown();
+        
+        LatencyHistogram.Snapshot latencies = latency.snapshot();
+        double airFps = schedule.offeredFrames / (STEP_WALL_S * SPEEDUP);
+        double decodeFps = decoder.getFramesDecoded() / (decodeNanos / 1e9);
+        
+        String verdict = null;
+        if (schedule.lineUse > 0.95 || schedule.lostFrames > 0) {
+            verdict = "air link full";
+        } else if (behindNanos > TimeUnit.MILLISECONDS.toNanos(500)) {
+            verdict = "serial thread behind";
+        } else if (delivered.get() < schedule.alerts) {
+            verdict = "uplink backlog";
+        }
+        
+        System.out.printf("%8d %9.1f %6.0f%% %7d %10.0f %8d %8d %4d/%-4d %8.1f %8.1f  %s%n",
+            devices, airFps, schedule.lineUse * 100, schedule.lostFrames, decodeFps,
+            decoder.getChecksumErrors(), duplicates.get(), delivered.get(), schedule.alerts,
+            latencies.getValueAtPercentile(50) / 1000.0,
+            latencies.getValueAtPercentile(99) / 1000.0,
+            verdict != null ? "SATURATED: " + verdict : "ok");
+        return verdict;
+    }
+    
+    /**
+     * Lay out one step's frames on the air link and corrupt them for the wire
+     */
+    private static Schedule schedule(Random random, int devices) {
+        double virtualSeconds = STEP_WALL_S * SPEEDUP;
+        double alertProbability = ALERTS_PER_DEVICE_HOUR * virtualSeconds / 3600;
+        
+        // Transmit times in virtual ms, packed with the frame's index for sorting
+        int capacity = (int) (devices * (virtualSeconds / HEARTBEAT_PERIOD_S + 1)
+            + devices * alertProbability * RETRANSMITS * 2 + 16);
+        long[] order = new long[capacity];
+        int[] frameDevice = new int[capacity];
+        int[] frameType = new int[capacity];
+        int[] frameSequence = new int[capacity];
+        int count = 0;
+        int[] sequence = new int[devices];
+        
+        for (int device = 0; device < devices; device++) {
+            double t = random.nextDouble() * HEARTBEAT_PERIOD_S;
+            for (; t < virtualSeconds; t += HEARTBEAT_PERIOD_S) {
+                order[count] = (long) (t * 1000) << 32 | count;
+                frameDevice[count] = device + 1;
+                frameType[count] = FrameDecoder.PACKET_TYPE_HEARTBEAT;
+                count++;
+            }
+            
+            if (random.nextDouble() < alertProbability) {
+                double alertAt = random.nextDouble() * (virtualSeconds
+                    - RETRANSMITS * RETRANSMIT_SPACING_S);
+                for (int r = 0; r < RETRANSMITS; r++) {
+                    order[count] = (long) ((alertAt + r * RETRANSMIT_SPACING_S) * 1000) << 32
+                        | count;
+                    frameDevice[count] = device + 1;
+                    frameType[count] = FrameDecoder.PACKET_TYPE_EMERGENCY;
+                    // Same sequence number on every copy; -1 marks a retransmission
+                    frameSequence[count] = r == 0 ? 0 : -1;
+                    count++;
+                }
+            }
+        }
+        Arrays.sort(order, 0, count);
+        
+        Schedule schedule = new Schedule();
+        schedule.bytes = new byte[count * FrameDecoder.PACKET_SIZE];
+        schedule.byteArrivalNanos = new long[schedule.bytes.length];
+        
+        double frameAirtime = FrameDecoder.PACKET_SIZE * 10.0 / baudRate;
+        double lineFree = 0;
+        double busy = 0;
+        int length = 0;
+        int[] alertSequence = new int[devices + 1];
+        int[] alertTimestamp = new int[devices + 1];
+        byte[] packet = new byte[FrameDecoder.PACKET_SIZE];
+        
+        for (int i = 0; i < count; i++) {
+            int index = (int) order[i];
+            double t = (order[i] >>> 32) / 1000.0;
+            int device = frameDevice[index];
+            schedule.offeredFrames++;
+            
+            // Heartbeats sent between retransmissions move the counter on, not the alert's
+            // number; a retransmission is the same packet, timestamp included
+            int seq;
+            int timestamp;
+            if (frameSequence[index] == -1) {
+                seq = alertSequence[device];
+                timestamp = alertTimestamp[device];
+            } else {
+                seq = sequence[device - 1]++ & 0xFFFF;
+                timestamp = (int) t & 0xFFFF;
+                if (frameType[index] == FrameDecoder.PACKET_TYPE_EMERGENCY) {
+                    alertSequence[device] = seq;
+                    alertTimestamp[device] = timestamp;
+                }
+            }
+            
+            double start = Math.max(t, lineFree);
+            if (start - t > DONGLE_BUFFER_S) {
+                schedule.lostFrames++;
+                continue;
+            }
+            lineFree = start + frameAirtime;
+            busy += frameAirtime;
+            
+            // Latency counts from the first copy that makes it onto the line
+            if (frameType[index] == FrameDecoder.PACKET_TYPE_EMERGENCY
+                    && !schedule.alertSentNanos.containsKey(device << 16 | seq)) {
+                schedule.alerts++;
+                schedule.alertSentNanos.put(device << 16 | seq, (long) (lineFree / SPEEDUP * 1e9));
+            }
+            
+            NoisyStream.encode(packet, device, frameType[index], 20 + random.nextInt(81),
+                timestamp, seq);
+            for (int bit = 0; bit < packet.length * 8; bit++) {
+                if (random.nextDouble() < BIT_ERROR_RATE) {
+                    packet[bit >>> 3] ^= (byte) (1 << (bit & 7));
+                }
+            }
+            int wireLength = random.nextDouble() < TRUNCATE_RATE
+                ? 2 + random.nextInt(packet.length - 2)
+                : packet.length;
+            
+            long arrival = (long) (lineFree / SPEEDUP * 1e9);
+            System.arraycopy(packet, 0, schedule.bytes, length, wireLength);
+            Arrays.fill(schedule.byteArrivalNanos, length, length + wireLength, arrival);
+            length += wireLength;
+        }
+        
+        schedule.bytes = Arrays.copyOf(schedule.bytes, length);
+        schedule.byteArrivalNanos = Arrays.copyOf(schedule.byteArrivalNanos, length);
+        schedule.lineUse = busy / virtualSeconds;
+        return schedule;
+    }
+}
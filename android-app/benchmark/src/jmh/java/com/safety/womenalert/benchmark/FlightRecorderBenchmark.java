@@ -0,0 +1,108 @@
+package com.safety.womenalert.benchmark;
+
+import com.safety.womenalert.FlightRecorder;
+import com.safety.womenalert.FlightRecording;
+import com.safety.womenalert.FrameDecoder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Women Safety System - Flight Recorder Benchmark
+ * Cost of recording a frame, and decoder throughput replaying a recording
+ *
+ * record is the per-frame cost added to the ingest; it should be a few
+ * nanoseconds and allocate nothing. replay feeds a whole recording through
+ * FrameDecoder; its size is printed at setup. By default the recording is made from the
+ * LIGHT_NOISE capture; pass -p recording=/path/to/flight.bin to replay one
+ * pulled from a gateway instead, as a regression input for the decoder.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class FlightRecorderBenchmark {
+    
+    @Param({""})
+    public String recording;
+    
+    private File file;
+    private FlightRecorder recorder;
+    private byte[] frame;
+    private FlightRecording replayed;
+    private FrameDecoder decoder;
+    
+    @Setup
+    public void setup(Blackhole bh) throws IOException {
+        file = File.createTempFile("flight", ".bin");
+        recorder = new FlightRecorder(file);
+        
+        File source = new File(recording);
+        if (recording.isEmpty()) {
+            // Record the capture as the ingest would, then read it back
+            FrameDecoder capture = new FrameDecoder(new FrameDecoder.FrameListener() {
+                @Override
+                public void onFrame(int deviceId, int packetType, int batteryLevel,
+                                    int timestamp, int sequenceNumber) {
+                }
+                
+                @Override
+                public void onChecksumError(int deviceId, int sequenceNumber) {
+                }
+            });
+            capture.setResyncEnabled(true);
+            long now = System.currentTimeMillis();
+            capture.setRawFrameListener((raw, valid) -> recorder.record(now, 0, raw, valid));
+            capture.feed(SerialCapture.LIGHT_NOISE.bytes());
+            source = file;
+        }
+        replayed = FlightRecording.read(source);
+        frame = replayed.getRecords().get(0).getFrame();
+        System.out.printf("%nReplaying %d records%n", replayed.getRecords().size());
+        
+        decoder = new FrameDecoder(new FrameDecoder.FrameListener() {
+            @Override
+            public void onFrame(int deviceId, int packetType, int batteryLevel,
+                                int timestamp, int sequenceNumber) {
+                bh.consume(deviceId);
+                bh.consume(sequenceNumber);
+            }
+            
+            @Override
+            public void onChecksumError(int deviceId, int sequenceNumber) {
+                bh.consume(deviceId);
+            }
+        });
+        decoder.setResyncEnabled(true);
+    }
+    
+    @TearDown
+    public void tearDown() throws IOException {
+        recorder.close();
+        file.delete();
+    }
+    
+    @Benchmark
+    public long record() {
+        recorder.record(1700000000000L, 1, frame, true);
+        return recorder.getRecordCount();
+    }
+    
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public long replay() {
+        replayed.replay(decoder, null);
+        return decoder.getFramesDecoded();
+    }
+}
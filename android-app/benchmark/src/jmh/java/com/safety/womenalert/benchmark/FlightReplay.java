@@ -0,0 +1,95 @@
+package com.safety.womenalert.benchmark;
+
+import com.safety.womenalert.FlightRecording;
+import com.safety.womenalert.FrameDecoder;
+import com.safety.womenalert.SequenceTracker;
+
+import java.io.File;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Women Safety System - Flight Replay
+ * Export a gateway's flight recording, or replay it through the decoder for an incident report
+ *
+ * Replay runs every recorded frame through FrameDecoder and SequenceTracker
+ * as the ingest did, then prints per-device totals and every emergency and
+ * cancel with the time it was received. "Did the gateway hear the alert?"
+ * is answered by the device's line and the event list.
+ *
+ * Run with: gradle -p android-app/benchmark replay --args="flight.bin [--csv]"
+ */
+public class FlightReplay {
+    
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: FlightReplay <flight-recorder.bin> [--csv]");
+            System.exit(2);
+        }
+        
+        FlightRecording recording = FlightRecording.read(new File(args[0]));
+        if (args.length > 1 && args[1].equals("--csv")) {
+            Writer out = new OutputStreamWriter(System.out, StandardCharsets.UTF_8);
+            recording.writeCsv(out);
+            out.flush();
+            return;
+        }
+        
+        SimpleDateFormat time = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
+        SequenceTracker tracker = new SequenceTracker();
+        Map<Integer, long[]> devices = new TreeMap<>();  // heard, duplicates, bad checksum
+        FlightRecording.Record[] current = new FlightRecording.Record[1];
+        
+        System.out.println("Events:");
+        FrameDecoder decoder = new FrameDecoder(new FrameDecoder.FrameListener() {
+            @Override
+            public void onFrame(int deviceId, int packetType, int batteryLevel,
+                                int timestamp, int sequenceNumber) {
+                long[] counts = devices.computeIfAbsent(deviceId, id -> new long[3]);
+                int verdict = tracker.track(deviceId, timestamp, sequenceNumber);
+                if (verdict == SequenceTracker.DUPLICATE) {
+                    counts[1]++;
+                    return;
+                }
+                counts[0]++;
+                
+                if (packetType == FrameDecoder.PACKET_TYPE_EMERGENCY
+                        || packetType == FrameDecoder.PACKET_TYPE_CANCEL) {
+                    System.out.printf("  %s  port %d  device 0x%04X  %-9s  seq %5d  battery %d%%%n",
+                        time.format(new Date(current[0].getReceivedAt())), current[0].getPort(),
+                        deviceId, packetType == FrameDecoder.PACKET_TYPE_EMERGENCY
+                            ? "EMERGENCY" : "CANCEL", sequenceNumber, batteryLevel);
+                }
+            }
+            
+            @Override
+            public void onChecksumError(int deviceId, int sequenceNumber) {
+                devices.computeIfAbsent(deviceId, id -> new long[3])[2]++;
+            }
+        });
+        recording.replay(decoder, record -> current[0] = record);
+        
+        System.out.printf("%n%d records (%d torn), %d frames decoded, %d checksum errors%n",
+            recording.getRecords().size(), recording.getRecordsLost(),
+            decoder.getFramesDecoded(), decoder.getChecksumErrors());
+        if (!recording.getRecords().isEmpty()) {
+            System.out.printf("From %s to %s%n",
+                time.format(new Date(recording.getRecords().get(0).getReceivedAt())),
+                time.format(new Date(recording.getRecords()
+                    .get(recording.getRecords().size() - 1).getReceivedAt())));
+        }
+        
+        // A bad checksum's device ID may itself be corrupt, so those rows can be noise
+        System.out.printf("%n%-8s %9s %9s %9s%n", "device", "heard", "copies", "bad crc");
+        for (Map.Entry<Integer, long[]> device : devices.entrySet()) {
+            long[] counts = device.getValue();
+            System.out.printf("0x%04X   %9d %9d %9d%n", device.getKey(), counts[0], counts[1],
+                counts[2]);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.safety.womenalert.benchmark;
+
+import com.safety.womenalert.Crc16Ccitt;
+import com.safety.womenalert.FrameDecoder;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Random;
+
+/**
+ * Women Safety System - Noisy Serial Stream
+ * Replayable byte stream of emergency packets with injected line noise
+ *
+ * The same seed always produces the same bytes, so a run can be repeated
+ * exactly when comparing decoder changes.
+ */
+public final class NoisyStream {
+    
+    private NoisyStream() {}
+    
+    /**
+     * @param frames number of packets to emit
+     * @param devices number of distinct device ids
+     * @param bitErrorRate probability that any single bit is flipped
+     * @param truncateRate probability that a packet loses its tail on the wire
+     * @param garbageRate probability of a burst of random bytes between packets
+     */
+    public static byte[] generate(long seed, int frames, int devices, double bitErrorRate,
+                                  double truncateRate, double garbageRate) {
+        Random random = new Random(seed);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(
+            frames * (FrameDecoder.PACKET_SIZE + 4));
+        byte[] packet = new byte[FrameDecoder.PACKET_SIZE];
+        int[] sequence = new int[devices];
+        
+        for (int i = 0; i < frames; i++) {
+            if (random.nextDouble() < garbageRate) {
+                int burst = 1 + random.nextInt(16);
+                for (int j = 0; j < burst; j++) {
+                    out.write(random.nextInt(256));
+                }
+            }
+            
+            int device = random.nextInt(devices);
+            int type = random.nextInt(10) == 0
+                ? FrameDecoder.PACKET_TYPE_EMERGENCY
+                : FrameDecoder.PACKET_TYPE_HEARTBEAT;
+            encode(packet, device + 1, type, 20 + random.nextInt(81),
+                i & 0xFFFF, sequence[device]++ & 0xFFFF);
+            
+            if (bitErrorRate > 0) {
+                for (int bit = 0; bit < packet.length * 8; bit++) {
+                    if (random.nextDouble() < bitErrorRate) {
+                        packet[bit >>> 3] ^= (byte) (1 << (bit & 7));
+                    }
+                }
+            }
+            
+            int length = packet.length;
+            if (random.nextDouble() < truncateRate) {
+                length = 2 + random.nextInt(packet.length - 2);
+            }
+            
+            out.write(packet, 0, length);
+        }
+        
+        return out.toByteArray();
+    }
+    
+    /**
+     * Write one emergency_packet_t in the layout read by FrameDecoder
+     */
+    public static void encode(byte[] packet, int deviceId, int packetType, int batteryLevel,
+                              int timestamp, int sequenceNumber) {
+        packet[0] = FrameDecoder.MAGIC_BYTE_1;
+        packet[1] = FrameDecoder.MAGIC_BYTE_2;
+        packet[2] = (byte) (deviceId >>> 8);
+        packet[3] = (byte) deviceId;
+        packet[4] = (byte) packetType;
+        packet[5] = (byte) batteryLevel;
+        packet[6] = (byte) (timestamp >>> 8);
+        packet[7] = (byte) timestamp;
+        packet[8] = (byte) (sequenceNumber >>> 8);
+        packet[9] = (byte) sequenceNumber;
+        
+        int crc = Crc16Ccitt.compute(packet, 0, FrameDecoder.PACKET_SIZE - 2);
+        packet[10] = (byte) (crc >>> 8);
+        packet[11] = (byte) crc;
+    }
+}
@@ -0,0 +1,50 @@
+package com.safety.womenalert.benchmark;
+
+import com.safety.womenalert.EmergencyEvent;
+import com.safety.womenalert.EmergencyOutbox;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Women Safety System - Outbox Benchmark
+ * Cost of persisting an event before send and acknowledging it after
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class OutboxBenchmark {
+    
+    private File file;
+    private EmergencyOutbox outbox;
+    private EmergencyEvent event;
+    
+    @Setup
+    public void setup() throws IOException {
+        file = File.createTempFile("outbox", ".log");
+        outbox = new EmergencyOutbox(file);
+        event = new EmergencyEvent(0x0001, 12.971599, 77.594566, 80, 42,
+            1700000000000L, new String[]{"+919876543210", "+919812345678", ""});
+    }
+    
+    @TearDown
+    public void tearDown() throws IOException {
+        outbox.close();
+        file.delete();
+    }
+    
+    @Benchmark
+    public void appendThenAck() {
+        outbox.ack(outbox.append(event).getOutboxId());
+    }
+}
@@ -0,0 +1,82 @@
+package com.safety.womenalert.benchmark;
+
+import com.safety.womenalert.FrameDecoder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Women Safety System - Packet Path Benchmark
+ * Frame reassembly, CRC check and field extraction per frame, legacy vs FrameDecoder
+ *
+ * Scores are ns per emitted frame; with the gc profiler, gc.alloc.rate.norm
+ * is bytes allocated per frame.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PacketPathBenchmark {
+    
+    @Param({"CLEAN", "LIGHT_NOISE", "HEAVY_NOISE"})
+    public SerialCapture capture;
+    
+    // Bytes per USB read callback
+    @Param({"1", "12", "64", "512"})
+    public int burstSize;
+    
+    private byte[][] bursts;
+    private LegacyPacketPath legacy;
+    private FrameDecoder decoder;
+    private Blackhole blackhole;
+    
+    @Setup
+    public void setup(Blackhole bh) {
+        blackhole = bh;
+        bursts = capture.bursts(burstSize);
+        legacy = new LegacyPacketPath();
+        decoder = new FrameDecoder(new FrameDecoder.FrameListener() {
+            @Override
+            public void onFrame(int deviceId, int packetType, int batteryLevel,
+                                int timestamp, int sequenceNumber) {
+                blackhole.consume(deviceId);
+                blackhole.consume(packetType);
+                blackhole.consume(batteryLevel);
+                blackhole.consume(sequenceNumber);
+            }
+            
+            @Override
+            public void onChecksumError(int deviceId, int sequenceNumber) {
+                blackhole.consume(deviceId);
+            }
+        });
+        decoder.setResyncEnabled(true);
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(SerialCapture.FRAMES)
+    public String legacyOnNewData() {
+        for (byte[] burst : bursts) {
+            legacy.onNewData(burst);
+        }
+        return legacy.lastLogLine;
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(SerialCapture.FRAMES)
+    public long frameDecoder() {
+        for (byte[] burst : bursts) {
+            decoder.feed(burst);
+        }
+        return decoder.getFramesDecoded();
+    }
+}
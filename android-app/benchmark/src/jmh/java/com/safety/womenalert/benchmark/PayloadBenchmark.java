@@ -0,0 +1,123 @@
+package com.safety.womenalert.benchmark;
+
+import com.safety.womenalert.EmergencyCodec;
+import com.safety.womenalert.EmergencyEvent;
+import com.safety.womenalert.EmergencyPayload;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Women Safety System - Payload Benchmark
+ * JSON versus binary bodies for POST /api/emergency: build and parse cost
+ *
+ * Body sizes for the event below (printed at setup): JSON 175 bytes,
+ * binary 62 bytes with contacts inline and 33 bytes once the backend has
+ * cached them. Setup also checks that both encodings round-trip.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PayloadBenchmark {
+    
+    private final String[] contacts = {"+919876543210", "+919812345678", ""};
+    private int sequenceNumber = 0;
+    
+    private EmergencyEvent event;
+    private byte[] jsonBody;
+    private byte[] binaryInline;
+    private byte[] binaryHashed;
+    private final Map<Long, String[]> contactCache = new HashMap<>();
+    
+    @Setup
+    public void setup() throws Exception {
+        event = new EmergencyEvent(0x0001, 12.971599, 77.594566, 87, 42, 1700000000000L,
+            contacts);
+        jsonBody = EmergencyPayload.toJson(event).getBytes(StandardCharsets.UTF_8);
+        binaryInline = EmergencyCodec.encode(event, true);
+        binaryHashed = EmergencyCodec.encode(event, false);
+        
+        check(parseJson());
+        check(EmergencyCodec.decode(ByteBuffer.wrap(binaryInline), contactCache));
+        check(EmergencyCodec.decode(ByteBuffer.wrap(binaryHashed), contactCache));
+        
+        System.out.printf("%nBody bytes: json=%d binary inline=%d binary hashed=%d%n",
+            jsonBody.length, binaryInline.length, binaryHashed.length);
+    }
+    
+    @Benchmark
+    public byte[] jsonPayload() throws JSONException {
+        return EmergencyPayload.toJson(0x0001, 12.971599, 77.594566, 87,
+            sequenceNumber++ & 0xFFFF, 1700000000000L, contacts)
+            .getBytes(StandardCharsets.UTF_8);
+    }
+    
+    @Benchmark
+    public byte[] binaryPayloadInline() {
+        return EmergencyCodec.encode(nextEvent(), true);
+    }
+    
+    @Benchmark
+    public byte[] binaryPayloadHashed() {
+        return EmergencyCodec.encode(nextEvent(), false);
+    }
+    
+    @Benchmark
+    public EmergencyEvent jsonParse() throws JSONException {
+        return parseJson();
+    }
+    
+    @Benchmark
+    public EmergencyEvent binaryParse() throws IOException {
+        return EmergencyCodec.decode(ByteBuffer.wrap(binaryHashed), contactCache);
+    }
+    
+    private EmergencyEvent nextEvent() {
+        return new EmergencyEvent(0x0001, 12.971599, 77.594566, 87,
+            sequenceNumber++ & 0xFFFF, 1700000000000L, contacts);
+    }
+    
+    /**
+     * What a JVM receiver does with the JSON body, for a like-for-like decode
+     */
+    private EmergencyEvent parseJson() throws JSONException {
+        JSONObject json = new JSONObject(new String(jsonBody, StandardCharsets.UTF_8));
+        JSONArray array = json.getJSONArray("emergencyContacts");
+        String[] parsed = new String[array.length()];
+        for (int i = 0; i < parsed.length; i++) {
+            parsed[i] = array.getString(i);
+        }
+        return new EmergencyEvent(json.getInt("deviceId"), json.getDouble("latitude"),
+            json.getDouble("longitude"), json.getInt("batteryLevel"),
+            json.getInt("sequenceNumber"), json.getLong("timestamp"), parsed);
+    }
+    
+    private void check(EmergencyEvent decoded) {
+        boolean same = decoded.getDeviceId() == event.getDeviceId()
+            && Math.abs(decoded.getLatitude() - event.getLatitude()) < 1e-7
+            && Math.abs(decoded.getLongitude() - event.getLongitude()) < 1e-7
+            && decoded.getBatteryLevel() == event.getBatteryLevel()
+            && decoded.getSequenceNumber() == event.getSequenceNumber()
+            && decoded.getTimestamp() == event.getTimestamp()
+            && Arrays.equals(decoded.getContacts(), new String[] {contacts[0], contacts[1]});
+        if (!same) {
+            throw new IllegalStateException("Round trip changed the event");
+        }
+    }
+}
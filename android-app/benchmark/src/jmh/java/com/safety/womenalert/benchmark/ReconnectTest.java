@@ -0,0 +1,176 @@
+package com.safety.womenalert.benchmark;
+
+import com.safety.womenalert.ByteRing;
+import com.safety.womenalert.Clock;
+import com.safety.womenalert.FrameDecoder;
+import com.safety.womenalert.SerialLink;
+import com.safety.womenalert.SerialSupervisor;
+
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.Consumer;
+
+/**
+ * Women Safety System - Reconnect Test
+ * Serial reconnect latency and frame loss under injected faults, on a fake port
+ *
+ * A FakeSerialLink airs one clean frame every FRAME_MS in 5-byte chunks, so
+ * every fault cuts a frame in half. SerialSupervisor and a consumer wired
+ * like UsbSerialIngest's (fresh ring per connection, decoder reset between
+ * them) receive it. For each fault the table shows the downtime the
+ * supervisor recorded, the time from the fault until frames were decoded
+ * on the new connection, the frames aired while down, and checksum errors,
+ * which must stay at zero: a half frame from before a gap must never be
+ * joined to one from after it.
+ *
+ * Times are scaled down so a run takes seconds. The stall watchdog, off in
+ * the app, is turned on here with STALL_MS to measure recovery from a stall.
+ *
+ * Run with: gradle -p android-app/benchmark reconnectTest
+ */
+public class ReconnectTest {
+    
+    private static final long FRAME_MS = 5;
+    private static final int CHUNK_SIZE = 5;
+    private static final long BASE_DELAY_MS = 50;
+    private static final long MAX_DELAY_MS = 2000;
+    private static final long STALL_MS = 400;
+    private static final int RUNS = 5;
+    
+    /**
+     * Consumer side of UsbSerialIngest for one port, polled instead of parked
+     */
+    private static final class Receiver implements SerialSupervisor.Listener,
+            FrameDecoder.FrameListener {
+        final FrameDecoder decoder = new FrameDecoder(this);
+        volatile ByteRing ring = new ByteRing();
+        ByteRing draining = ring;
+        boolean reconnected = false;
+        volatile long frames = 0;
+        volatile long checksumErrors = 0;
+        volatile long faultAt = 0;
+        volatile long recoveredIn = -1;
+        
+        Receiver() {
+            decoder.setResyncEnabled(true);
+        }
+        
+        @Override
+        public SerialLink.DataSink onConnecting(int connection) {
+            ByteRing fresh = connection == 1 ? ring : new ByteRing();
+            ring = fresh;
+            return data -> fresh.offer(data, 0, data.length);
+        }
+        
+        @Override
+        public void onConnected(int connection) {
+        }
+        
+        @Override
+        public void onDisconnected(int connection, String reason, long retryInMs) {
+        }
+        
+        void poll() {
+            ByteRing current = ring;
+            if (current != draining) {
+                draining.drainTo(decoder::feed);
+                decoder.reset();
+                draining = current;
+                reconnected = true;
+            }
+            current.drainTo(decoder::feed);
+        }
+        
+        @Override
+        public void onFrame(int deviceId, int packetType, int batteryLevel,
+                            int timestamp, int sequenceNumber) {
+            long now = System.nanoTime();
+            frames++;
+            // Frames still buffered from before the fault don't count as recovery
+            if (reconnected && recoveredIn < 0) {
+                recoveredIn = now - faultAt;
+            }
+        }
+        
+        @Override
+        public void onChecksumError(int deviceId, int sequenceNumber) {
+            checksumErrors++;
+        }
+    }
+    
+    public static void main(String[] args) throws Exception {
+        System.out.printf("Frame every %d ms in %d-byte chunks, backoff %d-%d ms, stall after %d ms,"
+            + " %d runs each%n%n", FRAME_MS, CHUNK_SIZE, BASE_DELAY_MS, MAX_DELAY_MS, STALL_MS, RUNS);
+        System.out.printf("%-24s %12s %12s %12s %12s%n", "fault", "down ms", "frames ms",
+            "frames lost", "crc errors");
+        
+        run("reader error", link -> link.killReader());
+        run("error + 3 refused opens", link -> {
+            link.refuseOpens(3);
+            link.killReader();
+        });
+        run("stall", FakeSerialLink::stall);
+    }
+    
+    private static void run(String fault, Consumer<FakeSerialLink> inject) throws Exception {
+        double reopen = 0;
+        double frames = 0;
+        long lost = 0;
+        long checksumErrors = 0;
+        
+        for (int i = 0; i < RUNS; i++) {
+            byte[] stream = new byte[FrameDecoder.PACKET_SIZE * 4000];
+            byte[] packet = new byte[FrameDecoder.PACKET_SIZE];
+            for (int f = 0; f < 4000; f++) {
+                NoisyStream.encode(packet, 0x42, FrameDecoder.PACKET_TYPE_HEARTBEAT, 80, f, f);
+                System.arraycopy(packet, 0, stream, f * packet.length, packet.length);
+            }
+            long chunkMs = Math.max(1, FRAME_MS * CHUNK_SIZE / FrameDecoder.PACKET_SIZE);
+            FakeSerialLink link = new FakeSerialLink("fake" + i, stream, CHUNK_SIZE, chunkMs);
+            
+            ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+            Receiver receiver = new Receiver();
+            SerialSupervisor supervisor = new SerialSupervisor(link, receiver, scheduler,
+                Clock.SYSTEM, new Random(i), BASE_DELAY_MS, MAX_DELAY_MS, STALL_MS);
+            supervisor.start();
+            
+            // Settle, fault, then wait for frames to flow again
+            pollFor(receiver, 300);
+            long framesBefore = receiver.frames;
+            int airedBefore = link.getPosition();
+            receiver.faultAt = System.nanoTime();
+            inject.accept(link);
+            long deadline = System.nanoTime() + 10_000_000_000L;
+            while (receiver.recoveredIn < 0 && System.nanoTime() < deadline) {
+                pollFor(receiver, 1);
+            }
+            pollFor(receiver, 100);
+            
+            long aired = (link.getPosition() - airedBefore) / FrameDecoder.PACKET_SIZE;
+            long received = receiver.frames - framesBefore;
+            supervisor.stop();
+            scheduler.shutdownNow();
+            link.close();
+            
+            if (receiver.recoveredIn < 0) {
+                throw new IllegalStateException(fault + ": never recovered");
+            }
+            reopen += supervisor.getDowntimeMs();
+            frames += receiver.recoveredIn / 1e6;
+            lost += Math.max(0, aired - received);
+            checksumErrors += receiver.checksumErrors;
+        }
+        
+        System.out.printf("%-24s %12.0f %12.0f %12.1f %12d%n", fault, reopen / RUNS,
+            frames / RUNS, (double) lost / RUNS, checksumErrors);
+    }
+    
+    private static void pollFor(Receiver receiver, long ms) throws InterruptedException {
+        long until = System.nanoTime() + ms * 1_000_000;
+        do {
+            receiver.poll();
+            Thread.sleep(1);
+        } while (System.nanoTime() < until);
+    }
+}
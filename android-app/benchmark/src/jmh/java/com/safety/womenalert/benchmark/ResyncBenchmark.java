@@ -0,0 +1,70 @@
+package com.safety.womenalert.benchmark;
+
+import com.safety.womenalert.FrameDecoder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Women Safety System - Resync Throughput Benchmark
+ * Decoder throughput on a replayable noisy stream, with and without resync
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ResyncBenchmark {
+    
+    private static final int FRAMES = 10000;
+    private static final long SEED = 0x5AFE;
+    
+    @Param({"0", "0.0001", "0.001", "0.01"})
+    public double bitErrorRate;
+    
+    @Param({"true", "false"})
+    public boolean resync;
+    
+    private byte[] stream;
+    private FrameDecoder decoder;
+    private Blackhole blackhole;
+    
+    @Setup
+    public void setup(Blackhole bh) {
+        blackhole = bh;
+        stream = NoisyStream.generate(SEED, FRAMES, 64, bitErrorRate, 0.02, 0.05);
+        decoder = new FrameDecoder(new FrameDecoder.FrameListener() {
+            @Override
+            public void onFrame(int deviceId, int packetType, int batteryLevel,
+                                int timestamp, int sequenceNumber) {
+                blackhole.consume(deviceId ^ sequenceNumber);
+            }
+            
+            @Override
+            public void onChecksumError(int deviceId, int sequenceNumber) {
+                blackhole.consume(deviceId);
+            }
+        });
+        decoder.setResyncEnabled(resync);
+    }
+    
+    /**
+     * Time per emitted frame, serial reads of 64 bytes
+     */
+    @Benchmark
+    @OperationsPerInvocation(FRAMES)
+    public long decodeStream() {
+        for (int offset = 0; offset < stream.length; offset += 64) {
+            decoder.feed(stream, offset, Math.min(64, stream.length - offset));
+        }
+        return decoder.getFramesDecoded();
+    }
+}
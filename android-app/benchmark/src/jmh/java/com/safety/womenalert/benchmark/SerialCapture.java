@@ -0,0 +1,62 @@
+package com.safety.womenalert.benchmark;
+
+/**
+ * Women Safety System - Serial Captures
+ * Fixed serial byte streams at several noise levels for the packet path benchmarks
+ *
+ * Each capture is regenerated from a fixed seed, so every run and every
+ * machine replays exactly the same bytes.
+ */
+public enum SerialCapture {
+    
+    // Bench-top link, adapter next to the wearer
+    CLEAN(0xC1EA, 0, 0, 0),
+    
+    // Typical relay phone: occasional bit errors and dropped tails
+    LIGHT_NOISE(0x11647, 0.0001, 0.005, 0.01),
+    
+    // Gateway next to a busy concentrator
+    HEAVY_NOISE(0x4EA7, 0.005, 0.05, 0.10);
+    
+    public static final int FRAMES = 4096;
+    public static final int DEVICES = 256;
+    
+    private final long seed;
+    private final double bitErrorRate;
+    private final double truncateRate;
+    private final double garbageRate;
+    
+    private byte[] bytes;
+    
+    SerialCapture(long seed, double bitErrorRate, double truncateRate, double garbageRate) {
+        this.seed = seed;
+        this.bitErrorRate = bitErrorRate;
+        this.truncateRate = truncateRate;
+        this.garbageRate = garbageRate;
+    }
+    
+    public synchronized byte[] bytes() {
+        if (bytes == null) {
+            bytes = NoisyStream.generate(seed, FRAMES, DEVICES,
+                bitErrorRate, truncateRate, garbageRate);
+        }
+        return bytes;
+    }
+    
+    /**
+     * Split the capture into serial reads of burstSize bytes, as the USB reader delivers them
+     */
+    public byte[][] bursts(int burstSize) {
+        byte[] data = bytes();
+        byte[][] chunks = new byte[(data.length + burstSize - 1) / burstSize][];
+        
+        for (int i = 0; i < chunks.length; i++) {
+            int offset = i * burstSize;
+            int length = Math.min(burstSize, data.length - offset);
+            chunks[i] = new byte[length];
+            System.arraycopy(data, offset, chunks[i], 0, length);
+        }
+        
+        return chunks;
+    }
+}
@@ -0,0 +1,162 @@
+package com.safety.womenalert.benchmark;
+
+import com.safety.womenalert.ByteRing;
+import com.safety.womenalert.FrameDecoder;
+import com.safety.womenalert.FrameQueue;
+import com.safety.womenalert.SequenceTracker;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Women Safety System - Serial Ring Benchmark
+ * Cost of one USB read callback: copy into the ring vs decoding inline
+ *
+ * Scores are ns per read callback. offer is what the reader thread now pays:
+ * a ring's worth of reads, then one drain to a sink that does nothing, so
+ * the drain is amortised away. consume is the consumer thread's share for
+ * the same reads: decode, deduplicate, queue and dispatch. inline is the
+ * old callback, decoding and deduplicating on the reader thread with a
+ * listener that does nothing. Single-threaded so the numbers hold on any
+ * core count; the ring's cross-thread cost is one volatile store per read.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SerialRingBenchmark {
+    
+    // Reads per invocation; at the largest burst size this fills the ring
+    private static final int READS = 32;
+    
+    // Bytes per USB read callback
+    @Param({"12", "64", "512"})
+    public int burstSize;
+    
+    private byte[][] bursts;
+    private int nextBurst = 0;
+    
+    private ByteRing ring;
+    private ByteRing.Sink discard;
+    private ByteRing.Sink decoderInput;
+    private FrameQueue queue;
+    private FrameDecoder.FrameListener dispatched;
+    private FrameDecoder queueingDecoder;
+    private FrameDecoder inlineDecoder;
+    
+    @Setup
+    public void setup(Blackhole bh) {
+        bursts = SerialCapture.CLEAN.bursts(burstSize);
+        ring = new ByteRing(READS * 512);
+        queue = new FrameQueue();
+        discard = (data, offset, length) -> bh.consume(length);
+        
+        dispatched = new FrameDecoder.FrameListener() {
+            @Override
+            public void onFrame(int deviceId, int packetType, int batteryLevel,
+                                int timestamp, int sequenceNumber) {
+                bh.consume(deviceId);
+                bh.consume(sequenceNumber);
+            }
+            
+            @Override
+            public void onChecksumError(int deviceId, int sequenceNumber) {
+                bh.consume(deviceId);
+            }
+        };
+        
+        // Consumer thread: deduplicate, then queue for dispatch
+        SequenceTracker consumerTracker = new SequenceTracker();
+        queueingDecoder = new FrameDecoder(new FrameDecoder.FrameListener() {
+            @Override
+            public void onFrame(int deviceId, int packetType, int batteryLevel,
+                                int timestamp, int sequenceNumber) {
+                if (consumerTracker.track(deviceId, timestamp, sequenceNumber)
+                        != SequenceTracker.DUPLICATE) {
+                    queue.add(deviceId, packetType, batteryLevel, timestamp, sequenceNumber);
+                }
+            }
+            
+            @Override
+            public void onChecksumError(int deviceId, int sequenceNumber) {
+                bh.consume(deviceId);
+            }
+        });
+        queueingDecoder.setResyncEnabled(true);
+        decoderInput = queueingDecoder::feed;
+        
+        // Old reader thread: deduplicate, then straight to the listener
+        SequenceTracker inlineTracker = new SequenceTracker();
+        inlineDecoder = new FrameDecoder(new FrameDecoder.FrameListener() {
+            @Override
+            public void onFrame(int deviceId, int packetType, int batteryLevel,
+                                int timestamp, int sequenceNumber) {
+                if (inlineTracker.track(deviceId, timestamp, sequenceNumber)
+                        != SequenceTracker.DUPLICATE) {
+                    dispatched.onFrame(deviceId, packetType, batteryLevel, timestamp,
+                        sequenceNumber);
+                }
+            }
+            
+            @Override
+            public void onChecksumError(int deviceId, int sequenceNumber) {
+                bh.consume(deviceId);
+            }
+        });
+        inlineDecoder.setResyncEnabled(true);
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(READS)
+    public long offer() {
+        for (int i = 0; i < READS; i++) {
+            offerNext();
+        }
+        return ring.drainTo(discard);
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(READS)
+    public int consume() {
+        for (int i = 0; i < READS; i++) {
+            offerNext();
+        }
+        int n = ring.drainTo(decoderInput);
+        while (queue.dispatchNext(dispatched)) {
+            n++;
+        }
+        return n;
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(READS)
+    public long inline() {
+        for (int i = 0; i < READS; i++) {
+            byte[] burst = nextBurst();
+            inlineDecoder.feed(burst, 0, burst.length);
+        }
+        return inlineDecoder.getFramesDecoded();
+    }
+    
+    private void offerNext() {
+        byte[] burst = nextBurst();
+        if (!ring.offer(burst, 0, burst.length)) {
+            throw new IllegalStateException("Ring full");
+        }
+    }
+    
+    private byte[] nextBurst() {
+        byte[] burst = bursts[nextBurst];
+        nextBurst = nextBurst + 1 == bursts.length ? 0 : nextBurst + 1;
+        return burst;
+    }
+}
@@ -0,0 +1,125 @@
+package com.safety.womenalert.benchmark;
+
+import com.safety.womenalert.ApiKey;
+import com.safety.womenalert.IncidentStatusChannel;
+import com.safety.womenalert.LatencyHistogram;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Women Safety System - Status Channel Test
+ * Incident status push over one events stream, against StubBackend, with a dropped connection
+ *
+ * INCIDENTS alerts are opened a few ms apart and watched on one
+ * IncidentStatusChannel. The stub finishes each one's contact fan-out
+ * after a random FANOUT_MIN_MS-FANOUT_MAX_MS (1 in 10 fail), and halfway
+ * through cuts every stream. Watches are posted to the open stream as
+ * they start, and the stub only pushes watched incidents. The run checks
+ * that every incident is reported exactly once with the status the
+ * backend set, prints push latency and connection counts next to the GET
+ * requests a 2 s polling loop per incident would have made, and checks
+ * that the stream closes once nothing is left to watch.
+ *
+ * Run with: gradle -p android-app/benchmark statusTest
+ */
+public class StatusChannelTest {
+    
+    private static final int INCIDENTS = 500;
+    private static final long OPEN_INTERVAL_MS = 4;
+    private static final long FANOUT_MIN_MS = 200;
+    private static final long FANOUT_MAX_MS = 3000;
+    private static final long POLL_INTERVAL_MS = 2000;
+    
+    public static void main(String[] args) throws Exception {
+        Random random = new Random(42);
+        LatencyHistogram latency = new LatencyHistogram();
+        Map<String, String> expected = new ConcurrentHashMap<>();
+        Map<String, Long> publishedAt = new ConcurrentHashMap<>();
+        Map<String, String> reported = new ConcurrentHashMap<>();
+        AtomicLong duplicates = new AtomicLong();
+        AtomicLong wrong = new AtomicLong();
+        CountDownLatch done = new CountDownLatch(INCIDENTS);
+        long pollRequests = 0;
+        
+        ScheduledExecutorService fanout = Executors.newScheduledThreadPool(2);
+        try (StubBackend backend = new StubBackend(0)) {
+            IncidentStatusChannel channel = new IncidentStatusChannel(backend::getUrl,
+                ApiKey.NONE, new Random(7), 100, 2000, 1000);
+            
+            IncidentStatusChannel.Watcher watcher = (incidentId, status, error) -> {
+                long now = System.nanoTime();
+                if (reported.putIfAbsent(incidentId, status) != null) {
+                    duplicates.incrementAndGet();
+                    return;
+                }
+                if (!status.equals(expected.get(incidentId))) {
+                    wrong.incrementAndGet();
+                }
+                latency.recordNanos(now - publishedAt.get(incidentId));
+                done.countDown();
+            };
+            
+            long start = System.nanoTime();
+            for (int i = 0; i < INCIDENTS; i++) {
+                String incidentId = "incident-" + i;
+                boolean failed = random.nextInt(10) == 0;
+                String status = failed ? IncidentStatusChannel.STATUS_ALERT_FAILED
+                    : IncidentStatusChannel.STATUS_ALERTS_SENT;
+                expected.put(incidentId, status);
+                long delay = FANOUT_MIN_MS
+                    + (long) (random.nextDouble() * (FANOUT_MAX_MS - FANOUT_MIN_MS));
+                pollRequests += delay / POLL_INTERVAL_MS + 1;
+                
+                // As EmergencyUplink would: watch once the backend has answered with the id
+                fanout.schedule(() -> {
+                    publishedAt.put(incidentId, System.nanoTime());
+                    backend.publish(incidentId, status, failed ? "Twilio error" : null);
+                }, delay, TimeUnit.MILLISECONDS);
+                channel.watch(incidentId, watcher);
+                
+                if (i == INCIDENTS / 2) {
+                    backend.dropStreams();
+                }
+                Thread.sleep(OPEN_INTERVAL_MS);
+            }
+            
+            if (!done.await(30, TimeUnit.SECONDS)) {
+                throw new IllegalStateException((INCIDENTS - reported.size())
+                    + " incidents never reported");
+            }
+            long elapsedMs = (System.nanoTime() - start) / 1000000;
+            
+            // The stream should close at the next ping now nothing is watched
+            Thread.sleep(500);
+            
+            LatencyHistogram.Snapshot snapshot = latency.snapshot();
+            System.out.printf("%d incidents over %d ms, fan-out %d-%d ms, one stream drop%n%n",
+                INCIDENTS, elapsedMs, FANOUT_MIN_MS, FANOUT_MAX_MS);
+            System.out.printf("reported %d, duplicates %d, wrong status %d%n", reported.size(),
+                duplicates.get(), wrong.get());
+            System.out.printf("push latency p50 %.1f ms, p99 %.1f ms, max %.1f ms%n",
+                snapshot.getValueAtPercentile(50) / 1000.0,
+                snapshot.getValueAtPercentile(99) / 1000.0,
+                snapshot.getValueAtPercentile(100) / 1000.0);
+            System.out.printf("streams opened %d (%d events, %d watch updates), "
+                + "open after last watch %d%n", backend.getStreamConnections(),
+                channel.getEventCount(), backend.getWatchUpdates(), backend.getOpenStreams());
+            System.out.printf("polling every %d ms instead: %d GET requests%n",
+                POLL_INTERVAL_MS, pollRequests);
+            
+            channel.shutdown();
+            if (duplicates.get() != 0 || wrong.get() != 0 || backend.getOpenStreams() != 0) {
+                throw new IllegalStateException("Status channel misbehaved");
+            }
+        } finally {
+            fanout.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,274 @@
+package com.safety.womenalert.benchmark;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Women Safety System - Stub Backend
+ * Local HTTP server answering the emergency endpoints like backend/routes/emergency.js
+ *
+ * Status changes passed to {@link #publish} are pushed on
+ * /api/emergency/events to the open streams watching that incident, with
+ * a ping comment every PING_MS. As in services/statusStreams.js, a stream
+ * is named by its first event, watches are added and removed by POST to
+ * /api/emergency/events/:streamId with the current status replayed, and a
+ * watch ends at a final status.
+ */
+public class StubBackend implements AutoCloseable {
+    
+    static {
+        // Otherwise Nagle plus delayed ACK adds ~40 ms to every loopback response
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+    
+    private final HttpServer server;
+    private final long delayMs;
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong events = new AtomicLong();
+    private final AtomicLong connections = new AtomicLong();
+    
+    // Events stream: latest event per incident, and the open streams by id
+    private static final long PING_MS = 200;
+    private static final String DROP = "drop";  // Compared by identity
+    private final Map<String, String> statuses = new ConcurrentHashMap<>();
+    private final Map<String, Stream> streams = new ConcurrentHashMap<>();
+    private final AtomicLong streamConnections = new AtomicLong();
+    private final AtomicLong watchUpdates = new AtomicLong();
+    
+    /**
+     * One open events stream: what it watches and its outgoing queue
+     */
+    private static final class Stream {
+        final Set<String> watched = ConcurrentHashMap.newKeySet();
+        final BlockingQueue<String> queue = new LinkedBlockingQueue<>();
+        
+        /**
+         * Queue the event if watched; a final status ends the watch
+         */
+        void offer(String incidentId, String event) {
+            boolean last = event.contains("\"alerts_sent\"") || event.contains("\"alert_failed\"");
+            if (last ? watched.remove(incidentId) : watched.contains(incidentId)) {
+                queue.offer(event);
+            }
+        }
+    }
+    
+    /**
+     * @param delayMs simulated backend processing time per request
+     */
+    public StubBackend(long delayMs) throws IOException {
+        this.delayMs = delayMs;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.server.createContext("/api/emergency", this::handle);
+        this.server.createContext("/api/emergency/events", this::stream);
+        this.server.setExecutor(Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "stub-backend");
+            t.setDaemon(true);
+            return t;
+        }));
+        this.server.start();
+    }
+    
+    public String getUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+    
+    public long getRequests() {
+        return requests.get();
+    }
+    
+    public long getEvents() {
+        return events.get();
+    }
+    
+    /**
+     * Record an incident's status and push it to every open events stream
+     */
+    public void publish(String incidentId, String status, String error) {
+        String event = "{\"incidentId\":\"" + incidentId + "\",\"status\":\"" + status + "\""
+            + (error != null ? ",\"error\":\"" + error + "\"" : "") + "}";
+        statuses.put(incidentId, event);
+        for (Stream stream : streams.values()) {
+            stream.offer(incidentId, event);
+        }
+    }
+    
+    /**
+     * Cut every open events stream, as a proxy or backend restart would
+     */
+    public void dropStreams() {
+        for (Stream stream : streams.values()) {
+            stream.queue.offer(DROP);
+        }
+    }
+    
+    /**
+     * Events streams opened so far
+     */
+    public long getStreamConnections() {
+        return streamConnections.get();
+    }
+    
+    public int getOpenStreams() {
+        return streams.size();
+    }
+    
+    /**
+     * Watch updates posted to open streams
+     */
+    public long getWatchUpdates() {
+        return watchUpdates.get();
+    }
+    
+    private void stream(HttpExchange exchange) throws IOException {
+        if ("POST".equals(exchange.getRequestMethod())) {
+            updateStream(exchange);
+            return;
+        }
+        
+        streamConnections.incrementAndGet();
+        String streamId = UUID.randomUUID().toString();
+        Stream stream = new Stream();
+        streams.put(streamId, stream);
+        
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+        exchange.sendResponseHeaders(200, 0);
+        BlockingQueue<String> queue = stream.queue;
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(("retry: 2000\n\nevent: stream\ndata: {\"streamId\":\"" + streamId
+                + "\"}\n\n").getBytes(StandardCharsets.UTF_8));
+            os.flush();
+            while (true) {
+                String event = queue.poll(PING_MS, TimeUnit.MILLISECONDS);
+                if (event == DROP) {
+                    break;
+                }
+                String chunk = event == null ? ": ping\n\n"
+                    : "event: status\ndata: " + event + "\n\n";
+                os.write(chunk.getBytes(StandardCharsets.UTF_8));
+                os.flush();
+            }
+        } catch (IOException | InterruptedException e) {
+            // Client went away
+        } finally {
+            streams.remove(streamId);
+        }
+    }
+    
+    /**
+     * POST /api/emergency/events/:streamId: add and remove watches, replaying current statuses
+     */
+    private void updateStream(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        Stream stream = streams.get(path.substring(path.lastIndexOf('/') + 1));
+        JSONObject update = new JSONObject(readFully(exchange.getRequestBody()));
+        watchUpdates.incrementAndGet();
+        
+        int status = 404;
+        if (stream != null) {
+            JSONArray remove = update.optJSONArray("remove");
+            for (int i = 0; remove != null && i < remove.length(); i++) {
+                stream.watched.remove(remove.getString(i));
+            }
+            JSONArray add = update.optJSONArray("add");
+            for (int i = 0; add != null && i < add.length(); i++) {
+                String incidentId = add.getString(i);
+                stream.watched.add(incidentId);
+                String event = statuses.get(incidentId);
+                if (event != null) {
+                    stream.offer(incidentId, event);
+                }
+            }
+            status = 200;
+        }
+        
+        byte[] bytes = ("{\"success\":" + (status == 200) + "}").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(bytes);
+        }
+    }
+    
+    private void handle(HttpExchange exchange) throws IOException {
+        String body = readFully(exchange.getRequestBody());
+        requests.incrementAndGet();
+        
+        if (delayMs > 0) {
+            try {
+                Thread.sleep(delayMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        
+        String path = exchange.getRequestURI().getPath();
+        String response;
+        int status;
+        
+        if (path.endsWith("/batch")) {
+            int count = count(body, "\"deviceId\"");
+            events.addAndGet(count);
+            StringBuilder results = new StringBuilder("{\"success\":true,\"results\":[");
+            for (int i = 0; i < count; i++) {
+                results.append(i == 0 ? "" : ",")
+                    .append("{\"success\":true,\"incidentId\":\"stub-").append(i).append("\"}");
+            }
+            response = results.append("]}").toString();
+            status = 200;
+        } else {
+            events.incrementAndGet();
+            response = "{\"success\":true,\"incidentId\":\"stub\","
+                + "\"timestamp\":\"2026-01-19T21:30:00.000Z\"}";
+            status = 201;
+        }
+        
+        byte[] bytes = response.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(bytes);
+        }
+    }
+    
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+    
+    private static int count(String haystack, String needle) {
+        int count = 0;
+        for (int i = haystack.indexOf(needle); i >= 0; i = haystack.indexOf(needle, i + 1)) {
+            count++;
+        }
+        return count;
+    }
+    
+    private static String readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            out.write(buffer, 0, n);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
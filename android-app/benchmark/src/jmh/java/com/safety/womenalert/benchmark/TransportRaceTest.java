@@ -0,0 +1,217 @@
+package com.safety.womenalert.benchmark;
+
+import com.safety.womenalert.AlertTransport;
+import com.safety.womenalert.Clock;
+import com.safety.womenalert.EmergencyEvent;
+import com.safety.womenalert.LatencyHistogram;
+import com.safety.womenalert.RacingTransport;
+import com.safety.womenalert.RetryScheduler;
+import com.safety.womenalert.StubTransport;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Women Safety System - Transport Race Test
+ * Time to reach the contacts over a degraded data link, backend only vs racing direct SMS
+ *
+ * Stub transports stand in for both links. The backend answers in
+ * HTTP_MS, except that a share of requests hang until the 10 s client
+ * timeout and fail; those are retried by RetryScheduler with its usual
+ * backoff. SMS takes SMS_MS and sometimes fails. Contacts are reached by
+ * whichever gets there first, but only the backend's ack settles an alert.
+ * All times are scaled down by TIME_SCALE so a run takes seconds; results
+ * are printed at full scale.
+ *
+ * Each run then checks the race outcomes and fails the task if one is off:
+ * every alert is settled exactly once by the backend, a healthy backend
+ * never sends an SMS, racing gives up on no more alerts than the backend
+ * alone, and racing reaches the contacts sooner at p99 once the link is
+ * lossy.
+ *
+ * Run with: gradle -p android-app/benchmark raceTest
+ */
+public class TransportRaceTest {
+    
+    private static final int ALERTS = 400;
+    private static final int TIME_SCALE = 10;
+    private static final long HTTP_MS = 400;
+    private static final long HTTP_TIMEOUT_MS = 10000;
+    private static final long SMS_MS = 4000;
+    private static final double SMS_FAILURE_RATE = 0.05;
+    private static final long BUDGET_MS = 5000;
+    private static final String[] CONTACTS = {"+919876543210", "+919812345678"};
+    
+    public static void main(String[] args) throws Exception {
+        System.out.printf("%d alerts, backend %d ms or %d ms timeout, SMS %d ms (%.0f%% fail), "
+                + "race budget %d ms%n%n", ALERTS, HTTP_MS, HTTP_TIMEOUT_MS, SMS_MS,
+            SMS_FAILURE_RATE * 100, BUDGET_MS);
+        System.out.printf("%-10s %-12s %9s %9s %9s %9s %9s %9s %9s%n", "link loss", "transport",
+            "p50 ms", "p90 ms", "p99 ms", "max ms", "sms sent", "sms ok", "gave up");
+        
+        for (double loss : new double[] {0, 0.2, 0.5}) {
+            Result backend = run(loss, false);
+            Result race = run(loss, true);
+            
+            check(race.gaveUp <= backend.gaveUp, "racing gave up on " + race.gaveUp
+                + " alerts, backend alone on " + backend.gaveUp);
+            if (loss == 0) {
+                check(race.smsSent == 0, "healthy backend still sent " + race.smsSent + " SMS");
+            } else {
+                // Equal at no loss, where both are the backend's latency plus scheduling noise
+                check(race.p99Ms < backend.p99Ms, "racing p99 " + race.p99Ms
+                    + " ms is not below backend-only " + backend.p99Ms + " ms");
+                check(race.smsSent > 0, "no SMS fallback at " + loss * 100 + "% loss");
+            }
+        }
+        System.out.println();
+        System.out.println("All race checks passed");
+    }
+    
+    /**
+     * What one run reports, at full scale
+     */
+    private static final class Result {
+        final double p99Ms;
+        final long smsSent;
+        final long gaveUp;
+        
+        Result(double p99Ms, long smsSent, long gaveUp) {
+            this.p99Ms = p99Ms;
+            this.smsSent = smsSent;
+            this.gaveUp = gaveUp;
+        }
+    }
+    
+    private static void check(boolean condition, String failure) {
+        if (!condition) {
+            throw new AssertionError(failure);
+        }
+    }
+    
+    private static Result run(double loss, boolean race) throws Exception {
+        Random random = new Random(42);
+        LatencyHistogram latency = new LatencyHistogram();
+        CountDownLatch done = new CountDownLatch(ALERTS);
+        AtomicLong gaveUp = new AtomicLong();
+        Set<Integer> delivered = Collections.synchronizedSet(new HashSet<>());
+        Set<Integer> reached = Collections.synchronizedSet(new HashSet<>());
+        AtomicLong duplicates = new AtomicLong();
+        StubTransport[] sms = new StubTransport[1];
+        RetryScheduler[] scheduler = new RetryScheduler[1];
+        
+        AlertTransport.Listener outcome = new AlertTransport.Listener() {
+            @Override
+            public void onDelivered(EmergencyEvent event) {
+                if (!delivered.add(event.getSequenceNumber())) {
+                    duplicates.incrementAndGet();
+                }
+                if (reached.add(event.getSequenceNumber())) {
+                    latency.recordNanos(System.nanoTime() - event.getTimestamp());
+                }
+                scheduler[0].onDelivered(event);
+                done.countDown();
+            }
+            
+            @Override
+            public void onFailed(EmergencyEvent event, String reason) {
+                scheduler[0].onFailed(event);
+            }
+        };
+        
+        AlertTransport transport;
+        if (race) {
+            transport = new RacingTransport(
+                listener -> hangsOnLoss(listener, random, loss),
+                listener -> {
+                    // Texted contacts are reached, though the alert is not settled
+                    AlertTransport.Listener texted = new AlertTransport.Listener() {
+                        @Override
+                        public void onDelivered(EmergencyEvent event) {
+                            if (reached.add(event.getSequenceNumber())) {
+                                latency.recordNanos(System.nanoTime() - event.getTimestamp());
+                            }
+                            listener.onDelivered(event);
+                        }
+                        
+                        @Override
+                        public void onFailed(EmergencyEvent event, String reason) {
+                            listener.onFailed(event, reason);
+                        }
+                    };
+                    sms[0] = new StubTransport(texted, event -> scaled(SMS_MS),
+                        event -> random.nextDouble() < SMS_FAILURE_RATE);
+                    return sms[0];
+                },
+                scaled(BUDGET_MS), outcome);
+        } else {
+            transport = hangsOnLoss(outcome, random, loss);
+        }
+        
+        scheduler[0] = new RetryScheduler(Clock.SYSTEM, new Random(7), transport::submit,
+            event -> {
+                gaveUp.incrementAndGet();
+                done.countDown();
+            }, scaled(RetryScheduler.DEFAULT_BASE_DELAY_MS),
+            scaled(RetryScheduler.DEFAULT_MAX_DELAY_MS), scaled(RetryScheduler.DEFAULT_DEADLINE_MS),
+            ALERTS);
+        scheduler[0].start();
+        
+        for (int i = 0; i < ALERTS; i++) {
+            scheduler[0].submit(new EmergencyEvent(i + 1, 12.971599, 77.594566, 80, i,
+                System.nanoTime(), CONTACTS));
+        }
+        
+        if (!done.await(5, TimeUnit.MINUTES)) {
+            throw new IllegalStateException("Alerts still pending");
+        }
+        scheduler[0].stop();
+        transport.shutdown();
+        
+        LatencyHistogram.Snapshot snapshot = latency.snapshot();
+        System.out.printf("%-10s %-12s %9.0f %9.0f %9.0f %9.0f %9d %9d %9d%n",
+            String.format("%.0f%%", loss * 100), race ? "race" : "backend",
+            fullScale(snapshot.getValueAtPercentile(50)),
+            fullScale(snapshot.getValueAtPercentile(90)),
+            fullScale(snapshot.getValueAtPercentile(99)),
+            fullScale(snapshot.getValueAtPercentile(100)),
+            sms[0] != null ? sms[0].getSubmittedCount() : 0,
+            sms[0] != null ? sms[0].getDeliveredCount() : 0, gaveUp.get());
+        
+        check(duplicates.get() == 0, duplicates.get() + " alerts reported delivered twice");
+        check(delivered.size() + gaveUp.get() == ALERTS,
+            "alerts unaccounted for: " + (ALERTS - delivered.size() - gaveUp.get()));
+        return new Result(fullScale(snapshot.getValueAtPercentile(99)),
+            sms[0] != null ? sms[0].getSubmittedCount() : 0, gaveUp.get());
+    }
+    
+    /**
+     * Backend stub: answers in HTTP_MS, or fails at the client timeout with probability loss
+     */
+    private static StubTransport hangsOnLoss(AlertTransport.Listener listener, Random random,
+                                             double loss) {
+        Set<EmergencyEvent> lost = Collections.synchronizedSet(
+            Collections.newSetFromMap(new IdentityHashMap<>()));
+        return new StubTransport(listener, event -> {
+            if (random.nextDouble() < loss) {
+                lost.add(event);
+                return scaled(HTTP_TIMEOUT_MS);
+            }
+            return scaled(HTTP_MS);
+        }, lost::remove);
+    }
+    
+    private static long scaled(long ms) {
+        return ms / TIME_SCALE;
+    }
+    
+    private static double fullScale(long micros) {
+        return micros / 1000.0 * TIME_SCALE;
+    }
+}
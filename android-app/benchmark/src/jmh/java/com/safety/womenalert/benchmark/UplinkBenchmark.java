@@ -0,0 +1,100 @@
+package com.safety.womenalert.benchmark;
+
+import com.safety.womenalert.AlertTransport;
+import com.safety.womenalert.EmergencyEvent;
+import com.safety.womenalert.EmergencyUplink;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Women Safety System - Uplink Benchmark
+ * Alert latency and burst throughput of EmergencyUplink against a local stub backend
+ *
+ * maxBatch=1 is the one-request-per-alert baseline; larger values let bursts
+ * coalesce into /api/emergency/batch requests.
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class UplinkBenchmark {
+    
+    private static final int BURST = 64;
+    private static final String[] CONTACTS = {"+919876543210", "+919812345678"};
+    
+    // Simulated backend processing time per request
+    @Param({"0", "5"})
+    public long backendDelayMs;
+    
+    @Param({"1", "32"})
+    public int maxBatch;
+    
+    private StubBackend backend;
+    private EmergencyUplink uplink;
+    private final Semaphore delivered = new Semaphore(0);
+    private int sequence = 0;
+    
+    @Setup
+    public void setup() throws Exception {
+        backend = new StubBackend(backendDelayMs);
+        String url = backend.getUrl();
+        uplink = new EmergencyUplink(() -> url, new AlertTransport.Listener() {
+            @Override
+            public void onDelivered(EmergencyEvent event) {
+                delivered.release();
+            }
+            
+            @Override
+            public void onFailed(EmergencyEvent event, String reason) {
+                throw new IllegalStateException(reason);
+            }
+        }, null, 5, maxBatch);
+    }
+    
+    @TearDown
+    public void tearDown() {
+        uplink.shutdown();
+        backend.close();
+    }
+    
+    /**
+     * Submit-to-ack latency of an isolated alert
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    public void isolatedAlert() throws InterruptedException {
+        // Let the burst window lapse so the alert is treated as isolated
+        Thread.sleep(6);
+        uplink.submit(event());
+        delivered.acquire();
+    }
+    
+    /**
+     * Time per alert when many wearers trigger at once
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OperationsPerInvocation(BURST)
+    public void burst() throws InterruptedException {
+        for (int i = 0; i < BURST; i++) {
+            uplink.submit(event());
+        }
+        delivered.acquire(BURST);
+    }
+    
+    private EmergencyEvent event() {
+        int seq = sequence++;
+        return new EmergencyEvent(seq & 0xFF, 12.971599, 77.594566, 80,
+            seq & 0xFFFF, System.currentTimeMillis(), CONTACTS);
+    }
+}
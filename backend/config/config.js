@@ -69,6 +69,10 @@ module.exports = {
 
     // API configuration
     api: {
+        // Keys gateway phones send in X-Api-Key
+        gatewayKeys: process.env.GATEWAY_API_KEYS
+            ? process.env.GATEWAY_API_KEYS.split(',').map(key => key.trim()).filter(Boolean)
+            : [],
         rateLimit: {
             windowMs: 15 * 60 * 1000, // 15 minutes
             max: 100 // limit each IP to 100 requests per windowMs
@@ -0,0 +1,64 @@
+/**
+ * Women Safety System - Gateway Authentication
+ * Only gateway phones holding a configured API key may raise or cancel alerts
+ *
+ * Keys come from GATEWAY_API_KEYS (comma-separated) and are sent in the
+ * X-Api-Key header. Both sides are hashed before the comparison so it takes
+ * the same time whatever the key's length or contents.
+ *
+ * With no keys configured every request is let through, so a deployment
+ * that predates the keys keeps raising alerts after an upgrade; the server
+ * warns loudly at startup instead. See "Authentication" in API.md for the
+ * migration.
+ */
+
+const crypto = require('crypto');
+const config = require('../config/config');
+
+const HEADER = 'x-api-key';
+
+function digest(value) {
+    return crypto.createHash('sha256').update(String(value)).digest();
+}
+
+/**
+ * True if the key matches one of the configured keys
+ */
+function isValidKey(key, keys) {
+    if (typeof key !== 'string' || key.length === 0) {
+        return false;
+    }
+    const presented = digest(key);
+    let valid = false;
+    for (const expected of keys) {
+        // No early exit: every configured key is compared
+        valid = crypto.timingSafeEqual(presented, digest(expected)) || valid;
+    }
+    return valid;
+}
+
+/**
+ * Express middleware; responds 401 without a valid key once keys are configured
+ */
+function requireGatewayKey(req, res, next) {
+    const keys = config.api.gatewayKeys;
+    if (keys.length === 0) {
+        return next();
+    }
+    if (!isValidKey(req.get(HEADER), keys)) {
+        return res.status(401).json({ error: 'Invalid or missing API key' });
+    }
+    next();
+}
+
+/**
+ * Warn at startup when gateway routes are open to anyone
+ */
+function warnIfOpen() {
+    if (config.api.gatewayKeys.length === 0) {
+        console.warn('WARNING: GATEWAY_API_KEYS is not set - /api/emergency and /api/telemetry');
+        console.warn('WARNING: accept requests from anyone. Set keys and enter one in each gateway app.');
+    }
+}
+
+module.exports = { requireGatewayKey, isValidKey, warnIfOpen };
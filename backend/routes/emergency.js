@@ -7,74 +7,173 @@ const express = require('express');
 const router = express.Router();
 const alertService = require('../services/alertService');
 const incidentLogger = require('../services/incidentLogger');
+const emergencyCodec = require('../services/emergencyCodec');
+const cancellations = require('../services/cancellations');
+const statusStreams = require('../services/statusStreams');
+
+// Binary bodies arrive as a Buffer; JSON is handled by the app-wide parser
+const binaryBody = express.raw({ type: emergencyCodec.CONTENT_TYPE, limit: '64kb' });
+
+// Tells clients they may switch to the binary encoding
+const ACCEPT_POST = `application/json, ${emergencyCodec.CONTENT_TYPE}`;
+
+// Status stream: comment line to keep idle connections open, and client reconnect delay
+const EVENTS_PING_MS = 15000;
+const EVENTS_RETRY_MS = 2000;
+
+// One listener for every stream; each is sent only the incidents it watches
+incidentLogger.on('status', incident => statusStreams.publish(incident));
 
 /**
- * POST /api/emergency
- * Receive emergency alert from Android app
+ * Error message if a frame's identifiers are malformed, or null
+ * Device IDs and sequence numbers are 16-bit on the wire; the timestamp is optional
+ */
+function validateFrame(deviceId, sequenceNumber, timestamp) {
+    if (!Number.isInteger(deviceId) || deviceId < 0 || deviceId > 0xFFFF) {
+        return 'Device ID is required';
+    }
+    if (!Number.isInteger(sequenceNumber) || sequenceNumber < 0 || sequenceNumber > 0xFFFF) {
+        return 'Sequence number is required';
+    }
+    if (timestamp !== undefined && (typeof timestamp !== 'number' || !Number.isFinite(timestamp))) {
+        return 'Timestamp must be a number';
+    }
+    return null;
+}
+
+/**
+ * Events from a request body in either encoding
+ * Returns { events } or { status, body } when the body cannot be decoded
  */
-router.post('/', async (req, res) => {
+function readEvents(req) {
+    if (!req.is(emergencyCodec.CONTENT_TYPE)) {
+        return { events: null };
+    }
+
     try {
-        const {
-            deviceId,
-            latitude,
-            longitude,
-            batteryLevel,
-            sequenceNumber,
-            timestamp,
-            emergencyContacts
-        } = req.body;
-
-        // Validate required fields
-        if (!deviceId) {
-            return res.status(400).json({ error: 'Device ID is required' });
+        return { events: emergencyCodec.decodeBatch(req.body) };
+    } catch (error) {
+        if (error instanceof emergencyCodec.UnknownContactsError) {
+            // Client resends with contacts inline
+            return { status: 409, body: { error: error.message, code: error.code } };
         }
+        return { status: 400, body: { error: error.message } };
+    }
+}
 
-        if (!emergencyContacts || emergencyContacts.length === 0) {
-            return res.status(400).json({ error: 'At least one emergency contact required' });
-        }
+/**
+ * Validate an emergency event, log the incident and start alert delivery
+ * Returns { status, body } for the HTTP response
+ */
+async function processEmergency(event) {
+    const {
+        deviceId,
+        latitude,
+        longitude,
+        batteryLevel,
+        sequenceNumber,
+        timestamp,
+        emergencyContacts,
+        locationAgeSeconds
+    } = event || {};
 
-        console.log(`Emergency received from device 0x${deviceId.toString(16).padStart(4, '0')}`);
-        console.log(`Location: ${latitude}, ${longitude}`);
-        console.log(`Battery: ${batteryLevel}%`);
-        console.log(`Contacts: ${emergencyContacts.join(', ')}`);
-
-        // Create incident record
-        const incident = await incidentLogger.createIncident({
-            deviceId,
-            latitude,
-            longitude,
-            batteryLevel,
-            sequenceNumber,
-            timestamp: timestamp || Date.now(),
-            emergencyContacts,
-            status: 'triggered'
-        });
+    // Validate required fields
+    const invalid = validateFrame(deviceId, sequenceNumber, timestamp);
+    if (invalid) {
+        return { status: 400, body: { error: invalid } };
+    }
 
-        console.log(`Incident created: ${incident.id}`);
+    if (!emergencyContacts || emergencyContacts.length === 0) {
+        return { status: 400, body: { error: 'At least one emergency contact required' } };
+    }
 
-        // Send alerts asynchronously (don't wait)
-        alertService.sendAlerts(incident, emergencyContacts)
-            .then(results => {
-                console.log(`Alerts sent for incident ${incident.id}:`, results);
-                incidentLogger.updateIncidentStatus(incident.id, 'alerts_sent', {
-                    alertResults: results,
-                    responseTime: Date.now() - incident.timestamp
-                });
-            })
-            .catch(error => {
-                console.error(`Error sending alerts for incident ${incident.id}:`, error);
+    console.log(`Emergency received from device 0x${deviceId.toString(16).padStart(4, '0')}`);
+    console.log(`Location: ${latitude}, ${longitude}`);
+    console.log(`Battery: ${batteryLevel}%`);
+    console.log(`Contacts: ${emergencyContacts.join(', ')}`);
+
+    // A late copy of an alert the wearer already cancelled: record it, alert no one
+    const eventTimestamp = timestamp || Date.now();
+    const cancelled = cancellations.isCancelled({
+        deviceId, sequenceNumber, timestamp: eventTimestamp
+    });
+
+    // Create incident record
+    const incident = await incidentLogger.createIncident({
+        deviceId,
+        latitude,
+        longitude,
+        batteryLevel,
+        sequenceNumber,
+        timestamp: eventTimestamp,
+        emergencyContacts,
+        locationAgeSeconds,
+        status: cancelled ? 'cancelled' : 'triggered'
+    });
+
+    console.log(`Incident created: ${incident.id}`);
+
+    if (cancelled) {
+        return {
+            status: 201,
+            body: {
+                success: true,
+                incidentId: incident.id,
+                message: 'Emergency was already cancelled by the wearer',
+                timestamp: new Date().toISOString()
+            }
+        };
+    }
+
+    // Send alerts asynchronously (don't wait)
+    alertService.sendAlerts(incident, emergencyContacts)
+        .then(results => {
+            console.log(`Alerts sent for incident ${incident.id}:`, results);
+            // A cancel during the fan-out stands; only the results are recorded
+            const status = incident.status === 'cancelled' ? 'cancelled' : 'alerts_sent';
+            incidentLogger.updateIncidentStatus(incident.id, status, {
+                alertResults: results,
+                responseTime: Date.now() - incident.timestamp
+            });
+        })
+        .catch(error => {
+            console.error(`Error sending alerts for incident ${incident.id}:`, error);
+            if (incident.status !== 'cancelled') {
                 incidentLogger.updateIncidentStatus(incident.id, 'alert_failed', {
                     error: error.message
                 });
-            });
+            }
+        });
 
-        // Return immediate response
-        res.status(201).json({
+    return {
+        status: 201,
+        body: {
             success: true,
             incidentId: incident.id,
             message: 'Emergency alert received and being processed',
             timestamp: new Date().toISOString()
-        });
+        }
+    };
+}
+
+/**
+ * POST /api/emergency
+ * Receive emergency alert from Android app
+ */
+router.post('/', binaryBody, async (req, res) => {
+    res.set('Accept-Post', ACCEPT_POST);
+
+    try {
+        const decoded = readEvents(req);
+        if (decoded.status) {
+            return res.status(decoded.status).json(decoded.body);
+        }
+        if (decoded.events && decoded.events.length !== 1) {
+            return res.status(400).json({ error: 'Exactly one event required' });
+        }
+
+        const result = await processEmergency(decoded.events ? decoded.events[0] : req.body);
+        res.status(result.status).json(result.body);
 
     } catch (error) {
         console.error('Error processing emergency:', error);
@@ -85,6 +184,245 @@ router.post('/', async (req, res) => {
     }
 });
 
+/**
+ * POST /api/emergency/batch
+ * Receive several emergency alerts coalesced by a gateway phone
+ */
+router.post('/batch', binaryBody, async (req, res) => {
+    res.set('Accept-Post', ACCEPT_POST);
+
+    try {
+        const decoded = readEvents(req);
+        if (decoded.status) {
+            return res.status(decoded.status).json(decoded.body);
+        }
+        const events = decoded.events || req.body.events;
+
+        if (!Array.isArray(events) || events.length === 0) {
+            return res.status(400).json({ error: 'At least one event required' });
+        }
+
+        // Each event is processed independently; one bad event does not fail the batch
+        const results = await Promise.all(events.map(async event => {
+            try {
+                const result = await processEmergency(event);
+                return { ...result.body, success: result.status === 201 };
+            } catch (error) {
+                console.error('Error processing batched emergency:', error);
+                return { success: false, error: error.message };
+            }
+        }));
+
+        res.status(200).json({
+            success: results.every(r => r.success),
+            results,
+            timestamp: new Date().toISOString()
+        });
+
+    } catch (error) {
+        console.error('Error processing emergency batch:', error);
+        res.status(500).json({
+            error: 'Failed to process emergency batch',
+            message: error.message
+        });
+    }
+});
+
+/**
+ * POST /api/emergency/cancel
+ * Wearer cancelled: stop alerts for the emergency of the same press
+ */
+router.post('/cancel', async (req, res) => {
+    const { deviceId, sequenceNumber, timestamp } = req.body || {};
+
+    const invalid = validateFrame(deviceId, sequenceNumber, timestamp);
+    if (invalid) {
+        return res.status(400).json({ error: invalid });
+    }
+
+    try {
+        const cancelTimestamp = timestamp || Date.now();
+        cancellations.add(deviceId, sequenceNumber, cancelTimestamp);
+
+        // Incidents whose alerts may still be going out
+        const incidents = await incidentLogger.getIncidentsByDevice(deviceId);
+        const cancelledIds = [];
+        for (const incident of incidents) {
+            if (incident.status !== 'resolved' && incident.status !== 'cancelled'
+                    && cancellations.covers(sequenceNumber, cancelTimestamp, incident)) {
+                await incidentLogger.updateIncidentStatus(incident.id, 'cancelled', {
+                    cancelledAt: new Date().toISOString()
+                });
+                cancelledIds.push(incident.id);
+            }
+        }
+
+        console.log(`Cancel from device 0x${deviceId.toString(16).padStart(4, '0')}: ` +
+            `${cancelledIds.length} incident(s) cancelled`);
+
+        res.status(200).json({
+            success: true,
+            cancelled: cancelledIds,
+            timestamp: new Date().toISOString()
+        });
+
+    } catch (error) {
+        console.error('Error processing cancel:', error);
+        res.status(500).json({
+            error: 'Failed to process cancel',
+            message: error.message
+        });
+    }
+});
+
+/**
+ * Status change as pushed on the events stream
+ */
+function statusEvent(incident) {
+    const event = {
+        incidentId: incident.id,
+        deviceId: incident.deviceId,
+        sequenceNumber: incident.sequenceNumber,
+        status: incident.status,
+        timestamp: incident.updatedAt
+    };
+    if (incident.metadata && incident.metadata.error) {
+        event.error = incident.metadata.error;
+    }
+    return event;
+}
+
+/**
+ * Send the current status of newly watched incidents to their stream
+ */
+async function sendCurrent(streamId, incidentIds) {
+    for (const id of incidentIds) {
+        const incident = await incidentLogger.getIncident(id);
+        if (incident) {
+            statusStreams.deliver(streamId, incident);
+        }
+    }
+}
+
+/**
+ * GET /api/emergency/events
+ * Server-sent events: status changes of the incidents this client watches
+ *
+ * One connection per gateway replaces polling GET /:id per incident.
+ * ?ids=a,b lists the incidents the gateway is still waiting on; their
+ * current status is sent first, so a change made while the gateway was
+ * reconnecting is not missed. The first event names the stream, so
+ * incidents can be added to it with POST /events/:streamId.
+ */
+router.get('/events', async (req, res) => {
+    const ids = typeof req.query.ids === 'string' && req.query.ids
+        ? req.query.ids.split(',').map(id => id.trim()).filter(Boolean)
+        : [];
+    const invalid = statusStreams.validateIds(ids);
+    if (invalid) {
+        return res.status(400).json({ error: invalid });
+    }
+
+    res.set({
+        'Content-Type': 'text/event-stream',
+        'Cache-Control': 'no-cache',
+        'Connection': 'keep-alive',
+        'X-Accel-Buffering': 'no'
+    });
+    res.flushHeaders();
+    res.write(`retry: ${EVENTS_RETRY_MS}\n\n`);
+
+    const streamId = statusStreams.open(incident => {
+        res.write(`event: status\ndata: ${JSON.stringify(statusEvent(incident))}\n\n`);
+    });
+    res.write(`event: stream\ndata: ${JSON.stringify({ streamId })}\n\n`);
+
+    const ping = setInterval(() => res.write(': ping\n\n'), EVENTS_PING_MS);
+    req.on('close', () => {
+        clearInterval(ping);
+        statusStreams.close(streamId);
+    });
+
+    await sendCurrent(streamId, statusStreams.update(streamId, ids));
+});
+
+/**
+ * POST /api/emergency/events/:streamId
+ * Watch more incidents on an open stream, or stop watching some
+ */
+router.post('/events/:streamId', async (req, res) => {
+    const { add = [], remove = [] } = req.body || {};
+    const invalid = statusStreams.validateIds(add) || statusStreams.validateIds(remove);
+    if (invalid) {
+        return res.status(400).json({ error: invalid });
+    }
+
+    let added;
+    try {
+        added = statusStreams.update(req.params.streamId, add, remove);
+    } catch (error) {
+        // Over MAX_WATCHED
+        return res.status(400).json({ error: error.message });
+    }
+    if (!added) {
+        return res.status(404).json({ error: 'Stream not found' });
+    }
+
+    res.json({
+        success: true,
+        watching: statusStreams.watchCount(req.params.streamId)
+    });
+    await sendCurrent(req.params.streamId, added);
+});
+
+/**
+ * POST /api/emergency/:id/location
+ * A better fix for an alert the app sent before its location lookup finished
+ */
+router.post('/:id/location', async (req, res) => {
+    const { latitude, longitude, locationAgeSeconds } = req.body || {};
+
+    if (typeof latitude !== 'number' || Math.abs(latitude) > 90
+            || typeof longitude !== 'number' || Math.abs(longitude) > 180) {
+        return res.status(400).json({ error: 'Latitude and longitude are required' });
+    }
+    if (locationAgeSeconds !== undefined
+            && (typeof locationAgeSeconds !== 'number' || !Number.isFinite(locationAgeSeconds))) {
+        return res.status(400).json({ error: 'Location age must be a number' });
+    }
+
+    try {
+        const incident = await incidentLogger.getIncident(req.params.id);
+        if (!incident) {
+            return res.status(404).json({ error: 'Incident not found' });
+        }
+
+        await incidentLogger.updateIncidentLocation(incident.id,
+            { latitude, longitude, locationAgeSeconds });
+
+        // Contacts already texted get the new fix; the rest of the fan-out reads it
+        // from the incident. Sent asynchronously, like the alerts themselves.
+        if (incident.status !== 'cancelled' && incident.status !== 'resolved') {
+            alertService.sendLocationUpdate(incident)
+                .catch(error => console.error(
+                    `Error sending location update for incident ${incident.id}:`, error));
+        }
+
+        res.status(200).json({
+            success: true,
+            incidentId: incident.id,
+            timestamp: new Date().toISOString()
+        });
+
+    } catch (error) {
+        console.error('Error updating location:', error);
+        res.status(500).json({
+            error: 'Failed to update location',
+            message: error.message
+        });
+    }
+});
+
 /**
  * GET /api/emergency/:id
  * Get incident status by ID
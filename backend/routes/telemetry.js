@@ -0,0 +1,117 @@
+/**
+ * Women Safety System - Telemetry Routes
+ * Heartbeat and battery rollups uploaded by gateway phones
+ */
+
+const express = require('express');
+const router = express.Router();
+const telemetryStore = require('../services/telemetryStore');
+
+// Device IDs are 16-bit on the wire
+const MAX_DEVICE_ID = 0xFFFF;
+
+// A gateway reports at most this many devices per upload (TelemetryAggregator's capacity)
+const MAX_DEVICES_PER_UPLOAD = 4096;
+
+// Gateways report sightings from the last hour; a day leaves room for a late upload
+const MAX_SECONDS_AGO = 24 * 60 * 60;
+
+function isDeviceId(value) {
+    return Number.isInteger(value) && value >= 0 && value <= MAX_DEVICE_ID;
+}
+
+function isNumberIn(value, min, max) {
+    return typeof value === 'number' && Number.isFinite(value) && value >= min && value <= max;
+}
+
+/**
+ * Error message for a malformed upload, or null if it is well formed
+ */
+function validateDelta(seen, devices) {
+    if (!seen || typeof seen !== 'object' || Array.isArray(seen)) {
+        return 'seen must map device IDs to seconds';
+    }
+    const entries = Object.entries(seen);
+    if (entries.length > MAX_DEVICES_PER_UPLOAD) {
+        return `At most ${MAX_DEVICES_PER_UPLOAD} devices per upload`;
+    }
+    for (const [id, secondsAgo] of entries) {
+        if (!/^\d{1,5}$/.test(id) || !isDeviceId(Number(id))) {
+            return `Invalid device ID in seen: ${id}`;
+        }
+        if (!isNumberIn(secondsAgo, 0, MAX_SECONDS_AGO)) {
+            return `seen[${id}] must be seconds between 0 and ${MAX_SECONDS_AGO}`;
+        }
+    }
+
+    if (!Array.isArray(devices) || devices.length > MAX_DEVICES_PER_UPLOAD) {
+        return 'devices must be an array of rollups';
+    }
+    for (const device of devices) {
+        if (!device || !isDeviceId(device.deviceId)) {
+            return 'Every device rollup needs a 16-bit integer deviceId';
+        }
+        if (!isNumberIn(device.batteryLevel, 0, 255)
+            || !isNumberIn(device.batteryTrend, -1000, 1000)
+            || !isNumberIn(device.linkQuality, 0, 1)) {
+            return `Invalid rollup for device ${device.deviceId}`;
+        }
+    }
+    return null;
+}
+
+/**
+ * POST /api/telemetry
+ * Receive a telemetry delta from the Android app
+ */
+router.post('/', (req, res) => {
+    const { seen, devices = [] } = req.body || {};
+
+    const error = validateDelta(seen, devices);
+    if (error) {
+        return res.status(400).json({ error });
+    }
+
+    const count = telemetryStore.applyDelta(seen, devices);
+
+    res.status(200).json({
+        success: true,
+        devices: count,
+        timestamp: new Date().toISOString()
+    });
+});
+
+/**
+ * GET /api/telemetry
+ * Latest rollup for every device
+ */
+router.get('/', (req, res) => {
+    const devices = telemetryStore.getAllDevices();
+
+    res.json({
+        count: devices.length,
+        online: devices.filter(d => d.online).length,
+        devices
+    });
+});
+
+/**
+ * GET /api/telemetry/:deviceId
+ * Latest rollup for one device
+ */
+router.get('/:deviceId', (req, res) => {
+    const deviceId = Number(req.params.deviceId);
+    if (!isDeviceId(deviceId)) {
+        return res.status(400).json({ error: 'Invalid device ID' });
+    }
+
+    const device = telemetryStore.getDevice(deviceId);
+
+    if (!device) {
+        return res.status(404).json({ error: 'Device not found' });
+    }
+
+    res.json(device);
+});
+
+module.exports = router;
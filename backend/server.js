@@ -10,7 +10,9 @@ const morgan = require('morgan');
 require('dotenv').config();
 
 const emergencyRoutes = require('./routes/emergency');
+const telemetryRoutes = require('./routes/telemetry');
 const config = require('./config/config');
+const { requireGatewayKey, warnIfOpen } = require('./middleware/auth');
 
 const app = express();
 
@@ -39,8 +41,9 @@ app.get('/health', (req, res) => {
     });
 });
 
-// Mount routes
-app.use('/api/emergency', emergencyRoutes);
+// Mount routes; once keys are configured only gateways holding one may use them
+app.use('/api/emergency', requireGatewayKey, emergencyRoutes);
+app.use('/api/telemetry', requireGatewayKey, telemetryRoutes);
 
 // 404 handler
 app.use((req, res) => {
@@ -61,6 +64,7 @@ const PORT = config.port || 3000;
 app.listen(PORT, () => {
     console.log(`Women Safety Backend listening on port ${PORT}`);
     console.log(`Environment: ${process.env.NODE_ENV || 'development'}`);
+    warnIfOpen();
 });
 
 // Graceful shutdown
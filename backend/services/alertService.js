@@ -6,6 +6,14 @@
 const ProviderFactory = require('./providers/ProviderFactory');
 const config = require('../config/config');
 
+/**
+ * "Location", or "Last known location (N min old)" when the phone had no current fix
+ */
+function locationLabel(incident) {
+    const minutes = Math.floor((incident.locationAgeSeconds || 0) / 60);
+    return minutes > 0 ? `Last known location (${minutes} min old)` : 'Location';
+}
+
 class AlertService {
     constructor() {
         this.provider = null;
@@ -21,51 +29,58 @@ class AlertService {
 
     /**
      * Send alerts to all emergency contacts
+     *
+     * Each contact is texted, then called. The incident's status is read
+     * again before every SMS and every call, so a cancel that arrives while
+     * the fan-out is under way stops what has not been placed yet.
+     *
+     * Each contact is noted in incident.textedContacts as its SMS is sent,
+     * so a later location update reaches it too.
      */
     async sendAlerts(incident, contacts) {
         const results = {
             sms: [],
             calls: []
         };
+        const texted = incident.textedContacts || (incident.textedContacts = []);
 
-        const promises = [];
-
-        for (const contact of contacts) {
-            if (!contact || contact === '') continue;
-
-            // Send SMS
-            promises.push(
-                this.sendSMS(contact, incident)
-                    .then(result => results.sms.push(result))
-                    .catch(error => results.sms.push({
-                        contact,
-                        success: false,
-                        error: error.message
-                    }))
-            );
-
-            // Initiate call
-            promises.push(
-                this.makeCall(contact, incident)
-                    .then(result => results.calls.push(result))
-                    .catch(error => results.calls.push({
-                        contact,
-                        success: false,
-                        error: error.message
-                    }))
-            );
-        }
+        const textContact = (contact) => {
+            texted.push(contact);
+            return this.sendSMS(contact, incident);
+        };
+
+        const alertContact = async (contact) => {
+            results.sms.push(await this.attempt(incident, contact, () => textContact(contact)));
+            results.calls.push(await this.attempt(incident, contact, () => this.makeCall(contact, incident)));
+        };
 
-        await Promise.all(promises);
+        await Promise.all(contacts
+            .filter(contact => contact && contact !== '')
+            .map(alertContact));
         return results;
     }
 
+    /**
+     * One SMS or call, unless the wearer has cancelled by now
+     */
+    async attempt(incident, contact, send) {
+        // Cancelled by the wearer: no more paid SMS or calls for this incident
+        if (incident.status === 'cancelled') {
+            return { contact, success: false, skipped: 'cancelled' };
+        }
+        try {
+            return await send();
+        } catch (error) {
+            return { contact, success: false, error: error.message };
+        }
+    }
+
     /**
      * Send SMS alert
      */
     async sendSMS(phoneNumber, incident) {
         const location = incident.latitude && incident.longitude
-            ? `Location: https://maps.google.com/?q=${incident.latitude},${incident.longitude}`
+            ? `${locationLabel(incident)}: https://maps.google.com/?q=${incident.latitude},${incident.longitude}`
             : 'Location: Not available';
 
         const message = `🚨 EMERGENCY ALERT 🚨\n\n` +
@@ -76,6 +91,34 @@ class AlertService {
             `Battery: ${incident.batteryLevel}%\n\n` +
             `This is an automated emergency alert. Please respond immediately.`;
 
+        return this.deliverSMS(phoneNumber, message);
+    }
+
+    /**
+     * Text the incident's new location to the contacts already sent its alert
+     *
+     * Contacts texted later read the new location from the incident itself.
+     * Nothing is sent once the wearer has cancelled.
+     */
+    async sendLocationUpdate(incident) {
+        const contacts = incident.textedContacts || [];
+        return Promise.all(contacts.map(contact =>
+            this.attempt(incident, contact, () => this.sendLocationSMS(contact, incident))));
+    }
+
+    /**
+     * Send SMS with an alert's updated location
+     */
+    async sendLocationSMS(phoneNumber, incident) {
+        const message = `🚨 EMERGENCY ALERT UPDATE 🚨\n\n` +
+            `Device: ${incident.deviceId}\n` +
+            `Updated ${locationLabel(incident).toLowerCase()}: ` +
+            `https://maps.google.com/?q=${incident.latitude},${incident.longitude}`;
+
+        return this.deliverSMS(phoneNumber, message);
+    }
+
+    async deliverSMS(phoneNumber, message) {
         if (!this.provider) {
             console.log(`[SIMULATED] SMS to ${phoneNumber}: ${message}`);
             return { contact: phoneNumber, success: true, simulated: true };
@@ -105,7 +148,7 @@ class AlertService {
      */
     async makeCall(phoneNumber, incident) {
         const location = incident.latitude && incident.longitude
-            ? `Latitude ${incident.latitude}, Longitude ${incident.longitude}`
+            ? `${locationLabel(incident)}: Latitude ${incident.latitude}, Longitude ${incident.longitude}`
             : 'Location not available';
 
         // Voice message text
@@ -0,0 +1,60 @@
+/**
+ * Women Safety System - Cancellations
+ * Recent cancel requests per device, so late copies of a cancelled alert are not fanned out
+ *
+ * The wearable gives a press's EMERGENCY and CANCEL frames the same sequence
+ * number. A cancel covers only that device's emergency with the same number,
+ * timestamped within CANCEL_WINDOW_MS of the cancel, so an earlier SOS is never
+ * withdrawn and a number reused after a reboot does not match. Mirrors
+ * EmergencyEvent.isCancelledBy in the app.
+ */
+
+const CANCEL_WINDOW_MS = 60 * 1000;
+const CANCEL_TTL_MS = 10 * 60 * 1000;
+
+class Cancellations {
+    constructor() {
+        this.byDevice = new Map();
+    }
+
+    /**
+     * Record a cancel from a device
+     */
+    add(deviceId, sequenceNumber, timestamp = Date.now()) {
+        this.prune();
+        this.byDevice.set(deviceId, { sequenceNumber, timestamp, receivedAt: Date.now() });
+    }
+
+    /**
+     * True if a recorded cancel covers the event
+     */
+    isCancelled(event) {
+        const cancel = this.byDevice.get(event.deviceId);
+        if (!cancel || Date.now() - cancel.receivedAt > CANCEL_TTL_MS) {
+            return false;
+        }
+        return covers(cancel.sequenceNumber, cancel.timestamp, event);
+    }
+
+    prune() {
+        const cutoff = Date.now() - CANCEL_TTL_MS;
+        for (const [deviceId, cancel] of this.byDevice) {
+            if (cancel.receivedAt < cutoff) {
+                this.byDevice.delete(deviceId);
+            }
+        }
+    }
+}
+
+/**
+ * True if the cancel is for the same press as the event
+ */
+function covers(cancelSequence, cancelTimestamp, event) {
+    return event.sequenceNumber === cancelSequence
+        && Number.isFinite(event.timestamp)
+        && Math.abs(cancelTimestamp - event.timestamp) <= CANCEL_WINDOW_MS;
+}
+
+module.exports = new Cancellations();
+module.exports.covers = covers;
+module.exports.CANCEL_WINDOW_MS = CANCEL_WINDOW_MS;
@@ -0,0 +1,148 @@
+/**
+ * Women Safety System - Emergency Codec
+ * Decodes the compact binary emergency records sent by the Android app
+ *
+ * Record layout (big-endian), mirrored from EmergencyCodec.java:
+ *   [0-1]   Length of the rest of the record
+ *   [2]     Version (1)
+ *   [3]     Flags: 0x01 = contacts inline, 0x02 = location age follows
+ *   [4-5]   Device ID
+ *   [6-9]   Latitude, 1e-7 degrees (signed)
+ *   [10-13] Longitude, 1e-7 degrees (signed)
+ *   [14]    Battery level
+ *   [15-16] Sequence number
+ *   [17-24] Timestamp, ms since epoch
+ *   [25-32] Contacts hash: first 64 bits of SHA-256 over device ID and contacts
+ *   [33..]  If inline: count, then per contact a length byte and ASCII
+ *   [..]    If location age: seconds the fix was old at the timestamp (u32)
+ *
+ * The hash of inline contacts is recomputed here and must match, and cached
+ * contacts are looked up per device, so a client cannot bind another device's
+ * hash to contacts of its choosing.
+ */
+
+const crypto = require('crypto');
+
+const CONTENT_TYPE = 'application/vnd.wss.emergency';
+const VERSION = 1;
+const FLAG_CONTACTS_INLINE = 0x01;
+const FLAG_LOCATION_AGE = 0x02;
+const FIXED_SIZE = 33;
+const MAX_CACHED_CONTACT_SETS = 10000;
+
+class UnknownContactsError extends Error {
+    constructor(hash) {
+        super(`Unknown contacts hash ${hash}`);
+        this.code = 'UNKNOWN_CONTACTS';
+    }
+}
+
+/**
+ * Contacts by device ID and hash, learned from records that carried them inline
+ */
+const contactCache = new Map();
+
+function cacheContacts(key, contacts) {
+    // Map keeps insertion order: re-inserting marks the entry most recently used
+    contactCache.delete(key);
+    contactCache.set(key, contacts);
+    if (contactCache.size > MAX_CACHED_CONTACT_SETS) {
+        contactCache.delete(contactCache.keys().next().value);
+    }
+}
+
+/**
+ * Hash as the app computes it (EmergencyCodec.contactsHash), as hex
+ */
+function contactsHash(deviceId, contacts) {
+    const digest = crypto.createHash('sha256');
+    digest.update(Buffer.from([deviceId >> 8, deviceId & 0xFF]));
+    for (const contact of contacts) {
+        const bytes = Buffer.from(contact, 'ascii');
+        digest.update(Buffer.from([bytes.length]));
+        digest.update(bytes);
+    }
+    return digest.digest().readBigUInt64BE(0).toString(16);
+}
+
+/**
+ * Decode every record in a request body into event objects shaped like the JSON API
+ * Throws UnknownContactsError when a record references contacts not in the cache
+ */
+function decodeBatch(buffer) {
+    const events = [];
+    let offset = 0;
+
+    while (offset < buffer.length) {
+        if (buffer.length - offset < 2) {
+            throw new Error('Truncated record');
+        }
+        const length = buffer.readUInt16BE(offset);
+        const end = offset + 2 + length;
+        if (length < FIXED_SIZE - 2 || end > buffer.length) {
+            throw new Error(`Bad record length ${length}`);
+        }
+
+        const version = buffer.readUInt8(offset + 2);
+        if (version !== VERSION) {
+            throw new Error(`Unsupported record version ${version}`);
+        }
+
+        const flags = buffer.readUInt8(offset + 3);
+        const hash = buffer.readBigUInt64BE(offset + 25).toString(16);
+        const event = {
+            deviceId: buffer.readUInt16BE(offset + 4),
+            latitude: buffer.readInt32BE(offset + 6) / 1e7,
+            longitude: buffer.readInt32BE(offset + 10) / 1e7,
+            batteryLevel: buffer.readUInt8(offset + 14),
+            sequenceNumber: buffer.readUInt16BE(offset + 15),
+            timestamp: Number(buffer.readBigInt64BE(offset + 17))
+        };
+
+        let at = offset + FIXED_SIZE;
+        if (flags & FLAG_CONTACTS_INLINE) {
+            const count = buffer.readUInt8(at++);
+            const contacts = [];
+            for (let i = 0; i < count; i++) {
+                const contactLength = buffer.readUInt8(at++);
+                if (at + contactLength > end) {
+                    throw new Error('Record overruns its length');
+                }
+                contacts.push(buffer.toString('ascii', at, at + contactLength));
+                at += contactLength;
+            }
+            if (contactsHash(event.deviceId, contacts) !== hash) {
+                throw new Error('Contacts hash does not match the contacts');
+            }
+            cacheContacts(`${event.deviceId}:${hash}`, contacts);
+            event.emergencyContacts = contacts;
+        } else {
+            const key = `${event.deviceId}:${hash}`;
+            const contacts = contactCache.get(key);
+            if (!contacts) {
+                throw new UnknownContactsError(hash);
+            }
+            cacheContacts(key, contacts);
+            event.emergencyContacts = contacts;
+        }
+
+        if (flags & FLAG_LOCATION_AGE) {
+            if (at + 4 > end) {
+                throw new Error('Record overruns its length');
+            }
+            event.locationAgeSeconds = buffer.readUInt32BE(at);
+        }
+
+        events.push(event);
+        offset = end;
+    }
+
+    return events;
+}
+
+module.exports = {
+    CONTENT_TYPE,
+    UnknownContactsError,
+    contactsHash,
+    decodeBatch
+};
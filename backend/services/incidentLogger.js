@@ -3,13 +3,18 @@
  * Database operations for incident tracking
  */
 
+const EventEmitter = require('events');
 const { v4: uuidv4 } = require('uuid');
 
 /**
  * In-memory storage (replace with MongoDB/PostgreSQL in production)
+ *
+ * Emits 'status' with the incident whenever one is created or changes
+ * status; StatusStreams passes each to the gateways watching that incident.
  */
-class IncidentLogger {
+class IncidentLogger extends EventEmitter {
     constructor() {
+        super();
         this.incidents = new Map();
         console.log('Incident logger initialized (in-memory storage)');
     }
@@ -23,10 +28,15 @@ class IncidentLogger {
             deviceId: data.deviceId,
             latitude: data.latitude || 0,
             longitude: data.longitude || 0,
+            // How old the fix was when the alert was raised; 0 for a current one
+            locationAgeSeconds: Number.isFinite(data.locationAgeSeconds)
+                ? Math.max(0, data.locationAgeSeconds) : 0,
             batteryLevel: data.batteryLevel || 100,
             sequenceNumber: data.sequenceNumber || 0,
             timestamp: data.timestamp || Date.now(),
             emergencyContacts: data.emergencyContacts || [],
+            // Contacts already sent the alert SMS, so a location update reaches them too
+            textedContacts: [],
             status: data.status || 'triggered',
             createdAt: new Date().toISOString(),
             updatedAt: new Date().toISOString(),
@@ -36,6 +46,7 @@ class IncidentLogger {
         this.incidents.set(incident.id, incident);
 
         console.log(`Incident created: ${incident.id}`);
+        this.emit('status', incident);
 
         return incident;
     }
@@ -57,6 +68,28 @@ class IncidentLogger {
         this.incidents.set(incidentId, incident);
 
         console.log(`Incident ${incidentId} updated: ${status}`);
+        this.emit('status', incident);
+
+        return incident;
+    }
+
+    /**
+     * Replace the incident's location with a better fix, sent after the alert
+     */
+    async updateIncidentLocation(incidentId, location) {
+        const incident = this.incidents.get(incidentId);
+
+        if (!incident) {
+            throw new Error(`Incident ${incidentId} not found`);
+        }
+
+        incident.latitude = location.latitude;
+        incident.longitude = location.longitude;
+        incident.locationAgeSeconds = Number.isFinite(location.locationAgeSeconds)
+            ? Math.max(0, location.locationAgeSeconds) : 0;
+        incident.updatedAt = new Date().toISOString();
+
+        console.log(`Incident ${incidentId} location updated`);
 
         return incident;
     }
@@ -0,0 +1,140 @@
+/**
+ * Women Safety System - Status Streams
+ * The incidents each open events stream is watching
+ *
+ * A gateway is sent status changes only for the incidents it asked for,
+ * never the rest of the system. It names them when it connects (?ids=) and
+ * adds or drops them later with POST /api/emergency/events/:streamId. A
+ * watch ends once its incident's final status has been sent, and a stream
+ * may watch at most MAX_WATCHED incidents. Streams are indexed by incident,
+ * so a status change costs one lookup rather than a pass over every stream.
+ */
+
+const crypto = require('crypto');
+
+const MAX_WATCHED = 1024;
+const MAX_ID_LENGTH = 64;
+const FINAL_STATUSES = new Set(['alerts_sent', 'alert_failed', 'cancelled', 'resolved']);
+
+class StatusStreams {
+    constructor() {
+        this.streams = new Map();     // streamId -> { send, watched }
+        this.byIncident = new Map();  // incidentId -> Set of streamIds
+    }
+
+    /**
+     * Register a stream; send(incident) writes one status event to it
+     * @returns the new stream's id
+     */
+    open(send) {
+        const streamId = crypto.randomUUID();
+        this.streams.set(streamId, { send, watched: new Set() });
+        return streamId;
+    }
+
+    close(streamId) {
+        const stream = this.streams.get(streamId);
+        if (!stream) {
+            return;
+        }
+        for (const incidentId of stream.watched) {
+            this.unindex(streamId, incidentId);
+        }
+        this.streams.delete(streamId);
+    }
+
+    /**
+     * Watch and unwatch incidents on a stream
+     * @returns the ids newly watched, or null for an unknown stream
+     * @throws RangeError if the stream would watch more than MAX_WATCHED
+     */
+    update(streamId, add = [], remove = []) {
+        const stream = this.streams.get(streamId);
+        if (!stream) {
+            return null;
+        }
+
+        for (const incidentId of remove) {
+            if (stream.watched.delete(incidentId)) {
+                this.unindex(streamId, incidentId);
+            }
+        }
+
+        const added = [...new Set(add)].filter(incidentId => !stream.watched.has(incidentId));
+        if (stream.watched.size + added.length > MAX_WATCHED) {
+            throw new RangeError(`At most ${MAX_WATCHED} incidents per stream`);
+        }
+        for (const incidentId of added) {
+            stream.watched.add(incidentId);
+            if (!this.byIncident.has(incidentId)) {
+                this.byIncident.set(incidentId, new Set());
+            }
+            this.byIncident.get(incidentId).add(streamId);
+        }
+        return added;
+    }
+
+    /**
+     * Send a status change to every stream watching the incident
+     */
+    publish(incident) {
+        const streamIds = this.byIncident.get(incident.id);
+        if (streamIds) {
+            for (const streamId of [...streamIds]) {
+                this.deliver(streamId, incident);
+            }
+        }
+    }
+
+    /**
+     * Send a status change to one stream, if it is watching the incident;
+     * a final status ends the watch
+     */
+    deliver(streamId, incident) {
+        const stream = this.streams.get(streamId);
+        if (!stream || !stream.watched.has(incident.id)) {
+            return;
+        }
+        if (FINAL_STATUSES.has(incident.status)) {
+            stream.watched.delete(incident.id);
+            this.unindex(streamId, incident.id);
+        }
+        stream.send(incident);
+    }
+
+    watchCount(streamId) {
+        const stream = this.streams.get(streamId);
+        return stream ? stream.watched.size : 0;
+    }
+
+    unindex(streamId, incidentId) {
+        const streamIds = this.byIncident.get(incidentId);
+        if (streamIds) {
+            streamIds.delete(streamId);
+            if (streamIds.size === 0) {
+                this.byIncident.delete(incidentId);
+            }
+        }
+    }
+}
+
+/**
+ * Error message if ids is not a list of incident ids a stream may watch, or null
+ */
+function validateIds(ids) {
+    if (!Array.isArray(ids)) {
+        return 'Incident ids must be an array';
+    }
+    if (ids.length > MAX_WATCHED) {
+        return `At most ${MAX_WATCHED} incidents per stream`;
+    }
+    if (!ids.every(id => typeof id === 'string' && id.length > 0 && id.length <= MAX_ID_LENGTH)) {
+        return 'Invalid incident id';
+    }
+    return null;
+}
+
+module.exports = new StatusStreams();
+module.exports.StatusStreams = StatusStreams;
+module.exports.validateIds = validateIds;
+module.exports.MAX_WATCHED = MAX_WATCHED;
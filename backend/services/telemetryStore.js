@@ -0,0 +1,121 @@
+/**
+ * Women Safety System - Telemetry Store
+ * Latest heartbeat and battery rollup per device, merged from gateway deltas
+ */
+
+// Any frame counts as a sighting; wearers send a heartbeat about every 60 s,
+// so a device silent this long has missed about five and is reported offline
+const OFFLINE_AFTER_MS = 5 * 60 * 1000;
+
+// Devices neither seen nor updated for this long are dropped from the store
+const FORGET_AFTER_MS = 7 * 24 * 60 * 60 * 1000;
+const PRUNE_EVERY_MS = 60 * 1000;
+
+// Device IDs are 16-bit and validated by the route, which bounds the store;
+// this is a backstop should a caller skip that validation
+const MAX_DEVICES = 0x10000;
+
+/**
+ * In-memory storage (replace with a time-series store in production)
+ */
+class TelemetryStore {
+    constructor() {
+        this.devices = new Map();
+        this.lastPrune = 0;
+    }
+
+    /**
+     * Merge one upload: `seen` maps device IDs to seconds since last heard,
+     * `devices` carries rollups for devices whose values changed
+     * Returns the number of devices touched
+     */
+    applyDelta(seen, devices, receivedAt = Date.now()) {
+        let touched = 0;
+        this.prune(receivedAt);
+
+        for (const [id, secondsAgo] of Object.entries(seen)) {
+            const entry = this.entry(parseInt(id, 10));
+            if (!entry) {
+                continue;
+            }
+            const lastSeen = receivedAt - secondsAgo * 1000;
+            // Gateways may report the same device; keep the most recent sighting
+            if (lastSeen > entry.lastSeen) {
+                entry.lastSeen = lastSeen;
+            }
+            touched++;
+        }
+
+        for (const rollup of devices) {
+            const entry = this.entry(rollup.deviceId);
+            if (!entry) {
+                continue;
+            }
+            entry.batteryLevel = rollup.batteryLevel;
+            entry.batteryTrend = rollup.batteryTrend;
+            entry.linkQuality = rollup.linkQuality;
+            entry.updatedAt = receivedAt;
+        }
+
+        return touched;
+    }
+
+    getDevice(deviceId, now = Date.now()) {
+        const entry = this.devices.get(deviceId);
+        return entry ? this.view(entry, now) : null;
+    }
+
+    getAllDevices(now = Date.now()) {
+        return Array.from(this.devices.values(), entry => this.view(entry, now))
+            .sort((a, b) => a.deviceId - b.deviceId);
+    }
+
+    /**
+     * The device's entry, created if needed; null if the store is full
+     */
+    entry(deviceId) {
+        let entry = this.devices.get(deviceId);
+        if (!entry) {
+            if (this.devices.size >= MAX_DEVICES) {
+                return null;
+            }
+            entry = {
+                deviceId,
+                lastSeen: 0,
+                batteryLevel: null,
+                batteryTrend: null,
+                linkQuality: null,
+                updatedAt: null
+            };
+            this.devices.set(deviceId, entry);
+        }
+        return entry;
+    }
+
+    /**
+     * Drop devices not heard from or updated within FORGET_AFTER_MS; runs at most once a minute
+     */
+    prune(now) {
+        if (now - this.lastPrune < PRUNE_EVERY_MS) {
+            return;
+        }
+        this.lastPrune = now;
+
+        for (const [deviceId, entry] of this.devices) {
+            if (now - Math.max(entry.lastSeen, entry.updatedAt || 0) > FORGET_AFTER_MS) {
+                this.devices.delete(deviceId);
+            }
+        }
+    }
+
+    view(entry, now) {
+        return {
+            ...entry,
+            lastSeen: entry.lastSeen ? new Date(entry.lastSeen).toISOString() : null,
+            updatedAt: entry.updatedAt ? new Date(entry.updatedAt).toISOString() : null,
+            online: now - entry.lastSeen < OFFLINE_AFTER_MS
+        };
+    }
+}
+
+module.exports = new TelemetryStore();
@@ -0,0 +1,112 @@
+/**
+ * Women Safety System - Alert Service Test
+ * A cancel during the fan-out stops the SMS and calls not yet placed, and a
+ * location update reaches the contacts already texted
+ */
+
+const alertService = require('../services/alertService');
+
+describe('sendAlerts', () => {
+    const saved = { sendSMS: alertService.sendSMS, makeCall: alertService.makeCall };
+    let placed;
+
+    beforeEach(() => {
+        placed = [];
+        alertService.makeCall = async (contact) => {
+            placed.push(`call ${contact}`);
+            return { contact, success: true };
+        };
+    });
+
+    afterEach(() => {
+        alertService.sendSMS = saved.sendSMS;
+        alertService.makeCall = saved.makeCall;
+    });
+
+    test('texts then calls every contact', async () => {
+        alertService.sendSMS = async (contact) => {
+            placed.push(`sms ${contact}`);
+            return { contact, success: true };
+        };
+        const incident = { id: 'inc-1', status: 'triggered' };
+
+        const results = await alertService.sendAlerts(incident, ['+911', '', '+912']);
+
+        expect(placed.sort()).toEqual(['call +911', 'call +912', 'sms +911', 'sms +912']);
+        expect(results.calls.every(result => result.success)).toBe(true);
+    });
+
+    test('places no call once the wearer cancels during the fan-out', async () => {
+        const incident = { id: 'inc-1', status: 'triggered' };
+        alertService.sendSMS = async (contact) => {
+            placed.push(`sms ${contact}`);
+            incident.status = 'cancelled';  // The cancel lands while the SMS is sent
+            return { contact, success: true };
+        };
+
+        const results = await alertService.sendAlerts(incident, ['+911']);
+
+        expect(placed).toEqual(['sms +911']);
+        expect(results.calls).toEqual([{ contact: '+911', success: false, skipped: 'cancelled' }]);
+    });
+
+    test('sends nothing for an incident already cancelled', async () => {
+        alertService.sendSMS = async (contact) => {
+            placed.push(`sms ${contact}`);
+            return { contact, success: true };
+        };
+
+        const results = await alertService.sendAlerts({ id: 'inc-1', status: 'cancelled' }, ['+911']);
+
+        expect(placed).toEqual([]);
+        expect(results.sms[0].skipped).toBe('cancelled');
+    });
+});
+
+describe('sendLocationUpdate', () => {
+    const saved = { sendSMS: alertService.sendSMS, makeCall: alertService.makeCall,
+        sendLocationSMS: alertService.sendLocationSMS };
+    let placed;
+
+    beforeEach(() => {
+        placed = [];
+        alertService.sendSMS = async (contact) => {
+            placed.push(`sms ${contact}`);
+            return { contact, success: true };
+        };
+        alertService.makeCall = async (contact) => ({ contact, success: true });
+        alertService.sendLocationSMS = async (contact, incident) => {
+            placed.push(`update ${contact} ${incident.latitude},${incident.longitude}`);
+            return { contact, success: true };
+        };
+    });
+
+    afterEach(() => {
+        alertService.sendSMS = saved.sendSMS;
+        alertService.makeCall = saved.makeCall;
+        alertService.sendLocationSMS = saved.sendLocationSMS;
+    });
+
+    test('texts the new fix only to contacts already sent the alert', async () => {
+        const incident = { id: 'inc-1', status: 'triggered', latitude: 0, longitude: 0 };
+        await alertService.sendAlerts(incident, ['+911']);
+
+        incident.latitude = 12.97;
+        incident.longitude = 77.59;
+        const results = await alertService.sendLocationUpdate(incident);
+
+        expect(placed).toEqual(['sms +911', 'update +911 12.97,77.59']);
+        expect(results.length).toBe(1);
+    });
+
+    test('sends no update once the wearer cancels', async () => {
+        const incident = { id: 'inc-1', status: 'triggered', latitude: 0, longitude: 0 };
+        await alertService.sendAlerts(incident, ['+911']);
+        incident.status = 'cancelled';
+
+        const results = await alertService.sendLocationUpdate(incident);
+
+        expect(placed).toEqual(['sms +911']);
+        expect(results[0].skipped).toBe('cancelled');
+    });
+});
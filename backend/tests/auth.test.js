@@ -0,0 +1,65 @@
+/**
+ * Women Safety System - Gateway Authentication Test
+ * Once keys are configured, requests without one are refused
+ */
+
+const config = require('../config/config');
+const { requireGatewayKey, isValidKey } = require('../middleware/auth');
+
+function run(headers) {
+    const req = { get: name => headers[name.toLowerCase()] };
+    const res = {
+        statusCode: 200,
+        status(code) {
+            this.statusCode = code;
+            return this;
+        },
+        json(body) {
+            this.body = body;
+            return this;
+        }
+    };
+    let passed = false;
+    requireGatewayKey(req, res, () => {
+        passed = true;
+    });
+    return { passed, statusCode: res.statusCode };
+}
+
+describe('requireGatewayKey', () => {
+    const saved = { keys: config.api.gatewayKeys, env: config.nodeEnv };
+
+    afterEach(() => {
+        config.api.gatewayKeys = saved.keys;
+        config.nodeEnv = saved.env;
+    });
+
+    test('accepts any configured key', () => {
+        config.api.gatewayKeys = ['first-key', 'second-key'];
+
+        expect(run({ 'x-api-key': 'second-key' })).toEqual({ passed: true, statusCode: 200 });
+    });
+
+    test('refuses a missing or wrong key', () => {
+        config.api.gatewayKeys = ['first-key'];
+
+        expect(run({})).toEqual({ passed: false, statusCode: 401 });
+        expect(run({ 'x-api-key': 'first-ke' })).toEqual({ passed: false, statusCode: 401 });
+    });
+
+    test('lets requests through when no keys are configured, in production too', () => {
+        config.api.gatewayKeys = [];
+
+        config.nodeEnv = 'production';
+        expect(run({})).toEqual({ passed: true, statusCode: 200 });
+        config.nodeEnv = 'development';
+        expect(run({ 'x-api-key': 'anything' })).toEqual({ passed: true, statusCode: 200 });
+    });
+});
+
+describe('isValidKey', () => {
+    test('rejects non-string keys', () => {
+        expect(isValidKey(undefined, ['key'])).toBe(false);
+        expect(isValidKey(['key'], ['key'])).toBe(false);
+    });
+});
@@ -0,0 +1,49 @@
+/**
+ * Women Safety System - Cancellations Test
+ * A cancel covers only the emergency of the same press, never an earlier SOS
+ */
+
+const cancellations = require('../services/cancellations');
+const { covers, CANCEL_WINDOW_MS } = cancellations;
+
+const T0 = 1705680000000;
+
+describe('covers', () => {
+    test('covers the emergency of the same press', () => {
+        expect(covers(42, T0 + 4000, { deviceId: 1, sequenceNumber: 42, timestamp: T0 })).toBe(true);
+    });
+
+    test('never covers an earlier SOS', () => {
+        const earlier = { deviceId: 1, sequenceNumber: 41, timestamp: T0 };
+        const pressed = { deviceId: 1, sequenceNumber: 43, timestamp: T0 + 20000 };
+
+        expect(covers(43, T0 + 25000, earlier)).toBe(false);
+        expect(covers(43, T0 + 25000, pressed)).toBe(true);
+        expect(covers(43, T0 + 1, { deviceId: 1, sequenceNumber: 42, timestamp: T0 })).toBe(false);
+    });
+
+    test('does not match a sequence number reused outside the window', () => {
+        const event = { deviceId: 1, sequenceNumber: 42, timestamp: T0 };
+
+        expect(covers(42, T0 + CANCEL_WINDOW_MS + 1, event)).toBe(false);
+        expect(covers(42, T0 - CANCEL_WINDOW_MS - 1, event)).toBe(false);
+    });
+
+    test('does not match an event without a timestamp', () => {
+        expect(covers(42, T0, { deviceId: 1, sequenceNumber: 42 })).toBe(false);
+    });
+});
+
+describe('isCancelled', () => {
+    test('suppresses a late copy of the cancelled press only', () => {
+        const now = Date.now();
+        cancellations.add(7, 43, now);
+
+        expect(cancellations.isCancelled({ deviceId: 7, sequenceNumber: 43, timestamp: now - 5000 }))
+            .toBe(true);
+        expect(cancellations.isCancelled({ deviceId: 7, sequenceNumber: 42, timestamp: now - 5000 }))
+            .toBe(false);
+        expect(cancellations.isCancelled({ deviceId: 8, sequenceNumber: 43, timestamp: now - 5000 }))
+            .toBe(false);
+    });
+});
@@ -0,0 +1,97 @@
+/**
+ * Women Safety System - Status Streams Test
+ * A stream is sent only the incidents it watches, and each watch ends at a final status
+ */
+
+const { StatusStreams, validateIds, MAX_WATCHED } = require('../services/statusStreams');
+
+function openStream(streams, ids = []) {
+    const sent = [];
+    const streamId = streams.open(incident => sent.push(`${incident.id} ${incident.status}`));
+    streams.update(streamId, ids);
+    return { streamId, sent };
+}
+
+describe('publish', () => {
+    test('sends a status change only to the streams watching it', () => {
+        const streams = new StatusStreams();
+        const a = openStream(streams, ['inc-1']);
+        const b = openStream(streams, ['inc-2']);
+
+        streams.publish({ id: 'inc-1', status: 'triggered' });
+        streams.publish({ id: 'inc-3', status: 'alerts_sent' });
+
+        expect(a.sent).toEqual(['inc-1 triggered']);
+        expect(b.sent).toEqual([]);
+    });
+
+    test('ends the watch once a final status is sent', () => {
+        const streams = new StatusStreams();
+        const a = openStream(streams, ['inc-1']);
+
+        streams.publish({ id: 'inc-1', status: 'alert_failed' });
+        streams.publish({ id: 'inc-1', status: 'resolved' });
+
+        expect(a.sent).toEqual(['inc-1 alert_failed']);
+        expect(streams.watchCount(a.streamId)).toBe(0);
+        expect(streams.byIncident.size).toBe(0);
+    });
+
+    test('sends nothing after the stream closes', () => {
+        const streams = new StatusStreams();
+        const a = openStream(streams, ['inc-1']);
+
+        streams.close(a.streamId);
+        streams.publish({ id: 'inc-1', status: 'alerts_sent' });
+
+        expect(a.sent).toEqual([]);
+        expect(streams.byIncident.size).toBe(0);
+    });
+});
+
+describe('update', () => {
+    test('adds and removes watches on an open stream', () => {
+        const streams = new StatusStreams();
+        const a = openStream(streams, ['inc-1']);
+
+        expect(streams.update(a.streamId, ['inc-1', 'inc-2', 'inc-2'], [])).toEqual(['inc-2']);
+        expect(streams.update(a.streamId, [], ['inc-1'])).toEqual([]);
+
+        streams.publish({ id: 'inc-1', status: 'alerts_sent' });
+        streams.publish({ id: 'inc-2', status: 'alerts_sent' });
+        expect(a.sent).toEqual(['inc-2 alerts_sent']);
+    });
+
+    test('returns null for an unknown stream', () => {
+        expect(new StatusStreams().update('no-such-stream', ['inc-1'])).toBe(null);
+    });
+
+    test(`rejects more than ${MAX_WATCHED} watches per stream`, () => {
+        const streams = new StatusStreams();
+        const ids = Array.from({ length: MAX_WATCHED }, (_, i) => `inc-${i}`);
+        const a = openStream(streams, ids);
+
+        let error = null;
+        try {
+            streams.update(a.streamId, ['one-more']);
+        } catch (e) {
+            error = e;
+        }
+        expect(error instanceof RangeError).toBe(true);
+        expect(streams.watchCount(a.streamId)).toBe(MAX_WATCHED);
+    });
+});
+
+describe('validateIds', () => {
+    test('accepts a list of incident ids', () => {
+        expect(validateIds(['550e8400-e29b-41d4-a716-446655440000'])).toBe(null);
+        expect(validateIds([])).toBe(null);
+    });
+
+    test('rejects anything else', () => {
+        expect(validateIds('inc-1')).toBe('Incident ids must be an array');
+        expect(validateIds([''])).toBe('Invalid incident id');
+        expect(validateIds([42])).toBe('Invalid incident id');
+        expect(validateIds(['x'.repeat(65)])).toBe('Invalid incident id');
+    });
+});
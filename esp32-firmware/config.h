@@ -29,17 +29,32 @@
 // Timing Configuration (milliseconds)
 #define BUTTON_DEBOUNCE_MS  50              // Button debounce delay
 #define EMERGENCY_DELAY_MS  3000            // 3-second confirmation delay
+#define CANCEL_AFTER_SEND_MS 20000          // A press this long after an alert cancels it;
+                                            // with ACK_GIVE_UP_MS either side, the cancel
+                                            // lands within the gateway's 60 s cancel window
 #define LED_BLINK_MS        200             // LED blink rate in emergency mode
 #define HEARTBEAT_INTERVAL_MS 60000         // Send heartbeat every 60 seconds
+#define HEARTBEAT_JITTER_MS 6000            // +/- this much, so wearers drift apart
+
+// Downlink ACKs: emergency and cancel packets are resent until acknowledged
+#define ACK_TIMEOUT_MS      1000            // Listen for an ACK after each send
+#define ACK_BACKOFF_BASE_MS 1000            // Pause before the 2nd send, doubling after
+#define ACK_BACKOFF_MAX_MS  16000           // Longest pause between sends
+#define ACK_MAX_ATTEMPTS    6               // Sends of one packet before giving up
+#define ACK_BUSY_FRAMES     2               // Uplinks heard in one listen that mean a busy channel
+#define ACK_BUSY_MAX_ATTEMPTS 3             // Sends before giving up on a busy channel
+#define ACK_GIVE_UP_MS      20000           // No resend this long after the first send
 
 // Packet Types
 #define PACKET_TYPE_EMERGENCY   0x01
 #define PACKET_TYPE_CANCEL      0x02
 #define PACKET_TYPE_HEARTBEAT   0x03
+#define PACKET_TYPE_ACK         0x81        // Downlink, gateway to wearables
 
 // Magic Bytes for packet identification
 #define MAGIC_BYTE_1        0xEF
 #define MAGIC_BYTE_2        0xFD
+#define ACK_MAGIC_BYTE_2    0xFA            // Second magic byte of downlink ACKs
 
 // Battery Monitoring (if using battery)
 #define BATTERY_ADC_PIN     GPIO_NUM_34     // ADC pin for battery voltage
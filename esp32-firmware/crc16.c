@@ -0,0 +1,28 @@
+/**
+ * Women Safety System - CRC16 Checksum
+ * Kept apart from lora_comm.c so it builds without the Arduino and LoRa
+ * headers; test/test_crc16.c checks it on the host against the vectors
+ * Crc16CcittTest.java checks the Android implementation against
+ */
+
+#include "lora_comm.h"
+
+/**
+ * Calculate CRC16 checksum (CCITT standard)
+ */
+uint16_t lora_calculate_crc16(const uint8_t *data, size_t length) {
+  uint16_t crc = 0xFFFF;
+
+  for (size_t i = 0; i < length; i++) {
+    crc ^= (uint16_t)data[i] << 8;
+    for (uint8_t j = 0; j < 8; j++) {
+      if (crc & 0x8000) {
+        crc = (crc << 1) ^ 0x1021;
+      } else {
+        crc = crc << 1;
+      }
+    }
+  }
+
+  return crc;
+}
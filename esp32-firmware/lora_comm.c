@@ -5,6 +5,7 @@
 
 #include "lora_comm.h"
 #include "config.h"
+#include <Arduino.h>
 #include <LoRa.h> // Using Sandeep Mistry's LoRa library for ESP32
 #include <esp_log.h>
 #include <esp_timer.h>
@@ -42,69 +43,63 @@ bool lora_init(void) {
 }
 
 /**
- * Calculate CRC16 checksum (CCITT standard)
+ * Get current sequence number and increment
  */
-uint16_t lora_calculate_crc16(const uint8_t *data, size_t length) {
-  uint16_t crc = 0xFFFF;
-
-  for (size_t i = 0; i < length; i++) {
-    crc ^= (uint16_t)data[i] << 8;
-    for (uint8_t j = 0; j < 8; j++) {
-      if (crc & 0x8000) {
-        crc = (crc << 1) ^ 0x1021;
-      } else {
-        crc = crc << 1;
-      }
-    }
-  }
+uint16_t lora_get_sequence_number(void) { return sequence_counter++; }
+
+static void put_be16(uint8_t *at, uint16_t value) {
+  at[0] = (uint8_t)(value >> 8);
+  at[1] = (uint8_t)value;
+}
 
-  return crc;
+static uint16_t get_be16(const uint8_t *at) {
+  return (uint16_t)((at[0] << 8) | at[1]);
 }
 
 /**
- * Get current sequence number and increment
+ * Fill in a packet, fields big-endian as the gateway expects
  */
-uint16_t lora_get_sequence_number(void) { return sequence_counter++; }
+static void lora_build_packet(uint8_t *packet, uint8_t packet_type,
+                              uint8_t battery_level, uint16_t sequence_number) {
+  packet[0] = MAGIC_BYTE_1;
+  packet[1] = MAGIC_BYTE_2;
+  put_be16(&packet[2], DEVICE_ID);
+  packet[4] = packet_type;
+  packet[5] = battery_level;
+  put_be16(&packet[6],
+           (uint16_t)(esp_timer_get_time() / 1000000)); // Seconds since boot
+  put_be16(&packet[8], sequence_number);
+
+  // Calculate checksum (exclude checksum field itself)
+  put_be16(&packet[10],
+           lora_calculate_crc16(packet, sizeof(emergency_packet_t) - 2));
+}
 
 /**
- * Send emergency packet via LoRa
+ * Air a built packet
  */
-bool lora_send_packet(uint8_t packet_type, uint8_t battery_level) {
+static bool lora_transmit(const uint8_t *packet, uint8_t packet_type,
+                          uint16_t sequence_number) {
   if (!lora_is_ready()) {
     ESP_LOGW(TAG, "LoRa not ready for transmission");
     return false;
   }
 
-  // Create packet
-  emergency_packet_t packet;
-  packet.magic[0] = MAGIC_BYTE_1;
-  packet.magic[1] = MAGIC_BYTE_2;
-  packet.device_id = DEVICE_ID;
-  packet.packet_type = packet_type;
-  packet.battery_level = battery_level;
-  packet.timestamp =
-      (uint16_t)(esp_timer_get_time() / 1000000); // Seconds since boot
-  packet.sequence_number = lora_get_sequence_number();
-
-  // Calculate checksum (exclude checksum field itself)
-  packet.checksum =
-      lora_calculate_crc16((uint8_t *)&packet, sizeof(emergency_packet_t) - 2);
-
   // Log packet details
   const char *type_str = packet_type == PACKET_TYPE_EMERGENCY ? "EMERGENCY"
                          : packet_type == PACKET_TYPE_CANCEL  ? "CANCEL"
                                                               : "HEARTBEAT";
-  ESP_LOGI(TAG, "Sending %s packet #%d", type_str, packet.sequence_number);
+  ESP_LOGI(TAG, "Sending %s packet #%d", type_str, sequence_number);
 
   // Begin LoRa packet
   LoRa.beginPacket();
 
   // Write packet bytes
-  LoRa.write((uint8_t *)&packet, sizeof(emergency_packet_t));
+  LoRa.write(packet, sizeof(emergency_packet_t));
 
   // Send packet (blocking - takes ~50-200ms depending on SF)
   bool success =
-      LoRa.endPacket(true); // true = wait for transmission to complete
+      LoRa.endPacket(false); // false = wait for transmission to complete
 
   if (success) {
     ESP_LOGI(TAG, "Packet transmitted successfully");
@@ -115,6 +110,116 @@ bool lora_send_packet(uint8_t packet_type, uint8_t battery_level) {
   return success;
 }
 
+/**
+ * Send emergency packet via LoRa
+ */
+bool lora_send_packet(uint8_t packet_type, uint8_t battery_level) {
+  uint8_t packet[sizeof(emergency_packet_t)];
+  uint16_t sequence_number = lora_get_sequence_number();
+  lora_build_packet(packet, packet_type, battery_level, sequence_number);
+  return lora_transmit(packet, packet_type, sequence_number);
+}
+
+/**
+ * Listen for an ACK listing our packet, for up to timeout_ms, counting the
+ * other wearers' uplinks heard meanwhile in *uplinks_heard
+ */
+static bool lora_wait_for_ack(uint16_t sequence_number, uint32_t timeout_ms,
+                              int *uplinks_heard) {
+  uint8_t frame[ACK_MAX_FRAME_SIZE];
+  uint32_t start = millis();
+
+  *uplinks_heard = 0;
+  while (millis() - start < timeout_ms) {
+    int size = LoRa.parsePacket();
+    if (size > 0) {
+      size_t length = 0;
+      while (LoRa.available()) {
+        int value = LoRa.read();
+        if (length < sizeof(frame)) {
+          frame[length++] = (uint8_t)value;
+        }
+      }
+      if (lora_ack_covers(frame, length, DEVICE_ID, sequence_number)) {
+        return true;
+      }
+      // Another wearer's ACK or an uplink packet; keep listening
+      if (length < 2 || frame[1] != ACK_MAGIC_BYTE_2) {
+        (*uplinks_heard)++;
+      }
+    }
+    delay(1);
+  }
+  return false;
+}
+
+/**
+ * Send, then resend the same packet until it is acknowledged
+ */
+bool lora_send_reliable(uint8_t packet_type, uint8_t battery_level,
+                        uint16_t sequence_number) {
+  uint8_t packet[sizeof(emergency_packet_t)];
+  lora_build_packet(packet, packet_type, battery_level, sequence_number);
+  uint32_t first_send = millis();
+
+  for (int attempt = 1;; attempt++) {
+    int uplinks_heard = 0;
+    if (lora_transmit(packet, packet_type, sequence_number) &&
+        lora_wait_for_ack(sequence_number, ACK_TIMEOUT_MS, &uplinks_heard)) {
+      ESP_LOGI(TAG, "Packet #%d acknowledged after %d send(s)",
+               sequence_number, attempt);
+      return true;
+    }
+
+    // A busy channel: resending sooner would only collide, so back off
+    // harder and give up sooner; the gateway may well have heard us anyway
+    bool busy = uplinks_heard >= ACK_BUSY_FRAMES;
+    uint32_t pause = ACK_BACKOFF_BASE_MS << (attempt - 1);
+    if (pause > ACK_BACKOFF_MAX_MS) {
+      pause = ACK_BACKOFF_MAX_MS;
+    }
+    if (busy) {
+      pause *= 2;
+    }
+    if (attempt >= (busy ? ACK_BUSY_MAX_ATTEMPTS : ACK_MAX_ATTEMPTS) ||
+        millis() - first_send + pause > ACK_GIVE_UP_MS) {
+      ESP_LOGE(TAG, "No ACK for packet #%d after %d sends%s", sequence_number,
+               attempt, busy ? " on a busy channel" : "");
+      return false;
+    }
+
+    // Half fixed, half jitter, so wearers that collided do not collide again
+    delay(pause / 2 + esp_random() % (pause / 2 + 1));
+  }
+}
+
+/**
+ * Check whether a received frame is an ACK listing our packet
+ */
+bool lora_ack_covers(const uint8_t *frame, size_t length, uint16_t device_id,
+                     uint16_t sequence_number) {
+  if (length < ACK_HEADER_SIZE + ACK_ENTRY_SIZE + 2 ||
+      frame[0] != MAGIC_BYTE_1 || frame[1] != ACK_MAGIC_BYTE_2 ||
+      frame[2] != PACKET_TYPE_ACK) {
+    return false;
+  }
+
+  size_t count = frame[3];
+  size_t end = ACK_HEADER_SIZE + ACK_ENTRY_SIZE * count;
+  if (count < 1 || count > ACK_MAX_ENTRIES || length < end + 2 ||
+      get_be16(&frame[end]) != lora_calculate_crc16(frame, end)) {
+    return false;
+  }
+
+  for (size_t at = ACK_HEADER_SIZE; at < end; at += ACK_ENTRY_SIZE) {
+    if (get_be16(&frame[at]) == device_id &&
+        get_be16(&frame[at + 2]) == sequence_number) {
+      return true;
+    }
+  }
+  return false;
+}
+
 /**
  * Check if LoRa is ready to transmit
  */
@@ -7,9 +7,11 @@
 #define LORA_COMM_H
 
 #include <stdbool.h>
+#include <stddef.h>
 #include <stdint.h>
 
 // Emergency Packet Structure (12 bytes total)
+// Multi-byte fields go on air big-endian, as FrameDecoder.java reads them
 typedef struct __attribute__((packed)) {
   uint8_t magic[2];         // [0-1] Magic bytes: 0xEF 0xFD
   uint16_t device_id;       // [2-3] Device ID
@@ -20,6 +22,24 @@ typedef struct __attribute__((packed)) {
   uint16_t checksum;        // [10-11] CRC16 checksum
 } emergency_packet_t;
 
+// ACK Frame (6 + 4 * count bytes), gateway to wearables
+//
+//   [0-1]      Magic bytes: 0xEF 0xFA
+//   [2]        Packet type: 0x81 (PACKET_TYPE_ACK)
+//   [3]        count: entries that follow, 1 to ACK_MAX_ENTRIES
+//   [4..]      count entries of device ID [2] and sequence number [2]
+//   [last 2]   CRC16 over every byte before it
+//
+// All fields big-endian. One frame acknowledges every (device ID, sequence
+// number) it lists; a wearable looks for its own entry and ignores the rest.
+// The phone writes each frame to the gateway's serial port in one write and
+// the gateway airs it as one LoRa packet. Mirrored by AckFrame.java in the
+// Android app; keep both in step.
+#define ACK_HEADER_SIZE     4
+#define ACK_ENTRY_SIZE      4
+#define ACK_MAX_ENTRIES     16
+#define ACK_MAX_FRAME_SIZE  (ACK_HEADER_SIZE + ACK_ENTRY_SIZE * ACK_MAX_ENTRIES + 2)
+
 /**
  * Initialize LoRa module
  * Returns: true on success, false on failure
@@ -35,7 +55,36 @@ bool lora_init(void);
 bool lora_send_packet(uint8_t packet_type, uint8_t battery_level);
 
 /**
- * Calculate CRC16 checksum
+ * Send a packet and resend it, under the same sequence number, until a
+ * gateway ACK lists it: ACK_TIMEOUT_MS of listening after each send, then
+ * a jittered pause doubling from ACK_BACKOFF_BASE_MS, ACK_MAX_ATTEMPTS sends
+ * at most. Hearing ACK_BUSY_FRAMES or more other uplinks while listening
+ * marks the channel busy: the pause doubles and ACK_BUSY_MAX_ATTEMPTS sends
+ * is the limit. Nothing is resent after ACK_GIVE_UP_MS, so this blocks for
+ * about that long at most.
+ * @param packet_type: Type of packet (EMERGENCY/CANCEL)
+ * @param battery_level: Current battery level (0-100%)
+ * @param sequence_number: The press's number from lora_get_sequence_number();
+ *        an EMERGENCY and the CANCEL for the same press carry the same number,
+ *        which is all a cancel ever covers
+ * Returns: true once acknowledged, false if no ACK was heard
+ */
+bool lora_send_reliable(uint8_t packet_type, uint8_t battery_level,
+                        uint16_t sequence_number);
+
+/**
+ * Check whether a received frame is a valid ACK listing the given packet
+ * @param frame: Received bytes
+ * @param length: Number of bytes received
+ * Returns: true if the frame is a whole ACK with a good CRC and the entry
+ */
+bool lora_ack_covers(const uint8_t *frame, size_t length, uint16_t device_id,
+                     uint16_t sequence_number);
+
+/**
+ * Calculate CRC16 checksum (CRC-16/CCITT-FALSE: poly 0x1021, init 0xFFFF)
+ * Must stay bit-identical to Crc16Ccitt.java in the Android app; both are
+ * checked against test/crc16_vectors.txt (defined in crc16.c)
  * @param data: Pointer to data buffer
  * @param length: Length of data
  * Returns: CRC16 checksum value
@@ -3,7 +3,9 @@
  *
  * Emergency button detection with 3-second confirmation delay
  * LoRa transmission on confirmed emergency
- * Cancel functionality during delay period
+ * Cancel functionality during delay period, and for CANCEL_AFTER_SEND_MS
+ * after an alert has gone out
+ * Periodic heartbeat so the gateway can tell a quiet wearer from a lost one
  */
 
 #include "config.h"
@@ -19,14 +21,18 @@ typedef enum {
   STATE_IDLE,
   STATE_DELAY,     // 3-second delay after first press
   STATE_CONFIRMED, // Emergency confirmed, sending alert
-  STATE_CANCELLED  // Emergency cancelled during delay
+  STATE_SENT,      // Alert sent; a press still cancels it for a while
+  STATE_CANCELLED  // Emergency cancelled
 } emergency_state_t;
 
 // Global state variables
 static volatile emergency_state_t current_state = STATE_IDLE;
 static volatile uint32_t button_press_time = 0;
 static volatile bool button_pressed = false;
+static uint16_t press_sequence = 0; // Shared by the press's EMERGENCY or CANCEL
 static esp_timer_handle_t emergency_timer = NULL;
+static uint32_t next_heartbeat_at = 0;
+static uint32_t sent_at = 0; // When the last alert finished sending
 
 // Function prototypes
 void setup(void);
@@ -36,6 +42,7 @@ void emergency_timer_callback(void *arg);
 void handle_emergency_confirmed(void);
 void handle_emergency_cancelled(void);
 void update_led_status(void);
+void schedule_heartbeat(void);
 uint8_t read_battery_level(void);
 
 /**
@@ -88,6 +95,15 @@ uint8_t read_battery_level(void) {
 #endif
 }
 
+/**
+ * Next heartbeat one interval from now, give or take HEARTBEAT_JITTER_MS;
+ * any packet sent restarts the interval, as the gateway counts it as a sighting
+ */
+void schedule_heartbeat(void) {
+  next_heartbeat_at = millis() + HEARTBEAT_INTERVAL_MS - HEARTBEAT_JITTER_MS +
+                      esp_random() % (2 * HEARTBEAT_JITTER_MS + 1);
+}
+
 /**
  * Handle confirmed emergency
  */
@@ -96,11 +112,13 @@ void handle_emergency_confirmed(void) {
 
   uint8_t battery = read_battery_level();
 
-  // Send emergency packet via LoRa
-  bool sent = lora_send_packet(PACKET_TYPE_EMERGENCY, battery);
+  // Send emergency packet via LoRa, resending until the gateway acknowledges it
+  bool sent =
+      lora_send_reliable(PACKET_TYPE_EMERGENCY, battery, press_sequence);
+  schedule_heartbeat();
 
   if (sent) {
-    ESP_LOGI(TAG, "Emergency alert transmitted successfully");
+    ESP_LOGI(TAG, "Emergency alert acknowledged by gateway");
 
     // Blink LED rapidly to indicate success
     for (int i = 0; i < 10; i++) {
@@ -110,18 +128,14 @@ void handle_emergency_confirmed(void) {
       delay(100);
     }
   } else {
-    ESP_LOGE(TAG, "Failed to transmit emergency alert");
-
-    // Retry once
-    delay(500);
-    sent = lora_send_packet(PACKET_TYPE_EMERGENCY, battery);
-    if (sent) {
-      ESP_LOGI(TAG, "Emergency alert transmitted on retry");
-    }
+    ESP_LOGE(TAG, "Emergency alert not acknowledged - gateway out of range?");
   }
 
-  // Return to idle state
-  current_state = STATE_IDLE;
+  // A press from now on, including one made while sending, cancels this alert
+  ESP_LOGI(TAG, "Press within %d seconds to CANCEL the alert",
+           CANCEL_AFTER_SEND_MS / 1000);
+  sent_at = millis();
+  current_state = STATE_SENT;
 }
 
 /**
@@ -132,8 +146,11 @@ void handle_emergency_cancelled(void) {
 
   uint8_t battery = read_battery_level();
 
-  // Send cancel packet via LoRa
-  lora_send_packet(PACKET_TYPE_CANCEL, battery);
+  // Send cancel packet via LoRa, resending until the gateway acknowledges it.
+  // It names this press only, so it can never withdraw an earlier alert; if
+  // the press's EMERGENCY already went out, the gateway stops its alerts.
+  lora_send_reliable(PACKET_TYPE_CANCEL, battery, press_sequence);
+  schedule_heartbeat();
 
   // Turn off LED
   digitalWrite(LED_PIN, LOW);
@@ -167,6 +184,7 @@ void update_led_status(void) {
     break;
 
   case STATE_CONFIRMED:
+  case STATE_SENT:
     digitalWrite(LED_PIN, HIGH);
     break;
   }
@@ -211,8 +229,9 @@ void setup(void) {
 
   ESP_LOGI(TAG, "System initialized - Ready for emergencies");
 
-  // Send heartbeat to confirm system is alive
+  // Send heartbeat to confirm system is alive, then every HEARTBEAT_INTERVAL_MS
   lora_send_packet(PACKET_TYPE_HEARTBEAT, read_battery_level());
+  schedule_heartbeat();
 }
 
 /**
@@ -231,13 +250,17 @@ void loop(void) {
 
       current_state = STATE_DELAY;
 
+      // Reserve this press's number now: its EMERGENCY or CANCEL carries it
+      press_sequence = lora_get_sequence_number();
+
       // Start 3-second timer
       esp_timer_start_once(emergency_timer,
                            EMERGENCY_DELAY_MS * 1000); // microseconds
       break;
 
     case STATE_DELAY:
-      // Second press during delay - cancel emergency
+    case STATE_CONFIRMED:
+      // Second press before the alert went out - cancel emergency
       ESP_LOGI(TAG, "Button pressed during delay - Cancelling emergency");
 
       // Stop timer
@@ -246,6 +269,12 @@ void loop(void) {
       handle_emergency_cancelled();
       break;
 
+    case STATE_SENT:
+      // Press after the alert went out - cancel it under the same number
+      ESP_LOGI(TAG, "Button pressed after alert - Cancelling emergency");
+      handle_emergency_cancelled();
+      break;
+
     default:
       // Ignore button presses in other states
       break;
@@ -257,6 +286,19 @@ void loop(void) {
     handle_emergency_confirmed();
   }
 
+  // No press came: the alert stands
+  if (current_state == STATE_SENT &&
+      millis() - sent_at >= CANCEL_AFTER_SEND_MS) {
+    current_state = STATE_IDLE;
+  }
+
+  // Heartbeat only while idle, so it never delays an emergency or cancel
+  if (current_state == STATE_IDLE &&
+      (int32_t)(millis() - next_heartbeat_at) >= 0) {
+    lora_send_packet(PACKET_TYPE_HEARTBEAT, read_battery_level());
+    schedule_heartbeat();
+  }
+
   // Update LED status
   update_led_status();
 
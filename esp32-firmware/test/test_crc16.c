@@ -0,0 +1,97 @@
+/**
+ * Women Safety System - CRC16 Host Test
+ * Checks lora_calculate_crc16() against the shared check vectors
+ *
+ * Builds on the development machine, without the ESP32 toolchain:
+ *   cc -std=c99 -Wall -I. test/test_crc16.c crc16.c -o test_crc16
+ *   ./test_crc16 test/crc16_vectors.txt
+ * Exits non-zero if any vector disagrees.
+ */
+
+#include "lora_comm.h"
+#include <ctype.h>
+#include <stdio.h>
+#include <stdlib.h>
+#include <string.h>
+
+#define MAX_INPUT 1024
+
+static int hex_value(char c) {
+  if (c >= '0' && c <= '9') return c - '0';
+  if (c >= 'A' && c <= 'F') return c - 'A' + 10;
+  if (c >= 'a' && c <= 'f') return c - 'a' + 10;
+  return -1;
+}
+
+/**
+ * Decode a hex string into out; "-" is the empty input
+ * Returns: bytes decoded, or -1 if the string is not whole bytes of hex
+ */
+static long parse_hex(const char *hex, uint8_t *out, size_t capacity) {
+  if (strcmp(hex, "-") == 0) {
+    return 0;
+  }
+
+  size_t length = strlen(hex);
+  if (length % 2 != 0 || length / 2 > capacity) {
+    return -1;
+  }
+  for (size_t i = 0; i < length / 2; i++) {
+    int high = hex_value(hex[2 * i]);
+    int low = hex_value(hex[2 * i + 1]);
+    if (high < 0 || low < 0) {
+      return -1;
+    }
+    out[i] = (uint8_t)((high << 4) | low);
+  }
+  return (long)(length / 2);
+}
+
+int main(int argc, char **argv) {
+  const char *path = argc > 1 ? argv[1] : "test/crc16_vectors.txt";
+  FILE *file = fopen(path, "r");
+  if (file == NULL) {
+    perror(path);
+    return 2;
+  }
+
+  static char line[2 * MAX_INPUT + 64];
+  static char description[256];
+  uint8_t input[MAX_INPUT];
+  int checked = 0;
+  int failed = 0;
+
+  description[0] = '\0';
+  while (fgets(line, sizeof(line), file) != NULL) {
+    line[strcspn(line, "\r\n")] = '\0';
+    if (line[0] == '#') {
+      snprintf(description, sizeof(description), "%s", line + 1);
+      continue;
+    }
+    if (line[0] == '\0' || isspace((unsigned char)line[0])) {
+      continue;
+    }
+
+    char hex[2 * MAX_INPUT + 1];
+    unsigned int expected;
+    long length;
+    if (sscanf(line, "%2048s %x", hex, &expected) != 2 ||
+        (length = parse_hex(hex, input, sizeof(input))) < 0) {
+      fprintf(stderr, "Malformed vector: %s\n", line);
+      failed++;
+      continue;
+    }
+
+    uint16_t actual = lora_calculate_crc16(input, (size_t)length);
+    checked++;
+    if (actual != expected) {
+      fprintf(stderr, "FAIL%s: expected %04X, got %04X\n", description, expected,
+              actual);
+      failed++;
+    }
+  }
+  fclose(file);
+
+  printf("%d vectors checked, %d failed\n", checked, failed);
+  return failed == 0 && checked > 0 ? 0 : 1;
+}